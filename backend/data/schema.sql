@@ -115,7 +115,9 @@ CREATE INDEX idx_flights_destination   ON flights (destination);
 
 
 -- ============================================================
---  OPTIONAL: MONTH PARTITIONING  (recommended if data grows)
+--  MONTH PARTITIONING
+--  Implemented for flight_prices in
+--  src/main/resources/db/007_partition_flight_prices.sql.
 --
 --    CREATE TABLE flights (...)
 --      PARTITION BY RANGE (flight_date);
@@ -133,7 +135,10 @@ CREATE INDEX idx_flights_destination   ON flights (destination);
 
 
 -- ============================================================
---  OPTIONAL: SCHEDULES NORMALISATION
+--  SCHEDULES NORMALISATION
+--  Implemented in src/main/resources/db/006_create_schedules.sql,
+--  with schedules keyed by schedule_id since flight numbers repeat
+--  across routes.
 --
 --  flights contains ~48,000 unique flight numbers, each
 --  repeating across ~61 operating dates.  Splitting into a
@@ -11,11 +11,15 @@ fi
 
 # Drop in reverse dependency order to respect foreign key constraints
 psql "$CONN" << SQL
+DROP TABLE IF EXISTS flight_prices;
+DROP TABLE IF EXISTS schedules;
 DROP TABLE IF EXISTS flights;
 DROP TABLE IF EXISTS airlines;
 DROP TABLE IF EXISTS airports;
 DROP TABLE IF EXISTS planes;
 DROP TABLE IF EXISTS airports_staging;
+-- Otherwise the next startup would think the dropped tables' migrations still applied
+DROP TABLE IF EXISTS schema_migrations;
 SQL
 
 echo "Done."
@@ -5,11 +5,17 @@
 # airports and flights are loaded via staging tables:
 #   - airports: the CSV contains 'type' and 'source' columns not in the schema
 #   - flights: filters out records with aircraft_type values missing from planes
+#
+# The app reads schedules and flight_prices, not flights. If the server's
+# migrations have already created them, they are refilled from the new flights by
+# rerunning migration 006's data step; otherwise the migrations fill them on the
+# server's first start.
 
 set -e
 
 CONN="$1"
 DATA_DIR="$(cd "$(dirname "$0")/../data" && pwd)"
+MIGRATIONS_DIR="$(cd "$(dirname "$0")/../src/main/resources/db" && pwd)"
 
 if [ -z "$CONN" ]; then
     echo "Usage: $0 <connection-string>"
@@ -81,4 +87,14 @@ INSERT INTO flights (flight_date, airline_code, origin, destination, stops,
 DROP TABLE flights_staging;
 SQL
 
+if [ "$(psql "$CONN" -tAc "SELECT to_regclass('schedules') IS NOT NULL")" = "t" ]; then
+    echo "Refilling schedules and flight prices..."
+    # flight_prices only accepts dates that have a monthly partition (migration 007)
+    psql "$CONN" -v ON_ERROR_STOP=1 << SQL
+TRUNCATE flight_prices, schedules RESTART IDENTITY;
+SELECT ensure_flight_price_partitions(MIN(flight_date), MAX(flight_date)) FROM flights;
+SQL
+    psql "$CONN" -v ON_ERROR_STOP=1 -f "$MIGRATIONS_DIR/006_create_schedules.sql"
+fi
+
 echo "Done."
@@ -12,6 +12,9 @@ package com.kristian.flightsearch;
  *   GET /api/airports                  - Returns list of all airports as JSON
  *   GET /api/flights/search?from=X&to=Y - Returns direct flights between two airports
  *   GET /api/routes/cheapest?from=X    - Uses Dijkstra to find cheapest routes from X
+ *   GET /api/routes/cheapest?from=X&to=Y - Cheapest route from X to Y, read from the all-pairs
+ *                                          matrix or the contraction hierarchy (A* as a fallback)
+ *   GET /api/routes/cheapest?from=X&sortBy=pareto - Price/duration/stops trade-offs per airport
  *
  * How it works:
  *   1. On startup, loads all airport and flight data into memory (same as Main.java did)
@@ -19,6 +22,7 @@ package com.kristian.flightsearch;
  *   3. Listens for HTTP requests and responds with JSON data
  */
 
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
@@ -32,14 +36,24 @@ import java.util.Set;
 import com.kristian.flightsearch.datagenerator.FlightGenerator;
 import com.kristian.flightsearch.db.AirportStore;
 import com.kristian.flightsearch.db.DatabaseManager;
+import com.kristian.flightsearch.db.FlightSnapshot;
 import com.kristian.flightsearch.db.FlightStore;
-import com.kristian.flightsearch.flightgraph.AirportVertex;
+import com.kristian.flightsearch.db.PartitionMaintenance;
+import com.kristian.flightsearch.flightgraph.AllPairsMatrix;
+import com.kristian.flightsearch.flightgraph.CompactFlightGraph;
 import com.kristian.flightsearch.flightgraph.Dijkstra;
 import com.kristian.flightsearch.flightgraph.FlightGraph;
+import com.kristian.flightsearch.flightgraph.Metric;
+import com.kristian.flightsearch.flightgraph.ParetoSearch;
+import com.kristian.flightsearch.flightgraph.ParetoSet;
+import com.kristian.flightsearch.flightgraph.SearchContext;
+import com.kristian.flightsearch.flightgraph.ShortestPath;
+import com.kristian.flightsearch.flightgraph.ShortestPathTreeCache;
 import com.kristian.flightsearch.models.Airport;
 import com.kristian.flightsearch.models.Flight;
 import com.kristian.flightsearch.models.Route;
 import com.kristian.flightsearch.multicitysearch.MultiCitySearch;
+import com.kristian.flightsearch.timetable.Timetable;
 
 import io.javalin.Javalin;
 import io.javalin.http.Context;
@@ -52,8 +66,9 @@ public class Server {
     private static FlightGraph flightNetwork; // Graph structure: airports connected by flights
     private static AirportStore airportStore; // Provides airport lookup by code
     private static FlightStore flightStore; // Handles database queries for date-specific flights
-    private static HashMap<String, Flight> flightList; // All flights indexed by flight number
+    private static HashMap<String, Flight> flightList; // All flights indexed by route and flight number
     private static HashMap<String, ArrayList<Flight>> flightIndex; // Flights indexed by route (e.g., "JFK-LAX")
+    private static Timetable timetable; // Every dated flight for connection scanning; null unless TIMETABLE_SEARCH=true
 
     private static final RateLimiter MULTICITY_LIMITER = new RateLimiter(1, 10_000);
     private static final RateLimiter AIRPORT_SEARCH_LIMITER = new RateLimiter(1, 1_000);
@@ -63,6 +78,9 @@ public class Server {
     private static final LocalDate DB_MIN_DATE = LocalDate.of(2026, 7, 1);
     private static final LocalDate DB_MAX_DATE = LocalDate.of(2026, 8, 31);
 
+    // Stop limit for sortBy=pareto - each extra stop multiplies the trade-offs worth showing
+    private static final int PARETO_MAX_STOPS = 2;
+
     public static void main(String[] args) {
         // Step 1: Load all flight data before starting the server
         initializeFlightData();
@@ -123,6 +141,7 @@ public class Server {
         // Find cheapest route using Dijkstra's algorithm
         // Example: /api/routes/cheapest?from=JFK
         // Returns cheapest price to reach every other airport from the origin
+        // With &to=LAX returns just the cheapest route to that airport and its stops
         app.get("/api/routes/cheapest", Server::findCheapestRoutes);
 
         // Multi-city search: permute destinations and find valid routes with flights
@@ -159,6 +178,10 @@ public class Server {
     private static void initializeFlightData() {
         // Connect to database and run migrations
         DatabaseManager.initialize();
+        // Leaving PARTITION_RETENTION_MONTHS unset keeps every month
+        PartitionMaintenance.run(DatabaseManager.getDataSource(),
+                positiveSetting("PARTITION_MONTHS_AHEAD", PartitionMaintenance.DEFAULT_MONTHS_AHEAD),
+                positiveSetting("PARTITION_RETENTION_MONTHS", PartitionMaintenance.DEFAULT_RETENTION_MONTHS));
 
         airportStore = new AirportStore(DatabaseManager.getDataSource());
 
@@ -168,12 +191,33 @@ public class Server {
             System.exit(1);
         }
 
-        Airport[] airports = airportStore.getAirports();
-
-        flightNetwork = FlightGraph.initalizeFlightGraph(airports);
-
-        flightStore = new FlightStore(DatabaseManager.getDataSource(), airportStore);
-        flightList = flightStore.readFlights();
+        flightStore = new FlightStore(DatabaseManager.getDataSource(), airportStore,
+                positiveSetting("DB_FETCH_SIZE", FlightStore.DEFAULT_FETCH_SIZE),
+                positiveSetting("FLIGHT_LOAD_PARALLELISM", FlightStore.DEFAULT_LOAD_PARALLELISM));
+
+        // With FLIGHT_SNAPSHOT set, airports, flights and prices come from a binary
+        // snapshot file when it matches the database, and the file is (re)written
+        // after a database load otherwise
+        String snapshotFile = System.getenv("FLIGHT_SNAPSHOT");
+        String dataVersion = snapshotFile == null ? null : flightStore.readDataVersion();
+        long start = System.currentTimeMillis();
+        FlightSnapshot.Contents snapshot = dataVersion == null ? null
+                : FlightSnapshot.read(Path.of(snapshotFile), dataVersion);
+
+        Airport[] airports;
+        if (snapshot != null) {
+            airports = snapshot.airports();
+            airportStore.useAirports(airports);
+            flightList = snapshot.flights();
+            flightStore.usePriceCube(snapshot.prices());
+            // The graph comes prepared, with the hierarchies it was saved with
+            flightNetwork = FlightGraph.restore(airports, snapshot.graph());
+            System.out.println("Loaded flight snapshot in " + (System.currentTimeMillis() - start) + " ms");
+        } else {
+            airports = airportStore.getAirports();
+            flightList = flightStore.readFlights();
+            flightNetwork = FlightGraph.initalizeFlightGraph(airports);
+        }
 
         // Create an index of flights by route (e.g., "JFK-LAX" -> [flight1, flight2,
         // ...])
@@ -182,9 +226,62 @@ public class Server {
 
         // Add flights as edges in the graph
         // Each flight becomes an edge connecting two airport vertices
-        FlightGraph.addFlightEdges(flightNetwork, flightIndex);
+        if (snapshot == null) FlightGraph.addFlightEdges(flightNetwork, flightIndex);
 
         System.out.println("Loaded " + airports.length + " airports and " + flightList.size() + " flights");
+        flightNetwork.setTreeCacheMegabytes(positiveSetting("SPT_CACHE_MB", ShortestPathTreeCache.DEFAULT_MAX_MB));
+
+        // The network is static until the next load, so preprocess it for point-to-point
+        // queries: every pair's best price and duration up front (~32 MB), so route lookups
+        // skip searching, or else the contraction hierarchies
+        start = System.currentTimeMillis();
+        if ("true".equalsIgnoreCase(System.getenv("ALL_PAIRS_MATRIX"))) {
+            flightNetwork.prepareAllPairsMatrix();
+            System.out.println("Built all-pairs matrix in " + (System.currentTimeMillis() - start) + " ms");
+        } else {
+            flightNetwork.prepareContractionHierarchies();
+            System.out.println("Built contraction hierarchies in " + (System.currentTimeMillis() - start) + " ms");
+        }
+
+        // Dated prices for searchByDate (~12 MB), refreshed in the background so
+        // date-specific searches don't query the database
+        if (snapshot == null) {
+            start = System.currentTimeMillis();
+            flightStore.loadPriceCube();
+            System.out.println("Built price cube in " + (System.currentTimeMillis() - start) + " ms");
+        }
+        if (snapshot == null && dataVersion != null && flightStore.getPriceCube() != null) {
+            try {
+                FlightSnapshot.write(Path.of(snapshotFile), dataVersion, airports, flightList,
+                        flightNetwork.prepared(), flightStore.getPriceCube());
+                System.out.println("Wrote flight snapshot to " + snapshotFile);
+            } catch (Exception e) {
+                System.out.println("Error writing flight snapshot: " + e.getMessage());
+            }
+        }
+        MultiCitySearch.setSearchParallelism(
+                positiveSetting("SEARCH_PARALLELISM", MultiCitySearch.DEFAULT_SEARCH_PARALLELISM));
+
+        long refreshMinutes = Long.parseLong(System.getenv().getOrDefault("PRICE_CUBE_REFRESH_MINUTES", "15"));
+        if (refreshMinutes > 0) flightStore.startPriceCubeRefresh(refreshMinutes);
+
+        // The timetable holds one row per flight per day, so it is opt-in
+        if ("true".equalsIgnoreCase(System.getenv("TIMETABLE_SEARCH"))) {
+            timetable = flightStore.readTimetable();
+        }
+    }
+
+    // A whole-number environment setting that must be at least 1; stops startup otherwise
+    private static int positiveSetting(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) return defaultValue;
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= 1) return parsed;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException(name + " must be a positive whole number: " + value);
     }
 
     /**
@@ -200,10 +297,12 @@ public class Server {
         List<Map<String, String>> connections = new ArrayList<>();
         Set<String> usedCodes = new HashSet<>();
 
-        for (AirportVertex vertex : flightNetwork.getVertices()) {
-            for (var edge : vertex.getEdges()) {
-                String from = edge.getStart().getData().getCode();
-                String to = edge.getEnd().getData().getCode();
+        // One edge per airport pair is all that matters here
+        CompactFlightGraph compact = flightNetwork.getRouteGraph();
+        for (int v = 0; v < compact.vertexCount(); v++) {
+            String from = compact.code(v);
+            for (int e = compact.firstEdge(v); e < compact.endEdge(v); e++) {
+                String to = compact.code(compact.target(e));
                 String key = from.compareTo(to) < 0 ? from + "-" + to : to + "-" + from;
 
                 if (seen.add(key)) {
@@ -219,8 +318,8 @@ public class Server {
 
         // Only include airports that appear in at least one connection
         List<Map<String, Object>> airports = new ArrayList<>();
-        for (AirportVertex vertex : flightNetwork.getVertices()) {
-            Airport a = vertex.getData();
+        for (int v = 0; v < compact.vertexCount(); v++) {
+            Airport a = compact.airport(v);
             if (!usedCodes.contains(a.getCode()))
                 continue;
             Map<String, Object> entry = new HashMap<>();
@@ -391,14 +490,21 @@ public class Server {
 
     /**
      * GET /api/routes/cheapest?from=XXX
-     * Uses Dijkstra's algorithm to find the cheapest route from origin to ALL other
-     * airports
+     * Finds the cheapest route from origin to ALL other airports over the route
+     * graph (one edge per airport pair, carrying the pair's best price and duration)
      *
-     * This is the main feature! Dijkstra's algorithm explores the graph to find
-     * the shortest (cheapest) path from one vertex to every other vertex.
+     * This is the main feature! The origin's row of the all-pairs matrix holds the
+     * answer for every destination when ALL_PAIRS_MATRIX is on; otherwise Dijkstra's
+     * algorithm explores the graph to find the cheapest path from one vertex to
+     * every other vertex.
      *
      * Query parameters:
-     * from - origin airport code (e.g., "JFK")
+     * from   - origin airport code (e.g., "JFK")
+     * to     - optional destination airport code; returns just the route there
+     * sortBy - "price" (default), "duration" for the shortest flight time instead
+     *          (cheapestDurationMinutes in place of cheapestPrice, origin left out),
+     *          or "pareto" for every price/duration/stops trade-off (see
+     *          findParetoRoutes)
      *
      * Example response:
      * {
@@ -411,9 +517,18 @@ public class Server {
      * ...
      * ]
      * }
+     *
+     * With a destination the route is looked up with FlightGraph.findPath - read
+     * from the all-pairs matrix when it is prepared, otherwise a contraction
+     * hierarchy query (A* when the hierarchy's core is most of the graph, and a
+     * bidirectional search until the hierarchies are prepared) - and
+     * returned with the flight behind each hop:
+     * {"from": "JFK", "to": "LAX", "cheapestPrice": 250, "path": ["JFK", "ATL", "LAX"],
+     * "flightNumbers": ["AA 001", "AA 002"]}
      */
     private static void findCheapestRoutes(Context ctx) {
         String from = ctx.queryParam("from");
+        String to = ctx.queryParam("to");
         String sortBy = ctx.queryParam("sortBy");
 
         if (from == null) {
@@ -428,40 +543,71 @@ public class Server {
             return;
         }
 
-        AirportVertex originVertex = flightNetwork.getVertex(from);
+        // Search the per-pair route graph: parallel flights collapse to their best edge
+        CompactFlightGraph compact = flightNetwork.getRouteGraph();
+        int originId = compact.idOf(from);
 
         List<Map<String, Object>> routes = new ArrayList<>();
 
-        if ("duration".equalsIgnoreCase(sortBy)) {
-            @SuppressWarnings("unchecked")
-            Map<Airport, java.time.Duration> durations = Dijkstra.searchByDuration(flightNetwork, originVertex)[0];
-            for (Map.Entry<Airport, java.time.Duration> entry : durations.entrySet()) {
-                // Filter out unreachable airports (Duration.ofHours(99)) and origin
-                // (Duration.ZERO)
-                if (entry.getValue() != null && entry.getValue().toMinutes() > 0
-                        && entry.getValue().compareTo(java.time.Duration.ofHours(99)) < 0) {
+        if ("pareto".equalsIgnoreCase(sortBy)) {
+            findParetoRoutes(ctx, from, to != null ? to.toUpperCase() : null);
+            return;
+        }
+
+        if (to != null) {
+            findCheapestRoute(ctx, compact, from, to.toUpperCase(), sortBy);
+            return;
+        }
+
+        if (originId < 0) {
+            ctx.json(Map.of("from", from, "routes", routes));
+            return;
+        }
+
+        AllPairsMatrix matrix = flightNetwork.getAllPairsMatrix();
+        if (matrix != null) {
+            // Precomputed: the origin's row already holds the answer for every destination
+            Metric metric = "duration".equalsIgnoreCase(sortBy) ? Metric.DURATION : Metric.PRICE;
+            for (int v = 0; v < compact.vertexCount(); v++) {
+                if (!matrix.isReachable(originId, v)) continue;
+                // Duration results leave out the origin itself, as below
+                if (metric == Metric.DURATION && v == originId) continue;
+                Airport destination = compact.airport(v);
+                Map<String, Object> route = new HashMap<>();
+                route.put("destination", destination.getCode());
+                route.put("destinationName", destination.getName());
+                if (metric == Metric.DURATION) {
+                    route.put("cheapestDurationMinutes", (long) matrix.cost(originId, v, metric));
+                } else {
+                    route.put("cheapestPrice", matrix.cost(originId, v, metric));
+                }
+                routes.add(route);
+            }
+        } else if ("duration".equalsIgnoreCase(sortBy)) {
+            SearchContext durations = Dijkstra.run(compact, originId, Metric.DURATION);
+            for (int v = 0; v < compact.vertexCount(); v++) {
+                // Filter out unreachable airports and the origin itself (duration 0)
+                if (v != originId && durations.isReachable(v)) {
+                    Airport destination = compact.airport(v);
                     Map<String, Object> route = new HashMap<>();
-                    route.put("destination", entry.getKey().getCode());
-                    route.put("destinationName", entry.getKey().getName());
-                    route.put("cheapestDurationMinutes", entry.getValue().toMinutes());
+                    route.put("destination", destination.getCode());
+                    route.put("destinationName", destination.getName());
+                    route.put("cheapestDurationMinutes", (long) durations.distanceTo(v));
                     routes.add(route);
                 }
             }
         } else {
-            // Run Dijkstra's algorithm - returns two Maps:
-            // result[0] = Map<Airport, Integer> - cheapest price to reach each airport
-            // result[1] = Map<Airport, AirportVertex> - previous vertex in path (for
-            // reconstructing route)
-            @SuppressWarnings("unchecked")
-            Map<Airport, Integer> distances = Dijkstra.searchByPrice(flightNetwork, originVertex)[0];
-            // Filter out unreachable airports (price = MAX_VALUE) and the origin itself
-            // (price = 0)
-            for (Map.Entry<Airport, Integer> entry : distances.entrySet()) {
-                if (entry.getValue() != null && entry.getValue() != Integer.MAX_VALUE) {
+            // Run Dijkstra's algorithm over the CSR graph - the tree holds the cheapest
+            // price to every airport plus the previous airport on that path
+            SearchContext prices = Dijkstra.run(compact, originId, Metric.PRICE);
+            // Filter out unreachable airports (price = MAX_VALUE)
+            for (int v = 0; v < compact.vertexCount(); v++) {
+                if (prices.isReachable(v)) {
+                    Airport destination = compact.airport(v);
                     Map<String, Object> route = new HashMap<>();
-                    route.put("destination", entry.getKey().getCode());
-                    route.put("destinationName", entry.getKey().getName());
-                    route.put("cheapestPrice", entry.getValue());
+                    route.put("destination", destination.getCode());
+                    route.put("destinationName", destination.getName());
+                    route.put("cheapestPrice", prices.distanceTo(v));
                     routes.add(route);
                 }
             }
@@ -472,11 +618,102 @@ public class Server {
                 "routes", routes));
     }
 
+    /*
+     * sortBy=pareto branch of /api/routes/cheapest. For each reachable airport (or just
+     * the one in 'to') returns every route with at most PARETO_MAX_STOPS stops that no
+     * other route beats on price, flight time and stops at once - e.g. a $300 one-stop
+     * and a $520 nonstop - cheapest first:
+     * {"destination": "LAX", "destinationName": "...", "options": [
+     *   {"price": 300, "durationMinutes": 410, "stops": 1, "path": ["JFK", "ATL", "LAX"]}, ...]}
+     */
+    private static void findParetoRoutes(Context ctx, String from, String to) {
+        if (to != null && !airportStore.isValidAirportCode(to)) {
+            ctx.status(400).json(Map.of("error", "Invalid airport code: " + to));
+            return;
+        }
+
+        // Flight-level graph: one route edge can mix one flight's price with another's duration
+        CompactFlightGraph flights = flightNetwork.getCompactGraph();
+        int originId = flights.idOf(from);
+        List<Map<String, Object>> routes = new ArrayList<>();
+        if (originId < 0) {
+            ctx.json(Map.of("from", from, "routes", routes));
+            return;
+        }
+
+        ParetoSet pareto = ParetoSearch.run(flights, originId, PARETO_MAX_STOPS);
+        int targetId = to != null ? flights.idOf(to) : -1;
+        for (int v = 0; v < flights.vertexCount(); v++) {
+            if (v == originId || pareto.optionCount(v) == 0) continue;
+            if (to != null && v != targetId) continue;
+
+            List<Map<String, Object>> options = new ArrayList<>();
+            for (int o = pareto.firstOption(v); o < pareto.endOption(v); o++) {
+                Map<String, Object> option = new HashMap<>();
+                option.put("price", pareto.price(o));
+                option.put("durationMinutes", pareto.durationMinutes(o));
+                option.put("stops", pareto.stops(o));
+                option.put("path", pareto.codes(o));
+                options.add(option);
+            }
+
+            Airport destination = flights.airport(v);
+            Map<String, Object> route = new HashMap<>();
+            route.put("destination", destination.getCode());
+            route.put("destinationName", destination.getName());
+            route.put("options", options);
+            routes.add(route);
+        }
+
+        ctx.json(Map.of(
+                "from", from,
+                "routes", routes));
+    }
+
+    // Point-to-point branch of /api/routes/cheapest
+    private static void findCheapestRoute(Context ctx, CompactFlightGraph compact, String from, String to, String sortBy) {
+        if (!airportStore.isValidAirportCode(to)) {
+            ctx.status(400).json(Map.of("error", "Invalid airport code: " + to));
+            return;
+        }
+
+        Metric metric = "duration".equalsIgnoreCase(sortBy) ? Metric.DURATION : Metric.PRICE;
+        // Matrix lookup or hierarchy query over the same route graph (see FlightGraph.findPath)
+        ShortestPath path = flightNetwork.findPath(from, to, metric);
+
+        if (path == null) {
+            ctx.json(Map.of(
+                    "from", from,
+                    "to", to,
+                    "path", new ArrayList<>(),
+                    "message", "No route found"));
+            return;
+        }
+
+        // Expand each airport-pair edge into the flight that gave it its weight
+        CompactFlightGraph flights = compact.flightGraph();
+        List<String> flightNumbers = new ArrayList<>();
+        for (int e : path.edges()) {
+            flightNumbers.add(flights.flightNumber(compact.bestFlight(e, metric)));
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("from", from);
+        result.put("to", to);
+        result.put(metric == Metric.DURATION ? "cheapestDurationMinutes" : "cheapestPrice", path.cost());
+        result.put("path", path.codes());
+        result.put("flightNumbers", flightNumbers);
+        ctx.json(result);
+    }
+
     /**
      * GET
      * /api/flights/multicity?from=YYZ&destinations=JFK,LAX&departureDate=2026-04-15&daysAtEachDestination=3,4&optimizeBy=price
      * Permutes destination order, finds valid routes on the specified dates, and
-     * returns flights per leg.
+     * returns flights per leg. optimizeBy is price, duration, or pareto (only the
+     * routes not beaten on price, duration and stops together, cheapest first).
+     * Optional limit (default 20) and offset (default 0) page through the ranked
+     * routes, up to MultiCitySearch.MAX_RESULTS deep.
      */
     private static void searchMultiCity(Context ctx) {
         String from = ctx.queryParam("from");
@@ -484,6 +721,8 @@ public class Server {
         String departureDateParam = ctx.queryParam("departureDate");
         String daysParam = ctx.queryParam("daysAtEachDestination");
         String optimizeBy = ctx.queryParam("optimizeBy");
+        String limitParam = ctx.queryParam("limit");
+        String offsetParam = ctx.queryParam("offset");
 
         if (from == null) {
             ctx.status(400).json(Map.of("error", "Please add a home airport"));
@@ -514,8 +753,9 @@ public class Server {
             destinations[i] = destinations[i].trim().toUpperCase();
         }
 
-        if (destinations.length < 1 || destinations.length > 5) {
-            ctx.status(400).json(Map.of("error", "Must have between 1 and 5 destinations"));
+        if (destinations.length < 1 || destinations.length > MultiCitySearch.MAX_DESTINATIONS) {
+            ctx.status(400).json(Map.of("error",
+                    "Must have between 1 and " + MultiCitySearch.MAX_DESTINATIONS + " destinations"));
             return;
         }
 
@@ -573,29 +813,57 @@ public class Server {
             return;
         }
 
-        if (optimizeBy == null || (!optimizeBy.equalsIgnoreCase("price") && !optimizeBy.equalsIgnoreCase("duration"))) {
+        if (optimizeBy == null || (!optimizeBy.equalsIgnoreCase("price") && !optimizeBy.equalsIgnoreCase("duration")
+                && !optimizeBy.equalsIgnoreCase("pareto"))) {
             optimizeBy = "price";
         }
 
+        // Paging: routes [offset, offset + limit) of the ranked results
+        int limit;
+        int offset;
+        try {
+            limit = limitParam == null ? MultiCitySearch.MAX_ORDERINGS : Integer.parseInt(limitParam.trim());
+            offset = offsetParam == null ? 0 : Integer.parseInt(offsetParam.trim());
+        } catch (NumberFormatException e) {
+            ctx.status(400).json(Map.of("error", "limit and offset must be integers"));
+            return;
+        }
+        if (limit < 1 || offset < 0 || offset + limit > MultiCitySearch.MAX_RESULTS) {
+            ctx.status(400).json(Map.of("error",
+                    "limit must be at least 1, offset at least 0, and offset + limit at most "
+                            + MultiCitySearch.MAX_RESULTS));
+            return;
+        }
+
         MultiCitySearch multiCitySearch = new MultiCitySearch(airportStore, flightIndex);
+        // Only the routes up to the end of the requested page are ever built
+        multiCitySearch.setResultLimit(offset + limit);
         ArrayList<Route> validRoutes = multiCitySearch.searchByDate(
                 from, destinations, departureDate, daysAtAirport, optimizeBy, flightStore);
 
-        // When no direct-flight routes exist, fall back to connection search via
-        // Dijkstra
-        if (validRoutes.isEmpty()) {
-            validRoutes = multiCitySearch.searchByDateWithConnections(
-                    from, destinations, departureDate, daysAtAirport, optimizeBy,
-                    flightStore, flightNetwork);
+        // When no direct-flight routes exist, fall back to connection search - a
+        // schedule-aware scan of the timetable when it is loaded, otherwise a graph
+        // path that is checked against the schedule afterwards. The timetable scan tries
+        // every ordering and the graph search keeps trying orderings until enough fly on
+        // the day, which can be all of them, so only small trips fall back.
+        if (validRoutes.isEmpty() && destinations.length <= MultiCitySearch.MAX_CONNECTION_DESTINATIONS) {
+            if (timetable != null) {
+                validRoutes = multiCitySearch.searchByDateWithTimetable(
+                        from, destinations, departureDate, daysAtAirport, optimizeBy, timetable);
+            } else {
+                validRoutes = multiCitySearch.searchByDateWithConnections(
+                        from, destinations, departureDate, daysAtAirport, optimizeBy,
+                        flightStore, flightNetwork);
+            }
         }
 
-        if (validRoutes.isEmpty()) {
+        if (validRoutes.size() <= offset) {
             ctx.json(Map.of("from", from, "routes", new ArrayList<>()));
             return;
         }
 
         List<Map<String, Object>> routeData = new ArrayList<>();
-        for (Route route : validRoutes) {
+        for (Route route : validRoutes.subList(offset, Math.min(offset + limit, validRoutes.size()))) {
             Map<String, Object> routeMap = new HashMap<>();
             routeMap.put("airports", route.getAirports());
             routeMap.put("cheapestTotalPrice", route.getCheapestTotalPrice());
@@ -34,6 +34,23 @@ public class FlightDistanceCalculator {
         return distance;
     }
 
+    /*
+     * Same haversine distance, for callers that have already converted each airport's
+     * latitude/longitude to radians and cached cos(latitude) - saves four toRadians
+     * and two cos calls per pair when the same airports are compared repeatedly.
+     */
+    public static double calcDistance(double lat1Rad, double long1Rad, double cosLat1,
+            double lat2Rad, double long2Rad, double cosLat2) {
+        double sinHalfDeltaLat = Math.sin((lat2Rad - lat1Rad) / 2.0);
+        double sinHalfDeltaLong = Math.sin((long2Rad - long1Rad) / 2.0);
+
+        double a = sinHalfDeltaLat * sinHalfDeltaLat
+                + cosLat1 * cosLat2 * sinHalfDeltaLong * sinHalfDeltaLong;
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return EARTH_RADIUS_KM * c;
+    }
+
 
 
 
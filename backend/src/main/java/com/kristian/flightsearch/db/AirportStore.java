@@ -32,6 +32,15 @@ public class AirportStore {
         return cache.values().toArray(new Airport[0]);
     }
 
+    /*
+     * Uses airports loaded elsewhere (a FlightSnapshot) instead of reading the table.
+     */
+    public void useAirports(Airport[] airports) {
+        HashMap<String, Airport> byCode = new HashMap<>();
+        for (Airport airport : airports) byCode.put(airport.getCode(), airport);
+        cache = byCode;
+    }
+
     public Airport getAirportByCode(String code) {
         ensureLoaded();
         return cache.get(code);
@@ -0,0 +1,312 @@
+package com.kristian.flightsearch.db;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+/*
+ * Reseeds the database from the CSVs in backend/data by streaming them through
+ * COPY FROM STDIN, in place of scripts/seed_database.sh.
+ *
+ * Planes, airports and airlines are small, so they are read into memory first and
+ * their keys kept. Each flights row is then checked against those keys in Java -
+ * rows naming an unknown airline, airport or aircraft are dropped, as the script's
+ * IN (SELECT ...) filters did - and the rest go straight to COPY without a staging
+ * table. The flights table's foreign keys and secondary indexes are dropped for the
+ * load and put back afterwards, so Postgres validates and indexes the 3M rows in
+ * one pass each rather than row by row.
+ *
+ * Run against the database named by the usual DB_* / DATABASE_URL variables
+ * (local flightsearch by default):
+ *   mvn -Pbulk-load exec:java [-Dexec.args=<data dir> [flights csv]]
+ *
+ * Replaces whatever is in the four tables, then rebuilds schedules and
+ * flight_prices from the new flights, all in one transaction.
+ */
+public class BulkLoader {
+
+    // COPY data is sent in chunks of about this many bytes
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int PROGRESS_ROWS = 500_000;
+
+    // Column positions in flights.csv
+    static final int FLIGHT_AIRLINE = 1;
+    static final int FLIGHT_ORIGIN = 2;
+    static final int FLIGHT_DESTINATION = 3;
+    static final int FLIGHT_AIRCRAFT = 5;
+
+    // Columns of airports.csv that the airports table has, in the table's order
+    private static final String AIRPORT_COLUMNS = "airport_id, name, city, country, iata_code, icao_code, "
+            + "latitude, longitude, utc_offset, dst, timezone, elevation_ft, max_runway_length_ft";
+    // airports.csv's 'type' and 'source' columns aren't in the table
+    private static final int[] AIRPORT_FIELDS = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 13, 14 };
+
+    private final Connection conn;
+    private final CopyManager copyManager;
+
+    BulkLoader(Connection conn) throws SQLException {
+        this.conn = conn;
+        this.copyManager = conn.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path dataDir = Path.of(args.length > 0 ? args[0] : "data");
+        Path flightsCsv = args.length > 1 ? Path.of(args[1]) : dataDir.resolve("flights.csv");
+
+        // Creates the tables if this is a fresh database
+        DatabaseManager.initialize();
+
+        long start = System.currentTimeMillis();
+        try (Connection conn = DatabaseManager.getDataSource().getConnection()) {
+            new BulkLoader(conn).load(dataDir, flightsCsv);
+        }
+        System.out.println("Bulk load finished in " + (System.currentTimeMillis() - start) / 1000 + " s");
+        System.exit(0);
+    }
+
+    /*
+     * Runs the whole reload - truncate, copies, dropped and rebuilt keys and
+     * indexes, schedules - in one transaction, so a failure part way leaves the
+     * old data and the flights table's definitions as they were.
+     */
+    void load(Path dataDir, Path flightsCsv) throws SQLException, IOException {
+        conn.setAutoCommit(false);
+        try {
+            reload(dataDir, flightsCsv);
+            conn.commit();
+        } catch (SQLException | IOException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private void reload(Path dataDir, Path flightsCsv) throws SQLException, IOException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE flight_prices, schedules, flights, airlines, airports, planes RESTART IDENTITY");
+        }
+
+        // planes.csv has no header and its columns are the other way round
+        List<String[]> planes = readCsv(dataDir.resolve("planes.csv"), false);
+        copyRows("planes (name, iata_code)", planes, null);
+        Set<String> planeCodes = keys(planes, 1);
+
+        List<String[]> airports = readCsv(dataDir.resolve("airports.csv"), true);
+        copyRows("airports (" + AIRPORT_COLUMNS + ")", airports, AIRPORT_FIELDS);
+        Set<String> airportCodes = keys(airports, 4);
+
+        List<String[]> airlines = readCsv(dataDir.resolve("airlines.csv"), true);
+        copyRows("airlines (airline_code, airline_name, country)", airlines, null);
+        Set<String> airlineCodes = keys(airlines, 0);
+
+        System.out.println("Loaded " + planes.size() + " planes, " + airports.size() + " airports, "
+                + airlines.size() + " airlines");
+
+        Map<String, String> foreignKeys = definitions(
+                "SELECT conname, pg_get_constraintdef(oid) FROM pg_constraint "
+                        + "WHERE conrelid = 'flights'::regclass AND contype = 'f'");
+        Map<String, String> indexes = definitions(
+                "SELECT indexname, indexdef FROM pg_indexes WHERE tablename = 'flights' "
+                        + "AND indexname NOT IN (SELECT conname FROM pg_constraint "
+                        + "WHERE conrelid = 'flights'::regclass)");
+        try (Statement stmt = conn.createStatement()) {
+            for (String name : foreignKeys.keySet()) stmt.execute("ALTER TABLE flights DROP CONSTRAINT " + name);
+            for (String name : indexes.keySet()) stmt.execute("DROP INDEX " + name);
+        }
+
+        copyFlights(flightsCsv, new FlightFilter(airlineCodes, airportCodes, planeCodes));
+
+        try (Statement stmt = conn.createStatement()) {
+            long start = System.currentTimeMillis();
+            for (String definition : indexes.values()) stmt.execute(definition);
+            for (Map.Entry<String, String> fk : foreignKeys.entrySet()) {
+                stmt.execute("ALTER TABLE flights ADD CONSTRAINT " + fk.getKey() + " " + fk.getValue());
+            }
+            System.out.println("Rebuilt " + indexes.size() + " indexes and " + foreignKeys.size()
+                    + " foreign keys in " + (System.currentTimeMillis() - start) + " ms");
+
+            // Refill schedules and flight_prices, which the app reads, from the new flights
+            start = System.currentTimeMillis();
+            try (ResultSet rs = stmt.executeQuery("SELECT MIN(flight_date), MAX(flight_date) FROM flights")) {
+                // flight_prices only accepts dates that have a monthly partition
+                if (rs.next() && rs.getDate(1) != null) {
+                    PartitionMaintenance.ensurePartitions(conn, rs.getDate(1).toLocalDate(),
+                            rs.getDate(2).toLocalDate());
+                }
+            }
+            DatabaseManager.applyMigration(conn, DatabaseManager.SCHEDULES_MIGRATION);
+            stmt.execute("ANALYZE");
+            System.out.println("Rebuilt schedules and flight prices in " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    /*
+     * Streams flightsCsv into the flights table, skipping rows the filter rejects,
+     * and reports rows per second as it goes.
+     */
+    private void copyFlights(Path flightsCsv, FlightFilter filter) throws SQLException, IOException {
+        String sql = "COPY flights (flight_date, airline_code, origin, destination, stops, aircraft_type, "
+                + "flight_number, departure_time, ticket_price) FROM STDIN (FORMAT csv, NULL '')";
+        long start = System.currentTimeMillis();
+        long loaded = 0;
+        long skipped = 0;
+
+        CopyIn copy = copyManager.copyIn(sql);
+        try (BufferedReader reader = Files.newBufferedReader(flightsCsv, StandardCharsets.UTF_8)) {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(CHUNK_BYTES + 4096);
+            reader.readLine(); // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                if (!filter.accepts(parseCsvLine(line))) {
+                    skipped++;
+                    continue;
+                }
+                chunk.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+                chunk.write('\n');
+                if (chunk.size() >= CHUNK_BYTES) {
+                    copy.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+                    chunk.reset();
+                }
+                if (++loaded % PROGRESS_ROWS == 0) {
+                    System.out.println("  " + loaded + " flights (" + rowsPerSecond(loaded, start) + " rows/s)");
+                }
+            }
+            copy.writeToCopy(chunk.toByteArray(), 0, chunk.size());
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) copy.cancelCopy();
+        }
+
+        System.out.println("Loaded " + loaded + " flights in " + (System.currentTimeMillis() - start) + " ms ("
+                + rowsPerSecond(loaded, start) + " rows/s), skipped " + skipped
+                + " with an unknown airline, airport or aircraft");
+    }
+
+    // COPYs rows into table, keeping only the given fields of each (all if null)
+    private void copyRows(String table, List<String[]> rows, int[] fields) throws SQLException, IOException {
+        StringBuilder data = new StringBuilder();
+        for (String[] row : rows) {
+            if (fields == null) {
+                appendCsvRow(data, row);
+            } else {
+                String[] kept = new String[fields.length];
+                for (int i = 0; i < fields.length; i++) kept[i] = row[fields[i]];
+                appendCsvRow(data, kept);
+            }
+        }
+        copyManager.copyIn("COPY " + table + " FROM STDIN (FORMAT csv, NULL '')",
+                new StringReader(data.toString()));
+    }
+
+    // name -> definition for every row of a two-column query, in order
+    private Map<String, String> definitions(String sql) throws SQLException {
+        Map<String, String> result = new LinkedHashMap<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) result.put(rs.getString(1), rs.getString(2));
+        }
+        return result;
+    }
+
+    private static long rowsPerSecond(long rows, long startMillis) {
+        return rows * 1000 / Math.max(1, System.currentTimeMillis() - startMillis);
+    }
+
+    private static Set<String> keys(List<String[]> rows, int field) {
+        Set<String> keys = new HashSet<>();
+        for (String[] row : rows) {
+            if (!row[field].isEmpty()) keys.add(row[field]);
+        }
+        return keys;
+    }
+
+    /*
+     * In-memory stand-in for the flights table's foreign keys: a row is kept only if
+     * its airline, both airports and (when given) its aircraft type are known.
+     */
+    record FlightFilter(Set<String> airlines, Set<String> airports, Set<String> planes) {
+        boolean accepts(String[] row) {
+            return airlines.contains(row[FLIGHT_AIRLINE])
+                    && airports.contains(row[FLIGHT_ORIGIN])
+                    && airports.contains(row[FLIGHT_DESTINATION])
+                    && (row[FLIGHT_AIRCRAFT].isEmpty() || planes.contains(row[FLIGHT_AIRCRAFT]));
+        }
+    }
+
+    static List<String[]> readCsv(Path file, boolean header) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (header) reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) rows.add(parseCsvLine(line));
+            }
+        }
+        return rows;
+    }
+
+    /*
+     * Splits one CSV line into fields, honouring double-quoted fields with embedded
+     * commas and "" escapes. None of the data files have newlines inside a field.
+     */
+    static String[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // Appends fields as one CSV line, quoting any that need it
+    static void appendCsvRow(StringBuilder out, String[] fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) out.append(',');
+            String field = fields[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0) {
+                out.append('"').append(field.replace("\"", "\"\"")).append('"');
+            } else {
+                out.append(field);
+            }
+        }
+        out.append('\n');
+    }
+}
@@ -1,10 +1,10 @@
 package com.kristian.flightsearch.db;
 
-import java.io.InputStream;
+import java.io.IOException;
 import java.net.URI;
-import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 
 import javax.sql.DataSource;
@@ -22,11 +22,19 @@ public class DatabaseManager {
 
     private static HikariDataSource dataSource;
 
+    // Creates and fills schedules and flight_prices from flights
+    static final String SCHEDULES_MIGRATION = "db/006_create_schedules.sql";
+
     private static final String[] MIGRATIONS = {
             "db/001_create_planes.sql",
             "db/002_create_airports.sql",
             "db/003_create_airlines.sql",
-            "db/004_create_flights.sql"
+            "db/004_create_flights.sql",
+            "db/005_create_flights_leg_index.sql",
+            SCHEDULES_MIGRATION,
+            "db/007_partition_flight_prices.sql",
+            "db/008_move_leg_index_to_schedules.sql",
+            "db/009_flight_prices_default_partition.sql"
     };
 
     public static void initialize() {
@@ -84,25 +92,22 @@ public class DatabaseManager {
     }
     
     /*
-    * Runs all migrations in order. Each migration file is applied once on startup.
+    * Applies any migrations not yet recorded in schema_migrations, in order.
+    * Throws, stopping startup, if one fails.
     */
     private static void runMigrations() {
-        
-        for (String migrationFile : MIGRATIONS) {
-            try (InputStream is = DatabaseManager.class.getClassLoader().getResourceAsStream(migrationFile)) {
-                if (is == null) {
-                    System.out.println("Migration file not found: " + migrationFile);
-                    continue;
-                }
-                String sql = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                try (Connection conn = dataSource.getConnection();
-                        Statement stmt = conn.createStatement()) {
-                    stmt.execute(sql);
-                    System.out.println("Applied migration: " + migrationFile);
-                }
-            } catch (Exception e) {
-                System.out.println("Migration failed (" + migrationFile + "): " + e.getMessage());
-            }
+        new MigrationRunner(dataSource).run(MIGRATIONS);
+    }
+
+    /*
+    * Executes one migration file again without recording it. Used by BulkLoader to
+    * rerun the schedules data migration after reloading flights, on its connection
+    * so it joins the load's transaction. Throws if it fails.
+    */
+    static void applyMigration(Connection conn, String migrationFile) throws SQLException, IOException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(MigrationRunner.readMigration(migrationFile));
+            System.out.println("Reran migration: " + migrationFile);
         }
     }
 
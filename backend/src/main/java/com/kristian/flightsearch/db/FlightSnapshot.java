@@ -0,0 +1,335 @@
+package com.kristian.flightsearch.db;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.kristian.flightsearch.flightgraph.CompactFlightGraph;
+import com.kristian.flightsearch.flightgraph.ContractionHierarchy;
+import com.kristian.flightsearch.flightgraph.FlightGraph;
+import com.kristian.flightsearch.models.Airport;
+import com.kristian.flightsearch.models.Flight;
+
+/*
+ * Binary snapshot of everything startup otherwise reads from the database or
+ * computes from it: airports, one schedule per route and flight number (what
+ * readFlights returns), the prepared flight graph with its contraction
+ * hierarchies, and the price cube. Written once after a database load, then opened
+ * with FileChannel.map so a new instance skips the schedule read, the edge sort
+ * and the contraction.
+ *
+ * Layout (big-endian, strings as int byte length + UTF-8, length -1 for null;
+ * arrays as int length then the values, string arrays likewise):
+ *
+ *   int MAGIC, int FORMAT_VERSION, string data version
+ *   int airportCount, then per airport: code, name, lat, lon, runway, elevation,
+ *       city, country, icao, timezone, utcOffset
+ *   schedules, grouped by origin so airport a's are schedules offsets[a] until
+ *       offsets[a + 1]: int[airportCount + 1] offsets, then one array per column -
+ *       destination airport, departure minute, duration minutes, price, distance
+ *       (doubles), flight number, airline name, aircraft name
+ *   flight graph and route graph: the arrays of CompactFlightGraph.Columns, the
+ *       route graph's flight offsets last
+ *   price and duration hierarchies: byte 1 then the arrays of
+ *       ContractionHierarchy.Columns, or byte 0 if it wasn't built
+ *   price cube: long first epoch day (or Long.MIN_VALUE if empty), int days,
+ *       flight numbers, int pairCount, then per pair: pair, int[] schedule ids;
+ *       then int[scheduleCount * days] prices
+ *
+ * Every array of numbers is copied out of the mapping in one bulk get, and the
+ * schedules are rebuilt with their saved duration and price, so reading runs no
+ * per-flight calculations. The data version is a fingerprint of the tables the
+ * snapshot is built from (see FlightStore.readDataVersion); a snapshot whose
+ * version doesn't match the database is ignored and rewritten.
+ */
+public class FlightSnapshot {
+
+    private static final int MAGIC = 0x464C5347; // "FLSG"
+    // Bump whenever the layout above changes so old files are rebuilt
+    private static final int FORMAT_VERSION = 2;
+
+    public record Contents(Airport[] airports, HashMap<String, Flight> flights, FlightGraph.Prepared graph,
+            PriceCube prices) {}
+
+    private FlightSnapshot() {}
+
+    /*
+     * Writes a snapshot to path, via a temporary file moved into place so a reader
+     * never maps a half-written one. graph must have been built over airports in
+     * the same order.
+     */
+    public static void write(Path path, String dataVersion, Airport[] airports,
+            HashMap<String, Flight> flights, FlightGraph.Prepared graph, PriceCube prices) throws IOException {
+        HashMap<String, Integer> airportIndex = new HashMap<>();
+        for (int i = 0; i < airports.length; i++) airportIndex.put(airports[i].getCode(), i);
+
+        // Group schedules by origin to form the offsets
+        ArrayList<ArrayList<Flight>> byOrigin = new ArrayList<>();
+        for (int i = 0; i < airports.length; i++) byOrigin.add(new ArrayList<>());
+        for (Flight flight : flights.values()) {
+            Integer origin = airportIndex.get(flight.getOrigin().getCode());
+            if (origin == null || !airportIndex.containsKey(flight.getDestination().getCode())) continue;
+            byOrigin.get(origin).add(flight);
+        }
+        int[] offsets = new int[airports.length + 1];
+        for (int a = 0; a < airports.length; a++) offsets[a + 1] = offsets[a] + byOrigin.get(a).size();
+        int count = offsets[airports.length];
+        int[] destinations = new int[count];
+        int[] departures = new int[count];
+        int[] durations = new int[count];
+        int[] schedulePrices = new int[count];
+        double[] distances = new double[count];
+        String[] flightNumbers = new String[count];
+        String[] airlineNames = new String[count];
+        String[] aircraftNames = new String[count];
+        int s = 0;
+        for (ArrayList<Flight> outgoing : byOrigin) {
+            for (Flight flight : outgoing) {
+                destinations[s] = airportIndex.get(flight.getDestination().getCode());
+                departures[s] = flight.getDepartureTime().toSecondOfDay() / 60;
+                durations[s] = (int) flight.getDuration().toMinutes();
+                schedulePrices[s] = flight.getPrice();
+                distances[s] = flight.getDistance();
+                flightNumbers[s] = flight.getFlightNumber();
+                airlineNames[s] = flight.getAirlineName();
+                aircraftNames[s] = flight.getAircraftName();
+                s++;
+            }
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, dataVersion);
+
+            out.writeInt(airports.length);
+            for (Airport airport : airports) {
+                writeString(out, airport.getCode());
+                writeString(out, airport.getName());
+                out.writeDouble(airport.getLat());
+                out.writeDouble(airport.getLon());
+                out.writeInt(airport.getRunwayLengthFt());
+                out.writeInt(airport.getElevation());
+                writeString(out, airport.getCity());
+                writeString(out, airport.getCountry());
+                writeString(out, airport.getIcaoCode());
+                writeString(out, airport.getTimezone());
+                out.writeDouble(airport.getUtcOffset());
+            }
+
+            writeInts(out, offsets);
+            writeInts(out, destinations);
+            writeInts(out, departures);
+            writeInts(out, durations);
+            writeInts(out, schedulePrices);
+            out.writeInt(distances.length);
+            for (double distance : distances) out.writeDouble(distance);
+            writeStrings(out, flightNumbers);
+            writeStrings(out, airlineNames);
+            writeStrings(out, aircraftNames);
+
+            writeGraph(out, graph.flights());
+            writeGraph(out, graph.routes());
+            writeHierarchy(out, graph.priceHierarchy());
+            writeHierarchy(out, graph.durationHierarchy());
+
+            LocalDate firstDate = prices.getFirstDate();
+            out.writeLong(firstDate == null ? Long.MIN_VALUE : firstDate.toEpochDay());
+            out.writeInt(prices.dayCount());
+            writeStrings(out, prices.flightNumbers());
+            out.writeInt(prices.schedulesByPair().size());
+            for (Map.Entry<String, int[]> pair : prices.schedulesByPair().entrySet()) {
+                writeString(out, pair.getKey());
+                writeInts(out, pair.getValue());
+            }
+            writeInts(out, prices.prices());
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Maps the snapshot at path and rebuilds its contents. Returns null if there is
+     * no snapshot, it has another format or data version, or it can't be read -
+     * the caller then loads from the database instead.
+     */
+    public static Contents read(Path path, String dataVersion) {
+        if (!Files.isRegularFile(path)) return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) return null;
+            if (!readString(in).equals(dataVersion)) return null;
+
+            Airport[] airports = new Airport[in.getInt()];
+            for (int i = 0; i < airports.length; i++) {
+                String code = readString(in);
+                String name = readString(in);
+                double lat = in.getDouble();
+                double lon = in.getDouble();
+                int runwayLengthFt = in.getInt();
+                int elevation = in.getInt();
+                String city = readString(in);
+                String country = readString(in);
+                String icaoCode = readString(in);
+                String timezone = readString(in);
+                double utcOffset = in.getDouble();
+                airports[i] = new Airport(code, name, lat, lon, runwayLengthFt, elevation, city, country,
+                        icaoCode, timezone, utcOffset);
+            }
+
+            int[] offsets = readInts(in);
+            int[] destinations = readInts(in);
+            int[] departures = readInts(in);
+            int[] durations = readInts(in);
+            int[] schedulePrices = readInts(in);
+            double[] distances = new double[in.getInt()];
+            in.asDoubleBuffer().get(distances);
+            in.position(in.position() + distances.length * Double.BYTES);
+            String[] flightNumbers = readStrings(in);
+            String[] airlineNames = readStrings(in);
+            String[] aircraftNames = readStrings(in);
+
+            HashMap<String, Flight> flights = new HashMap<>(destinations.length * 2);
+            for (int origin = 0; origin < airports.length; origin++) {
+                for (int s = offsets[origin]; s < offsets[origin + 1]; s++) {
+                    Airport destination = airports[destinations[s]];
+                    Flight flight = new Flight(airports[origin], destination, distances[s],
+                            LocalTime.ofSecondOfDay(departures[s] * 60L), Duration.ofMinutes(durations[s]),
+                            flightNumbers[s], schedulePrices[s]);
+                    flight.setAirlineName(airlineNames[s]);
+                    flight.setAircraftName(aircraftNames[s]);
+                    flights.put(FlightStore.scheduleKey(airports[origin].getCode(), destination.getCode(),
+                            flightNumbers[s]), flight);
+                }
+            }
+
+            FlightGraph.Prepared graph = new FlightGraph.Prepared(readGraph(in), readGraph(in),
+                    readHierarchy(in), readHierarchy(in));
+
+            long firstDay = in.getLong();
+            int days = in.getInt();
+            String[] cubeFlightNumbers = readStrings(in);
+            int pairCount = in.getInt();
+            HashMap<String, int[]> schedulesByPair = new HashMap<>(pairCount * 2);
+            for (int i = 0; i < pairCount; i++) {
+                String pair = readString(in);
+                schedulesByPair.put(pair, readInts(in));
+            }
+            int[] prices = readInts(in);
+            LocalDate firstDate = firstDay == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(firstDay);
+
+            return new Contents(airports, flights, graph,
+                    new PriceCube(firstDate, days, cubeFlightNumbers, schedulesByPair, prices));
+
+        } catch (Exception e) {
+            System.out.println("Error reading flight snapshot " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void writeGraph(DataOutputStream out, CompactFlightGraph.Columns graph) throws IOException {
+        writeInts(out, graph.offsets());
+        writeInts(out, graph.targets());
+        writeInts(out, graph.prices());
+        writeInts(out, graph.minutes());
+        writeStrings(out, graph.flightNumbers());
+        writeInts(out, graph.flightOffsets());
+    }
+
+    private static CompactFlightGraph.Columns readGraph(ByteBuffer in) {
+        return new CompactFlightGraph.Columns(readInts(in), readInts(in), readInts(in), readInts(in),
+                readStrings(in), readInts(in));
+    }
+
+    private static void writeHierarchy(DataOutputStream out, ContractionHierarchy.Columns hierarchy)
+            throws IOException {
+        out.writeBoolean(hierarchy != null);
+        if (hierarchy == null) return;
+        writeInts(out, hierarchy.rank());
+        out.writeInt(hierarchy.core().length);
+        for (boolean core : hierarchy.core()) out.writeBoolean(core);
+        writeInts(out, hierarchy.from());
+        writeInts(out, hierarchy.to());
+        writeInts(out, hierarchy.weight());
+        writeInts(out, hierarchy.graphEdge());
+        writeInts(out, hierarchy.firstHalf());
+        writeInts(out, hierarchy.secondHalf());
+        writeInts(out, hierarchy.hops());
+    }
+
+    private static ContractionHierarchy.Columns readHierarchy(ByteBuffer in) {
+        if (in.get() == 0) return null;
+        int[] rank = readInts(in);
+        boolean[] core = new boolean[in.getInt()];
+        for (int i = 0; i < core.length; i++) core[i] = in.get() != 0;
+        return new ContractionHierarchy.Columns(rank, core, readInts(in), readInts(in), readInts(in),
+                readInts(in), readInts(in), readInts(in), readInts(in));
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) writeString(out, value);
+    }
+
+    private static String[] readStrings(ByteBuffer in) {
+        String[] values = new String[in.getInt()];
+        for (int i = 0; i < values.length; i++) values[i] = readString(in);
+        return values;
+    }
+
+    // Writes length -1 for a null array
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (int value : values) out.writeInt(value);
+    }
+
+    // Bulk-copies a length-prefixed int array out of the mapping and moves past it
+    private static int[] readInts(ByteBuffer in) {
+        int count = in.getInt();
+        if (count < 0) return null;
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + count * Integer.BYTES);
+        return values;
+    }
+
+}
@@ -4,19 +4,31 @@ import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
+import org.postgresql.PGStatement;
+
 import com.kristian.flightsearch.datagenerator.FlightDistanceCalculator;
+import com.kristian.flightsearch.datagenerator.FlightDurationCalculator;
 import com.kristian.flightsearch.models.Airport;
 import com.kristian.flightsearch.models.Flight;
 import com.kristian.flightsearch.models.LegQuery;
+import com.kristian.flightsearch.timetable.Timetable;
 
 /*
  * Handles reading and writing flight data to the database.
@@ -24,64 +36,171 @@ import com.kristian.flightsearch.models.LegQuery;
 
 public class FlightStore {
 
+    /*
+     * Dated prices for a batch of legs. The legs are passed as three parallel arrays
+     * and joined via UNNEST, so the statement text is the same however many legs
+     * there are and can be prepared once. Each tuple finds the route's direct
+     * schedules with an index-only scan of idx_schedules_leg (migration 008) and
+     * each schedule's price by the (schedule_id, flight_date) primary key of
+     * flight_prices (migration 006).
+     */
+    private static final String LEG_PRICES_SQL =
+            "SELECT s.flight_number, s.origin, s.destination, p.flight_date, p.ticket_price "
+            + "FROM UNNEST(?::char(3)[], ?::char(3)[], ?::date[]) AS leg(origin, destination, flight_date) "
+            + "JOIN schedules s ON s.origin = leg.origin AND s.destination = leg.destination "
+            + "JOIN flight_prices p ON p.schedule_id = s.schedule_id AND p.flight_date = leg.flight_date "
+            + "WHERE s.stops = 0";
+
+    // Every dated price of a direct flight, for the timetable and price cube
+    private static final String DATED_PRICES_SQL =
+            "SELECT s.flight_number, s.origin, s.destination, p.flight_date, s.departure_time, p.ticket_price "
+            + "FROM schedules s JOIN flight_prices p ON p.schedule_id = s.schedule_id "
+            + "WHERE s.stops = 0";
+
+    // Defaults for the DB_FETCH_SIZE and FLIGHT_LOAD_PARALLELISM settings
+    public static final int DEFAULT_FETCH_SIZE = 10_000;
+    public static final int DEFAULT_LOAD_PARALLELISM = 1;
+
     private final DataSource dataSource;
     private final AirportStore airportStore;
+    // Rows PgJDBC fetches per round trip on streamed reads
+    private final int fetchSize;
+    // Connections readFlights splits its scan across; 1 reads on one connection
+    private final int loadParallelism;
+    // Every dated price, once loaded; readFlightsForLegs skips the database while set
+    private volatile PriceCube priceCube;
 
     public FlightStore(DataSource dataSource, AirportStore airportStore) {
+        this(dataSource, airportStore, DEFAULT_FETCH_SIZE, DEFAULT_LOAD_PARALLELISM);
+    }
+
+    public FlightStore(DataSource dataSource, AirportStore airportStore, int fetchSize, int loadParallelism) {
+        if (fetchSize < 1) throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+        if (loadParallelism < 1) {
+            throw new IllegalArgumentException("Load parallelism must be positive: " + loadParallelism);
+        }
         this.dataSource = dataSource;
         this.airportStore = airportStore;
+        this.fetchSize = fetchSize;
+        this.loadParallelism = loadParallelism;
     }
 
     /*
-     * Reads one row per distinct flight_number from the database (direct flights only),
-     * keeping the earliest date's data. Airport objects are resolved from AirportStore
+     * Reads one row per direct schedule (~48k narrow rows) from the schedules table,
+     * priced at its earliest date via the flight_prices primary key. A flight number
+     * can fly more than one route, so the map is keyed by scheduleKey - route and
+     * flight number, as in the price cube. Airport objects are resolved from AirportStore
      * so each airport is represented by a single shared instance. Joins airlines and
      * planes so airlineName and aircraftName are available for display without a
      * second query.
-     * Returns a HashMap keyed by flight_number.
+     *
+     * With a load parallelism above 1 the read is split by origin across that many
+     * pooled connections, all filling one concurrent map. A key includes its origin,
+     * so no two shards write the same key and the result doesn't depend on how the
+     * shards interleave. If any shard fails the partial result is thrown away and the
+     * flights are read again on one connection.
+     * Returns a HashMap keyed by scheduleKey.
      */
     public HashMap<String, Flight> readFlights() {
-        HashMap<String, Flight> flightList = new HashMap<>();
-        // DISTINCT ON deduplicates by flight_number in the DB, keeping the earliest
-        // date's row. This avoids streaming all 3M rows to deduplicate in Java.
-        String sql = "SELECT DISTINCT ON (f.flight_number) f.flight_number, f.departure_time, f.ticket_price, "
-                + "f.origin, f.destination, a.airline_name, p.name AS aircraft_name "
-                + "FROM flights f "
-                + "LEFT JOIN airlines a ON f.airline_code = a.airline_code "
-                + "LEFT JOIN planes p ON f.aircraft_type = p.iata_code "
-                + "WHERE f.stops = 0 "
-                + "ORDER BY f.flight_number, f.flight_date";
+        long start = System.currentTimeMillis();
+        HashMap<String, Flight> flightList = null;
 
-        try (Connection conn = dataSource.getConnection();
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
+        if (loadParallelism > 1) {
+            try {
+                flightList = readFlightsParallel();
+            } catch (Exception e) {
+                System.out.println("Error reading flights in parallel, retrying on one connection: "
+                        + e.getMessage());
+            }
+        }
+        if (flightList == null) {
+            flightList = new HashMap<>();
+            try {
+                readFlightsShard(0, 1, flightList);
+            } catch (Exception e) {
+                System.out.println("Error reading flights from database: " + e.getMessage());
+            }
+        }
 
-            while (rs.next()) {
-                String flightNumber = rs.getString("flight_number");
-                Airport origin = airportStore.getAirportByCode(rs.getString("origin"));
-                Airport destination = airportStore.getAirportByCode(rs.getString("destination"));
+        System.out.println("Loaded " + flightList.size() + " flights from database in "
+                + (System.currentTimeMillis() - start) + " ms");
+        return flightList;
+    }
 
-                if (origin == null || destination == null) continue;
+    // One shard per pooled connection; throws if any shard fails
+    private HashMap<String, Flight> readFlightsParallel() throws Exception {
+        // The airport cache loads lazily, so fill it before the shards share it
+        airportStore.getAirports();
+        ConcurrentHashMap<String, Flight> merged = new ConcurrentHashMap<>();
+        ExecutorService loaders = Executors.newFixedThreadPool(loadParallelism);
+        try {
+            List<Future<?>> shards = new ArrayList<>();
+            for (int shard = 0; shard < loadParallelism; shard++) {
+                final int s = shard;
+                shards.add(loaders.submit(() -> {
+                    readFlightsShard(s, loadParallelism, merged);
+                    return null;
+                }));
+            }
+            for (Future<?> shard : shards) shard.get();
+        } finally {
+            loaders.shutdownNow();
+        }
+        return new HashMap<>(merged);
+    }
 
-                double distance = FlightDistanceCalculator.calcDistance(origin, destination);
-                LocalTime departureTime = rs.getTime("departure_time").toLocalTime();
-                int price = rs.getBigDecimal("ticket_price").intValue();
+    /*
+     * Reads the schedules whose origin hashes to shard out of shards into flights,
+     * streamed fetchSize rows at a time. Origins split the rows evenly enough and
+     * keep each airport's flights in one shard.
+     */
+    private void readFlightsShard(int shard, int shards, Map<String, Flight> flights) throws SQLException {
+        String sql = "SELECT s.flight_number, s.departure_time, fp.ticket_price, "
+                + "s.origin, s.destination, a.airline_name, p.name AS aircraft_name "
+                + "FROM schedules s "
+                + "JOIN LATERAL (SELECT ticket_price FROM flight_prices "
+                + "WHERE schedule_id = s.schedule_id ORDER BY flight_date LIMIT 1) fp ON true "
+                + "LEFT JOIN airlines a ON s.airline_code = a.airline_code "
+                + "LEFT JOIN planes p ON s.aircraft_type = p.iata_code "
+                + "WHERE s.stops = 0 AND (hashtext(s.origin) & 2147483647) % ? = ?";
 
-                // Flight constructor calculates duration and arrival time from distance
-                Flight flight = new Flight(origin, destination, distance, departureTime, flightNumber);
-                flight.setPrice(price);
-                flight.setAirlineName(rs.getString("airline_name"));
-                flight.setAircraftName(rs.getString("aircraft_name"));
-                flightList.put(flightNumber, flight);
-            }
+        try (Connection conn = dataSource.getConnection()) {
+            // Without autocommit off PgJDBC ignores the fetch size and buffers every row
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setFetchSize(fetchSize);
+                pstmt.setInt(1, shards);
+                pstmt.setInt(2, shard);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        String flightNumber = rs.getString("flight_number");
+                        Airport origin = airportStore.getAirportByCode(rs.getString("origin"));
+                        Airport destination = airportStore.getAirportByCode(rs.getString("destination"));
 
-            System.out.println("Loaded " + flightList.size() + " flights from database");
+                        if (origin == null || destination == null) continue;
 
-        } catch (Exception e) {
-            System.out.println("Error reading flights from database: " + e.getMessage());
+                        double distance = FlightDistanceCalculator.calcDistance(origin, destination);
+                        LocalTime departureTime = rs.getTime("departure_time").toLocalTime();
+                        int price = rs.getBigDecimal("ticket_price").intValue();
+
+                        // Flight constructor calculates duration and arrival time from distance
+                        Flight flight = new Flight(origin, destination, distance, departureTime, flightNumber);
+                        flight.setPrice(price);
+                        flight.setAirlineName(rs.getString("airline_name"));
+                        flight.setAircraftName(rs.getString("aircraft_name"));
+                        flights.put(scheduleKey(origin.getCode(), destination.getCode(), flightNumber), flight);
+                    }
+                }
+            } finally {
+                conn.commit();
+                conn.setAutoCommit(true);
+            }
         }
+    }
 
-        return flightList;
+    // Key of one schedule in readFlights' map, e.g. "JFKLAX AA100"
+    public static String scheduleKey(String origin, String destination, String flightNumber) {
+        return origin + destination + " " + flightNumber;
     }
 
     /*
@@ -89,31 +208,32 @@ public class FlightStore {
      * Returns a map keyed by "ORIGINDESTDATE" (e.g. "YYZJFK2026-04-15")
      * whose values are {flightNumber → price}. Callers resolve full Flight
      * objects from the in-memory index and apply these prices.
+     * Served from the price cube without a query once loadPriceCube() has run.
      */
     public HashMap<String, Map<String, Integer>> readFlightsForLegs(List<LegQuery> legs) {
+        PriceCube cube = priceCube;
+        if (cube != null) return cube.pricesForLegs(legs);
+
         HashMap<String, Map<String, Integer>> result = new HashMap<>();
         if (legs.isEmpty()) return result;
 
-        StringBuilder sql = new StringBuilder(
-                "SELECT flight_number, origin, destination, flight_date, ticket_price " +
-                "FROM flights " +
-                "WHERE stops = 0 AND (origin, destination, flight_date) IN (");
-
+        String[] origins = new String[legs.size()];
+        String[] destinations = new String[legs.size()];
+        Date[] dates = new Date[legs.size()];
         for (int i = 0; i < legs.size(); i++) {
-            if (i > 0) sql.append(", ");
-            sql.append("(?, ?, ?)");
+            origins[i] = legs.get(i).origin();
+            destinations[i] = legs.get(i).destination();
+            dates[i] = Date.valueOf(legs.get(i).date());
         }
-        sql.append(")");
 
         try (Connection conn = dataSource.getConnection();
-                PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
-
-            int paramIdx = 1;
-            for (LegQuery leg : legs) {
-                pstmt.setString(paramIdx++, leg.origin());
-                pstmt.setString(paramIdx++, leg.destination());
-                pstmt.setDate(paramIdx++, Date.valueOf(leg.date()));
-            }
+                PreparedStatement pstmt = conn.prepareStatement(LEG_PRICES_SQL)) {
+            // Server-side prepare on first use; the driver caches the statement per
+            // connection, so later requests on the same connection skip planning
+            pstmt.unwrap(PGStatement.class).setPrepareThreshold(1);
+            pstmt.setArray(1, conn.createArrayOf("varchar", origins));
+            pstmt.setArray(2, conn.createArrayOf("varchar", destinations));
+            pstmt.setArray(3, conn.createArrayOf("date", dates));
 
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
@@ -131,4 +251,137 @@ public class FlightStore {
 
         return result;
     }
+
+    /*
+     * Reads every dated direct flight into a Timetable for connection scanning.
+     * Unlike readFlights this keeps one row per flight per day. Rows are streamed
+     * (autocommit off + fetch size) rather than buffered, and durations are computed
+     * once per airport pair the same way the Flight constructor does.
+     */
+    public Timetable readTimetable() {
+        Timetable.Builder builder = new Timetable.Builder();
+        HashMap<String, Integer> minutesByPair = new HashMap<>();
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery(DATED_PRICES_SQL)) {
+                    while (rs.next()) {
+                        Airport origin = airportStore.getAirportByCode(rs.getString("origin"));
+                        Airport destination = airportStore.getAirportByCode(rs.getString("destination"));
+                        if (origin == null || destination == null) continue;
+
+                        int minutes = minutesByPair.computeIfAbsent(origin.getCode() + destination.getCode(),
+                                k -> (int) FlightDurationCalculator.calculateFlightDuration(
+                                        FlightDistanceCalculator.calcDistance(origin, destination)).toMinutes());
+                        LocalDate date = rs.getDate("flight_date").toLocalDate();
+                        LocalTime departureTime = rs.getTime("departure_time").toLocalTime();
+                        int price = rs.getBigDecimal("ticket_price").intValue();
+
+                        builder.addConnection(origin, destination, date, departureTime, minutes, price,
+                                rs.getString("flight_number"));
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            System.out.println("Loaded " + builder.size() + " dated flights into the timetable");
+
+        } catch (Exception e) {
+            System.out.println("Error reading timetable from database: " + e.getMessage());
+        }
+
+        return builder.build();
+    }
+
+    /*
+     * Fingerprint of everything a FlightSnapshot is built from, used to tell whether
+     * one is still current: the dated prices' row count, date range and price total
+     * (one scan of the narrow flight_prices table with no sort), and an md5 over the
+     * rows of schedules, airports, airlines and planes, which are small enough to
+     * hash whole so any edit to them shows. Returns null if the query fails.
+     */
+    public String readDataVersion() {
+        String sql = "SELECT COUNT(*), MIN(flight_date), MAX(flight_date), COALESCE(SUM(ticket_price), 0), "
+                + "(SELECT md5(string_agg(s::text, ',' ORDER BY s.schedule_id)) FROM schedules s), "
+                + "(SELECT md5(string_agg(a::text, ',' ORDER BY a::text)) FROM airports a), "
+                + "(SELECT md5(string_agg(l::text, ',' ORDER BY l::text)) FROM airlines l), "
+                + "(SELECT md5(string_agg(p::text, ',' ORDER BY p::text)) FROM planes p) "
+                + "FROM flight_prices";
+
+        try (Connection conn = dataSource.getConnection();
+                Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                return rs.getLong(1) + "/" + rs.getDate(2) + "/" + rs.getDate(3) + "/" + rs.getBigDecimal(4)
+                        + "/" + rs.getString(5) + "/" + rs.getString(6) + "/" + rs.getString(7)
+                        + "/" + rs.getString(8);
+            }
+        } catch (Exception e) {
+            System.out.println("Error reading data version from database: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /*
+     * Reads every dated direct-flight price into a PriceCube, streamed the same way
+     * as readTimetable. Returns null if the read fails, so a failed refresh never
+     * replaces a good cube with an empty one.
+     */
+    public PriceCube readPriceCube() {
+        PriceCube.Builder builder = new PriceCube.Builder();
+
+        try (Connection conn = dataSource.getConnection()) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery(DATED_PRICES_SQL)) {
+                    while (rs.next()) {
+                        builder.addPrice(rs.getString("origin"), rs.getString("destination"),
+                                rs.getString("flight_number"), rs.getDate("flight_date").toLocalDate(),
+                                rs.getBigDecimal("ticket_price").intValue());
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (Exception e) {
+            System.out.println("Error reading price cube from database: " + e.getMessage());
+            return null;
+        }
+
+        PriceCube cube = builder.build();
+        System.out.println("Loaded " + builder.size() + " dated prices into the price cube ("
+                + cube.scheduleCount() + " schedules x " + cube.dayCount() + " days)");
+        return cube;
+    }
+
+    // Uses a cube loaded elsewhere (a FlightSnapshot) as the current one
+    public void usePriceCube(PriceCube cube) {
+        priceCube = cube;
+    }
+
+    public PriceCube getPriceCube() {
+        return priceCube;
+    }
+
+    // (Re)loads the price cube, keeping the current one if the read fails
+    public void loadPriceCube() {
+        PriceCube cube = readPriceCube();
+        if (cube != null) priceCube = cube;
+    }
+
+    /*
+     * Reloads the price cube every intervalMinutes on a daemon thread. Searches keep
+     * reading the old cube until the new one is swapped in whole.
+     */
+    public void startPriceCubeRefresh(long intervalMinutes) {
+        ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "price-cube-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::loadPriceCube, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
 }
@@ -0,0 +1,178 @@
+package com.kristian.flightsearch.db;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/*
+ * Applies the migration files in src/main/resources/db once each, recording every
+ * applied one in schema_migrations with its version (the file's number prefix),
+ * a SHA-256 checksum of its contents and how long it took. Already-applied
+ * migrations are skipped on later startups; one whose file has changed since it
+ * was applied stops startup rather than leaving the schema unknown.
+ *
+ * Each migration runs in its own transaction together with its schema_migrations
+ * row, so a failure leaves nothing half-applied and stops startup. A file whose
+ * first line is NO_TRANSACTION instead runs one statement at a time with
+ * autocommit on, for CREATE INDEX CONCURRENTLY which Postgres refuses inside a
+ * transaction. Its statements are split on semicolons at line ends, so it can't
+ * hold function bodies.
+ *
+ * An advisory lock keeps two instances starting together from migrating at once.
+ */
+public class MigrationRunner {
+
+    static final String NO_TRANSACTION = "-- migration: no-transaction";
+
+    // Arbitrary key for pg_advisory_lock, shared by every instance
+    private static final long LOCK_KEY = 0x464C5347L;
+
+    private final DataSource dataSource;
+
+    public MigrationRunner(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /*
+     * Applies every file not yet recorded, in order. Throws if one fails or an
+     * applied one has changed.
+     */
+    public void run(String[] migrationFiles) {
+        try (Connection conn = dataSource.getConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_migrations ("
+                        + "version TEXT PRIMARY KEY, "
+                        + "file TEXT NOT NULL, "
+                        + "checksum CHAR(64) NOT NULL, "
+                        + "duration_ms BIGINT NOT NULL, "
+                        + "applied_at TIMESTAMPTZ NOT NULL DEFAULT now())");
+                stmt.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+            }
+            try {
+                Map<String, String> applied = appliedChecksums(conn);
+                int count = 0;
+                for (String file : migrationFiles) {
+                    String sql = readMigration(file);
+                    String version = version(file);
+                    String checksum = checksum(sql);
+
+                    String appliedChecksum = applied.get(version);
+                    if (appliedChecksum != null) {
+                        if (!appliedChecksum.equals(checksum)) {
+                            throw new IllegalStateException("Migration " + file
+                                    + " has changed since it was applied; add a new migration instead");
+                        }
+                        continue;
+                    }
+                    apply(conn, file, version, checksum, sql);
+                    count++;
+                }
+                System.out.println("Migrations up to date (" + count + " applied, "
+                        + (migrationFiles.length - count) + " already applied)");
+            } finally {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+                }
+            }
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Migrations failed: " + e.getMessage(), e);
+        }
+    }
+
+    private void apply(Connection conn, String file, String version, String checksum, String sql)
+            throws SQLException {
+        long start = System.currentTimeMillis();
+        boolean transactional = !sql.startsWith(NO_TRANSACTION);
+        try {
+            conn.setAutoCommit(!transactional);
+            try (Statement stmt = conn.createStatement()) {
+                if (transactional) {
+                    stmt.execute(sql);
+                } else {
+                    for (String statement : splitStatements(sql)) stmt.execute(statement);
+                }
+            }
+            long duration = System.currentTimeMillis() - start;
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO schema_migrations (version, file, checksum, duration_ms) VALUES (?, ?, ?, ?)")) {
+                pstmt.setString(1, version);
+                pstmt.setString(2, file);
+                pstmt.setString(3, checksum);
+                pstmt.setLong(4, duration);
+                pstmt.executeUpdate();
+            }
+            if (transactional) conn.commit();
+            System.out.println("Applied migration: " + file + " (" + duration + " ms)");
+        } catch (SQLException e) {
+            if (transactional) conn.rollback();
+            throw new SQLException(file + ": " + e.getMessage(), e);
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    private static Map<String, String> appliedChecksums(Connection conn) throws SQLException {
+        Map<String, String> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_migrations")) {
+            while (rs.next()) applied.put(rs.getString(1), rs.getString(2));
+        }
+        return applied;
+    }
+
+    static String readMigration(String file) throws IOException {
+        try (InputStream is = MigrationRunner.class.getClassLoader().getResourceAsStream(file)) {
+            if (is == null) throw new IOException("Migration file not found: " + file);
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // "db/005_create_flights_leg_index.sql" -> "005"
+    static String version(String file) {
+        String name = file.substring(file.lastIndexOf('/') + 1);
+        int underscore = name.indexOf('_');
+        if (underscore <= 0) throw new IllegalArgumentException("Migration file has no version prefix: " + file);
+        return name.substring(0, underscore);
+    }
+
+    static String checksum(String sql) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Statements of a no-transaction file: split after each line ending in ';',
+    // dropping comment-only and blank chunks
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : sql.split("\n")) {
+            String trimmed = line.strip();
+            if (trimmed.startsWith("--") || trimmed.isEmpty()) continue;
+            current.append(line).append('\n');
+            if (trimmed.endsWith(";")) {
+                statements.add(current.toString().strip());
+                current.setLength(0);
+            }
+        }
+        if (!current.toString().isBlank()) statements.add(current.toString().strip());
+        return statements;
+    }
+}
@@ -0,0 +1,69 @@
+package com.kristian.flightsearch.db;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import javax.sql.DataSource;
+
+/*
+ * Keeps flight_prices' monthly partitions (migration 007) in step with the rolling
+ * date window: creates partitions from this month through monthsAhead months ahead,
+ * so new prices always have somewhere to go, and detaches months that ended more
+ * than retentionMonths ago. A retention of 0 keeps every month - the seeded data is
+ * a fixed past window. Prices dated outside every month land in the DEFAULT
+ * partition (migration 009) until their month's partition is created.
+ *
+ * Runs on startup from Server, with PARTITION_MONTHS_AHEAD and
+ * PARTITION_RETENTION_MONTHS.
+ */
+public class PartitionMaintenance {
+
+    public static final int DEFAULT_MONTHS_AHEAD = 3;
+    public static final int DEFAULT_RETENTION_MONTHS = 0;
+
+    private PartitionMaintenance() {}
+
+    public static void run(DataSource dataSource, int monthsAhead, int retentionMonths) {
+        LocalDate today = LocalDate.now();
+
+        try (Connection conn = dataSource.getConnection()) {
+            int created = ensurePartitions(conn, today, today.plusMonths(monthsAhead));
+            int detached = 0;
+            if (retentionMonths > 0) {
+                try (PreparedStatement pstmt = conn.prepareStatement("SELECT detach_flight_price_partitions(?)")) {
+                    pstmt.setDate(1, Date.valueOf(retentionCutoff(today, retentionMonths)));
+                    detached = firstInt(pstmt);
+                }
+            }
+            System.out.println("Partition maintenance: created " + created + ", detached " + detached
+                    + " flight_prices partitions");
+        } catch (Exception e) {
+            System.out.println("Partition maintenance failed: " + e.getMessage());
+        }
+    }
+
+    // Creates any missing monthly partitions covering from..to; returns how many
+    static int ensurePartitions(Connection conn, LocalDate from, LocalDate to) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT ensure_flight_price_partitions(?, ?)")) {
+            pstmt.setDate(1, Date.valueOf(from));
+            pstmt.setDate(2, Date.valueOf(to));
+            return firstInt(pstmt);
+        }
+    }
+
+    // Partitions ending on or before this are detached: the start of the month
+    // retentionMonths before today's
+    static LocalDate retentionCutoff(LocalDate today, int retentionMonths) {
+        return today.withDayOfMonth(1).minusMonths(retentionMonths);
+    }
+
+    private static int firstInt(PreparedStatement pstmt) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
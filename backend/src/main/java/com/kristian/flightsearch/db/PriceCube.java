@@ -0,0 +1,174 @@
+package com.kristian.flightsearch.db;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.kristian.flightsearch.models.LegQuery;
+
+/*
+ * Every dated direct-flight price held in memory, so date-specific searches can be
+ * priced without a database round trip.
+ *
+ * A schedule is one flight number on one airport pair. Prices form a cube of
+ * schedule x day: the price of schedule s on firstDate + d is prices[s * days + d],
+ * or NO_PRICE if it doesn't fly that day. Each airport pair ("JFKLAX") maps to the
+ * ids of its schedules, so a leg lookup touches one short int array and one cube
+ * row per schedule. About 48k schedules over 61 days is ~12 MB.
+ *
+ * A cube is immutable once built; FlightStore swaps in a new one on refresh.
+ * Build one with PriceCube.Builder.
+ */
+public class PriceCube {
+
+    public static final int NO_PRICE = -1;
+
+    private final LocalDate firstDate;
+    private final int days;
+    private final String[] flightNumbers;
+    private final HashMap<String, int[]> schedulesByPair;
+    private final int[] prices;
+
+    PriceCube(LocalDate firstDate, int days, String[] flightNumbers,
+            HashMap<String, int[]> schedulesByPair, int[] prices) {
+        this.firstDate = firstDate;
+        this.days = days;
+        this.flightNumbers = flightNumbers;
+        this.schedulesByPair = schedulesByPair;
+        this.prices = prices;
+    }
+
+    public int scheduleCount() {
+        return flightNumbers.length;
+    }
+
+    public LocalDate getFirstDate() {
+        return firstDate;
+    }
+
+    public int dayCount() {
+        return days;
+    }
+
+    // Raw arrays for FlightSnapshot; not to be modified
+    String[] flightNumbers() {
+        return flightNumbers;
+    }
+
+    HashMap<String, int[]> schedulesByPair() {
+        return schedulesByPair;
+    }
+
+    int[] prices() {
+        return prices;
+    }
+
+    // Price of a flight from origin to destination on date, or NO_PRICE
+    public int price(String origin, String destination, String flightNumber, LocalDate date) {
+        int day = dayOffset(date);
+        int[] schedules = schedulesByPair.get(origin + destination);
+        if (day < 0 || schedules == null) return NO_PRICE;
+        for (int s : schedules) {
+            if (flightNumbers[s].equals(flightNumber)) return prices[s * days + day];
+        }
+        return NO_PRICE;
+    }
+
+    /**
+     * Same result as FlightStore's database query: a map keyed by "ORIGINDESTDATE"
+     * (e.g. "YYZJFK2026-04-15") of {flightNumber -> price}, with no entry for legs
+     * that have no flights that day.
+     */
+    public HashMap<String, Map<String, Integer>> pricesForLegs(List<LegQuery> legs) {
+        HashMap<String, Map<String, Integer>> result = new HashMap<>();
+        for (LegQuery leg : legs) {
+            int day = dayOffset(leg.date());
+            int[] schedules = schedulesByPair.get(leg.origin() + leg.destination());
+            if (day < 0 || schedules == null) continue;
+
+            HashMap<String, Integer> byFlight = null;
+            for (int s : schedules) {
+                int price = prices[s * days + day];
+                if (price == NO_PRICE) continue;
+                if (byFlight == null) byFlight = new HashMap<>();
+                byFlight.put(flightNumbers[s], price);
+            }
+            if (byFlight != null) result.put(leg.origin() + leg.destination() + leg.date(), byFlight);
+        }
+        return result;
+    }
+
+    // Day index of date in the cube, or -1 if it is outside the loaded range
+    private int dayOffset(LocalDate date) {
+        if (firstDate == null) return -1;
+        long day = date.toEpochDay() - firstDate.toEpochDay();
+        return day >= 0 && day < days ? (int) day : -1;
+    }
+
+    public static class Builder {
+        private final HashMap<String, Integer> idBySchedule = new HashMap<>();
+        private final HashMap<String, int[]> schedulesByPair = new HashMap<>();
+        private String[] flightNumbers = new String[16];
+        private int scheduleCount;
+
+        // One entry per row added, in the order added
+        private int[] rowSchedules = new int[16];
+        private int[] rowDays = new int[16];
+        private int[] rowPrices = new int[16];
+        private int size;
+        private long minDay = Long.MAX_VALUE;
+        private long maxDay = Long.MIN_VALUE;
+
+        public void addPrice(String origin, String destination, String flightNumber, LocalDate date, int price) {
+            if (size == rowSchedules.length) {
+                int capacity = size * 2;
+                rowSchedules = Arrays.copyOf(rowSchedules, capacity);
+                rowDays = Arrays.copyOf(rowDays, capacity);
+                rowPrices = Arrays.copyOf(rowPrices, capacity);
+            }
+            long day = date.toEpochDay();
+            rowSchedules[size] = scheduleFor(origin + destination, flightNumber);
+            rowDays[size] = (int) day;
+            rowPrices[size] = price;
+            size++;
+            minDay = Math.min(minDay, day);
+            maxDay = Math.max(maxDay, day);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private int scheduleFor(String pair, String flightNumber) {
+            Integer id = idBySchedule.get(pair + " " + flightNumber);
+            if (id != null) return id;
+
+            id = scheduleCount++;
+            if (id == flightNumbers.length) flightNumbers = Arrays.copyOf(flightNumbers, id * 2);
+            flightNumbers[id] = flightNumber;
+            idBySchedule.put(pair + " " + flightNumber, id);
+
+            int[] schedules = schedulesByPair.get(pair);
+            schedules = schedules == null ? new int[1] : Arrays.copyOf(schedules, schedules.length + 1);
+            schedules[schedules.length - 1] = id;
+            schedulesByPair.put(pair, schedules);
+            return id;
+        }
+
+        public PriceCube build() {
+            if (size == 0) {
+                return new PriceCube(null, 0, new String[0], new HashMap<>(), new int[0]);
+            }
+            int days = (int) (maxDay - minDay + 1);
+            int[] prices = new int[scheduleCount * days];
+            Arrays.fill(prices, NO_PRICE);
+            for (int i = 0; i < size; i++) {
+                prices[rowSchedules[i] * days + (int) (rowDays[i] - minDay)] = rowPrices[i];
+            }
+            return new PriceCube(LocalDate.ofEpochDay(minDay), days,
+                    Arrays.copyOf(flightNumbers, scheduleCount), schedulesByPair, prices);
+        }
+    }
+}
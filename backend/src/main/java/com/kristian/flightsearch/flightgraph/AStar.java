@@ -0,0 +1,61 @@
+package com.kristian.flightsearch.flightgraph;
+
+/*
+ * Point-to-point A* over a CompactFlightGraph. Works like Dijkstra.shortestPath
+ * but orders the queue by (distance so far + lower bound on the distance left),
+ * using the great-circle bound from GreatCircleBound. Vertices that lie in the
+ * wrong direction get a large bound and are rarely expanded, so a JFK -> LAX
+ * query no longer settles every airport in Europe first.
+ *
+ * The bound is consistent, so a vertex is final the first time it is polled and
+ * the search stops as soon as the target comes off the queue.
+ */
+public class AStar {
+
+    // One reusable set of search arrays per request thread
+    private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+
+    /**
+     * Returns the cheapest path from source to target by the given metric, or null if
+     * target is unreachable.
+     */
+    public static ShortestPath shortestPath(CompactFlightGraph g, int source, int target, Metric metric) {
+        return search(g, source, target, metric).toPath(target);
+    }
+
+    /**
+     * Runs the search and returns the calling thread's context (valid until the next
+     * A* search on this thread), e.g. to read settledCount().
+     */
+    public static SearchContext search(CompactFlightGraph g, int source, int target, Metric metric) {
+        SearchContext ctx = CONTEXT.get();
+        ctx.reset(g, source, metric);
+        IndexedMinHeap queue = ctx.heap;
+
+        GreatCircleBound bound = g.greatCircleBound();
+        double rate = bound.ratePerKm(metric);
+
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.weights(metric);
+
+        queue.insertOrDecrease(source, bound.estimate(source, target, rate));
+
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            ctx.settle();
+            if (current == target) break;
+
+            int currentDist = ctx.distanceTo(current);
+            for (int e = offsets[current]; e < offsets[current + 1]; e++) {
+                int neighbour = targets[e];
+                int alternative = currentDist + weights[e];
+                if (alternative < ctx.distanceTo(neighbour)) {
+                    ctx.label(neighbour, alternative, current, e);
+                    queue.insertOrDecrease(neighbour, alternative + bound.estimate(neighbour, target, rate));
+                }
+            }
+        }
+        return ctx;
+    }
+}
@@ -10,10 +10,17 @@ import com.kristian.flightsearch.models.Airport;
 public class AirportVertex {
     private Airport data;
     private ArrayList<Edge> edges;
+    // Stable position assigned by FlightGraph.addVertex; -1 if created outside a graph
+    private final int index;
 
     public AirportVertex(Airport inputData){
+        this(inputData, -1);
+    }
+
+    AirportVertex(Airport inputData, int index){
         this.data = inputData;
         this.edges = new ArrayList<Edge>();
+        this.index = index;
     }
 
     public void addEdge(AirportVertex endVertex, Integer weight, Duration duration, String flightNumber){
@@ -31,6 +38,10 @@ public class AirportVertex {
     public ArrayList<Edge> getEdges(){
         return this.edges;
     }
+
+    public int getIndex(){
+        return this.index;
+    }
     
 
     public void print(boolean showWeight) {         //prints all of the edges from a given vertex
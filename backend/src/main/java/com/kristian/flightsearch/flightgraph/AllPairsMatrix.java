@@ -0,0 +1,168 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/*
+ * Cheapest price and shortest duration between every pair of airports, computed
+ * once up front so a route query is an array lookup instead of a search.
+ *
+ * Cells are row-major: cell (s, t) is s * vertexCount + t. Prices are ints;
+ * minutes and next hops are stored as unsigned 16-bit values in short arrays
+ * (read with & 0xFFFF), with 0xFFFF meaning unreachable. For ~1,800 airports
+ * that is about 32 MB for both metrics including the next-hop tables.
+ *
+ * nextHop (s, t) is the first airport after s on the best s -> t path, so a full
+ * path is rebuilt by following next hops towards t. Every suffix of a shortest
+ * path is itself a shortest path, so the costs of the hops always add up to the
+ * cell value.
+ *
+ * Each row is one Dijkstra run over the route graph; rows are independent and
+ * are computed in parallel on the common ForkJoin pool, each worker reusing its
+ * own thread-local search arrays.
+ */
+public class AllPairsMatrix {
+
+    private static final int NONE = 0xFFFF;
+
+    private final CompactFlightGraph graph;
+    private final int n;
+    private final int[] prices;
+    private final short[] minutes;
+    private final short[] priceNextHop;
+    private final short[] durationNextHop;
+
+    private AllPairsMatrix(CompactFlightGraph graph) {
+        this.graph = graph;
+        this.n = graph.vertexCount();
+        int cells = n * n;
+        this.prices = new int[cells];
+        this.minutes = new short[cells];
+        this.priceNextHop = new short[cells];
+        this.durationNextHop = new short[cells];
+    }
+
+    /**
+     * Runs one single-source search per airport and metric over g (normally the route
+     * graph). Takes a few seconds on the full network, so it is an opt-in startup
+     * stage; the result describes g only and must be rebuilt when g changes.
+     */
+    public static AllPairsMatrix build(CompactFlightGraph g) {
+        if (g.vertexCount() >= NONE) {
+            throw new IllegalArgumentException("Too many airports for 16-bit next hops: " + g.vertexCount());
+        }
+        AllPairsMatrix matrix = new AllPairsMatrix(g);
+        IntStream.range(0, g.vertexCount()).parallel().forEach(matrix::fillRow);
+        return matrix;
+    }
+
+    public CompactFlightGraph getGraph() {
+        return graph;
+    }
+
+    // Best cost from source to target, or ShortestPathTree.UNREACHABLE
+    public int cost(int source, int target, Metric metric) {
+        int cell = source * n + target;
+        if (metric == Metric.PRICE) return prices[cell];
+        int value = minutes[cell] & 0xFFFF;
+        return value == NONE ? ShortestPathTree.UNREACHABLE : value;
+    }
+
+    public boolean isReachable(int source, int target) {
+        return prices[source * n + target] != ShortestPathTree.UNREACHABLE;
+    }
+
+    // First airport after source on the best path to target, or -1 if there is none
+    public int nextHop(int source, int target, Metric metric) {
+        short[] next = metric == Metric.PRICE ? priceNextHop : durationNextHop;
+        int value = next[source * n + target] & 0xFFFF;
+        return value == NONE ? -1 : value;
+    }
+
+    /**
+     * The best path from source to target by the given metric, rebuilt from next hops,
+     * or null if target is unreachable. Edge ids are edges of getGraph().
+     */
+    public ShortestPath path(int source, int target, Metric metric) {
+        if (!isReachable(source, target)) return null;
+        int length = 1;
+        for (int v = source; v != target; v = nextHop(v, target, metric)) {
+            // Only possible with zero-weight cycles, where next hops can chase each other
+            if (++length > n) return Dijkstra.shortestPath(graph, source, target, metric);
+        }
+
+        int[] vertices = new int[length];
+        int[] edges = new int[length - 1];
+        vertices[0] = source;
+        for (int i = 1; i < length; i++) {
+            vertices[i] = nextHop(vertices[i - 1], target, metric);
+            edges[i - 1] = graph.edgeBetween(vertices[i - 1], vertices[i], metric);
+        }
+        return new ShortestPath(graph, cost(source, target, metric), vertices, edges);
+    }
+
+    /**
+     * Source's row as a ShortestPathTree, without searching: distances are the row's
+     * cells and each airport's previous vertex is the last hop before it on its
+     * matrix path. Prefixes of a shortest path are shortest paths too, so the tree's
+     * paths cost exactly their cells.
+     */
+    public ShortestPathTree tree(int source, Metric metric) {
+        int[] dist = new int[n];
+        int[] prev = new int[n];
+        Arrays.fill(prev, -1);
+        for (int target = 0; target < n; target++) {
+            dist[target] = cost(source, target, metric);
+            if (target == source || dist[target] == ShortestPathTree.UNREACHABLE) continue;
+
+            int last = source;
+            int hops = 0;
+            for (int v = nextHop(source, target, metric); v != target; v = nextHop(v, target, metric)) {
+                // Only possible with zero-weight cycles, as in path()
+                if (++hops > n) return Dijkstra.shortestPathTree(graph, source, metric);
+                last = v;
+            }
+            prev[target] = last;
+        }
+        return new ShortestPathTree(graph, source, metric, dist, prev);
+    }
+
+    private void fillRow(int source) {
+        fillRow(source, Metric.PRICE);
+        fillRow(source, Metric.DURATION);
+    }
+
+    private void fillRow(int source, Metric metric) {
+        SearchContext tree = Dijkstra.run(graph, source, metric);
+        int row = source * n;
+        short[] next = metric == Metric.PRICE ? priceNextHop : durationNextHop;
+
+        // firstHop[v] = the airport right after source on the path to v, found by walking
+        // back along previous() until reaching a vertex whose first hop is already known
+        int[] firstHop = new int[n];
+        Arrays.fill(firstHop, -1);
+        for (int v = 0; v < n; v++) {
+            int distance = tree.distanceTo(v);
+            if (metric == Metric.PRICE) {
+                prices[row + v] = distance;
+            } else {
+                // Clamped at ~45 days, far beyond any real itinerary
+                minutes[row + v] = (short) (distance == ShortestPathTree.UNREACHABLE ? NONE : Math.min(distance, NONE - 1));
+            }
+
+            if (v == source || !tree.isReachable(v)) {
+                next[row + v] = (short) NONE;
+                continue;
+            }
+            next[row + v] = (short) firstHop(tree, source, v, firstHop);
+        }
+    }
+
+    private static int firstHop(SearchContext tree, int source, int v, int[] firstHop) {
+        if (firstHop[v] >= 0) return firstHop[v];
+        int previous = tree.previous(v);
+        int hop = previous == source ? v : firstHop(tree, source, previous, firstHop);
+        firstHop[v] = hop;
+        return hop;
+    }
+}
@@ -0,0 +1,131 @@
+package com.kristian.flightsearch.flightgraph;
+
+/*
+ * Point-to-point Dijkstra that searches forward from the source over outgoing
+ * edges and backward from the target over the reverse adjacency at the same time,
+ * always expanding the smaller frontier. Each side only has to cover roughly a
+ * "half-radius" ball around its endpoint, so far fewer vertices are settled than
+ * in a one-directional search.
+ *
+ * Every relaxed edge u -> v where u is known to the forward search and v to the
+ * backward search is a candidate path; the best one is kept. The search stops
+ * once the two queue minimums add up to at least that candidate, at which point
+ * no shorter path can exist.
+ */
+public class BidirectionalDijkstra {
+
+    // Forward and backward scratch space, reused per request thread
+    private static final ThreadLocal<SearchContext[]> CONTEXTS =
+            ThreadLocal.withInitial(() -> new SearchContext[] { new SearchContext(), new SearchContext() });
+
+    /**
+     * Returns the cheapest path from source to target by the given metric, or null if
+     * target is unreachable.
+     */
+    public static ShortestPath shortestPath(CompactFlightGraph g, int source, int target, Metric metric) {
+        if (source == target) {
+            return new ShortestPath(g, 0, new int[] { source }, new int[0]);
+        }
+
+        SearchContext[] contexts = CONTEXTS.get();
+        SearchContext forward = contexts[0];
+        SearchContext backward = contexts[1];
+        forward.reset(g, source, metric);
+        backward.reset(g, target, metric);
+        IndexedMinHeap forwardQueue = forward.heap;
+        IndexedMinHeap backwardQueue = backward.heap;
+        forwardQueue.insertOrDecrease(source, 0);
+        backwardQueue.insertOrDecrease(target, 0);
+
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] reverseOffsets = g.reverseOffsets();
+        int[] reverseSources = g.reverseSources();
+        int[] reverseEdges = g.reverseEdges();
+        int[] weights = g.weights(metric);
+
+        // Best complete path so far, described by the edge where the two searches meet
+        long best = Long.MAX_VALUE;
+        int meetFrom = -1;
+        int meetEdge = -1;
+        int meetTo = -1;
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if ((long) forwardQueue.peekKey() + backwardQueue.peekKey() >= best) break;
+
+            if (forwardQueue.size() <= backwardQueue.size()) {
+                int du = forwardQueue.peekKey();
+                int u = forwardQueue.poll();
+                forward.settle();
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int v = targets[e];
+                    int alternative = du + weights[e];
+                    if (alternative < forward.distanceTo(v)) {
+                        forward.label(v, alternative, u, e);
+                        forwardQueue.insertOrDecrease(v, alternative);
+                    }
+                    if (backward.isReachable(v)) {
+                        long candidate = (long) alternative + backward.distanceTo(v);
+                        if (candidate < best) {
+                            best = candidate;
+                            meetFrom = u;
+                            meetEdge = e;
+                            meetTo = v;
+                        }
+                    }
+                }
+            } else {
+                int dv = backwardQueue.peekKey();
+                int v = backwardQueue.poll();
+                backward.settle();
+                for (int r = reverseOffsets[v]; r < reverseOffsets[v + 1]; r++) {
+                    int u = reverseSources[r];
+                    int e = reverseEdges[r];
+                    int alternative = dv + weights[e];
+                    // In the backward search "previous" points towards the target
+                    if (alternative < backward.distanceTo(u)) {
+                        backward.label(u, alternative, v, e);
+                        backwardQueue.insertOrDecrease(u, alternative);
+                    }
+                    if (forward.isReachable(u)) {
+                        long candidate = (long) forward.distanceTo(u) + alternative;
+                        if (candidate < best) {
+                            best = candidate;
+                            meetFrom = u;
+                            meetEdge = e;
+                            meetTo = v;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (meetEdge < 0) return null;
+        return joinPaths(g, forward, backward, meetFrom, meetEdge, meetTo, (int) best);
+    }
+
+    // Stitches source -> meetFrom (forward tree), the meeting edge, and meetTo -> target
+    // (backward tree) into one path
+    private static ShortestPath joinPaths(CompactFlightGraph g, SearchContext forward, SearchContext backward,
+            int meetFrom, int meetEdge, int meetTo, int cost) {
+        ShortestPath head = forward.toPath(meetFrom);
+
+        int tailLength = 0;
+        for (int v = meetTo; v != backward.getSource(); v = backward.previous(v)) tailLength++;
+
+        int headLength = head.vertices().length;
+        int[] vertices = new int[headLength + 1 + tailLength];
+        int[] edges = new int[vertices.length - 1];
+        System.arraycopy(head.vertices(), 0, vertices, 0, headLength);
+        System.arraycopy(head.edges(), 0, edges, 0, headLength - 1);
+
+        int i = headLength;
+        vertices[i] = meetTo;
+        edges[i - 1] = meetEdge;
+        for (int v = meetTo; v != backward.getSource(); v = backward.previous(v)) {
+            edges[i] = backward.previousEdge(v);
+            vertices[++i] = backward.previous(v);
+        }
+        return new ShortestPath(g, cost, vertices, edges);
+    }
+}
@@ -0,0 +1,522 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.kristian.flightsearch.models.Airport;
+
+/*
+ * Immutable compressed-sparse-row (CSR) view of the flight network.
+ *
+ * Airports are mapped to dense int ids (0..vertexCount-1). The outgoing edges of
+ * vertex v are the edge ids firstEdge(v) .. endEdge(v)-1, and every per-edge
+ * attribute lives in its own primitive array indexed by edge id:
+ *
+ *   offsets:  [0, 2, 3, 3]          (vertex 0 owns edges 0-1, vertex 1 owns edge 2)
+ *   targets:  [1, 2, 2]
+ *   prices:   [100, 400, 150]
+ *   minutes:  [120, 360, 180]
+ *
+ * Compared with one AirportVertex + ArrayList<Edge> + boxed Integer/Duration per
+ * flight this is a handful of flat arrays, so a traversal walks contiguous memory
+ * instead of chasing pointers. Build one with CompactFlightGraph.Builder.
+ *
+ * A reverse adjacency (incoming edges per vertex, pointing back at the forward
+ * edge ids) is built alongside so backward searches don't need a second graph.
+ *
+ * Within a vertex, edges are ordered by target, so all flights for one airport
+ * pair sit next to each other. routeGraph() uses that to derive a much smaller
+ * graph with one edge per ordered pair (min price, min duration, flight count);
+ * each route edge remembers the range of flight edges it summarises, so a path
+ * found on the route graph can be expanded back into real flights afterwards.
+ */
+public class CompactFlightGraph {
+
+    private final AirportVertex[] vertices;
+    private final HashMap<String, Integer> idByCode;
+
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] prices;
+    private final int[] minutes;
+    private final String[] flightNumbers;
+
+    // Incoming edges: vertex v's are reverseEdges[reverseOffsets[v] .. reverseOffsets[v+1]-1],
+    // each a forward edge id, with its origin vertex in reverseSources
+    private final int[] reverseOffsets;
+    private final int[] reverseSources;
+    private final int[] reverseEdges;
+
+    // Route graphs only: the flight-level graph, and route edge e summarises its
+    // flight edges flightOffsets[e] .. flightOffsets[e+1]-1. Null for a flight graph.
+    private final CompactFlightGraph flights;
+    private final int[] flightOffsets;
+
+    // Great-circle A* heuristic and the per-pair summary, built on first use
+    private volatile GreatCircleBound greatCircleBound;
+    private volatile CompactFlightGraph routeGraph;
+    private volatile ContractionHierarchy priceHierarchy;
+    private volatile ContractionHierarchy durationHierarchy;
+
+    /*
+     * The arrays a graph is made of, so FlightSnapshot can save it and restore it
+     * without sorting the edges again. flightOffsets is null for a flight graph.
+     */
+    public record Columns(int[] offsets, int[] targets, int[] prices, int[] minutes,
+            String[] flightNumbers, int[] flightOffsets) {}
+
+    private CompactFlightGraph(AirportVertex[] vertices, int[] offsets, int[] targets,
+            int[] prices, int[] minutes, String[] flightNumbers) {
+        this(vertices, offsets, targets, prices, minutes, flightNumbers, null, null);
+    }
+
+    private CompactFlightGraph(AirportVertex[] vertices, int[] offsets, int[] targets,
+            int[] prices, int[] minutes, String[] flightNumbers,
+            CompactFlightGraph flights, int[] flightOffsets) {
+        this.vertices = vertices;
+        this.flights = flights;
+        this.flightOffsets = flightOffsets;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.prices = prices;
+        this.minutes = minutes;
+        this.flightNumbers = flightNumbers;
+
+        this.idByCode = new HashMap<>();
+        for (int i = 0; i < vertices.length; i++) {
+            idByCode.put(vertices[i].getData().getCode(), i);
+        }
+
+        // Counting sort of the forward edges on their target vertex
+        int n = vertices.length;
+        this.reverseOffsets = new int[n + 1];
+        for (int target : targets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        this.reverseSources = new int[targets.length];
+        this.reverseEdges = new int[targets.length];
+        int[] cursor = Arrays.copyOf(reverseOffsets, n);
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int r = cursor[targets[e]]++;
+                reverseSources[r] = v;
+                reverseEdges[r] = e;
+            }
+        }
+    }
+
+    public int vertexCount() {
+        return vertices.length;
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    // Returns the dense id for an airport code, or -1 if the airport isn't in the graph
+    public int idOf(String airportCode) {
+        Integer id = idByCode.get(airportCode);
+        return id != null ? id : -1;
+    }
+
+    public AirportVertex vertex(int id) {
+        return vertices[id];
+    }
+
+    public Airport airport(int id) {
+        return vertices[id].getData();
+    }
+
+    public String code(int id) {
+        return vertices[id].getData().getCode();
+    }
+
+    public int firstEdge(int v) {
+        return offsets[v];
+    }
+
+    public int endEdge(int v) {
+        return offsets[v + 1];
+    }
+
+    // Incoming edges of v are reverse slots firstReverseEdge(v) .. endReverseEdge(v)-1
+    public int firstReverseEdge(int v) {
+        return reverseOffsets[v];
+    }
+
+    public int endReverseEdge(int v) {
+        return reverseOffsets[v + 1];
+    }
+
+    // Origin vertex of the incoming edge in reverse slot r
+    public int reverseSource(int r) {
+        return reverseSources[r];
+    }
+
+    // Forward edge id of the incoming edge in reverse slot r
+    public int reverseEdge(int r) {
+        return reverseEdges[r];
+    }
+
+    // The lightest edge from u to v by the given metric, or -1 if there is none
+    public int edgeBetween(int u, int v, Metric metric) {
+        int[] weights = weights(metric);
+        // Edges within u are sorted by target, so all u -> v edges form one run
+        int e = Arrays.binarySearch(targets, offsets[u], offsets[u + 1], v);
+        if (e < 0) return -1;
+        while (e > offsets[u] && targets[e - 1] == v) e--;
+        int best = e;
+        for (; e < offsets[u + 1] && targets[e] == v; e++) {
+            if (weights[e] < weights[best]) best = e;
+        }
+        return best;
+    }
+
+    public int target(int e) {
+        return targets[e];
+    }
+
+    public int price(int e) {
+        return prices[e];
+    }
+
+    public int durationMinutes(int e) {
+        return minutes[e];
+    }
+
+    public String flightNumber(int e) {
+        return flightNumbers[e];
+    }
+
+    public int weight(int e, Metric metric) {
+        return metric == Metric.PRICE ? prices[e] : minutes[e];
+    }
+
+    public boolean isRouteGraph() {
+        return flights != null;
+    }
+
+    // The flight-level graph behind a route graph; a flight graph returns itself
+    public CompactFlightGraph flightGraph() {
+        return flights != null ? flights : this;
+    }
+
+    // Flight edges (in flightGraph()) summarised by edge e: firstFlight(e) .. endFlight(e)-1
+    public int firstFlight(int e) {
+        return flights != null ? flightOffsets[e] : e;
+    }
+
+    public int endFlight(int e) {
+        return flights != null ? flightOffsets[e + 1] : e + 1;
+    }
+
+    public int flightCount(int e) {
+        return endFlight(e) - firstFlight(e);
+    }
+
+    // The flight behind edge e with the lowest price or duration, as a flightGraph() edge id
+    public int bestFlight(int e, Metric metric) {
+        CompactFlightGraph g = flightGraph();
+        int best = firstFlight(e);
+        for (int f = best + 1; f < endFlight(e); f++) {
+            if (g.weight(f, metric) < g.weight(best, metric)) best = f;
+        }
+        return best;
+    }
+
+    /*
+     * One edge per ordered airport pair, weighted by the cheapest price and the
+     * shortest duration among that pair's flights (which may be different flights).
+     * Shortest paths only ever use the best parallel edge, so searching this graph
+     * gives the same costs while relaxing a fraction of the edges. Vertex ids are
+     * shared with this graph. Built once and cached; a route graph returns itself.
+     */
+    public CompactFlightGraph routeGraph() {
+        if (flights != null) return this;
+        CompactFlightGraph routes = this.routeGraph;
+        if (routes == null) {
+            // Building twice under a race is harmless - the result is the same
+            routes = buildRouteGraph();
+            this.routeGraph = routes;
+        }
+        return routes;
+    }
+
+    /*
+     * Contraction hierarchy over this graph for the given metric, built on first use
+     * and cached alongside the graph, so a data reload (which builds a new graph)
+     * also rebuilds it. Building takes a while on the full network; the server does
+     * it at startup via FlightGraph.prepareContractionHierarchies().
+     */
+    public ContractionHierarchy contractionHierarchy(Metric metric) {
+        ContractionHierarchy hierarchy = metric == Metric.PRICE ? priceHierarchy : durationHierarchy;
+        if (hierarchy == null) {
+            // Building twice under a race is harmless - the result is the same
+            hierarchy = ContractionHierarchy.build(this, metric);
+            if (metric == Metric.PRICE) this.priceHierarchy = hierarchy;
+            else this.durationHierarchy = hierarchy;
+        }
+        return hierarchy;
+    }
+
+    public Columns columns() {
+        return new Columns(offsets, targets, prices, minutes, flightNumbers, flightOffsets);
+    }
+
+    /*
+     * This graph's edges back in edge list form, endpoints by the vertices' stable
+     * indices, so a graph whose builder was let go can still be changed and rebuilt.
+     */
+    Builder toBuilder() {
+        Builder builder = new Builder();
+        for (int v = 0; v < vertices.length; v++) {
+            int source = vertices[v].getIndex();
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                builder.addEdge(source, vertices[targets[e]].getIndex(), prices[e], minutes[e], flightNumbers[e]);
+            }
+        }
+        return builder;
+    }
+
+    /*
+     * Restores a flight graph over vertices, with its route graph, from columns saved
+     * with columns(). The arrays are used as they are.
+     */
+    static CompactFlightGraph fromColumns(AirportVertex[] vertices, Columns flightColumns, Columns routeColumns) {
+        if (flightColumns.offsets().length != vertices.length + 1
+                || routeColumns.offsets().length != vertices.length + 1) {
+            throw new IllegalArgumentException("Saved graph doesn't have " + vertices.length + " airports");
+        }
+        CompactFlightGraph flights = new CompactFlightGraph(vertices, flightColumns.offsets(),
+                flightColumns.targets(), flightColumns.prices(), flightColumns.minutes(),
+                flightColumns.flightNumbers());
+        flights.routeGraph = new CompactFlightGraph(vertices, routeColumns.offsets(), routeColumns.targets(),
+                routeColumns.prices(), routeColumns.minutes(), routeColumns.flightNumbers(),
+                flights, routeColumns.flightOffsets());
+        return flights;
+    }
+
+    // The hierarchy for metric if one has been built or restored, without building one
+    ContractionHierarchy builtHierarchy(Metric metric) {
+        return metric == Metric.PRICE ? priceHierarchy : durationHierarchy;
+    }
+
+    // Adopts a hierarchy restored for this graph
+    void useHierarchy(ContractionHierarchy hierarchy) {
+        if (hierarchy.getGraph() != this) throw new IllegalArgumentException("Hierarchy is for another graph");
+        if (hierarchy.getMetric() == Metric.PRICE) this.priceHierarchy = hierarchy;
+        else this.durationHierarchy = hierarchy;
+    }
+
+    private CompactFlightGraph buildRouteGraph() {
+        int n = vertices.length;
+        int[] routeOffsets = new int[n + 1];
+        int routes = 0;
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                // Edges are sorted by target within v, so a new target starts a new pair
+                if (e == offsets[v] || targets[e] != targets[e - 1]) routes++;
+            }
+            routeOffsets[v + 1] = routes;
+        }
+
+        int[] routeTargets = new int[routes];
+        int[] routePrices = new int[routes];
+        int[] routeMinutes = new int[routes];
+        String[] routeFlightNumbers = new String[routes];
+        int[] routeFlights = new int[routes + 1];
+        int r = -1;
+        for (int v = 0; v < n; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (e == offsets[v] || targets[e] != targets[e - 1]) {
+                    r++;
+                    routeTargets[r] = targets[e];
+                    routePrices[r] = prices[e];
+                    routeMinutes[r] = minutes[e];
+                    routeFlightNumbers[r] = flightNumbers[e];
+                    routeFlights[r] = e;
+                    continue;
+                }
+                if (prices[e] < routePrices[r]) {
+                    routePrices[r] = prices[e];
+                    // Label the route with its cheapest flight
+                    routeFlightNumbers[r] = flightNumbers[e];
+                }
+                routeMinutes[r] = Math.min(routeMinutes[r], minutes[e]);
+            }
+        }
+        routeFlights[routes] = targets.length;
+
+        return new CompactFlightGraph(vertices, routeOffsets, routeTargets, routePrices, routeMinutes,
+                routeFlightNumbers, this, routeFlights);
+    }
+
+    // Direct access to the weight column for tight loops inside this package
+    int[] weights(Metric metric) {
+        return metric == Metric.PRICE ? prices : minutes;
+    }
+
+    int[] targets() {
+        return targets;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] reverseOffsets() {
+        return reverseOffsets;
+    }
+
+    int[] reverseSources() {
+        return reverseSources;
+    }
+
+    int[] reverseEdges() {
+        return reverseEdges;
+    }
+
+    GreatCircleBound greatCircleBound() {
+        GreatCircleBound bound = this.greatCircleBound;
+        if (bound == null) {
+            // Building twice under a race is harmless - the result is the same
+            bound = new GreatCircleBound(this);
+            this.greatCircleBound = bound;
+        }
+        return bound;
+    }
+
+    /*
+     * Accumulates edges in coordinate (COO) form - one row per flight in growable
+     * primitive arrays - and sorts them into CSR on build(). Vertices are referred
+     * to by the stable index FlightGraph assigns when the vertex is added.
+     */
+    public static class Builder {
+        private int[] sources = new int[16];
+        private int[] dests = new int[16];
+        private int[] edgePrices = new int[16];
+        private int[] edgeMinutes = new int[16];
+        private String[] edgeFlightNumbers = new String[16];
+        private int size;
+
+        public void addEdge(int source, int dest, int price, int durationMinutes, String flightNumber) {
+            if (size == sources.length) {
+                int capacity = size * 2;
+                sources = Arrays.copyOf(sources, capacity);
+                dests = Arrays.copyOf(dests, capacity);
+                edgePrices = Arrays.copyOf(edgePrices, capacity);
+                edgeMinutes = Arrays.copyOf(edgeMinutes, capacity);
+                edgeFlightNumbers = Arrays.copyOf(edgeFlightNumbers, capacity);
+            }
+            sources[size] = source;
+            dests[size] = dest;
+            edgePrices[size] = price;
+            edgeMinutes[size] = durationMinutes;
+            edgeFlightNumbers[size] = flightNumber;
+            size++;
+        }
+
+        // Removes every edge source -> dest
+        public void removeEdges(int source, int dest) {
+            removeIf(source, dest, false);
+        }
+
+        // Removes every edge that starts or ends at the vertex
+        public void removeVertexEdges(int vertexIndex) {
+            removeIf(vertexIndex, vertexIndex, true);
+        }
+
+        private void removeIf(int a, int b, boolean eitherEnd) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                boolean remove = eitherEnd
+                        ? (sources[i] == a || dests[i] == a)
+                        : (sources[i] == a && dests[i] == b);
+                if (remove) continue;
+                sources[kept] = sources[i];
+                dests[kept] = dests[i];
+                edgePrices[kept] = edgePrices[i];
+                edgeMinutes[kept] = edgeMinutes[i];
+                edgeFlightNumbers[kept] = edgeFlightNumbers[i];
+                kept++;
+            }
+            Arrays.fill(edgeFlightNumbers, kept, size, null);
+            size = kept;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /*
+         * Builds the CSR arrays with a two-pass counting sort - on the target vertex,
+         * then stably on the source - so each vertex's edges come out grouped by
+         * target. Edges whose endpoints are no longer in the vertex list are dropped.
+         *
+         * @param vertices    the graph's vertices; position in this list becomes the dense id
+         * @param maxIndex    one past the largest stable vertex index ever handed out
+         */
+        public CompactFlightGraph build(AirportVertex[] vertices, int maxIndex) {
+            // stable index -> dense id
+            int[] denseId = new int[maxIndex];
+            Arrays.fill(denseId, -1);
+            for (int i = 0; i < vertices.length; i++) {
+                denseId[vertices[i].getIndex()] = i;
+            }
+
+            int n = vertices.length;
+            int[] offsets = new int[n + 1];
+            int edges = 0;
+            for (int i = 0; i < size; i++) {
+                int s = denseId[sources[i]];
+                int d = denseId[dests[i]];
+                if (s < 0 || d < 0) continue;
+                offsets[s + 1]++;
+                edges++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+
+            // First pass: row numbers ordered by target
+            int[] byTarget = new int[n + 1];
+            for (int i = 0; i < size; i++) {
+                int s = denseId[sources[i]];
+                int d = denseId[dests[i]];
+                if (s < 0 || d < 0) continue;
+                byTarget[d + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                byTarget[v + 1] += byTarget[v];
+            }
+            int[] order = new int[edges];
+            for (int i = 0; i < size; i++) {
+                int s = denseId[sources[i]];
+                int d = denseId[dests[i]];
+                if (s < 0 || d < 0) continue;
+                order[byTarget[d]++] = i;
+            }
+
+            // Second pass: scatter by source, keeping the target order within each vertex
+            int[] targets = new int[edges];
+            int[] prices = new int[edges];
+            int[] minutes = new int[edges];
+            String[] flightNumbers = new String[edges];
+            int[] cursor = Arrays.copyOf(offsets, n);
+            for (int i : order) {
+                int s = denseId[sources[i]];
+                int d = denseId[dests[i]];
+                int e = cursor[s]++;
+                targets[e] = d;
+                prices[e] = edgePrices[i];
+                minutes[e] = edgeMinutes[i];
+                flightNumbers[e] = edgeFlightNumbers[i];
+            }
+
+            return new CompactFlightGraph(vertices, offsets, targets, prices, minutes, flightNumbers);
+        }
+    }
+}
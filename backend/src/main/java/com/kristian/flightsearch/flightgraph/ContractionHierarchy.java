@@ -0,0 +1,573 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.Arrays;
+
+/*
+ * Contraction hierarchy over a CompactFlightGraph for one metric.
+ *
+ * Preprocessing removes ("contracts") airports one at a time, least important
+ * first. When v is contracted, every path u -> v -> w that is still a shortest
+ * path gets a shortcut edge u -> w of the same weight, so distances between the
+ * remaining airports don't change. A local "witness" search from u that avoids v
+ * decides whether a shortcut is needed. Each airport's rank is the order it was
+ * contracted in, so big hubs end up at the top.
+ *
+ * Any shortest path can then be rewritten as one that only climbs in rank and
+ * then only descends. A query is a bidirectional Dijkstra where the forward side
+ * from the source only follows edges to higher-ranked airports and the backward
+ * side from the target does the same over incoming edges; both meet at the top of
+ * the path after settling a few dozen airports instead of the whole network.
+ *
+ * On a network without much hierarchy (e.g. randomly generated flights) the last
+ * airports to be contracted are so interconnected that every contraction adds
+ * shortcuts between most of their neighbours. Contraction stops when that starts
+ * to happen and leaves those airports as an uncontracted "core" at the top. The
+ * backward search stops when it reaches the core and the forward search carries
+ * on through it as plain Dijkstra, so queries stay exact, just slower.
+ *
+ * The network only changes when data is reloaded, which rebuilds the graph (and
+ * with it the hierarchy), so the preprocessing is paid once per load. Shortcuts
+ * remember the two edges they replace, and paths are unpacked back into edges of
+ * the original graph, so callers get the same ShortestPath as from Dijkstra or A*.
+ */
+public class ContractionHierarchy {
+
+    // Witness searches give up after scanning this many edges - a budget on edges
+    // rather than airports, since a hub has hundreds. Giving up early only adds a
+    // shortcut that wasn't strictly needed, never a wrong distance. Estimating a
+    // priority only needs a rough shortcut count, so it looks less far.
+    private static final int WITNESS_SCAN_LIMIT = 10000;
+    private static final int ESTIMATE_SCAN_LIMIT = 1000;
+
+    // Contraction stops once the remaining airports average this many times as many
+    // outgoing edges as the input graph did - see the core note above
+    private static final int CORE_DEGREE_FACTOR = 4;
+
+    // Forward and backward scratch space, reused per request thread
+    private static final ThreadLocal<SearchContext[]> CONTEXTS =
+            ThreadLocal.withInitial(() -> new SearchContext[] { new SearchContext(), new SearchContext() });
+
+    private final CompactFlightGraph graph;
+    private final Metric metric;
+    private final int[] rank;
+    private final boolean[] core;
+    private final int coreSize;
+
+    // Edges to higher-ranked airports leaving each airport: upTargets[upOffsets[v] .. upOffsets[v+1]-1]
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upWeights;
+    private final int[] upEdges;
+
+    // Edges arriving at each airport from higher-ranked airports, for the backward search
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final int[] downWeights;
+    private final int[] downEdges;
+
+    // Every hierarchy edge is either an edge of the graph (graphEdge >= 0) or a shortcut
+    // standing for firstHalf followed by secondHalf. hops = graph edges it unpacks into.
+    private final int[] graphEdge;
+    private final int[] firstHalf;
+    private final int[] secondHalf;
+    private final int[] hops;
+    private final int shortcutCount;
+
+    /*
+     * What a hierarchy is made of, as flat arrays: each airport's rank and core flag,
+     * and every hierarchy edge (from, to, weight, graphEdge, firstHalf, secondHalf,
+     * hops, indexed by hierarchy edge id). FlightSnapshot saves these so a new
+     * instance can skip contraction.
+     */
+    public record Columns(int[] rank, boolean[] core, int[] from, int[] to, int[] weight,
+            int[] graphEdge, int[] firstHalf, int[] secondHalf, int[] hops) {}
+
+    private ContractionHierarchy(CompactFlightGraph graph, Metric metric, Columns c) {
+        this.graph = graph;
+        this.metric = metric;
+        this.rank = c.rank();
+        this.core = c.core();
+        int n = graph.vertexCount();
+        if (rank.length != n) {
+            throw new IllegalArgumentException("Hierarchy has " + rank.length + " airports, graph has " + n);
+        }
+        int coreVertices = 0;
+        for (int v = 0; v < n; v++) {
+            if (core[v]) coreVertices++;
+        }
+        this.coreSize = coreVertices;
+        int[] from = c.from();
+        int[] to = c.to();
+        int m = from.length;
+
+        this.graphEdge = c.graphEdge();
+        this.firstHalf = c.firstHalf();
+        this.secondHalf = c.secondHalf();
+        this.hops = c.hops();
+        int shortcuts = 0;
+        for (int e = 0; e < m; e++) {
+            if (graphEdge[e] < 0) shortcuts++;
+        }
+        this.shortcutCount = shortcuts;
+
+        // Split every edge by direction in the hierarchy (core edges go forward), then
+        // counting-sort each half into CSR form on the airport its search expands from
+        this.upOffsets = new int[n + 1];
+        this.downOffsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            if (isUp(from[e], to[e])) upOffsets[from[e] + 1]++;
+            else downOffsets[to[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            upOffsets[v + 1] += upOffsets[v];
+            downOffsets[v + 1] += downOffsets[v];
+        }
+        this.upTargets = new int[upOffsets[n]];
+        this.upWeights = new int[upOffsets[n]];
+        this.upEdges = new int[upOffsets[n]];
+        this.downSources = new int[downOffsets[n]];
+        this.downWeights = new int[downOffsets[n]];
+        this.downEdges = new int[downOffsets[n]];
+        int[] upCursor = Arrays.copyOf(upOffsets, n);
+        int[] downCursor = Arrays.copyOf(downOffsets, n);
+        for (int e = 0; e < m; e++) {
+            int u = from[e];
+            int v = to[e];
+            if (isUp(u, v)) {
+                int i = upCursor[u]++;
+                upTargets[i] = v;
+                upWeights[i] = c.weight()[e];
+                upEdges[i] = e;
+            } else {
+                int i = downCursor[v]++;
+                downSources[i] = u;
+                downWeights[i] = c.weight()[e];
+                downEdges[i] = e;
+            }
+        }
+    }
+
+    // Upward edges go to the forward search. Core edges go forward too: the backward
+    // search stops where it enters the core, and the forward search finds it there.
+    // Every other edge leads down and goes to the backward search.
+    private boolean isUp(int u, int v) {
+        return rank[u] < rank[v] || (core[u] && core[v]);
+    }
+
+    /**
+     * Contracts every airport of g and returns the hierarchy for the given metric.
+     * Takes a while on the full network - build once per data load and share it.
+     */
+    public static ContractionHierarchy build(CompactFlightGraph g, Metric metric) {
+        Contraction c = new Contraction(g, metric);
+        c.run();
+        return new ContractionHierarchy(g, metric, c.columns());
+    }
+
+    // Restores a hierarchy of g saved with columns(), without contracting again
+    public static ContractionHierarchy fromColumns(CompactFlightGraph g, Metric metric, Columns columns) {
+        return new ContractionHierarchy(g, metric, columns);
+    }
+
+    // The arrays this hierarchy was built from; its edges come back in hierarchy edge id order
+    public Columns columns() {
+        int m = graphEdge.length;
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] weight = new int[m];
+        for (int u = 0; u < upOffsets.length - 1; u++) {
+            for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+                from[upEdges[i]] = u;
+                to[upEdges[i]] = upTargets[i];
+                weight[upEdges[i]] = upWeights[i];
+            }
+        }
+        for (int v = 0; v < downOffsets.length - 1; v++) {
+            for (int i = downOffsets[v]; i < downOffsets[v + 1]; i++) {
+                from[downEdges[i]] = downSources[i];
+                to[downEdges[i]] = v;
+                weight[downEdges[i]] = downWeights[i];
+            }
+        }
+        return new Columns(rank, core, from, to, weight, graphEdge, firstHalf, secondHalf, hops);
+    }
+
+    public CompactFlightGraph getGraph() {
+        return graph;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    // Number of shortcut edges preprocessing added on top of the graph's own edges
+    public int shortcutCount() {
+        return shortcutCount;
+    }
+
+    // Number of airports left uncontracted at the top of the hierarchy
+    public int coreSize() {
+        return coreSize;
+    }
+
+    /**
+     * Returns the cheapest path from source to target by this hierarchy's metric, or
+     * null if target is unreachable. Edge ids in the result are edges of getGraph().
+     */
+    public ShortestPath shortestPath(int source, int target) {
+        if (source == target) {
+            return new ShortestPath(graph, 0, new int[] { source }, new int[0]);
+        }
+
+        SearchContext[] contexts = CONTEXTS.get();
+        SearchContext forward = contexts[0];
+        SearchContext backward = contexts[1];
+        forward.reset(graph, source, metric);
+        backward.reset(graph, target, metric);
+        IndexedMinHeap forwardQueue = forward.heap;
+        IndexedMinHeap backwardQueue = backward.heap;
+        forwardQueue.insertOrDecrease(source, 0);
+        backwardQueue.insertOrDecrease(target, 0);
+
+        long best = Long.MAX_VALUE;
+        int meet = -1;
+
+        // Unlike plain bidirectional Dijkstra the two sides don't stop when their
+        // minimums add up to the best path - each one runs until its own minimum
+        // alone can't improve on it, since the meeting point is the top of the path.
+        while (true) {
+            boolean forwardOpen = !forwardQueue.isEmpty() && forwardQueue.peekKey() < best;
+            boolean backwardOpen = !backwardQueue.isEmpty() && backwardQueue.peekKey() < best;
+            if (!forwardOpen && !backwardOpen) break;
+
+            if (forwardOpen && (!backwardOpen || forwardQueue.peekKey() <= backwardQueue.peekKey())) {
+                int du = forwardQueue.peekKey();
+                int u = forwardQueue.poll();
+                forward.settle();
+                if (backward.isReachable(u)) {
+                    long candidate = (long) du + backward.distanceTo(u);
+                    if (candidate < best) {
+                        best = candidate;
+                        meet = u;
+                    }
+                }
+                for (int i = upOffsets[u]; i < upOffsets[u + 1]; i++) {
+                    int v = upTargets[i];
+                    int alternative = du + upWeights[i];
+                    if (alternative < forward.distanceTo(v)) {
+                        forward.label(v, alternative, u, upEdges[i]);
+                        forwardQueue.insertOrDecrease(v, alternative);
+                    }
+                }
+            } else {
+                int dv = backwardQueue.peekKey();
+                int v = backwardQueue.poll();
+                backward.settle();
+                if (forward.isReachable(v)) {
+                    long candidate = (long) forward.distanceTo(v) + dv;
+                    if (candidate < best) {
+                        best = candidate;
+                        meet = v;
+                    }
+                }
+                for (int i = downOffsets[v]; i < downOffsets[v + 1]; i++) {
+                    int u = downSources[i];
+                    int alternative = dv + downWeights[i];
+                    // In the backward search "previous" points towards the target
+                    if (alternative < backward.distanceTo(u)) {
+                        backward.label(u, alternative, v, downEdges[i]);
+                        backwardQueue.insertOrDecrease(u, alternative);
+                    }
+                }
+            }
+        }
+
+        if (meet < 0) return null;
+        return unpack(forward, backward, source, target, meet, (int) best);
+    }
+
+    // Collects the hierarchy edges source -> meet -> target and expands every shortcut
+    // into the graph edges it stands for
+    private ShortestPath unpack(SearchContext forward, SearchContext backward,
+            int source, int target, int meet, int cost) {
+        int headLength = 0;
+        for (int v = meet; v != source; v = forward.previous(v)) headLength++;
+        int tailLength = 0;
+        for (int v = meet; v != target; v = backward.previous(v)) tailLength++;
+
+        int[] hierarchyEdges = new int[headLength + tailLength];
+        int i = headLength;
+        for (int v = meet; v != source; v = forward.previous(v)) hierarchyEdges[--i] = forward.previousEdge(v);
+        i = headLength;
+        for (int v = meet; v != target; v = backward.previous(v)) hierarchyEdges[i++] = backward.previousEdge(v);
+
+        int length = 0;
+        for (int e : hierarchyEdges) length += hops[e];
+        int[] edges = new int[length];
+        int filled = 0;
+        for (int e : hierarchyEdges) filled = expand(e, edges, filled);
+
+        int[] vertices = new int[length + 1];
+        vertices[0] = source;
+        for (int j = 0; j < length; j++) vertices[j + 1] = graph.target(edges[j]);
+        return new ShortestPath(graph, cost, vertices, edges);
+    }
+
+    // Writes the graph edges behind hierarchy edge e into out starting at index at
+    private int expand(int e, int[] out, int at) {
+        if (graphEdge[e] >= 0) {
+            out[at] = graphEdge[e];
+            return at + 1;
+        }
+        return expand(secondHalf[e], out, expand(firstHalf[e], out, at));
+    }
+
+    /*
+     * Mutable state while contracting: the remaining graph as growable per-airport
+     * edge lists (edges to contracted airports stay in the lists and are skipped),
+     * and scratch space for witness searches.
+     */
+    private static class Contraction {
+        private final int n;
+        private final int[] rank;
+        private final boolean[] core;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+
+        private int edgeCount;
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private int[] weight = new int[16];
+        private int[] graphEdge = new int[16];
+        private int[] firstHalf = new int[16];
+        private int[] secondHalf = new int[16];
+        private int[] hops = new int[16];
+
+        private final int[][] out;
+        private final int[] outSize;
+        private final int[][] in;
+        private final int[] inSize;
+
+        private final int[] witnessDist;
+        private final int[] witnessStamp;
+        private final int[] targetStamp;
+        private int witnessGeneration;
+        private final IndexedMinHeap witnessHeap = new IndexedMinHeap();
+
+        Contraction(CompactFlightGraph g, Metric metric) {
+            this.n = g.vertexCount();
+            this.rank = new int[n];
+            this.core = new boolean[n];
+            this.contracted = new boolean[n];
+            this.contractedNeighbours = new int[n];
+            this.out = new int[n][];
+            this.outSize = new int[n];
+            this.in = new int[n][];
+            this.inSize = new int[n];
+            this.witnessDist = new int[n];
+            this.witnessStamp = new int[n];
+            this.targetStamp = new int[n];
+            witnessHeap.ensureCapacity(n);
+
+            int[] offsets = g.offsets();
+            int[] targets = g.targets();
+            int[] weights = g.weights(metric);
+            for (int v = 0; v < n; v++) {
+                out[v] = new int[Math.max(2, offsets[v + 1] - offsets[v])];
+                in[v] = new int[2];
+            }
+            for (int v = 0; v < n; v++) {
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    if (targets[e] != v) addEdge(v, targets[e], weights[e], e, -1, -1);
+                }
+            }
+        }
+
+        // The finished hierarchy's arrays, trimmed to the edges added
+        Columns columns() {
+            int m = edgeCount;
+            return new Columns(rank, core, Arrays.copyOf(from, m), Arrays.copyOf(to, m), Arrays.copyOf(weight, m),
+                    Arrays.copyOf(graphEdge, m), Arrays.copyOf(firstHalf, m), Arrays.copyOf(secondHalf, m),
+                    Arrays.copyOf(hops, m));
+        }
+
+        void run() {
+            IndexedMinHeap queue = new IndexedMinHeap();
+            queue.ensureCapacity(n);
+            for (int v = 0; v < n; v++) {
+                queue.insertOrDecrease(v, priority(v));
+            }
+
+            // Edges between uncontracted airports, to notice when the remainder turns into a core
+            long liveEdges = edgeCount;
+            long coreDegree = Math.max(1, CORE_DEGREE_FACTOR * (long) edgeCount / Math.max(1, n));
+
+            int order = 0;
+            while (!queue.isEmpty()) {
+                if (liveEdges > coreDegree * (n - order)) {
+                    // Everything still queued becomes the core, ranked above all contracted airports
+                    while (!queue.isEmpty()) {
+                        int v = queue.poll();
+                        core[v] = true;
+                        rank[v] = order++;
+                    }
+                    break;
+                }
+
+                int v = queue.poll();
+                // Priorities go stale as neighbours get contracted - recheck before committing
+                int current = priority(v);
+                if (!queue.isEmpty() && current > queue.peekKey()) {
+                    queue.insertOrDecrease(v, current);
+                    continue;
+                }
+
+                int before = edgeCount;
+                contract(v, true);
+                liveEdges += edgeCount - before;
+                contracted[v] = true;
+                rank[v] = order++;
+                for (int i = 0; i < outSize[v]; i++) {
+                    int w = to[out[v][i]];
+                    if (!contracted[w]) {
+                        contractedNeighbours[w]++;
+                        liveEdges--;
+                    }
+                }
+                for (int i = 0; i < inSize[v]; i++) {
+                    int u = from[in[v][i]];
+                    if (!contracted[u]) {
+                        contractedNeighbours[u]++;
+                        liveEdges--;
+                    }
+                }
+            }
+        }
+
+        // Edge difference (shortcuts added minus edges removed), plus a term that
+        // spreads contraction evenly instead of eating one region at a time
+        private int priority(int v) {
+            int degree = 0;
+            for (int i = 0; i < outSize[v]; i++) if (!contracted[to[out[v][i]]]) degree++;
+            for (int i = 0; i < inSize[v]; i++) if (!contracted[from[in[v][i]]]) degree++;
+            return contract(v, false) - degree + contractedNeighbours[v];
+        }
+
+        // Counts (and if apply is set, adds) the shortcuts contracting v needs
+        private int contract(int v, boolean apply) {
+            int shortcuts = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                int incoming = in[v][i];
+                int u = from[incoming];
+                if (contracted[u]) continue;
+
+                if (!witnessSearch(u, v, weight[incoming], apply ? WITNESS_SCAN_LIMIT : ESTIMATE_SCAN_LIMIT)) continue;
+                for (int j = 0; j < outSize[v]; j++) {
+                    int outgoing = out[v][j];
+                    int w = to[outgoing];
+                    if (w == u || contracted[w]) continue;
+                    int via = weight[incoming] + weight[outgoing];
+                    if (witnessStamp[w] == witnessGeneration && witnessDist[w] <= via) continue;
+                    shortcuts++;
+                    if (apply) addShortcut(u, w, via, incoming, outgoing);
+                }
+            }
+            return shortcuts;
+        }
+
+        /*
+         * Dijkstra from source over the remaining graph without via, looking for paths to
+         * via's out-neighbours no longer than going through via (firstLeg + the edge out
+         * of via). Stops once every such neighbour is settled. Returns false if via has no
+         * out-neighbour to check.
+         */
+        private boolean witnessSearch(int source, int via, int firstLeg, int scanLimit) {
+            if (++witnessGeneration == Integer.MAX_VALUE) {
+                Arrays.fill(witnessStamp, 0);
+                Arrays.fill(targetStamp, 0);
+                witnessGeneration = 1;
+            }
+            int targets = 0;
+            int maxOut = -1;
+            for (int j = 0; j < outSize[via]; j++) {
+                int w = to[out[via][j]];
+                if (w == source || contracted[w]) continue;
+                targetStamp[w] = witnessGeneration;
+                targets++;
+                maxOut = Math.max(maxOut, weight[out[via][j]]);
+            }
+            if (targets == 0) return false;
+            int limit = firstLeg + maxOut;
+
+            witnessHeap.clear();
+            witnessStamp[source] = witnessGeneration;
+            witnessDist[source] = 0;
+            witnessHeap.insertOrDecrease(source, 0);
+
+            int scanned = 0;
+            while (!witnessHeap.isEmpty() && witnessHeap.peekKey() <= limit && scanned < scanLimit) {
+                int d = witnessHeap.peekKey();
+                int x = witnessHeap.poll();
+                if (targetStamp[x] == witnessGeneration && --targets == 0) break;
+                scanned += outSize[x];
+                for (int i = 0; i < outSize[x]; i++) {
+                    int e = out[x][i];
+                    int y = to[e];
+                    if (y == via || contracted[y]) continue;
+                    int alternative = d + weight[e];
+                    // Anything longer than the path through avoid can't be a witness
+                    if (alternative > limit) continue;
+                    if (witnessStamp[y] != witnessGeneration || alternative < witnessDist[y]) {
+                        witnessStamp[y] = witnessGeneration;
+                        witnessDist[y] = alternative;
+                        witnessHeap.insertOrDecrease(y, alternative);
+                    }
+                }
+            }
+            return true;
+        }
+
+        // Adds u -> w standing for edges a then b, or lowers an existing u -> w edge
+        private void addShortcut(int u, int w, int via, int a, int b) {
+            for (int i = 0; i < outSize[u]; i++) {
+                int e = out[u][i];
+                if (to[e] != w) continue;
+                if (via < weight[e]) {
+                    weight[e] = via;
+                    graphEdge[e] = -1;
+                    firstHalf[e] = a;
+                    secondHalf[e] = b;
+                    hops[e] = hops[a] + hops[b];
+                }
+                return;
+            }
+            addEdge(u, w, via, -1, a, b);
+        }
+
+        private void addEdge(int u, int v, int w, int original, int a, int b) {
+            if (edgeCount == from.length) {
+                int capacity = edgeCount * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                graphEdge = Arrays.copyOf(graphEdge, capacity);
+                firstHalf = Arrays.copyOf(firstHalf, capacity);
+                secondHalf = Arrays.copyOf(secondHalf, capacity);
+                hops = Arrays.copyOf(hops, capacity);
+            }
+            int e = edgeCount++;
+            from[e] = u;
+            to[e] = v;
+            weight[e] = w;
+            graphEdge[e] = original;
+            firstHalf[e] = a;
+            secondHalf[e] = b;
+            hops[e] = original >= 0 ? 1 : hops[a] + hops[b];
+
+            if (outSize[u] == out[u].length) out[u] = Arrays.copyOf(out[u], outSize[u] * 2);
+            out[u][outSize[u]++] = e;
+            if (inSize[v] == in[v].length) in[v] = Arrays.copyOf(in[v], inSize[v] * 2);
+            in[v][inSize[v]++] = e;
+        }
+    }
+}
@@ -1,15 +1,16 @@
 package com.kristian.flightsearch.flightgraph;
 
 import java.time.Duration;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.PriorityQueue;
 
 import com.kristian.flightsearch.models.Airport;
 
 public class Dijkstra {
 
+    // One reusable set of search arrays per request thread
+    private static final ThreadLocal<SearchContext> CONTEXT = ThreadLocal.withInitial(SearchContext::new);
+
     /**
      * Dijkstra's Algorithm: Finds the shortest path from a starting vertex to all other vertices in a weighted graph.
      * 
@@ -18,124 +19,103 @@ public class Dijkstra {
      * 2. Visit the nearest unvisited vertex
      * 3. Update distances to its neighbors if a shorter path is found
      * 4. Repeat until all vertices are visited
-     * 
-     * Returns two dictionaries: distances (how far each vertex is) and previous (how to get there)
+     *
+     * Runs over the CSR arrays of the compact graph using the calling thread's
+     * SearchContext: distances and previous vertices are int arrays indexed by dense
+     * vertex id, and the queue is an indexed heap that lowers a vertex's key in place
+     * rather than queueing a new object per relaxation. Nothing is allocated per call.
+     *
+     * The returned context is only valid until the next search on this thread.
      */
-    public static Map[] searchByPrice(FlightGraph g, AirportVertex startingVertex){
-        // distances: stores the shortest known distance from start to each vertex
-        // Key = airport code (String), Value = distance (Integer)
-        // Example: {"A": 0, "B": 3, "C": 100}
-        Map<Airport, Integer> flightPrices = new HashMap<>();
+    public static SearchContext run(CompactFlightGraph g, int source, Metric metric){
+        return search(g, source, -1, metric);
+    }
 
-        // previous: stores which vertex you came FROM to reach each vertex (for reconstructing the path)
-        // Key = Airport (object), Value = the previous vertex (AirportVertex object)
-        // Example: {"B": A, "C": D} means you reach B from A, C from D
-        Map<Airport, AirportVertex> previous = new HashMap<>();
-        
-        // PriorityQueue: automatically sorts vertices by their distance (closest first)
-        // We use QueueObject which pairs a Vertex with its distance value for sorting
-        // This ensures we always process the nearest unvisited vertex next
-        PriorityQueue<QueueObject> queue = new PriorityQueue<QueueObject>();
-
-        // Add the starting vertex to the queue with distance 0 (we start here)
-        // QueueObject wraps the vertex and its distance so PriorityQueue can sort by distance
-        queue.add(new QueueObject(startingVertex, 0));
-
-        // Initialize all vertices: set their distances to infinity (unknown) and previous to null
-        // Get all vertices from the graph using g.getVertices()
-        for (AirportVertex v : g.getVertices()){
-            // If this isn't the starting vertex, set its distance to MAX_VALUE (infinity)
-            // This represents "we don't know how to reach it yet"
-            if (v != startingVertex){
-                flightPrices.put(v.getData(), Integer.MAX_VALUE);
-            }
-            // Set the "previous vertex" for all vertices to null
-            // This will be updated as we find the shortest paths
-            previous.put(v.getData(), null);
-        }
+    /**
+     * Point-to-point version of run(): stops as soon as target is settled, since its
+     * distance can't improve after that. Most callers only need one destination, and
+     * on a hub-and-spoke network the target is usually settled long before the rest
+     * of the graph.
+     *
+     * Returns the cheapest path (by the given metric), or null if target is unreachable.
+     */
+    public static ShortestPath shortestPath(CompactFlightGraph g, int source, int target, Metric metric){
+        SearchContext ctx = search(g, source, target, metric);
+        return ctx.toPath(target);
+    }
+
+    // Shared loop for run() and shortestPath(); target = -1 settles the whole graph
+    static SearchContext search(CompactFlightGraph g, int source, int target, Metric metric){
+        SearchContext ctx = CONTEXT.get();
+        ctx.reset(g, source, metric);
+        IndexedMinHeap queue = ctx.heap;
+
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.weights(metric);
 
-        // Set the distance to the starting vertex from itself to 0 (we're already there)
-        flightPrices.put(startingVertex.getData(), 0);
-
-        // Main loop: Keep processing vertices until the queue is empty
-        // The queue is empty when we've found the shortest path to all reachable vertices
-        while (queue.size() != 0){
-            // Remove and process the vertex with the SMALLEST distance from the queue
-            // This is guaranteed to be the nearest unvisited vertex
-            // poll() retrieves the head of the PriorityQueue and removes it
-            // .vertex extracts just the AirportVertex from the QueueObject wrapper
-            AirportVertex current = queue.poll().vertex;
-            
-            // Look at all edges (connections) FROM the current vertex
-            // current.getEdges() returns an ArrayList of all edges starting from 'current'
-            for (Edge e : current.getEdges()){
-                // Calculate an alternative path distance to the neighbor
-                // = (distance to current vertex) + (weight of this edge)
-                // distances.get(current.getData()) gets how far we traveled to reach 'current'
-                // e.getWeight() gets the weight of the edge to the neighbor
-                // This is the total distance if we use this path
-                Integer alternativePrice = flightPrices.get(current.getData()) + e.getPrice();
-                
-                // Get the neighbor vertex's airport that this edge points to
-                // e.getEnd() returns the AirportVertex that this edge connects TO
-                Airport neighbourValue = e.getEnd().getData();
-                
-                // Check if this new path is SHORTER than what we previously knew
-                // distances.get(neighbourValue) returns the current best-known distance to the neighbor
-                // If alternative is smaller, we found a better path!
-                if (alternativePrice < flightPrices.get(neighbourValue)){
-                    // Update the shortest distance to this neighbor
-                    flightPrices.put(neighbourValue, alternativePrice);
-                    
-                    // Remember that we reach this neighbor FROM the current vertex
-                    // This lets us reconstruct the actual path later if needed
-                    previous.put(neighbourValue, current);
-                    
-                    // Add the neighbor to the queue with its new (updated) distance
-                    // PriorityQueue will sort it by distance, so closer vertices are processed first
-                    // distances.get(neighbourValue) gets the distance we just updated
-                    queue.add(new QueueObject(e.getEnd(), flightPrices.get(neighbourValue)));
+        queue.insertOrDecrease(source, 0);
+
+        // Main loop: always expand the closest vertex that hasn't been settled yet
+        while (!queue.isEmpty()){
+            int currentDist = queue.peekKey();
+            int current = queue.poll();
+            ctx.settle();
+            if (current == target) break;
+
+            for (int e = offsets[current]; e < offsets[current + 1]; e++){
+                int neighbour = targets[e];
+                int alternative = currentDist + weights[e];
+                // Found a cheaper way to reach the neighbour: remember it and requeue
+                if (alternative < ctx.distanceTo(neighbour)){
+                    ctx.label(neighbour, alternative, current, e);
+                    queue.insertOrDecrease(neighbour, alternative);
                 }
             }
         }
-        
-        // Return both maps as an array
-        // [0] = distances map (shortest distance to each vertex)
-        // [1] = previous map (how to reach each vertex)
-        return new Map[] {flightPrices, previous};
+        return ctx;
     }
 
-    public static Map[] searchByDuration(FlightGraph g, AirportVertex startingVertex){
-        Map<Airport, Duration> flightDurations = new HashMap<>();
-        Map<Airport, AirportVertex> previous = new HashMap<>();
+    // Same as run() but copies the result so it outlives the next search on this thread
+    public static ShortestPathTree shortestPathTree(CompactFlightGraph g, int source, Metric metric){
+        return run(g, source, metric).toTree();
+    }
 
-        PriorityQueue<QueueObject> queue = new PriorityQueue<>(
-            Comparator.comparing(q -> (Duration) flightDurations.get(q.vertex.getData()))
-        );
+    /**
+     * Cheapest price from startingVertex to every vertex.
+     *
+     * Returns two dictionaries: [0] Map<Airport, Integer> prices (Integer.MAX_VALUE if
+     * unreachable) and [1] Map<Airport, AirportVertex> previous vertex on the cheapest path.
+     */
+    public static Map[] searchByPrice(FlightGraph g, AirportVertex startingVertex){
+        CompactFlightGraph compact = g.getCompactGraph();
+        SearchContext tree = run(compact, compact.idOf(startingVertex.getData().getCode()), Metric.PRICE);
 
-        for (AirportVertex v : g.getVertices()){
-            if (v != startingVertex){
-                flightDurations.put(v.getData(), Duration.ofHours(99));
-            }
-            previous.put(v.getData(), null);
+        Map<Airport, Integer> flightPrices = new HashMap<>();
+        Map<Airport, AirportVertex> previous = new HashMap<>();
+        for (int v = 0; v < compact.vertexCount(); v++){
+            flightPrices.put(compact.airport(v), tree.distanceTo(v));
+            int p = tree.previous(v);
+            previous.put(compact.airport(v), p >= 0 ? compact.vertex(p) : null);
         }
+        return new Map[] {flightPrices, previous};
+    }
 
-        flightDurations.put(startingVertex.getData(), Duration.ZERO);
-
-        queue.add(new QueueObject(startingVertex, 0)); // The int is ignored in this context
+    /**
+     * Shortest total flight time from startingVertex to every vertex. Same shape as
+     * searchByPrice, with Duration values; unreachable airports are Duration.ofHours(99).
+     */
+    public static Map[] searchByDuration(FlightGraph g, AirportVertex startingVertex){
+        CompactFlightGraph compact = g.getCompactGraph();
+        SearchContext tree = run(compact, compact.idOf(startingVertex.getData().getCode()), Metric.DURATION);
 
-        while (!queue.isEmpty()){
-            AirportVertex current = queue.poll().vertex;
-            for (Edge e : current.getEdges()){
-                Duration alternativeDuration = flightDurations.get(current.getData()).plus(e.getDuration());
-                Airport neighbourValue = e.getEnd().getData();
-
-                if (alternativeDuration.compareTo(flightDurations.get(neighbourValue)) < 0){
-                    flightDurations.put(neighbourValue, alternativeDuration);
-                    previous.put(neighbourValue, current);
-                    queue.add(new QueueObject(e.getEnd(), 0)); // The int is ignored
-                }
-            }
+        Map<Airport, Duration> flightDurations = new HashMap<>();
+        Map<Airport, AirportVertex> previous = new HashMap<>();
+        for (int v = 0; v < compact.vertexCount(); v++){
+            flightDurations.put(compact.airport(v),
+                    tree.isReachable(v) ? Duration.ofMinutes(tree.distanceTo(v)) : Duration.ofHours(99));
+            int p = tree.previous(v);
+            previous.put(compact.airport(v), p >= 0 ? compact.vertex(p) : null);
         }
         return new Map[] {flightDurations, previous};
     }
@@ -1,7 +1,9 @@
 package com.kristian.flightsearch.flightgraph;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.time.Duration;
 
 import com.kristian.flightsearch.models.Airport;
@@ -13,17 +15,34 @@ public class FlightGraph {
     private boolean isWeighted;
     private boolean isDirected;
 
+    // Every edge in primitive (COO) form while the graph is being changed; the CSR graph
+    // used by searches is built from this, which is then let go so edges aren't held
+    // twice. Recreated from the CSR columns if the graph changes again.
+    private CompactFlightGraph.Builder edgeList;
+    // Rebuilt lazily whenever vertices or edges change
+    private volatile CompactFlightGraph compactGraph;
+    // Optional precomputed answers for the route graph it was built from; see prepareAllPairsMatrix
+    private volatile AllPairsMatrix allPairsMatrix;
+    // Recently used single-source trees over the current route graph; replaced when it changes
+    private volatile ShortestPathTreeCache treeCache;
+    private long treeCacheBytes = ShortestPathTreeCache.DEFAULT_MAX_MB * 1024L * 1024;
+    private int nextVertexIndex;
+
     public FlightGraph (boolean isWeighted, boolean isDirected){
         this.vertices = new ArrayList<AirportVertex>();
         this.vertexIndex = new HashMap<>();
         this.isDirected = isDirected;
         this.isWeighted = isWeighted;
+        this.edgeList = new CompactFlightGraph.Builder();
     }
 
     public AirportVertex addVertex(Airport airport){
-        AirportVertex newVertex = new AirportVertex(airport);
+        // The built graph is about to be dropped, so its edges must be back in the list
+        edges();
+        AirportVertex newVertex = new AirportVertex(airport, nextVertexIndex++);
         this.vertices.add(newVertex);
         this.vertexIndex.put(airport.getCode(), newVertex);
+        this.compactGraph = null;
         return newVertex;
     }
 
@@ -36,19 +55,228 @@ public class FlightGraph {
             price = null;
         }
         vertex1.addEdge(vertex2, price, duration, flightNumber);
+        addCompactEdge(vertex1, vertex2, price, duration, flightNumber);
+    }
 
+    // Records the edge for the CSR graph only, without allocating an Edge object
+    private void addCompactEdge(AirportVertex vertex1, AirportVertex vertex2, Integer price, Duration duration, String flightNumber){
+        int weight = (price != null) ? price : 0;
+        edges().addEdge(vertex1.getIndex(), vertex2.getIndex(), weight, (int) duration.toMinutes(), flightNumber);
+        this.compactGraph = null;
     }
 
     public void removeEdge(AirportVertex vertex1, AirportVertex vertex2){
         vertex1.removeEdge(vertex2);
+        edges().removeEdges(vertex1.getIndex(), vertex2.getIndex());
         if (!this.isDirected){
             vertex2.removeEdge(vertex1);
+            edges().removeEdges(vertex2.getIndex(), vertex1.getIndex());
         }
+        this.compactGraph = null;
     }
 
     public void removeVertex(AirportVertex vertex){
         this.vertices.remove(vertex);
+        edges().removeVertexEdges(vertex.getIndex());
+        this.compactGraph = null;
+    }
+
+    /*
+     * Returns the CSR form of this graph, building it on first use after a change.
+     * Searches should run against this rather than walking AirportVertex/Edge objects.
+     */
+    public CompactFlightGraph getCompactGraph(){
+        CompactFlightGraph graph = this.compactGraph;
+        if (graph == null){
+            synchronized (this){
+                graph = this.compactGraph;
+                if (graph == null){
+                    graph = edgeList.build(vertices.toArray(new AirportVertex[0]), nextVertexIndex);
+                    this.compactGraph = graph;
+                    this.edgeList = null;
+                }
+            }
+        }
+        return graph;
+    }
+
+    // The edge list to change, recreated from the built graph if it was let go
+    private synchronized CompactFlightGraph.Builder edges(){
+        if (this.edgeList == null){
+            this.edgeList = this.compactGraph.toBuilder();
+        }
+        return this.edgeList;
+    }
+
+    /*
+     * Returns the route graph - one edge per airport pair carrying the pair's best
+     * price and duration - which routing queries should use. Expand a route edge back
+     * into flights with CompactFlightGraph.firstFlight/endFlight or bestFlight.
+     */
+    public CompactFlightGraph getRouteGraph(){
+        return getCompactGraph().routeGraph();
+    }
+
+    /*
+     * Cheapest path between two airports by the given metric, or null if either airport
+     * is missing or the destination is unreachable. The path's edges are route graph
+     * edge ids.
+     *
+     * When the all-pairs matrix has been prepared the path is read from it. Otherwise
+     * a prepared contraction hierarchy answers, settling a few dozen airports per query
+     * instead of searching outwards from the origin. If the network has so little hub
+     * structure that most airports were left in the hierarchy's core, queries fall
+     * back to A* with a great-circle bound, which is faster than Dijkstra through a
+     * core full of shortcuts.
+     *
+     * With neither prepared, a bidirectional Dijkstra search answers rather than
+     * building a hierarchy for one query (see prepareContractionHierarchies).
+     */
+    public ShortestPath findPath(String originCode, String destinationCode, Metric metric){
+        CompactFlightGraph graph = getRouteGraph();
+        int origin = graph.idOf(originCode);
+        int destination = graph.idOf(destinationCode);
+        if (origin < 0 || destination < 0) return null;
+
+        AllPairsMatrix matrix = getAllPairsMatrix();
+        if (matrix != null){
+            return matrix.path(origin, destination, metric);
+        }
+        return searchPath(graph, origin, destination, metric);
+    }
+
+    // The prepared contraction hierarchy's answer, A*'s when its core is over half the
+    // graph, or a bidirectional search's when no hierarchy has been prepared
+    private static ShortestPath searchPath(CompactFlightGraph graph, int origin, int destination, Metric metric){
+        ContractionHierarchy hierarchy = graph.builtHierarchy(metric);
+        if (hierarchy == null){
+            return BidirectionalDijkstra.shortestPath(graph, origin, destination, metric);
+        }
+        if (hierarchy.coreSize() * 2 > graph.vertexCount()){
+            return AStar.shortestPath(graph, origin, destination, metric);
+        }
+        return hierarchy.shortestPath(origin, destination);
+    }
 
+    /*
+     * Precomputes every airport pair's best price and duration on the route graph (see
+     * AllPairsMatrix) so findPath and findPaths become lookups. Optional - it costs a
+     * few seconds and ~32 MB - and dropped automatically when the graph changes.
+     */
+    public void prepareAllPairsMatrix(){
+        this.allPairsMatrix = AllPairsMatrix.build(getRouteGraph());
+    }
+
+    // The prepared all-pairs matrix, or null if none was prepared for the current graph
+    public AllPairsMatrix getAllPairsMatrix(){
+        AllPairsMatrix matrix = this.allPairsMatrix;
+        return matrix != null && matrix.getGraph() == getRouteGraph() ? matrix : null;
+    }
+
+    /*
+     * Builds the route graph's contraction hierarchies now, one metric per thread, so
+     * findPath can use them; until then it runs a bidirectional search. Does nothing
+     * once the all-pairs matrix is prepared, since queries then never reach them.
+     */
+    public void prepareContractionHierarchies(){
+        if (getAllPairsMatrix() != null) return;
+        CompactFlightGraph graph = getRouteGraph();
+        Arrays.stream(Metric.values()).parallel().forEach(graph::contractionHierarchy);
+    }
+
+    // Caps the memory getShortestPathTree's cache may hold; takes effect on the next
+    // cache built, so set it before the first query
+    public void setTreeCacheMegabytes(int megabytes){
+        this.treeCacheBytes = megabytes * 1024L * 1024;
+    }
+
+    /*
+     * Tree of best paths from an airport to every other one over the route graph, or
+     * null if the airport is missing. Read off the origin's row when the all-pairs
+     * matrix has been prepared; otherwise served from a process-wide LRU cache (see
+     * ShortestPathTreeCache) that is dropped whenever the graph changes.
+     */
+    public ShortestPathTree getShortestPathTree(String originCode, Metric metric){
+        CompactFlightGraph graph = getRouteGraph();
+        int origin = graph.idOf(originCode);
+        if (origin < 0) return null;
+
+        AllPairsMatrix matrix = getAllPairsMatrix();
+        if (matrix != null){
+            return matrix.tree(origin, metric);
+        }
+
+        ShortestPathTreeCache cache = this.treeCache;
+        if (cache == null || cache.getGraph() != graph){
+            // Building twice under a race is harmless - one of the two caches wins
+            cache = new ShortestPathTreeCache(graph, treeCacheBytes);
+            this.treeCache = cache;
+        }
+        return cache.get(origin, metric);
+    }
+
+    /*
+     * Up to k cheapest loopless paths between two airports by the given metric, each
+     * with at most maxStops stops, over the route graph. Empty if either airport is
+     * missing or no path fits.
+     *
+     * The same point-to-point lookup as findPath answers the first question cheaply:
+     * an unreachable pair needs no further search, and if the overall cheapest path
+     * is within the stop limit it seeds Yen's algorithm as its first path.
+     */
+    public List<ShortestPath> findPaths(String originCode, String destinationCode, Metric metric, int k, int maxStops){
+        CompactFlightGraph graph = getRouteGraph();
+        int origin = graph.idOf(originCode);
+        int destination = graph.idOf(destinationCode);
+        if (origin < 0 || destination < 0) return new ArrayList<>();
+
+        AllPairsMatrix matrix = getAllPairsMatrix();
+        ShortestPath cheapest = matrix != null
+                ? matrix.path(origin, destination, metric)
+                : searchPath(graph, origin, destination, metric);
+        if (cheapest == null) return new ArrayList<>();
+        ShortestPath first = cheapest.stops() <= maxStops ? cheapest : null;
+        return KShortestPaths.find(graph, origin, destination, metric, k, maxStops, first);
+    }
+
+    /*
+     * The prepared network as flat arrays: the flight and route graphs' CSR columns
+     * and whichever route graph contraction hierarchies have been built (null
+     * otherwise). FlightSnapshot saves this so restore() can skip sorting the
+     * edges and contracting the network.
+     */
+    public record Prepared(CompactFlightGraph.Columns flights, CompactFlightGraph.Columns routes,
+            ContractionHierarchy.Columns priceHierarchy, ContractionHierarchy.Columns durationHierarchy) {}
+
+    public Prepared prepared(){
+        CompactFlightGraph graph = getCompactGraph();
+        CompactFlightGraph routes = graph.routeGraph();
+        ContractionHierarchy price = routes.builtHierarchy(Metric.PRICE);
+        ContractionHierarchy duration = routes.builtHierarchy(Metric.DURATION);
+        return new Prepared(graph.columns(), routes.columns(),
+                price == null ? null : price.columns(), duration == null ? null : duration.columns());
+    }
+
+    /*
+     * A graph over airports (in the same order as when it was saved) with the
+     * prepared edges and hierarchies adopted as they are. No edge list is kept; a
+     * later change recreates it from the restored graph as usual.
+     */
+    public static FlightGraph restore(Airport[] airports, Prepared prepared){
+        FlightGraph flightNetwork = initalizeFlightGraph(airports);
+        CompactFlightGraph.Columns flights = prepared.flights();
+        CompactFlightGraph graph = CompactFlightGraph.fromColumns(
+                flightNetwork.vertices.toArray(new AirportVertex[0]), flights, prepared.routes());
+        CompactFlightGraph routes = graph.routeGraph();
+        if (prepared.priceHierarchy() != null) {
+            routes.useHierarchy(ContractionHierarchy.fromColumns(routes, Metric.PRICE, prepared.priceHierarchy()));
+        }
+        if (prepared.durationHierarchy() != null) {
+            routes.useHierarchy(ContractionHierarchy.fromColumns(routes, Metric.DURATION, prepared.durationHierarchy()));
+        }
+        flightNetwork.compactGraph = graph;
+        flightNetwork.edgeList = null;
+        return flightNetwork;
     }
 
     public ArrayList<AirportVertex> getVertices() {
@@ -103,11 +331,15 @@ public class FlightGraph {
                 AirportVertex dest = flightNetwork.getVertex(f.getDestination().getCode());
 
                 if (origin != null && dest != null) {
-                    // Edge has: price (weight), duration, and flight number
-                    flightNetwork.addEdge(origin, dest, f.getPrice(), f.getDuration(), f.getFlightNumber());
+                    // Edge has: price (weight), duration, and flight number.
+                    // Only the primitive CSR row is stored - no per-flight Edge object.
+                    flightNetwork.addCompactEdge(origin, dest, f.getPrice(), f.getDuration(), f.getFlightNumber());
                 }
             }
         }
+        // Build the CSR arrays and route summary once up front so the first request
+        // doesn't pay for them
+        flightNetwork.getRouteGraph();
     }
 
     public static FlightGraph initalizeFlightGraph(Airport[] airports){
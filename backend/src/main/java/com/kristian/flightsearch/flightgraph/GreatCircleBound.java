@@ -0,0 +1,75 @@
+package com.kristian.flightsearch.flightgraph;
+
+import com.kristian.flightsearch.datagenerator.FlightDistanceCalculator;
+
+/*
+ * Admissible A* heuristic for a CompactFlightGraph: a lower bound on the price or
+ * duration still needed to get from a vertex to the target, derived from the
+ * great-circle distance between the two airports.
+ *
+ * For each metric we take the smallest weight-per-km over every edge in the graph
+ * (for durations that is roughly the cruise-speed term in FlightDurationCalculator,
+ * for prices it is the cheapest fare per km on offer). Any path from v to t flies
+ * at least distance(v, t) km, and no km costs less than that rate, so
+ *
+ *   h(v) = rate * distance(v, t)
+ *
+ * never overestimates. The same argument on a single edge (triangle inequality on
+ * the sphere) makes it consistent, so A* never has to reopen a settled vertex.
+ *
+ * Latitude/longitude radians and cos(latitude) are precomputed per vertex so each
+ * evaluation is one haversine with no toRadians/cos calls on the endpoints.
+ */
+class GreatCircleBound {
+
+    // Shaves floating point noise so rounding can never push h above the true cost
+    private static final double SAFETY = 1.0 - 1e-9;
+
+    private final double[] latRad;
+    private final double[] lonRad;
+    private final double[] cosLat;
+    private final double pricePerKm;
+    private final double minutesPerKm;
+
+    GreatCircleBound(CompactFlightGraph g) {
+        int n = g.vertexCount();
+        latRad = new double[n];
+        lonRad = new double[n];
+        cosLat = new double[n];
+        for (int v = 0; v < n; v++) {
+            latRad[v] = Math.toRadians(g.airport(v).getLat());
+            lonRad[v] = Math.toRadians(g.airport(v).getLon());
+            cosLat[v] = Math.cos(latRad[v]);
+        }
+
+        double minPrice = Double.POSITIVE_INFINITY;
+        double minMinutes = Double.POSITIVE_INFINITY;
+        for (int u = 0; u < n; u++) {
+            for (int e = g.firstEdge(u); e < g.endEdge(u); e++) {
+                double km = distanceKm(u, g.target(e));
+                // Edges between co-located airports say nothing about the rate
+                if (km <= 0) continue;
+                minPrice = Math.min(minPrice, g.price(e) / km);
+                minMinutes = Math.min(minMinutes, g.durationMinutes(e) / km);
+            }
+        }
+        // No usable edges: fall back to h = 0, i.e. plain Dijkstra
+        pricePerKm = Double.isInfinite(minPrice) ? 0 : minPrice * SAFETY;
+        minutesPerKm = Double.isInfinite(minMinutes) ? 0 : minMinutes * SAFETY;
+    }
+
+    double distanceKm(int u, int v) {
+        return FlightDistanceCalculator.calcDistance(latRad[u], lonRad[u], cosLat[u],
+                latRad[v], lonRad[v], cosLat[v]);
+    }
+
+    double ratePerKm(Metric metric) {
+        return metric == Metric.PRICE ? pricePerKm : minutesPerKm;
+    }
+
+    // Lower bound on the cost from v to target, rounded down to stay admissible
+    int estimate(int v, int target, double ratePerKm) {
+        if (ratePerKm == 0 || v == target) return 0;
+        return (int) (ratePerKm * distanceKm(v, target) * SAFETY);
+    }
+}
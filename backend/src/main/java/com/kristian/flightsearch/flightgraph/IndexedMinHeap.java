@@ -0,0 +1,112 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.Arrays;
+
+/*
+ * Binary min-heap of vertex ids keyed by an int priority, with a position index so
+ * a vertex already in the heap can have its key decreased in place instead of being
+ * pushed a second time. Each vertex appears at most once, so the heap never holds
+ * more than vertexCount entries and never allocates after it has been sized.
+ */
+class IndexedMinHeap {
+
+    private int[] heap = new int[0];      // heap[i] = vertex id
+    private int[] keys = new int[0];      // keys[v] = priority of vertex v while it is queued
+    private int[] position = new int[0];  // position[v] = index in heap, or -1 if not queued
+    private int size;
+
+    void ensureCapacity(int vertexCount) {
+        if (position.length >= vertexCount) return;
+        heap = new int[vertexCount];
+        keys = new int[vertexCount];
+        position = new int[vertexCount];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean contains(int v) {
+        return position[v] >= 0;
+    }
+
+    int peekKey() {
+        return keys[heap[0]];
+    }
+
+    // Inserts v, or lowers its key if it is already queued with a larger one
+    void insertOrDecrease(int v, int key) {
+        int i = position[v];
+        if (i < 0) {
+            i = size++;
+            heap[i] = v;
+            position[v] = i;
+            keys[v] = key;
+            siftUp(i);
+        } else if (key < keys[v]) {
+            keys[v] = key;
+            siftUp(i);
+        }
+    }
+
+    // Removes and returns the vertex with the smallest key
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Empties the heap, touching only the entries still queued
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int v = heap[i];
+        int key = keys[v];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int p = heap[parent];
+            if (keys[p] <= key) break;
+            heap[i] = p;
+            position[p] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+
+    private void siftDown(int i) {
+        int v = heap[i];
+        int key = keys[v];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) child = right;
+            int c = heap[child];
+            if (key <= keys[c]) break;
+            heap[i] = c;
+            position[c] = i;
+            i = child;
+        }
+        heap[i] = v;
+        position[v] = i;
+    }
+}
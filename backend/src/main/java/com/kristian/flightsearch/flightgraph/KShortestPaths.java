@@ -0,0 +1,219 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Yen's algorithm: the k cheapest loopless paths between two airports, each with at
+ * most maxStops intermediate airports.
+ *
+ * The best path comes from a point-to-point search. Every further path is found by
+ * taking a path already accepted, keeping a prefix of it (the root), and searching
+ * for a new way from the last root airport (the spur) to the target that leaves
+ * through an edge none of the accepted paths with that same root used, avoiding the
+ * root's airports so the result stays loopless. The cheapest such candidate becomes
+ * the next path.
+ *
+ * Each spur search is Dijkstra over (airport, legs used) states so the stop cap
+ * holds exactly - a plain Dijkstra could return a cheaper path with too many stops
+ * and miss a valid one. Banned edges and airports are marked with generation stamps,
+ * so clearing them between spur searches is O(1).
+ */
+public class KShortestPaths {
+
+    // Scratch space per request thread
+    private static final ThreadLocal<KShortestPaths> SCRATCH = ThreadLocal.withInitial(KShortestPaths::new);
+
+    private int[] dist = new int[0];
+    private int[] prevState = new int[0];
+    private int[] prevEdge = new int[0];
+    private int[] stamp = new int[0];
+    private int generation;
+    private final IndexedMinHeap heap = new IndexedMinHeap();
+
+    private int[] bannedEdge = new int[0];
+    private int[] bannedVertex = new int[0];
+    private int banGeneration;
+
+    /**
+     * Up to k loopless paths from source to target with at most maxStops stops,
+     * cheapest first by the given metric. Returns an empty list if there is none.
+     */
+    public static List<ShortestPath> find(CompactFlightGraph g, int source, int target, Metric metric,
+            int k, int maxStops) {
+        return SCRATCH.get().yen(g, source, target, metric, k, maxStops + 1, null);
+    }
+
+    /**
+     * Same as find(), starting from a cheapest path the caller already has (e.g. from
+     * a ContractionHierarchy query) instead of searching for it. first must be a
+     * cheapest source -> target path on g with at most maxStops stops.
+     */
+    public static List<ShortestPath> find(CompactFlightGraph g, int source, int target, Metric metric,
+            int k, int maxStops, ShortestPath first) {
+        return SCRATCH.get().yen(g, source, target, metric, k, maxStops + 1, first);
+    }
+
+    private List<ShortestPath> yen(CompactFlightGraph g, int source, int target, Metric metric, int k, int maxLegs,
+            ShortestPath first) {
+        List<ShortestPath> accepted = new ArrayList<>();
+        if (source == target || k <= 0) return accepted;
+        ensureCapacity(g, maxLegs);
+
+        if (first == null) {
+            nextBanGeneration();
+            first = spur(g, source, target, metric, maxLegs);
+        }
+        if (first == null) return accepted;
+        accepted.add(first);
+
+        PriorityQueue<ShortestPath> candidates = new PriorityQueue<>((a, b) -> Integer.compare(a.cost(), b.cost()));
+        while (accepted.size() < k) {
+            ShortestPath last = accepted.get(accepted.size() - 1);
+
+            // Spur from every airport on the last path except the target
+            for (int i = 0; i < last.edges().length; i++) {
+                int spurVertex = last.vertices()[i];
+                nextBanGeneration();
+
+                // Edges leaving the spur that accepted paths with this root already took
+                for (ShortestPath p : accepted) {
+                    if (p.edges().length > i && sameRoot(p, last, i)) bannedEdge[p.edges()[i]] = banGeneration;
+                }
+                // Root airports other than the spur itself, to keep the path loopless
+                for (int j = 0; j < i; j++) bannedVertex[last.vertices()[j]] = banGeneration;
+
+                ShortestPath spurPath = spur(g, spurVertex, target, metric, maxLegs - i);
+                if (spurPath == null) continue;
+
+                ShortestPath candidate = join(g, last, i, spurPath, metric);
+                if (!containsPath(candidates, candidate) && !containsPath(accepted, candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+
+            if (candidates.isEmpty()) break;
+            accepted.add(candidates.poll());
+        }
+        return accepted;
+    }
+
+    // True if a and b share their first i edges
+    private static boolean sameRoot(ShortestPath a, ShortestPath b, int i) {
+        for (int j = 0; j < i; j++) {
+            if (a.edges()[j] != b.edges()[j]) return false;
+        }
+        return true;
+    }
+
+    private static boolean containsPath(Iterable<ShortestPath> paths, ShortestPath path) {
+        for (ShortestPath p : paths) {
+            if (Arrays.equals(p.edges(), path.edges())) return true;
+        }
+        return false;
+    }
+
+    // Root of base up to vertex i, followed by the spur path
+    private static ShortestPath join(CompactFlightGraph g, ShortestPath base, int i, ShortestPath spur, Metric metric) {
+        int[] vertices = new int[i + spur.vertices().length];
+        int[] edges = new int[i + spur.edges().length];
+        System.arraycopy(base.vertices(), 0, vertices, 0, i);
+        System.arraycopy(spur.vertices(), 0, vertices, i, spur.vertices().length);
+        System.arraycopy(base.edges(), 0, edges, 0, i);
+        System.arraycopy(spur.edges(), 0, edges, i, spur.edges().length);
+
+        int cost = spur.cost();
+        for (int j = 0; j < i; j++) cost += g.weight(edges[j], metric);
+        return new ShortestPath(g, cost, vertices, edges);
+    }
+
+    /*
+     * Dijkstra from source to target over states (vertex, legs) with legs <= maxLegs,
+     * skipping banned edges and vertices. Returns null if target can't be reached.
+     */
+    private ShortestPath spur(CompactFlightGraph g, int source, int target, Metric metric, int maxLegs) {
+        if (maxLegs <= 0) return null;
+        int n = g.vertexCount();
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] weights = g.weights(metric);
+
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        heap.clear();
+        label(source, 0, -1, -1);
+        heap.insertOrDecrease(source, 0);
+
+        int found = -1;
+        while (!heap.isEmpty()) {
+            int state = heap.poll();
+            int v = state % n;
+            if (v == target) {
+                found = state;
+                break;
+            }
+            int legs = state / n;
+            if (legs == maxLegs) continue;
+
+            int d = dist[state];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = targets[e];
+                if (bannedEdge[e] == banGeneration || bannedVertex[w] == banGeneration) continue;
+                int next = (legs + 1) * n + w;
+                int alternative = d + weights[e];
+                if (stamp[next] != generation || alternative < dist[next]) {
+                    label(next, alternative, state, e);
+                    heap.insertOrDecrease(next, alternative);
+                }
+            }
+        }
+        if (found < 0) return null;
+
+        int length = found / n + 1;
+        int[] vertices = new int[length];
+        int[] edges = new int[length - 1];
+        int state = found;
+        for (int i = length - 1; i >= 0; i--) {
+            vertices[i] = state % n;
+            if (i > 0) edges[i - 1] = prevEdge[state];
+            state = prevState[state];
+        }
+        return new ShortestPath(g, dist[found], vertices, edges);
+    }
+
+    private void label(int state, int distance, int previous, int edge) {
+        stamp[state] = generation;
+        dist[state] = distance;
+        prevState[state] = previous;
+        prevEdge[state] = edge;
+    }
+
+    private void nextBanGeneration() {
+        if (++banGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(bannedEdge, 0);
+            Arrays.fill(bannedVertex, 0);
+            banGeneration = 1;
+        }
+    }
+
+    private void ensureCapacity(CompactFlightGraph g, int maxLegs) {
+        int states = g.vertexCount() * (maxLegs + 1);
+        if (stamp.length < states) {
+            dist = new int[states];
+            prevState = new int[states];
+            prevEdge = new int[states];
+            stamp = new int[states];
+            generation = 0;
+        }
+        heap.ensureCapacity(states);
+        if (bannedEdge.length < g.edgeCount() || bannedVertex.length < g.vertexCount()) {
+            bannedEdge = new int[Math.max(bannedEdge.length, g.edgeCount())];
+            bannedVertex = new int[Math.max(bannedVertex.length, g.vertexCount())];
+            banGeneration = 0;
+        }
+    }
+}
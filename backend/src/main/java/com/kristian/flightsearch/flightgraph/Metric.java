@@ -0,0 +1,10 @@
+package com.kristian.flightsearch.flightgraph;
+
+/*
+ * The edge weight a search minimises: ticket price in whole currency units,
+ * or flight duration in minutes.
+ */
+public enum Metric {
+    PRICE,
+    DURATION
+}
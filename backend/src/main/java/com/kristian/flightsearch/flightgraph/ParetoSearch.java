@@ -0,0 +1,208 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.Arrays;
+
+/*
+ * Multi-criteria label-setting search (Martins' algorithm): instead of one best
+ * distance per airport it keeps every route that is not beaten on all of
+ * price, total flight minutes and number of stops at once - the Pareto set.
+ *
+ * Labels are (price, minutes, legs) triples in a primitive pool. The queue pops them
+ * in lexicographic (price, minutes, legs) order, so a popped label can only be
+ * dominated by one that was popped before it; if none of the permanent labels at
+ * its airport dominates it, it is Pareto-optimal and becomes permanent too. New
+ * labels are also dropped on creation if the target already has a dominating
+ * permanent label, which keeps the queue small.
+ *
+ * The number of legs is capped (maxStops + 1), which bounds the label sets: on the
+ * full network the search stays proportional to a few labels per airport.
+ *
+ * Run it over the flight-level graph rather than the route graph - a route edge
+ * pairs the cheapest price with the shortest duration even when no single flight
+ * has both.
+ */
+public class ParetoSearch {
+
+    // One reusable label pool per request thread
+    private static final ThreadLocal<ParetoSearch> POOL = ThreadLocal.withInitial(ParetoSearch::new);
+
+    private int[] labelPrice = new int[256];
+    private int[] labelMinutes = new int[256];
+    private int[] labelLegs = new int[256];
+    private int[] labelVertex = new int[256];
+    private int[] labelParent = new int[256];
+    private int[] labelEdge = new int[256];
+    private int[] nextInBag = new int[256];
+    private int labelCount;
+
+    // Permanent labels per vertex as a linked list through nextInBag
+    private int[] bagHead = new int[0];
+    private int[] bagStamp = new int[0];
+    private int generation;
+
+    // Binary heap of label ids ordered by (price, minutes, legs)
+    private int[] heap = new int[256];
+    private int heapSize;
+
+    /**
+     * Pareto-optimal routes from source to every airport with at most maxStops stops.
+     */
+    public static ParetoSet run(CompactFlightGraph g, int source, int maxStops) {
+        return POOL.get().search(g, source, maxStops + 1);
+    }
+
+    private ParetoSet search(CompactFlightGraph g, int source, int maxLegs) {
+        reset(g.vertexCount());
+        int[] offsets = g.offsets();
+        int[] targets = g.targets();
+        int[] prices = g.weights(Metric.PRICE);
+        int[] minutes = g.weights(Metric.DURATION);
+
+        push(newLabel(0, 0, 0, source, -1, -1));
+        int permanent = 0;
+
+        while (heapSize > 0) {
+            int label = pop();
+            int v = labelVertex[label];
+            if (dominatedAt(v, labelPrice[label], labelMinutes[label], labelLegs[label])) continue;
+
+            nextInBag[label] = bag(v);
+            bagHead[v] = label;
+            bagStamp[v] = generation;
+            permanent++;
+
+            if (labelLegs[label] == maxLegs) continue;
+            int legs = labelLegs[label] + 1;
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int w = targets[e];
+                if (w == source) continue;
+                int price = labelPrice[label] + prices[e];
+                int mins = labelMinutes[label] + minutes[e];
+                if (dominatedAt(w, price, mins, legs)) continue;
+                push(newLabel(price, mins, legs, w, label, e));
+            }
+        }
+
+        return toParetoSet(g, source, permanent);
+    }
+
+    private void reset(int vertexCount) {
+        if (bagStamp.length < vertexCount) {
+            bagHead = new int[vertexCount];
+            bagStamp = new int[vertexCount];
+            generation = 0;
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(bagStamp, 0);
+            generation = 1;
+        }
+        labelCount = 0;
+        heapSize = 0;
+    }
+
+    private int bag(int v) {
+        return bagStamp[v] == generation ? bagHead[v] : -1;
+    }
+
+    // True if a permanent label at v is at least as good on every criterion
+    private boolean dominatedAt(int v, int price, int minutes, int legs) {
+        for (int l = bag(v); l >= 0; l = nextInBag[l]) {
+            if (labelPrice[l] <= price && labelMinutes[l] <= minutes && labelLegs[l] <= legs) return true;
+        }
+        return false;
+    }
+
+    private int newLabel(int price, int minutes, int legs, int vertex, int parent, int edge) {
+        if (labelCount == labelPrice.length) {
+            int capacity = labelCount * 2;
+            labelPrice = Arrays.copyOf(labelPrice, capacity);
+            labelMinutes = Arrays.copyOf(labelMinutes, capacity);
+            labelLegs = Arrays.copyOf(labelLegs, capacity);
+            labelVertex = Arrays.copyOf(labelVertex, capacity);
+            labelParent = Arrays.copyOf(labelParent, capacity);
+            labelEdge = Arrays.copyOf(labelEdge, capacity);
+            nextInBag = Arrays.copyOf(nextInBag, capacity);
+        }
+        int l = labelCount++;
+        labelPrice[l] = price;
+        labelMinutes[l] = minutes;
+        labelLegs[l] = legs;
+        labelVertex[l] = vertex;
+        labelParent[l] = parent;
+        labelEdge[l] = edge;
+        return l;
+    }
+
+    private boolean less(int a, int b) {
+        if (labelPrice[a] != labelPrice[b]) return labelPrice[a] < labelPrice[b];
+        if (labelMinutes[a] != labelMinutes[b]) return labelMinutes[a] < labelMinutes[b];
+        return labelLegs[a] < labelLegs[b];
+    }
+
+    private void push(int label) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(label, heap[parent])) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = label;
+    }
+
+    private int pop() {
+        int top = heap[0];
+        int last = heap[--heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < heapSize && less(heap[right], heap[child])) child = right;
+            if (!less(heap[child], last)) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (heapSize > 0) heap[i] = last;
+        return top;
+    }
+
+    // Copies the permanent labels out of the pool, grouped by vertex, cheapest first
+    private ParetoSet toParetoSet(CompactFlightGraph g, int source, int permanent) {
+        int n = g.vertexCount();
+        int[] offsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            int count = 0;
+            for (int l = bag(v); l >= 0; l = nextInBag[l]) count++;
+            offsets[v + 1] = offsets[v] + count;
+        }
+
+        // Pool label id -> option id, so parents can be renumbered
+        int[] optionOf = new int[labelCount];
+        int[] prices = new int[permanent];
+        int[] minutes = new int[permanent];
+        int[] legs = new int[permanent];
+        int[] parents = new int[permanent];
+        int[] edges = new int[permanent];
+        int[] labels = new int[permanent];
+        for (int v = 0; v < n; v++) {
+            // Bags are built newest-first; fill backwards so each vertex reads cheapest-first
+            int o = offsets[v + 1];
+            for (int l = bag(v); l >= 0; l = nextInBag[l]) {
+                o--;
+                optionOf[l] = o;
+                labels[o] = l;
+            }
+        }
+        for (int o = 0; o < permanent; o++) {
+            int l = labels[o];
+            prices[o] = labelPrice[l];
+            minutes[o] = labelMinutes[l];
+            legs[o] = labelLegs[l];
+            parents[o] = labelParent[l] >= 0 ? optionOf[labelParent[l]] : -1;
+            edges[o] = labelEdge[l];
+        }
+        return new ParetoSet(g, source, offsets, prices, minutes, legs, parents, edges);
+    }
+}
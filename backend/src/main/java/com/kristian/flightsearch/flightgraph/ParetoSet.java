@@ -0,0 +1,85 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.ArrayList;
+
+/*
+ * Result of a ParetoSearch: for every airport, the routes from the source that no
+ * other route beats on price, total flight minutes and stops at once. Options of
+ * airport v are ids firstOption(v) .. endOption(v)-1, ordered cheapest first (and
+ * therefore slowest or with more stops first among the trade-offs).
+ */
+public class ParetoSet {
+
+    private final CompactFlightGraph graph;
+    private final int source;
+    private final int[] offsets;
+    private final int[] prices;
+    private final int[] minutes;
+    private final int[] legs;
+    private final int[] parents;
+    private final int[] edges;
+
+    ParetoSet(CompactFlightGraph graph, int source, int[] offsets, int[] prices, int[] minutes,
+            int[] legs, int[] parents, int[] edges) {
+        this.graph = graph;
+        this.source = source;
+        this.offsets = offsets;
+        this.prices = prices;
+        this.minutes = minutes;
+        this.legs = legs;
+        this.parents = parents;
+        this.edges = edges;
+    }
+
+    public CompactFlightGraph getGraph() {
+        return graph;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public int firstOption(int v) {
+        return offsets[v];
+    }
+
+    public int endOption(int v) {
+        return offsets[v + 1];
+    }
+
+    public int optionCount(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    public int price(int option) {
+        return prices[option];
+    }
+
+    public int durationMinutes(int option) {
+        return minutes[option];
+    }
+
+    // Intermediate airports on the route (0 for a direct flight)
+    public int stops(int option) {
+        return Math.max(legs[option] - 1, 0);
+    }
+
+    // Edge ids of the route, first flight first
+    public int[] edges(int option) {
+        int[] path = new int[legs[option]];
+        int o = option;
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = edges[o];
+            o = parents[o];
+        }
+        return path;
+    }
+
+    // Airport codes of the route, e.g. [YYZ, ORD, LAX]
+    public ArrayList<String> codes(int option) {
+        ArrayList<String> codes = new ArrayList<>(legs[option] + 1);
+        codes.add(graph.code(source));
+        for (int e : edges(option)) codes.add(graph.code(graph.target(e)));
+        return codes;
+    }
+}
@@ -1,23 +0,0 @@
-package com.kristian.flightsearch.flightgraph;
-public class QueueObject implements Comparable<QueueObject> {
-    public AirportVertex vertex;
-    public Integer priority;
-
-    public QueueObject(AirportVertex v, Integer p){
-        this.vertex = v;
-        this.priority = p;
-    }
-
-    @Override
-    public int compareTo(QueueObject o) {
-        if (this.priority == o.priority){
-            return 0;
-        }
-        else if (this.priority > o.priority){
-            return 1;
-        }
-        else {
-            return -1;
-        }
-    }
-}
\ No newline at end of file
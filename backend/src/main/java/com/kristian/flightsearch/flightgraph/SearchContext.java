@@ -0,0 +1,155 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/*
+ * Reusable scratch space for int-indexed searches: dist/prev arrays sized to the
+ * graph and an indexed heap. Dijkstra keeps one per thread, so repeated searches
+ * (one per leg per permutation in MultiCitySearch) allocate nothing.
+ *
+ * Instead of refilling dist[] with "infinity" before every search, each vertex
+ * carries the generation it was last written in; an entry from an older
+ * generation reads as unreachable. Starting a search is therefore O(1).
+ *
+ * The results describe the most recent search only and are overwritten by the
+ * next search on the same thread - call toTree() to keep a copy.
+ */
+public class SearchContext {
+
+    private CompactFlightGraph graph;
+    private int source = -1;
+    private Metric metric;
+
+    private int[] dist = new int[0];
+    private int[] prev = new int[0];
+    private int[] prevEdge = new int[0];
+    private int[] stamp = new int[0];
+    private int generation;
+    private int settled;
+
+    final IndexedMinHeap heap = new IndexedMinHeap();
+
+    // Prepares for a new search from source, growing the arrays if the graph is larger
+    void reset(CompactFlightGraph graph, int source, Metric metric) {
+        int n = graph.vertexCount();
+        if (stamp.length < n) {
+            dist = new int[n];
+            prev = new int[n];
+            prevEdge = new int[n];
+            stamp = new int[n];
+            generation = 0;
+        }
+        heap.ensureCapacity(n);
+        heap.clear();
+
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        this.graph = graph;
+        this.source = source;
+        this.metric = metric;
+        this.settled = 0;
+        label(source, 0, -1, -1);
+    }
+
+    // Records a (better) distance to v reached from u over edge e
+    void label(int v, int distance, int u, int e) {
+        stamp[v] = generation;
+        dist[v] = distance;
+        prev[v] = u;
+        prevEdge[v] = e;
+    }
+
+    // Called once per vertex taken off the queue
+    void settle() {
+        settled++;
+    }
+
+    public CompactFlightGraph getGraph() {
+        return graph;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    // Number of vertices the last search expanded - a measure of how much work it did
+    public int settledCount() {
+        return settled;
+    }
+
+    public int distanceTo(int v) {
+        return stamp[v] == generation ? dist[v] : ShortestPathTree.UNREACHABLE;
+    }
+
+    public boolean isReachable(int v) {
+        return stamp[v] == generation;
+    }
+
+    // Previous vertex on the best path to v, or -1 for the source and unreached vertices
+    public int previous(int v) {
+        return stamp[v] == generation ? prev[v] : -1;
+    }
+
+    // Edge id used to reach v, or -1 for the source and unreached vertices
+    public int previousEdge(int v) {
+        return stamp[v] == generation ? prevEdge[v] : -1;
+    }
+
+    // Path from the source to target as vertex ids, or null if target wasn't reached
+    public int[] pathTo(int target) {
+        if (!isReachable(target)) return null;
+        int length = 1;
+        for (int v = target; v != source; v = prev[v]) length++;
+
+        int[] path = new int[length];
+        int v = target;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = v;
+            v = prev[v];
+        }
+        return path;
+    }
+
+    // Same as pathTo but returns airport codes, e.g. [YYZ, ORD, JFK]
+    public ArrayList<String> codePathTo(int target) {
+        int[] path = pathTo(target);
+        if (path == null) return null;
+        ArrayList<String> codes = new ArrayList<>(path.length);
+        for (int v : path) codes.add(graph.code(v));
+        return codes;
+    }
+
+    /*
+     * Path from the source to target with the edge ids used, or null if target wasn't
+     * reached. For a backward search (run from the target over incoming edges) the
+     * result reads target-of-search first; see BidirectionalDijkstra.
+     */
+    public ShortestPath toPath(int target) {
+        int[] vertices = pathTo(target);
+        if (vertices == null) return null;
+        int[] edges = new int[vertices.length - 1];
+        for (int i = 1; i < vertices.length; i++) {
+            edges[i - 1] = prevEdge[vertices[i]];
+        }
+        return new ShortestPath(graph, dist[target], vertices, edges);
+    }
+
+    // Copies the current results into an immutable tree that survives the next search
+    public ShortestPathTree toTree() {
+        int n = graph.vertexCount();
+        int[] treeDist = new int[n];
+        int[] treePrev = new int[n];
+        for (int v = 0; v < n; v++) {
+            treeDist[v] = distanceTo(v);
+            treePrev[v] = previous(v);
+        }
+        return new ShortestPathTree(graph, source, metric, treeDist, treePrev);
+    }
+}
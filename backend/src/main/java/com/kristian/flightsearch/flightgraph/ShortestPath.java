@@ -0,0 +1,23 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.ArrayList;
+
+/*
+ * One source-to-target path found by a point-to-point search.
+ * vertices holds dense vertex ids source first; edges[i] is the edge id flown
+ * from vertices[i] to vertices[i + 1], so edges.length == vertices.length - 1.
+ */
+public record ShortestPath(CompactFlightGraph graph, int cost, int[] vertices, int[] edges) {
+
+    // Airport codes along the path, e.g. [YYZ, ORD, JFK]
+    public ArrayList<String> codes() {
+        ArrayList<String> codes = new ArrayList<>(vertices.length);
+        for (int v : vertices) codes.add(graph.code(v));
+        return codes;
+    }
+
+    // Number of intermediate airports between source and target
+    public int stops() {
+        return vertices.length - 2;
+    }
+}
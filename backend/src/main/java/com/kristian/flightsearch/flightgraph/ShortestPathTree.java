@@ -0,0 +1,94 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.ArrayList;
+
+/*
+ * Result of a single-source search over a CompactFlightGraph: the best known
+ * distance to every vertex and the previous vertex on that best path, both as
+ * plain int arrays indexed by dense vertex id.
+ */
+public class ShortestPathTree {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CompactFlightGraph graph;
+    private final int source;
+    private final Metric metric;
+    private final int[] dist;
+    private final int[] prev;
+
+    ShortestPathTree(CompactFlightGraph graph, int source, Metric metric, int[] dist, int[] prev) {
+        this.graph = graph;
+        this.source = source;
+        this.metric = metric;
+        this.dist = dist;
+        this.prev = prev;
+    }
+
+    public CompactFlightGraph getGraph() {
+        return graph;
+    }
+
+    public int getSource() {
+        return source;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    public int distanceTo(int v) {
+        return dist[v];
+    }
+
+    public boolean isReachable(int v) {
+        return dist[v] != UNREACHABLE;
+    }
+
+    // Previous vertex on the best path to v, or -1 for the source and unreachable vertices
+    public int previous(int v) {
+        return prev[v];
+    }
+
+    /*
+     * Walks the previous links back from target and returns the path as vertex ids,
+     * source first. Returns null if target is unreachable.
+     */
+    public int[] pathTo(int target) {
+        if (!isReachable(target)) return null;
+        int length = 1;
+        for (int v = target; v != source; v = prev[v]) length++;
+
+        int[] path = new int[length];
+        int v = target;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = v;
+            v = prev[v];
+        }
+        return path;
+    }
+
+    /*
+     * Same as pathTo but with the edges used, or null if target is unreachable. The
+     * tree doesn't keep edge ids, so each hop takes the lightest edge between its two
+     * airports - the one the search relaxed.
+     */
+    public ShortestPath toPath(int target) {
+        int[] vertices = pathTo(target);
+        if (vertices == null) return null;
+        int[] edges = new int[vertices.length - 1];
+        for (int i = 1; i < vertices.length; i++) {
+            edges[i - 1] = graph.edgeBetween(vertices[i - 1], vertices[i], metric);
+        }
+        return new ShortestPath(graph, dist[target], vertices, edges);
+    }
+
+    // Same as pathTo but returns airport codes, e.g. [YYZ, ORD, JFK]
+    public ArrayList<String> codePathTo(int target) {
+        int[] path = pathTo(target);
+        if (path == null) return null;
+        ArrayList<String> codes = new ArrayList<>(path.length);
+        for (int v : path) codes.add(graph.code(v));
+        return codes;
+    }
+}
@@ -0,0 +1,74 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Least-recently-used cache of single-source shortest path trees over one graph,
+ * keyed by (origin, metric). Multi-city searches keep starting legs from the same
+ * handful of airports - the home airport and each destination - so most legs can
+ * read their path off a tree some earlier leg or request already built.
+ *
+ * The cap is in bytes rather than entries: a tree is two int arrays the size of
+ * the graph, so the number that fit depends on how many airports there are.
+ * A cache describes exactly one graph; FlightGraph replaces it when the graph is
+ * rebuilt, which is how a reload invalidates it.
+ */
+public class ShortestPathTreeCache {
+
+    // About 2,300 trees on a 1,800-airport network unless the server sets SPT_CACHE_MB
+    public static final int DEFAULT_MAX_MB = 32;
+
+    private final CompactFlightGraph graph;
+    private final long maxBytes;
+    private final long treeBytes;
+    private final LinkedHashMap<Long, ShortestPathTree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public ShortestPathTreeCache(CompactFlightGraph graph, long maxBytes) {
+        this.graph = graph;
+        this.maxBytes = maxBytes;
+        // dist + prev arrays plus object headers
+        this.treeBytes = 8L * graph.vertexCount() + 64;
+    }
+
+    public CompactFlightGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * The tree of best paths from source by the given metric, built with Dijkstra on a
+     * miss. Safe to call from several request threads; two threads missing on the same
+     * key at once both search, and the second result replaces the first.
+     */
+    public ShortestPathTree get(int source, Metric metric) {
+        Long key = ((long) source << 1) | metric.ordinal();
+        synchronized (this) {
+            ShortestPathTree tree = trees.get(key);
+            if (tree != null) return tree;
+        }
+
+        // Search outside the lock so a miss doesn't hold up hits on other threads
+        ShortestPathTree tree = Dijkstra.shortestPathTree(graph, source, metric);
+        synchronized (this) {
+            if (trees.put(key, tree) == null) bytes += treeBytes;
+            Iterator<Map.Entry<Long, ShortestPathTree>> eldest = trees.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                bytes -= treeBytes;
+            }
+        }
+        return tree;
+    }
+
+    public synchronized int size() {
+        return trees.size();
+    }
+
+    public synchronized void clear() {
+        trees.clear();
+        bytes = 0;
+    }
+}
@@ -43,6 +43,11 @@ public class Flight {
         "G3", "AD"                                         // South America
     );
 
+    // For views over another flight's schedule (see PricedFlight), which set no fields
+    // of their own and skip the duration and price calculations
+    protected Flight() {
+    }
+
     public Flight(Airport origin, Airport destination, double distance, LocalTime departureTime){
         this.origin = origin;
         this.destination = destination;
@@ -65,6 +70,20 @@ public class Flight {
         this.price = flightPricer((int) distance);
     }
 
+    // A schedule restored as it was saved (see FlightSnapshot), keeping its duration
+    // and price rather than calculating them again
+    public Flight(Airport origin, Airport destination, double distance, LocalTime departureTime,
+            Duration duration, String flightNumber, int price){
+        this.origin = origin;
+        this.destination = destination;
+        this.distance = distance;
+        this.departureTime = departureTime;
+        this.duration = duration;
+        this.arrivalTime = this.departureTime.plus(this.duration);
+        this.flightNumber = flightNumber;
+        this.price = price;
+    }
+
     // Getters
     public Airport getOrigin() {
         return origin;
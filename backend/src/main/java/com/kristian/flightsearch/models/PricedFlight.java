@@ -0,0 +1,136 @@
+package com.kristian.flightsearch.models;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/*
+ * A scheduled flight as sold on one date at one price. Date-specific search results
+ * hold one of these per priced flight instead of a copy of the template: building
+ * a Flight reruns the duration calculation and the random pricer and allocates
+ * new times, all for the price to be overwritten straight after.
+ *
+ * Everything but the price and date is read from the template, which is shared
+ * by every date it flies on, so a view is read-only.
+ */
+public final class PricedFlight extends Flight {
+
+    private final Flight schedule;
+    private final int price;
+    private final LocalDate date;
+
+    public PricedFlight(Flight schedule, int price, LocalDate date) {
+        this.schedule = schedule;
+        this.price = price;
+        this.date = date;
+    }
+
+    public Flight getSchedule() {
+        return schedule;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    @Override
+    public Integer getPrice() {
+        return price;
+    }
+
+    @Override
+    public Airport getOrigin() {
+        return schedule.getOrigin();
+    }
+
+    @Override
+    public Airport getDestination() {
+        return schedule.getDestination();
+    }
+
+    @Override
+    public double getDistance() {
+        return schedule.getDistance();
+    }
+
+    @Override
+    public String getFlightNumber() {
+        return schedule.getFlightNumber();
+    }
+
+    @Override
+    public LocalTime getDepartureTime() {
+        return schedule.getDepartureTime();
+    }
+
+    @Override
+    public LocalTime getArrivalTime() {
+        return schedule.getArrivalTime();
+    }
+
+    @Override
+    public Duration getDuration() {
+        return schedule.getDuration();
+    }
+
+    @Override
+    public String getAirlineName() {
+        return schedule.getAirlineName();
+    }
+
+    @Override
+    public String getAircraftName() {
+        return schedule.getAircraftName();
+    }
+
+    // The schedule is shared with every other date, so none of it can be changed here
+
+    @Override
+    public void setOrigin(Airport origin) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDestination(Airport destination) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setPrice(int price) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setFlightNumber(String flightNumber) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAirlineName(String airlineName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setAircraftName(String aircraftName) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDistance(int distance) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDepartureTime(LocalTime departureTime) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setArrivalTime(LocalTime arrivalTime) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("PricedFlight is a read-only view of a shared schedule");
+    }
+}
@@ -156,6 +156,11 @@ public class Route {
         return isOvernightConnectionLeg != null && isOvernightConnectionLeg[i];
     }
 
+    // Number of connection airports across the whole route (0 for direct-only routes)
+    public int getStopCount() {
+        return airports.length - getIntendedAirports().length;
+    }
+
     public boolean hasConnections() {
         if (isConnectionLeg == null) return false;
         for (boolean b : isConnectionLeg) {
@@ -0,0 +1,107 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/*
+ * Depth-first branch and bound over destination orderings: the k cheapest round
+ * trips from home through every destination once, given a fixed cost per leg.
+ *
+ * Destinations are indices 0..n-1 and home is index n, as in HeldKarp. Every
+ * destination still to visit has to be flown into once more, and so does home,
+ * so the sum of their cheapest incoming legs is a lower bound on what is left
+ * of the trip. A partial ordering whose cost so far plus that bound can't beat
+ * the k-th best complete tour is dropped along with every ordering under it.
+ * Legs are tried cheapest first so good tours turn up early and the bound
+ * starts pruning quickly.
+ *
+ * Worst case is still every ordering (all legs costing the same), but the
+ * result never holds more than k of them.
+ */
+class BranchAndBound {
+
+    private BranchAndBound() {}
+
+    /**
+     * The k cheapest orderings, cheapest first. legCosts[from][to] is the cost of one
+     * leg, or HeldKarp.NO_LEG if it can't be flown; legCosts has n + 1 rows with home
+     * last. Fewer than k if fewer orderings can be flown.
+     */
+    static List<HeldKarp.Ordering> topOrderings(int[][] legCosts, int k) {
+        int n = legCosts.length - 1;
+        Search search = new Search(legCosts, k);
+        if (search.bound == HeldKarp.NO_LEG) return new ArrayList<>();
+
+        search.visit(n, 0, 0, search.bound);
+        return search.best.sorted();
+    }
+
+    private static class Search {
+        private final int[][] legCosts;
+        private final int n;
+        // Cheapest leg into each airport from anywhere else, home last
+        private final int[] minIncoming;
+        // successors[from] = destinations in order of leg cost from it, flyable ones only
+        private final int[][] successors;
+        private final int[] order;
+        private final boolean[] visited;
+        private final TopK<HeldKarp.Ordering> best;
+        // Sum of minIncoming over all destinations and home, or NO_LEG if one can't be reached
+        private final int bound;
+
+        Search(int[][] legCosts, int k) {
+            this.legCosts = legCosts;
+            this.n = legCosts.length - 1;
+            this.order = new int[n];
+            this.visited = new boolean[n];
+            this.best = new TopK<>(k, Comparator.comparingInt(HeldKarp.Ordering::cost));
+
+            minIncoming = new int[n + 1];
+            long total = 0;
+            for (int to = 0; to <= n; to++) {
+                int min = HeldKarp.NO_LEG;
+                for (int from = 0; from <= n; from++) {
+                    if (from != to) min = Math.min(min, legCosts[from][to]);
+                }
+                minIncoming[to] = min;
+                total += min;
+            }
+            boolean reachable = Arrays.stream(minIncoming).noneMatch(c -> c == HeldKarp.NO_LEG);
+            this.bound = reachable ? (int) total : HeldKarp.NO_LEG;
+
+            successors = new int[n + 1][];
+            for (int from = 0; from <= n; from++) {
+                final int f = from;
+                successors[from] = IntStream.range(0, n)
+                        .filter(to -> to != f && legCosts[f][to] != HeldKarp.NO_LEG)
+                        .boxed()
+                        .sorted(Comparator.comparingInt(to -> legCosts[f][to]))
+                        .mapToInt(Integer::intValue)
+                        .toArray();
+            }
+        }
+
+        // remaining = minIncoming of every unvisited destination plus home
+        void visit(int last, int depth, int cost, int remaining) {
+            if (best.isFull() && cost + remaining >= best.worst().cost()) return;
+
+            if (depth == n) {
+                int home = legCosts[last][n];
+                if (home == HeldKarp.NO_LEG) return;
+                best.offer(new HeldKarp.Ordering(order.clone(), cost + home));
+                return;
+            }
+
+            for (int next : successors[last]) {
+                if (visited[next]) continue;
+                visited[next] = true;
+                order[depth] = next;
+                visit(next, depth + 1, cost + legCosts[last][next], remaining - minIncoming[next]);
+                visited[next] = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Held-Karp dynamic programming over destination orderings: the k cheapest round
+ * trips from home through every destination exactly once, without enumerating
+ * all n! permutations.
+ *
+ * Destinations are indices 0..n-1 and home is index n. A state is (visited set,
+ * last destination), with the visited set as a bitmask. A dated trip also needs
+ * the current date, but since each stay has a fixed length the day offset of the
+ * next leg is the same for every ordering of a visited set - the sum of
+ * (stay + 1) over it - so the bitmask carries the date offset as well.
+ *
+ * Each state keeps its k cheapest partial orderings, sorted, as (cost, parent)
+ * pairs where parent points at one entry of the previous state. Extending all
+ * of them by one leg and keeping the k cheapest per target state gives the k
+ * cheapest complete tours at the end. That is O(2^n * n^2 * k) time and
+ * O(2^n * n * k) memory - about 8 MB at 12 destinations and k = 20.
+ */
+class HeldKarp {
+
+    // Beyond this the state table stops fitting comfortably in a request's memory
+    static final int MAX_DESTINATIONS = 12;
+
+    // Returned by a LegCost when there is no flight for that leg on that day
+    static final int NO_LEG = Integer.MAX_VALUE;
+
+    /*
+     * Cost of flying from -> to leaving dayOffset days after the trip starts, or
+     * NO_LEG. Index n is home.
+     */
+    interface LegCost {
+        int cost(int from, int to, int dayOffset);
+    }
+
+    // Destination indices in visiting order, and the tour's total cost
+    record Ordering(int[] stops, int cost) {}
+
+    private HeldKarp() {}
+
+    // Day offset of the leg that leaves after visiting every destination in mask
+    static int[] dayOffsets(int[] stayDays) {
+        int n = stayDays.length;
+        int[] offsets = new int[1 << n];
+        for (int mask = 1; mask < offsets.length; mask++) {
+            int lowest = Integer.numberOfTrailingZeros(mask);
+            offsets[mask] = offsets[mask & (mask - 1)] + stayDays[lowest] + 1;
+        }
+        return offsets;
+    }
+
+    /**
+     * The k cheapest orderings of n destinations, cheapest first, given the days spent
+     * at each. Fewer if fewer orderings can be flown; empty if none can.
+     */
+    static List<Ordering> topOrderings(int[] stayDays, LegCost legs, int k) {
+        int n = stayDays.length;
+        if (n < 1 || n > MAX_DESTINATIONS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_DESTINATIONS + " destinations supported: " + n);
+        }
+        int home = n;
+        int full = (1 << n) - 1;
+        int[] offsets = dayOffsets(stayDays);
+
+        // Slot r of state (mask, last) is at ((mask * n) + last) * k + r
+        int states = (1 << n) * n;
+        int[] costs = new int[states * k];
+        int[] parents = new int[states * k];
+        int[] counts = new int[states];
+
+        for (int first = 0; first < n; first++) {
+            int c = legs.cost(home, first, 0);
+            if (c != NO_LEG) insert(costs, parents, counts, (1 << first) * n + first, k, c, -1);
+        }
+
+        for (int mask = 1; mask < full; mask++) {
+            int offset = offsets[mask];
+            for (int last = 0; last < n; last++) {
+                int state = mask * n + last;
+                if (counts[state] == 0) continue;
+                for (int next = 0; next < n; next++) {
+                    if ((mask & (1 << next)) != 0) continue;
+                    int leg = legs.cost(last, next, offset);
+                    if (leg == NO_LEG) continue;
+                    int target = (mask | (1 << next)) * n + next;
+                    // Slots are sorted, so once one is rejected the rest will be too
+                    for (int r = 0; r < counts[state]; r++) {
+                        if (!insert(costs, parents, counts, target, k, costs[state * k + r] + leg, state * k + r)) break;
+                    }
+                }
+            }
+        }
+
+        // Close every complete state with the flight home and keep the k cheapest tours
+        int[] tourCosts = new int[k];
+        int[] tourSlots = new int[k];
+        int[] tourCount = new int[1];
+        for (int last = 0; last < n; last++) {
+            int state = full * n + last;
+            if (counts[state] == 0) continue;
+            int leg = legs.cost(last, home, offsets[full]);
+            if (leg == NO_LEG) continue;
+            for (int r = 0; r < counts[state]; r++) {
+                if (!insert(tourCosts, tourSlots, tourCount, 0, k, costs[state * k + r] + leg, state * k + r)) break;
+            }
+        }
+
+        List<Ordering> orderings = new ArrayList<>();
+        for (int i = 0; i < tourCount[0]; i++) {
+            int[] stops = new int[n];
+            int slot = tourSlots[i];
+            for (int pos = n - 1; pos >= 0; pos--) {
+                stops[pos] = (slot / k) % n;
+                slot = parents[slot];
+            }
+            orderings.add(new Ordering(stops, tourCosts[i]));
+        }
+        return orderings;
+    }
+
+    // Inserts (cost, parent) into state's sorted slots, dropping the most expensive
+    // when full. Returns false if cost was too high to be kept.
+    private static boolean insert(int[] costs, int[] parents, int[] counts, int state, int k, int cost, int parent) {
+        int base = state * k;
+        int count = counts[state];
+        if (count == k && cost >= costs[base + k - 1]) return false;
+
+        int i = Math.min(count, k - 1);
+        while (i > 0 && costs[base + i - 1] > cost) {
+            costs[base + i] = costs[base + i - 1];
+            parents[base + i] = parents[base + i - 1];
+            i--;
+        }
+        costs[base + i] = cost;
+        parents[base + i] = parent;
+        if (count < k) counts[state] = count + 1;
+        return true;
+    }
+}
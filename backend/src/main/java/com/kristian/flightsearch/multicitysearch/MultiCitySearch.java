@@ -5,27 +5,41 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+import com.kristian.flightsearch.datagenerator.FlightDistanceCalculator;
 import com.kristian.flightsearch.datagenerator.FlightGenerator;
 import com.kristian.flightsearch.db.AirportStore;
 import com.kristian.flightsearch.db.DatabaseManager;
 import com.kristian.flightsearch.db.FlightStore;
-import com.kristian.flightsearch.flightgraph.AirportVertex;
-import com.kristian.flightsearch.flightgraph.Dijkstra;
 import com.kristian.flightsearch.flightgraph.FlightGraph;
+import com.kristian.flightsearch.flightgraph.Metric;
+import com.kristian.flightsearch.flightgraph.ShortestPath;
+import com.kristian.flightsearch.flightgraph.ShortestPathTree;
 import com.kristian.flightsearch.models.Airport;
 import com.kristian.flightsearch.models.Flight;
 import com.kristian.flightsearch.models.LegQuery;
+import com.kristian.flightsearch.models.PricedFlight;
 import com.kristian.flightsearch.models.Route;
+import com.kristian.flightsearch.timetable.ConnectionScan;
+import com.kristian.flightsearch.timetable.Journey;
+import com.kristian.flightsearch.timetable.JourneyQuery;
+import com.kristian.flightsearch.timetable.Timetable;
 
 /*
  * Finds valid multi-city routes and sorts them by cheapest total price.
@@ -33,8 +47,10 @@ import com.kristian.flightsearch.models.Route;
  * orderings and filters out any where a direct flight doesn't exist for every leg.
  *
  * Steps:
- *   1) Generate all permutations of the destination airports
- *   2) Remove permutations where any leg has no available direct flight
+ *   1) Find the cheapest few orderings of the destination airports - Held-Karp
+ *      for dated searches (see HeldKarp), branch and bound otherwise (see
+ *      BranchAndBound) - rather than building all n! of them
+ *   2) Skip orderings where any leg has no available direct flight
  *   3) For each valid permutation, collect the available flights per leg
  *   4) Sort results cheapest-first
  */
@@ -42,145 +58,152 @@ public class MultiCitySearch {
 
     private final AirportStore airportStore;
     final HashMap<String, ArrayList<Flight>> flightIndex;
-    // Keyed by flight_number for O(1) lookup when applying date-specific prices
-    final HashMap<String, Flight> flightsByNumber;
+    // Keyed by FlightStore.scheduleKey for O(1) lookup when applying date-specific prices
+    final HashMap<String, Flight> schedules;
+
+    // How many routes each search keeps; the rest are never built
+    private int resultLimit = MAX_ORDERINGS;
 
     public MultiCitySearch(AirportStore airportStore, FlightStore flightStore) {
         this.airportStore = airportStore;
         HashMap<String, Flight> flightList = flightStore.readFlights();
-        this.flightsByNumber = flightList;
+        this.schedules = flightList;
         this.flightIndex = FlightGenerator.flightMapper(flightList);
     }
 
     public MultiCitySearch(AirportStore airportStore, HashMap<String, ArrayList<Flight>> flightIndex) {
         this.airportStore = airportStore;
         this.flightIndex = flightIndex;
-        this.flightsByNumber = new HashMap<>();
+        this.schedules = new HashMap<>();
         for (ArrayList<Flight> flights : flightIndex.values()) {
             for (Flight f : flights) {
-                flightsByNumber.put(f.getFlightNumber(), f);
+                schedules.put(FlightStore.scheduleKey(f.getOrigin().getCode(), f.getDestination().getCode(),
+                        f.getFlightNumber()), f);
             }
         }
     }
 
+    /**
+     * Caps how many routes each search returns, best first. Orderings that can't make
+     * the cut are pruned before their flights are looked up. Defaults to MAX_ORDERINGS.
+     */
+    public void setResultLimit(int limit) {
+        if (limit < 1 || limit > MAX_RESULTS) {
+            throw new IllegalArgumentException("Result limit must be between 1 and " + MAX_RESULTS + ": " + limit);
+        }
+        this.resultLimit = limit;
+    }
+
 
 
-    @SuppressWarnings("unchecked")
     public static ArrayList<Route> dijkstraFlightSearch(String homeAirport, String[] destinations, FlightGraph flightNetwork, HashMap<String, ArrayList<Flight>> flightIndex) {
-        // Step 1: Generate all permutations of the destinations bookended by home
-        // e.g. home=YYZ, destinations=[JFK, LAX] -> [[YYZ,JFK,LAX,YYZ], [YYZ,LAX,JFK,YYZ]]
-        ArrayList<String[]> combinations = flightCombinations(destinations, homeAirport);
+        // The same leg shows up in many permutations, so each is only searched once
+        HashMap<String, ShortestPath> legPaths = new HashMap<>();
 
+        // Step 1: The cheapest orderings of the destinations bookended by home, priced
+        // by the cheapest path for each leg
+        // e.g. home=YYZ, destinations=[JFK, LAX] -> [[YYZ,JFK,LAX,YYZ], [YYZ,LAX,JFK,YYZ]]
+        // Step 2: Try to build a valid route for each, pulling more orderings until
+        // MAX_ORDERINGS of them work
         ArrayList<Route> validRoutes = new ArrayList<>();
-
-        // Step 2: Try to build a valid route for each permutation
-        for (String[] permutation : combinations) {
-            // expandedAirports will hold the full path including any layover airports
-            // e.g. if YYZ->JFK is only reachable via ORD: [YYZ, ORD, JFK, LAX, YYZ]
-            ArrayList<String> expandedAirports = new ArrayList<>();
-
-            // one entry per sub-leg (direct segment between two consecutive airports)
-            ArrayList<ArrayList<Flight>> flightsPerSubLeg = new ArrayList<>();
-
-            boolean routeValid = true;
-
-            // Step 3: Process each leg of the permutation (e.g. YYZ->JFK, JFK->LAX, LAX->YYZ)
-            for (int i = 0; i < permutation.length - 1; i++) {
-                String originCode = permutation[i];
-                String destCode = permutation[i + 1];
-
-                AirportVertex originVertex = flightNetwork.getVertex(originCode);
-                AirportVertex destVertex = flightNetwork.getVertex(destCode);
-
-                // Either airport is missing from the graph — leg can't be flown
-                if (originVertex == null || destVertex == null) {
-                    routeValid = false;
-                    break;
-                }
-
-                // Run Dijkstra once from this leg's origin
-                // result[0]: cheapest price from origin to every other airport
-                // result[1]: previous vertex for each airport (used to reconstruct the path)
-                Map[] dijkstraResult = Dijkstra.searchByPrice(flightNetwork, originVertex);
-                Map<Airport, Integer> prices = (Map<Airport, Integer>) dijkstraResult[0];
-                Map<Airport, AirportVertex> previous = (Map<Airport, AirportVertex>) dijkstraResult[1];
-
-                // If the destination price is MAX_VALUE, it's unreachable from this origin
-                Integer priceToDestination = prices.get(destVertex.getData());
-                if (priceToDestination == null || priceToDestination == Integer.MAX_VALUE) {
-                    routeValid = false;
-                    break;
-                }
-
-                // Reconstruct the path for this leg by walking backwards through the previous map
-                // e.g. dest=JFK, previous[JFK]=ORD, previous[ORD]=YYZ -> path=[YYZ, ORD, JFK]
-                ArrayList<String> legPath = new ArrayList<>();
-                Airport current = destVertex.getData();
-                while (current != null) {
-                    legPath.add(0, current.getCode()); // prepend so the path reads origin->dest
-                    AirportVertex prevVertex = previous.get(current);
-                    current = (prevVertex != null) ? prevVertex.getData() : null;
-                }
-
-                // Append this leg's path to the expanded route
-                // Skip the first airport on every leg after the first — it's already the last
-                // airport of the previous leg, so we'd duplicate it otherwise
-                int startIndex = expandedAirports.isEmpty() ? 0 : 1;
-                for (int j = startIndex; j < legPath.size(); j++) {
-                    expandedAirports.add(legPath.get(j));
-                }
-
-                // Step 4: For each sub-leg in the reconstructed path (e.g. YYZ->ORD, ORD->JFK)
-                // look up the available flights from the index
-                for (int j = 0; j < legPath.size() - 1; j++) {
-                    String key = legPath.get(j) + legPath.get(j + 1);
-                    ArrayList<Flight> subLegFlights = flightIndex.get(key);
-
-                    // Dijkstra found a graph path but no matching flights exist in the index
-                    if (subLegFlights == null || subLegFlights.isEmpty()) {
-                        routeValid = false;
-                        break;
-                    }
-                    flightsPerSubLeg.add(subLegFlights);
-                }
-
-                if (!routeValid) break;
+        tryGraphOrderings(homeAirport, destinations, flightNetwork, MAX_ORDERINGS, batch -> {
+            int flown = 0;
+            for (String[] permutation : batch) {
+                Route route = graphRoute(permutation, flightNetwork, flightIndex, legPaths);
+                if (route == null) continue;
+                validRoutes.add(route);
+                flown++;
             }
-
-            if (!routeValid) continue;
-
-            // Step 5: Build a Route from the fully expanded airport list and sub-leg flights
-            String[] airportsArray = expandedAirports.toArray(new String[0]);
-            validRoutes.add(new Route(airportsArray, flightsPerSubLeg));
-        }
+            return flown;
+        });
 
         // Step 6: Sort by cheapest total price
-        validRoutes.sort((a, b) -> Integer.compare(a.getCheapestTotalPrice(), b.getCheapestTotalPrice()));
+        rankRoutes(validRoutes, "price", MAX_ORDERINGS);
         return validRoutes;
     }
 
+    // One permutation flown along the cheapest graph path for each leg, or null if
+    // some leg can't be flown
+    private static Route graphRoute(String[] permutation, FlightGraph flightNetwork,
+            HashMap<String, ArrayList<Flight>> flightIndex, HashMap<String, ShortestPath> legPaths) {
+        // expandedAirports will hold the full path including any layover airports
+        // e.g. if YYZ->JFK is only reachable via ORD: [YYZ, ORD, JFK, LAX, YYZ]
+        ArrayList<String> expandedAirports = new ArrayList<>();
+
+        // one entry per sub-leg (direct segment between two consecutive airports)
+        ArrayList<ArrayList<Flight>> flightsPerSubLeg = new ArrayList<>();
+
+        // Step 3: Process each leg of the permutation (e.g. YYZ->JFK, JFK->LAX, LAX->YYZ)
+        for (int i = 0; i < permutation.length - 1; i++) {
+            String originCode = permutation[i];
+            String destCode = permutation[i + 1];
+
+            // Point-to-point search for this leg, which stops once the destination is reached
+            // e.g. YYZ->JFK with no direct flight -> path=[YYZ, ORD, JFK]
+            String leg = originCode + destCode;
+            if (!legPaths.containsKey(leg)) {
+                legPaths.put(leg, flightNetwork.findPath(originCode, destCode, Metric.PRICE));
+            }
+            ShortestPath path = legPaths.get(leg);
+
+            // Either airport is missing from the graph or the destination is unreachable
+            if (path == null) return null;
+            List<String> legPath = path.codes();
+
+            // Append this leg's path to the expanded route
+            // Skip the first airport on every leg after the first — it's already the last
+            // airport of the previous leg, so we'd duplicate it otherwise
+            int startIndex = expandedAirports.isEmpty() ? 0 : 1;
+            for (int j = startIndex; j < legPath.size(); j++) {
+                expandedAirports.add(legPath.get(j));
+            }
 
+            // Step 4: For each sub-leg in the reconstructed path (e.g. YYZ->ORD, ORD->JFK)
+            // look up the available flights from the index
+            for (int j = 0; j < legPath.size() - 1; j++) {
+                String key = legPath.get(j) + legPath.get(j + 1);
+                ArrayList<Flight> subLegFlights = flightIndex.get(key);
 
+                // Dijkstra found a graph path but no matching flights exist in the index
+                if (subLegFlights == null || subLegFlights.isEmpty()) return null;
+                flightsPerSubLeg.add(subLegFlights);
+            }
+        }
+
+        // Step 5: Build a Route from the fully expanded airport list and sub-leg flights
+        return new Route(expandedAirports.toArray(new String[0]), flightsPerSubLeg);
+    }
 
     /**
-     * Searches for all valid multi-city routes, sorted by cheapest total price.
+     * Searches for the cheapest valid multi-city routes, up to the result limit,
+     * sorted by cheapest total price.
      *
      * @param homeAirport  The origin/return airport code (e.g. "YYZ")
      * @param destinations Array of destination airport codes to visit
      * @return Sorted list of valid routes (cheapest first), empty if none found
      */
     public ArrayList<Route> search(String homeAirport, String[] destinations) {
-        ArrayList<String[]> combinations = flightCombinations(destinations, homeAirport);
-
         // TODO: Generate the flight Index with the database
         // flightIndex = buildFlightIndexForRoute(combinations);
 
-        // remove routes where any leg has no available flight
-        for (int i = combinations.size() - 1; i >= 0; i--) {
-            if (!hasFlightsForAllLegs(combinations.get(i), flightIndex)) {
-                combinations.remove(i);
+        // Only the cheapest orderings where every leg has a flight - the rest are
+        // never built
+        int n = destinations.length;
+        int[][] legCosts = new int[n + 1][n + 1];
+        for (int a = 0; a <= n; a++) {
+            for (int b = 0; b <= n; b++) {
+                legCosts[a][b] = HeldKarp.NO_LEG;
+                if (a == b) continue;
+                ArrayList<Flight> legFlights = flightIndex.get(airportAt(homeAirport, destinations, a)
+                        + airportAt(homeAirport, destinations, b));
+                if (legFlights == null) continue;
+                for (Flight f : legFlights) {
+                    legCosts[a][b] = Math.min(legCosts[a][b], f.getPrice());
+                }
             }
         }
+        ArrayList<String[]> combinations = toRoutes(homeAirport, destinations,
+                BranchAndBound.topOrderings(legCosts, resultLimit));
 
         ArrayList<Route> validRoutes = new ArrayList<>();
         for (int i = 0; i < combinations.size(); i++) {
@@ -197,39 +220,37 @@ public class MultiCitySearch {
             validRoutes.add(new Route(route, routeFlights));
         }
 
-        validRoutes.sort((a, b) -> Integer.compare(a.getCheapestTotalPrice(), b.getCheapestTotalPrice()));
+        rankRoutes(validRoutes, "price", resultLimit);
         return validRoutes;
     }
 
     /**
      * Searches for valid multi-city routes for specific departure dates,
-     * sorted by the given optimizeBy criterion.
+     * sorted by the given optimizeBy criterion. Only the best orderings up to
+     * the result limit are priced, which is what lets a trip have up to
+     * HeldKarp.MAX_DESTINATIONS destinations.
      *
      * @param homeAirport    The origin/return airport code
      * @param destinations   Destination airport codes to visit
      * @param departureDate  Date of the first leg
      * @param daysAtAirport  Map from airport code to number of full days spent there
-     * @param optimizeBy     "price" or "duration"
+     * @param optimizeBy     "price", "duration" or "pareto"
      * @param flightStore    Used to fetch date-specific flights from the database
      */
     public ArrayList<Route> searchByDate(String homeAirport, String[] destinations,
             LocalDate departureDate, Map<String, Integer> daysAtAirport,
             String optimizeBy, FlightStore flightStore) {
 
-        ArrayList<String[]> validPerms = filterValidPermutations(destinations, homeAirport);
-        if (validPerms.isEmpty()) return new ArrayList<>();
-
-        LinkedHashSet<LegQuery> uniqueLegs = new LinkedHashSet<>();
-        for (String[] perm : validPerms) {
-            LocalDate[] dates = computeLegDates(perm, departureDate, daysAtAirport);
-            for (int i = 0; i < perm.length - 1; i++) {
-                uniqueLegs.add(new LegQuery(perm[i], perm[i + 1], dates[i]));
-            }
-        }
+        LinkedHashSet<LegQuery> candidateLegs = collectOrderingLegQueries(
+                homeAirport, destinations, departureDate, daysAtAirport);
+        if (candidateLegs.isEmpty()) return new ArrayList<>();
 
         HashMap<String, Map<String, Integer>> dateIndex =
-                flightStore.readFlightsForLegs(new ArrayList<>(uniqueLegs));
-        return buildRoutesFromDateIndex(validPerms, departureDate, daysAtAirport, dateIndex, flightsByNumber, optimizeBy);
+                flightStore.readFlightsForLegs(new ArrayList<>(candidateLegs));
+        ArrayList<String[]> bestPerms = bestOrderings(homeAirport, destinations, departureDate,
+                daysAtAirport, optimizeBy, dateIndex);
+        if (bestPerms.isEmpty()) return new ArrayList<>();
+        return buildRoutesFromDateIndex(bestPerms, departureDate, daysAtAirport, dateIndex, schedules, optimizeBy, resultLimit);
     }
 
     /**
@@ -240,9 +261,10 @@ public class MultiCitySearch {
             LocalDate departureDate, Map<String, Integer> daysAtAirport,
             String optimizeBy, HashMap<String, Map<String, Integer>> dateIndex) {
 
-        ArrayList<String[]> validPerms = filterValidPermutations(destinations, homeAirport);
-        if (validPerms.isEmpty()) return new ArrayList<>();
-        return buildRoutesFromDateIndex(validPerms, departureDate, daysAtAirport, dateIndex, flightsByNumber, optimizeBy);
+        ArrayList<String[]> bestPerms = bestOrderings(homeAirport, destinations, departureDate,
+                daysAtAirport, optimizeBy, dateIndex);
+        if (bestPerms.isEmpty()) return new ArrayList<>();
+        return buildRoutesFromDateIndex(bestPerms, departureDate, daysAtAirport, dateIndex, schedules, optimizeBy, resultLimit);
     }
 
     // -------------------------------------------------------------------------
@@ -267,15 +289,8 @@ public class MultiCitySearch {
             LocalDate departureDate, Map<String, Integer> daysAtAirport,
             String optimizeBy, FlightStore flightStore, FlightGraph flightGraph) {
 
-        ArrayList<String[]> allPerms = flightCombinations(destinations, homeAirport);
-        List<ExpandedPerm> expandedPerms = expandPermsWithConnections(allPerms, flightGraph);
-        if (expandedPerms.isEmpty()) return new ArrayList<>();
-
-        LinkedHashSet<LegQuery> uniqueLegs = collectConnectionLegQueries(
-                expandedPerms, departureDate, daysAtAirport);
-        HashMap<String, Map<String, Integer>> dateIndex =
-                flightStore.readFlightsForLegs(new ArrayList<>(uniqueLegs));
-        return buildConnectionRoutes(expandedPerms, departureDate, daysAtAirport, dateIndex, optimizeBy);
+        return connectionSearch(homeAirport, destinations, departureDate, daysAtAirport, optimizeBy,
+                flightGraph, flightStore::readFlightsForLegs);
     }
 
     /**
@@ -289,94 +304,329 @@ public class MultiCitySearch {
             HashMap<String, Map<String, Integer>> dateIndex,
             FlightGraph flightGraph) {
 
-        ArrayList<String[]> allPerms = flightCombinations(destinations, homeAirport);
-        List<ExpandedPerm> expandedPerms = expandPermsWithConnections(allPerms, flightGraph);
-        if (expandedPerms.isEmpty()) return new ArrayList<>();
-        return buildConnectionRoutes(expandedPerms, departureDate, daysAtAirport, dateIndex, optimizeBy);
+        return connectionSearch(homeAirport, destinations, departureDate, daysAtAirport, optimizeBy,
+                flightGraph, legs -> dateIndex);
+    }
+
+    /*
+     * Orderings are taken cheapest first by graph path price, each batch's legs
+     * priced in one prices() call, until resultLimit of them line up on their
+     * dates or every ordering has been tried. Routes are only built for the plans
+     * that rank among the best resultLimit.
+     */
+    private ArrayList<Route> connectionSearch(String homeAirport, String[] destinations,
+            LocalDate departureDate, Map<String, Integer> daysAtAirport, String optimizeBy,
+            FlightGraph flightGraph, Function<List<LegQuery>, HashMap<String, Map<String, Integer>>> prices) {
+        RouteRanking<PlannedRoute> ranking = new RouteRanking<>(optimizeBy, resultLimit, PlannedRoute::score);
+        tryGraphOrderings(homeAirport, destinations, flightGraph, resultLimit, batch -> {
+            List<ExpandedPerm> expandedPerms = expandPermsWithConnections(batch, flightGraph);
+            if (expandedPerms.isEmpty()) return 0;
+            LinkedHashSet<LegQuery> uniqueLegs = collectConnectionLegQueries(
+                    expandedPerms, departureDate, daysAtAirport);
+            HashMap<String, Map<String, Integer>> dateIndex = prices.apply(new ArrayList<>(uniqueLegs));
+            RouteRanking<PlannedRoute> batchRanking = buildConnectionRoutes(expandedPerms, departureDate,
+                    daysAtAirport, dateIndex, optimizeBy);
+            ranking.merge(batchRanking);
+            return batchRanking.offered();
+        });
+
+        ArrayList<Route> validRoutes = new ArrayList<>();
+        for (PlannedRoute planned : ranking.sorted()) {
+            validRoutes.add(routeFromPlans(planned.intended(), planned.plans()));
+        }
+        return validRoutes;
+    }
+
+    // Bundles an intended permutation with the candidate airport paths for each of its
+    // legs, best first. A leg with a direct flight has the single path [origin, dest];
+    // a leg without one has up to K_ALTERNATIVE_PATHS connecting paths.
+    // Example: intended=[JFK,LHR,GYE,JFK],
+    //          legPaths=[[[JFK,LHR]], [[LHR,UIO,GYE], [LHR,BOG,GYE]], [[GYE,JFK]]]
+    private record ExpandedPerm(String[] intendedAirports, List<List<String[]>> legPaths) {}
+
+    // The flights of one sub-leg on one date, sorted by departure, with departure and
+    // arrival as minutes of the day alongside so connection checks are sweeps over
+    // int arrays rather than LocalTime comparisons.
+    private record SortedFlights(Flight[] flights, int[] departures, int[] arrivals) {
+
+        static final SortedFlights EMPTY = new SortedFlights(new Flight[0], new int[0], new int[0]);
+
+        static SortedFlights of(List<Flight> unsorted) {
+            Flight[] flights = unsorted.toArray(new Flight[0]);
+            Arrays.sort(flights, Comparator.comparing(Flight::getDepartureTime));
+            int[] departures = new int[flights.length];
+            int[] arrivals = new int[flights.length];
+            for (int i = 0; i < flights.length; i++) {
+                departures[i] = flights[i].getDepartureTime().toSecondOfDay() / 60;
+                arrivals[i] = flights[i].getArrivalTime().toSecondOfDay() / 60;
+            }
+            return new SortedFlights(flights, departures, arrivals);
+        }
+
+        int size() {
+            return flights.length;
+        }
+
+        boolean isEmpty() {
+            return flights.length == 0;
+        }
+
+        // Arrival time wraps to before departure for flights that cross midnight
+        boolean arrivesNextDay(int i) {
+            return arrivals[i] < departures[i];
+        }
+
+        ArrayList<Flight> toList() {
+            return new ArrayList<>(Arrays.asList(flights));
+        }
+
+        // Index of the first flight departing strictly after minute, or size() if none
+        int firstDepartingAfter(int minute) {
+            int lo = 0;
+            int hi = flights.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (departures[mid] <= minute) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
     }
 
-    // Bundles an intended permutation with its Dijkstra-expanded airport list and
-    // a mapping from each expanded leg index back to the intended leg index.
-    // Example: intended=[JFK,LHR,GYE,JFK], expanded=[JFK,LHR,UIO,GYE,JFK],
-    //          legMap=[0,1,1,2] (legs 1 and 2 both belong to intended leg 1: LHR→GYE)
-    private record ExpandedPerm(String[] intendedAirports, String[] expandedAirports, int[] legMap) {}
+    // Flights and connection metadata for one intended leg flown along one path
+    private record LegPlan(String[] path, ArrayList<ArrayList<Flight>> subLegFlights, LocalDate[] dates,
+            boolean[] isConnection, int[] minConnMins, boolean[] isOvernight) {}
+
+    // One plan per intended leg of a permutation that flies on its dates, scored the
+    // way its Route would be so it can be ranked before the Route is built
+    private record PlannedRoute(String[] intended, List<LegPlan> plans, RouteRanking.Score score) {
+
+        static PlannedRoute of(String[] intended, List<LegPlan> plans) {
+            int price = 0;
+            long minutes = 0;
+            int stops = 0;
+            for (LegPlan plan : plans) {
+                for (ArrayList<Flight> options : plan.subLegFlights()) {
+                    int cheapest = Integer.MAX_VALUE;
+                    long shortest = Long.MAX_VALUE;
+                    for (Flight f : options) {
+                        cheapest = Math.min(cheapest, f.getPrice());
+                        shortest = Math.min(shortest, f.getDuration().toMinutes());
+                    }
+                    price += cheapest;
+                    minutes += shortest;
+                }
+                stops += plan.path().length - 2;
+            }
+            return new PlannedRoute(intended, plans, new RouteRanking.Score(price, minutes, stops));
+        }
+    }
 
-    // Pairs a flight with the date it was fetched for, so connection validation can
-    // correctly compute same-day vs. overnight gaps.
-    private record FlightOnDate(Flight flight, LocalDate date) {}
+    // How many connecting paths to try per leg before giving up on a permutation.
+    // All of them are priced in the same readFlightsForLegs batch.
+    static final int K_ALTERNATIVE_PATHS = 3;
 
-    @SuppressWarnings("unchecked")
-    private List<ExpandedPerm> expandPermsWithConnections(
-            ArrayList<String[]> perms, FlightGraph flightGraph) {
+    private List<ExpandedPerm> expandPermsWithConnections(List<String[]> perms,
+            FlightGraph flightGraph) {
+        // The same leg appears in many permutations - only search it once
+        HashMap<String, List<String[]>> pathsByLeg = new HashMap<>();
         List<ExpandedPerm> result = new ArrayList<>();
         for (String[] perm : perms) {
-            ArrayList<String> expanded = new ArrayList<>();
-            ArrayList<Integer> legMapping = new ArrayList<>();
+            List<List<String[]>> legPaths = new ArrayList<>();
             boolean permValid = true;
 
             for (int i = 0; i < perm.length - 1; i++) {
                 String origin = perm[i];
                 String dest = perm[i + 1];
-                ArrayList<String> path;
+                List<String[]> paths;
 
                 if (flightIndex.containsKey(origin + dest)) {
-                    path = new ArrayList<>(List.of(origin, dest));
+                    paths = List.<String[]>of(new String[] { origin, dest });
                 } else {
-                    path = findConnectingPath(origin, dest, flightGraph);
-                    if (path == null) { permValid = false; break; }
+                    paths = pathsByLeg.computeIfAbsent(origin + dest,
+                            k -> findConnectingPaths(origin, dest, flightGraph));
+                    if (paths.isEmpty()) { permValid = false; break; }
                 }
-
-                // Append path to expanded; skip the first airport after the first leg
-                // to avoid duplicating the shared airport between consecutive legs.
-                int startIdx = expanded.isEmpty() ? 0 : 1;
-                for (int j = startIdx; j < path.size(); j++) expanded.add(path.get(j));
-                for (int j = 0; j < path.size() - 1; j++) legMapping.add(i);
+                legPaths.add(paths);
             }
 
             if (permValid) {
-                result.add(new ExpandedPerm(
-                        perm,
-                        expanded.toArray(new String[0]),
-                        legMapping.stream().mapToInt(Integer::intValue).toArray()));
+                result.add(new ExpandedPerm(perm, legPaths));
             }
         }
         return result;
     }
 
-    // Finds the cheapest connecting path from origin to dest via Dijkstra.
-    // Returns null if unreachable or if more than MAX_CONNECTIONS_PER_LEG intermediate
-    // airports are required.
-    @SuppressWarnings("unchecked")
-    private ArrayList<String> findConnectingPath(String origin, String dest, FlightGraph flightGraph) {
-        AirportVertex originVertex = flightGraph.getVertex(origin);
-        AirportVertex destVertex = flightGraph.getVertex(dest);
-        if (originVertex == null || destVertex == null) return null;
+    // Finds up to K_ALTERNATIVE_PATHS cheapest loopless connecting paths from origin to
+    // dest, each with at most MAX_CONNECTIONS_PER_LEG intermediate airports, cheapest
+    // first. Empty if there are none. A point-to-point search (see FlightGraph.findPaths)
+    // gives the cheapest path overall, which answers unreachable legs outright and
+    // seeds the search for alternatives.
+    private static List<String[]> findConnectingPaths(String origin, String dest, FlightGraph flightGraph) {
+        List<String[]> paths = new ArrayList<>();
+        for (ShortestPath path : flightGraph.findPaths(origin, dest, Metric.PRICE,
+                K_ALTERNATIVE_PATHS, MAX_CONNECTIONS_PER_LEG)) {
+            paths.add(path.codes().toArray(new String[0]));
+        }
+        return paths;
+    }
+
+    // -------------------------------------------------------------------------
+    // Timetable (connection scan) search
+    // -------------------------------------------------------------------------
+
+    // Departures considered for one intended leg, counted from the start of its date:
+    // the leg day plus one overnight per allowed connection.
+    static final int LEG_WINDOW_DAYS = MAX_CONNECTIONS_PER_LEG + 1;
 
-        Map[] dijkstraResult = Dijkstra.searchByPrice(flightGraph, originVertex);
-        Map<Airport, Integer> prices = (Map<Airport, Integer>) dijkstraResult[0];
-        Map<Airport, AirportVertex> previous = (Map<Airport, AirportVertex>) dijkstraResult[1];
+    /**
+     * Connection search over the dated timetable. Each intended leg is answered by a
+     * Connection Scan query - cheapest arrival, or earliest arrival when optimizing
+     * by duration - that leaves on the leg's date and enforces MIN_CONNECTION_MINUTES
+     * (in real UTC time) at every stop while scanning, so unlike
+     * searchByDateWithConnections it never picks a path that the schedule can't fly.
+     * Returns one concrete itinerary per valid permutation.
+     */
+    public ArrayList<Route> searchByDateWithTimetable(
+            String homeAirport, String[] destinations,
+            LocalDate departureDate, Map<String, Integer> daysAtAirport,
+            String optimizeBy, Timetable timetable) {
 
-        Integer priceToDestination = prices.get(destVertex.getData());
-        if (priceToDestination == null || priceToDestination == Integer.MAX_VALUE) return null;
+        boolean byDuration = "duration".equalsIgnoreCase(optimizeBy);
+        // The same leg on the same date shows up in many permutations
+        HashMap<LegQuery, Journey> journeys = new HashMap<>();
+        // Journeys are ranked as they are found; only the survivors become Routes
+        RouteRanking<Itinerary> ranking = new RouteRanking<>(optimizeBy, resultLimit, Itinerary::score);
 
-        ArrayList<String> path = new ArrayList<>();
-        Airport current = destVertex.getData();
-        while (current != null) {
-            path.add(0, current.getCode());
-            AirportVertex prevVertex = previous.get(current);
-            current = (prevVertex != null) ? prevVertex.getData() : null;
+        for (String[] perm : flightCombinations(destinations, homeAirport)) {
+            LocalDate[] dates = computeLegDates(perm, departureDate, daysAtAirport);
+            ArrayList<Journey> legJourneys = new ArrayList<>();
+            for (int i = 0; i < perm.length - 1; i++) {
+                LegQuery leg = new LegQuery(perm[i], perm[i + 1], dates[i]);
+                // containsKey rather than computeIfAbsent so a leg with no journey is cached too
+                if (!journeys.containsKey(leg)) journeys.put(leg, findJourney(timetable, leg, byDuration));
+                Journey journey = journeys.get(leg);
+                if (journey == null) break;
+                legJourneys.add(journey);
+            }
+            if (legJourneys.size() == perm.length - 1) {
+                ranking.offer(Itinerary.of(perm, legJourneys));
+            }
+        }
+
+        ArrayList<Route> validRoutes = new ArrayList<>();
+        for (Itinerary itinerary : ranking.sorted()) {
+            validRoutes.add(routeFromJourneys(itinerary.intended(), itinerary.legJourneys(), timetable));
+        }
+        return validRoutes;
+    }
+
+    // One journey per intended leg of a permutation, scored the way its Route would
+    // be: every sub-leg is a single timetable connection
+    private record Itinerary(String[] intended, ArrayList<Journey> legJourneys, RouteRanking.Score score) {
+
+        static Itinerary of(String[] intended, ArrayList<Journey> legJourneys) {
+            int price = 0;
+            long minutes = 0;
+            int stops = 0;
+            for (Journey journey : legJourneys) {
+                price += journey.price();
+                for (int c : journey.connections()) {
+                    minutes += journey.timetable().arrival(c) - journey.timetable().departure(c);
+                }
+                stops += journey.legs() - 1;
+            }
+            return new Itinerary(intended, legJourneys, new RouteRanking.Score(price, minutes, stops));
+        }
+    }
+
+    private static Journey findJourney(Timetable timetable, LegQuery leg, boolean byDuration) {
+        int origin = timetable.idOf(leg.origin());
+        int destination = timetable.idOf(leg.destination());
+        if (origin < 0 || destination < 0) return null;
+
+        int dayStart = Timetable.utcMinute(leg.date(), LocalTime.MIDNIGHT, timetable.airport(origin));
+        JourneyQuery query = new JourneyQuery(origin, destination,
+                dayStart, dayStart + 24 * 60 - 1, dayStart + LEG_WINDOW_DAYS * 24 * 60,
+                MAX_CONNECTIONS_PER_LEG + 1, MIN_CONNECTION_MINUTES);
+        return byDuration
+                ? ConnectionScan.earliestArrival(timetable, query)
+                : ConnectionScan.cheapestArrival(timetable, query);
+    }
+
+    // Flattens the per-leg journeys into a Route with one flight per sub-leg and the
+    // same connection metadata buildConnectionRoutes produces.
+    private Route routeFromJourneys(String[] intended, ArrayList<Journey> legJourneys, Timetable timetable) {
+        ArrayList<String> expanded = new ArrayList<>();
+        expanded.add(intended[0]);
+        ArrayList<Integer> connections = new ArrayList<>();
+        ArrayList<Boolean> connectionFlags = new ArrayList<>();
+        for (Journey journey : legJourneys) {
+            int[] legConnections = journey.connections();
+            for (int j = 0; j < legConnections.length; j++) {
+                int c = legConnections[j];
+                expanded.add(timetable.code(timetable.destination(c)));
+                connections.add(c);
+                // Every flight but the last in a journey ends at a layover airport
+                connectionFlags.add(j < legConnections.length - 1);
+            }
+        }
+
+        int numSubLegs = connections.size();
+        ArrayList<ArrayList<Flight>> subLegFlights = new ArrayList<>();
+        LocalDate[] legDates = new LocalDate[numSubLegs];
+        boolean[] isConnectionLeg = new boolean[numSubLegs];
+        int[] minConnMins = new int[numSubLegs];
+        boolean[] isOvernight = new boolean[numSubLegs];
+
+        for (int i = 0; i < numSubLegs; i++) {
+            int c = connections.get(i);
+            subLegFlights.add(new ArrayList<>(List.of(timetableFlight(timetable, c))));
+            legDates[i] = timetable.localDeparture(c).toLocalDate();
+            isConnectionLeg[i] = connectionFlags.get(i);
+            if (isConnectionLeg[i]) {
+                int next = connections.get(i + 1);
+                minConnMins[i] = timetable.departure(next) - timetable.arrival(c);
+                isOvernight[i] = timetable.localDeparture(next).toLocalDate()
+                        .isAfter(timetable.localArrival(c).toLocalDate());
+            }
         }
 
-        // path.size() - 2 = number of intermediate airports
-        if (path.size() - 2 > MAX_CONNECTIONS_PER_LEG) return null;
-        return path;
+        return new Route(expanded.toArray(new String[0]), subLegFlights, legDates,
+                intended, isConnectionLeg, minConnMins, isOvernight);
     }
 
-    // Collects all LegQuery objects needed to fetch date-specific prices for an
-    // expanded permutation set. For connection sub-legs, also queries the next day
-    // at each connection point to support overnight connections. A sub-leg that is
-    // the k-th hop in a chain is queried for legDate through legDate+k, covering all
-    // possible overnight combinations along that chain.
+    // Builds a Flight for one timetable connection. Airports and price come from the
+    // timetable row itself; airline/aircraft names from the flight-number template.
+    private Flight timetableFlight(Timetable timetable, int c) {
+        Airport origin = timetable.airport(timetable.origin(c));
+        Airport destination = timetable.airport(timetable.destination(c));
+        LocalDateTime departure = timetable.localDeparture(c);
+        Flight template = schedules.get(
+                FlightStore.scheduleKey(origin.getCode(), destination.getCode(), timetable.flightNumber(c)));
+
+        // Most connections fly their template's schedule, so only need a price and date on top
+        if (template != null && template.getDepartureTime().equals(departure.toLocalTime())) {
+            return new PricedFlight(template, timetable.price(c), departure.toLocalDate());
+        }
+
+        Flight flight = new Flight(origin, destination,
+                FlightDistanceCalculator.calcDistance(origin, destination),
+                departure.toLocalTime(), timetable.flightNumber(c));
+        flight.setPrice(timetable.price(c));
+        if (template != null) {
+            flight.setAirlineName(template.getAirlineName());
+            flight.setAircraftName(template.getAircraftName());
+        }
+        return flight;
+    }
+
+    // Collects all LegQuery objects needed to fetch date-specific prices for every
+    // candidate path of every leg, so falling back to an alternative path costs no
+    // extra round trip. For connection sub-legs, also queries the next day at each
+    // connection point to support overnight connections. A sub-leg that is the k-th
+    // hop in a path is queried for legDate through legDate+k, covering all possible
+    // overnight combinations along that path.
     private LinkedHashSet<LegQuery> collectConnectionLegQueries(
             List<ExpandedPerm> expandedPerms,
             LocalDate departureDate, Map<String, Integer> daysAtAirport) {
@@ -384,46 +634,43 @@ public class MultiCitySearch {
         for (ExpandedPerm ep : expandedPerms) {
             LocalDate[] intendedDates = computeLegDates(
                     ep.intendedAirports(), departureDate, daysAtAirport);
-            String[] exp = ep.expandedAirports();
-            int[] legMap = ep.legMap();
-
-            int subLegIdx = 0;
-            int prevIntendedIdx = -1;
-            for (int i = 0; i < exp.length - 1; i++) {
-                int intendedIdx = legMap[i];
-                LocalDate legDate = intendedDates[intendedIdx];
-                if (intendedIdx != prevIntendedIdx) { subLegIdx = 0; prevIntendedIdx = intendedIdx; }
-
-                // Query for every date from legDate to legDate+subLegIdx
-                // subLegIdx is how many potential overnight connections could have occurred
-                // before this sub-leg.
-                for (int d = 0; d <= subLegIdx; d++) {
-                    uniqueLegs.add(new LegQuery(exp[i], exp[i + 1], legDate.plusDays(d)));
+
+            for (int leg = 0; leg < ep.legPaths().size(); leg++) {
+                LocalDate legDate = intendedDates[leg];
+                for (String[] path : ep.legPaths().get(leg)) {
+                    for (int i = 0; i < path.length - 1; i++) {
+                        // i is how many potential overnight connections could have
+                        // occurred before this sub-leg
+                        for (int d = 0; d <= i; d++) {
+                            uniqueLegs.add(new LegQuery(path[i], path[i + 1], legDate.plusDays(d)));
+                        }
+                    }
                 }
-                subLegIdx++;
             }
         }
         return uniqueLegs;
     }
 
-    // Builds a list of Flight copies from the dateIndex entry for a given origin,
-    // destination, and date. Returns an empty list if no entry exists.
-    private ArrayList<FlightOnDate> flightsOnDate(String origin, String dest,
-            LocalDate date, HashMap<String, Map<String, Integer>> dateIndex) {
-        Map<String, Integer> priceMap = dateIndex.get(origin + dest + date);
-        ArrayList<FlightOnDate> result = new ArrayList<>();
-        if (priceMap == null) return result;
+    // The priced flights from the dateIndex entry for a given origin, destination, and
+    // date, sorted by departure. Empty if no entry exists. Built once per key per search.
+    private SortedFlights flightsOnDate(String origin, String dest, LocalDate date,
+            HashMap<String, Map<String, Integer>> dateIndex, ConcurrentHashMap<String, SortedFlights> board) {
+        String key = origin + dest + date;
+        SortedFlights cached = board.get(key);
+        if (cached != null) return cached;
+
+        Map<String, Integer> priceMap = dateIndex.get(key);
+        if (priceMap == null) return SortedFlights.EMPTY;
+        ArrayList<Flight> result = new ArrayList<>();
         for (Map.Entry<String, Integer> entry : priceMap.entrySet()) {
-            Flight template = flightsByNumber.get(entry.getKey());
+            Flight template = schedules.get(FlightStore.scheduleKey(origin, dest, entry.getKey()));
             if (template == null) continue;
-            Flight copy = new Flight(template.getOrigin(), template.getDestination(),
-                    template.getDistance(), template.getDepartureTime(), template.getFlightNumber());
-            copy.setPrice(entry.getValue());
-            copy.setAirlineName(template.getAirlineName());
-            copy.setAircraftName(template.getAircraftName());
-            result.add(new FlightOnDate(copy, date));
+            result.add(new PricedFlight(template, entry.getValue(), date));
         }
-        return result;
+        SortedFlights sorted = SortedFlights.of(result);
+        // Two workers building the same key at once is harmless - one list wins
+        board.putIfAbsent(key, sorted);
+        return sorted;
     }
 
     // Validates a single connection point between an inbound sub-leg and an outbound
@@ -434,183 +681,206 @@ public class MultiCitySearch {
     // valid pairing, or null if no valid pairing exists.
     // Writes the minimum connection gap into minConnOut[0] and the overnight flag into
     // isOvernightOut[0].
-    @SuppressWarnings("unchecked")
-    private ArrayList<Flight>[] validateConnectionPoint(
-            ArrayList<FlightOnDate> inbounds,
-            ArrayList<FlightOnDate> sameDayOutbounds,
-            ArrayList<FlightOnDate> nextDayOutbounds,
+    //
+    // Outbounds are sorted by departure, so each inbound binary searches for its earliest
+    // feasible same-day outbound - that gives its smallest gap - and every later
+    // outbound is feasible too. O((n + m) log m) rather than comparing every pair.
+    private SortedFlights[] validateConnectionPoint(
+            SortedFlights inbounds,
+            SortedFlights sameDayOutbounds,
+            SortedFlights nextDayOutbounds,
             int[] minConnOut,
             boolean[] isOvernightOut) {
 
-        Set<Flight> validInboundSet = new HashSet<>();
-        Set<Flight> validSameDayOutSet = new HashSet<>();
-        Set<Flight> validNextDayOutSet = new HashSet<>();
+        boolean[] validInbound = new boolean[inbounds.size()];
+        // Same-day outbounds from this index on pair with at least one inbound
+        int firstValidSameDay = sameDayOutbounds.size();
         int minMins = Integer.MAX_VALUE;
         boolean hasSameDay = false;
-
-        for (FlightOnDate fod1 : inbounds) {
-            Flight f1 = fod1.flight();
-            int arrivalMin = f1.getArrivalTime().toSecondOfDay() / 60;
-            // Detect flights that cross midnight: arrival time wraps to be before departure time.
-            boolean arrivesNextDay = f1.getArrivalTime().isBefore(f1.getDepartureTime());
-
-            if (!arrivesNextDay) {
-                for (FlightOnDate fod2 : sameDayOutbounds) {
-                    Flight f2 = fod2.flight();
-                    int gap = f2.getDepartureTime().toSecondOfDay() / 60 - arrivalMin;
-                    if (gap > MIN_CONNECTION_MINUTES) {
-                        validInboundSet.add(f1);
-                        validSameDayOutSet.add(f2);
-                        hasSameDay = true;
-                        if (gap < minMins) minMins = gap;
-                    }
-                }
-            }
-
-            for (FlightOnDate fod2 : nextDayOutbounds) {
-                Flight f2 = fod2.flight();
-                int overnight = (24 * 60 - arrivalMin) + f2.getDepartureTime().toSecondOfDay() / 60;
-                validInboundSet.add(f1);
-                validNextDayOutSet.add(f2);
-                if (overnight < minMins) minMins = overnight;
-            }
+        int latestArrival = -1;
+
+        for (int i = 0; i < inbounds.size(); i++) {
+            int arrivalMin = inbounds.arrivals()[i];
+            latestArrival = Math.max(latestArrival, arrivalMin);
+            if (inbounds.arrivesNextDay(i)) continue;
+
+            int first = sameDayOutbounds.firstDepartingAfter(arrivalMin + MIN_CONNECTION_MINUTES);
+            if (first == sameDayOutbounds.size()) continue;
+            validInbound[i] = true;
+            hasSameDay = true;
+            firstValidSameDay = Math.min(firstValidSameDay, first);
+            minMins = Math.min(minMins, sameDayOutbounds.departures()[first] - arrivalMin);
         }
 
-        if (validInboundSet.isEmpty() || (validSameDayOutSet.isEmpty() && validNextDayOutSet.isEmpty())) {
-            return null;
+        // Any next-day outbound pairs with every inbound; the shortest overnight is the
+        // latest arrival and the earliest departure
+        boolean hasNextDay = !inbounds.isEmpty() && !nextDayOutbounds.isEmpty();
+        if (hasNextDay) {
+            Arrays.fill(validInbound, true);
+            minMins = Math.min(minMins, (24 * 60 - latestArrival) + nextDayOutbounds.departures()[0]);
         }
 
+        if (!hasSameDay && !hasNextDay) return null;
+
         minConnOut[0] = minMins;
         isOvernightOut[0] = !hasSameDay;
 
-        ArrayList<Flight>[] result = new ArrayList[2];
-        result[0] = new ArrayList<>(validInboundSet);
-        result[1] = new ArrayList<>();
-        result[1].addAll(validSameDayOutSet);
-        result[1].addAll(validNextDayOutSet);
-        return result;
+        ArrayList<Flight> inboundList = new ArrayList<>();
+        for (int i = 0; i < inbounds.size(); i++) {
+            if (validInbound[i]) inboundList.add(inbounds.flights()[i]);
+        }
+        ArrayList<Flight> outboundList = new ArrayList<>();
+        for (int i = firstValidSameDay; i < sameDayOutbounds.size(); i++) {
+            outboundList.add(sameDayOutbounds.flights()[i]);
+        }
+        if (hasNextDay) outboundList.addAll(Arrays.asList(nextDayOutbounds.flights()));
+        return new SortedFlights[] { SortedFlights.of(inboundList), SortedFlights.of(outboundList) };
     }
 
-    private ArrayList<Route> buildConnectionRoutes(
+    // The best resultLimit plans of the expanded permutations that fly on their dates
+    private RouteRanking<PlannedRoute> buildConnectionRoutes(
             List<ExpandedPerm> expandedPerms,
             LocalDate departureDate, Map<String, Integer> daysAtAirport,
             HashMap<String, Map<String, Integer>> dateIndex, String optimizeBy) {
 
-        ArrayList<Route> validRoutes = new ArrayList<>();
-
-        for (ExpandedPerm ep : expandedPerms) {
-            LocalDate[] intendedDates = computeLegDates(
-                    ep.intendedAirports(), departureDate, daysAtAirport);
-            String[] exp = ep.expandedAirports();
-            int[] legMap = ep.legMap();
-            int numSubLegs = exp.length - 1;
-
-            ArrayList<ArrayList<Flight>> subLegFlights = new ArrayList<>();
-            boolean[] isConnectionLeg = new boolean[numSubLegs];
-            int[] minConnMins = new int[numSubLegs];
-            boolean[] isOvernight = new boolean[numSubLegs];
-            LocalDate[] legDates = new LocalDate[numSubLegs];
-
-            boolean routeValid = true;
-
-            int subLegIdx = 0;
-            int prevIntendedIdx = -1;
-            // currentDate tracks the effective sub-leg date, shifting by 1 for each overnight.
-            LocalDate currentDate = null;
-
-            // currentInbounds holds the inbound flights for the current sub-leg.
-            // It starts null and is populated on the first sub-leg of each intended leg.
-            ArrayList<FlightOnDate> currentInbounds = null;
-
-            for (int i = 0; i < numSubLegs; i++) {
-                int intendedIdx = legMap[i];
-                LocalDate intendedDate = intendedDates[intendedIdx];
-
-                // Reset state when entering a new intended leg
-                if (intendedIdx != prevIntendedIdx) {
-                    subLegIdx = 0;
-                    currentDate = intendedDate;
-                    prevIntendedIdx = intendedIdx;
-                    currentInbounds = null;
-                }
-
-                boolean isConnectionSubLeg = !exp[i + 1].equals(
-                        ep.intendedAirports()[intendedIdx + 1]);
-
-                legDates[i] = currentDate;
-                isConnectionLeg[i] = isConnectionSubLeg;
-
-                if (!isConnectionSubLeg) {
-                    // Direct or final sub-leg of a connection: look up normally
-                    ArrayList<FlightOnDate> flightsHere = flightsOnDate(
-                            exp[i], exp[i + 1], currentDate, dateIndex);
-                    if (currentInbounds != null) {
-                        // This is the outbound of a connection; already validated above
-                        // (currentInbounds was set to the valid outbounds from the previous step).
-                        // Just use those flights directly.
-                        flightsHere = currentInbounds;
-                    }
-                    if (flightsHere == null || flightsHere.isEmpty()) {
-                        routeValid = false;
-                        break;
-                    }
-                    ArrayList<Flight> plain = new ArrayList<>();
-                    for (FlightOnDate fod : flightsHere) plain.add(fod.flight());
-                    subLegFlights.add(plain);
-                    currentInbounds = null;
-                } else {
-                    // Connection sub-leg: validate the pair with the next sub-leg
-                    ArrayList<FlightOnDate> inbounds = (currentInbounds != null)
-                            ? currentInbounds
-                            : flightsOnDate(exp[i], exp[i + 1], currentDate, dateIndex);
-
-                    if (inbounds.isEmpty()) { routeValid = false; break; }
-
-                    ArrayList<FlightOnDate> sameDayOut = flightsOnDate(
-                            exp[i + 1], exp[i + 2], currentDate, dateIndex);
-                    ArrayList<FlightOnDate> nextDayOut = flightsOnDate(
-                            exp[i + 1], exp[i + 2], currentDate.plusDays(1), dateIndex);
-
-                    int[] minConnOut = new int[1];
-                    boolean[] isOvernightOut = new boolean[1];
-
-                    @SuppressWarnings("unchecked")
-                    ArrayList<Flight>[] validated = validateConnectionPoint(
-                            inbounds, sameDayOut, nextDayOut, minConnOut, isOvernightOut);
-
-                    if (validated == null) { routeValid = false; break; }
-
-                    ArrayList<Flight> validIn = validated[0];
-                    ArrayList<Flight> validOut = validated[1];
-
-                    subLegFlights.add(validIn);
-                    minConnMins[i] = minConnOut[0];
-                    isOvernight[i] = isOvernightOut[0];
-
-                    if (isOvernightOut[0]) currentDate = currentDate.plusDays(1);
-
-                    // Pass the valid outbounds into the next sub-leg as its "inbounds"
-                    currentInbounds = new ArrayList<>();
-                    for (Flight f : validOut) currentInbounds.add(new FlightOnDate(f, currentDate));
-                }
+        // Sub-legs repeat across permutations, so each (origin, destination, date) is
+        // copied and sorted once per batch; concurrent since permutations run in parallel
+        ConcurrentHashMap<String, SortedFlights> board = new ConcurrentHashMap<>();
+        return evaluate(expandedPerms,
+                ep -> connectionRoute(ep, departureDate, daysAtAirport, dateIndex, board),
+                () -> new RouteRanking<>(optimizeBy, resultLimit, PlannedRoute::score));
+    }
 
-                subLegIdx++;
+    // The plans for one expanded permutation, or null if some leg has no path whose
+    // flights line up on its date
+    private PlannedRoute connectionRoute(ExpandedPerm ep, LocalDate departureDate, Map<String, Integer> daysAtAirport,
+            HashMap<String, Map<String, Integer>> dateIndex, ConcurrentHashMap<String, SortedFlights> board) {
+        LocalDate[] intendedDates = computeLegDates(
+                ep.intendedAirports(), departureDate, daysAtAirport);
+
+        // Each intended leg has its own date, so legs are validated independently:
+        // take the first candidate path whose flights line up, else drop the route
+        List<LegPlan> plans = new ArrayList<>();
+        for (int leg = 0; leg < ep.legPaths().size(); leg++) {
+            LegPlan plan = null;
+            for (String[] path : ep.legPaths().get(leg)) {
+                plan = planLeg(path, intendedDates[leg], dateIndex, board);
+                if (plan != null) break;
             }
+            if (plan == null) return null;
+            plans.add(plan);
+        }
+        return PlannedRoute.of(ep.intendedAirports(), plans);
+    }
 
-            if (routeValid) {
-                validRoutes.add(new Route(exp, subLegFlights, legDates,
-                        ep.intendedAirports(), isConnectionLeg, minConnMins, isOvernight));
+    // Looks up and validates the flights for one intended leg along one airport path,
+    // e.g. [LHR, UIO, GYE]. Returns null if any sub-leg has no flights or any
+    // connection point has no valid pairing.
+    private LegPlan planLeg(String[] path, LocalDate legDate, HashMap<String, Map<String, Integer>> dateIndex,
+            ConcurrentHashMap<String, SortedFlights> board) {
+        int numSubLegs = path.length - 1;
+        ArrayList<ArrayList<Flight>> subLegFlights = new ArrayList<>();
+        LocalDate[] dates = new LocalDate[numSubLegs];
+        boolean[] isConnection = new boolean[numSubLegs];
+        int[] minConnMins = new int[numSubLegs];
+        boolean[] isOvernight = new boolean[numSubLegs];
+
+        // currentDate tracks the effective sub-leg date, shifting by 1 for each overnight.
+        LocalDate currentDate = legDate;
+
+        // currentInbounds holds the validated outbounds of the previous connection point,
+        // which are the inbound flights for the current sub-leg.
+        SortedFlights currentInbounds = null;
+
+        for (int i = 0; i < numSubLegs; i++) {
+            // Every sub-leg but the last ends at a connection airport
+            boolean isConnectionSubLeg = i < numSubLegs - 1;
+            dates[i] = currentDate;
+            isConnection[i] = isConnectionSubLeg;
+
+            if (!isConnectionSubLeg) {
+                // Direct or final sub-leg of a connection. For a connection the flights were
+                // already validated at the previous connection point, so use those directly.
+                SortedFlights flightsHere = (currentInbounds != null)
+                        ? currentInbounds
+                        : flightsOnDate(path[i], path[i + 1], currentDate, dateIndex, board);
+                if (flightsHere.isEmpty()) return null;
+
+                subLegFlights.add(flightsHere.toList());
+            } else {
+                // Connection sub-leg: validate the pair with the next sub-leg
+                SortedFlights inbounds = (currentInbounds != null)
+                        ? currentInbounds
+                        : flightsOnDate(path[i], path[i + 1], currentDate, dateIndex, board);
+                if (inbounds.isEmpty()) return null;
+
+                SortedFlights sameDayOut = flightsOnDate(
+                        path[i + 1], path[i + 2], currentDate, dateIndex, board);
+                SortedFlights nextDayOut = flightsOnDate(
+                        path[i + 1], path[i + 2], currentDate.plusDays(1), dateIndex, board);
+
+                int[] minConnOut = new int[1];
+                boolean[] isOvernightOut = new boolean[1];
+
+                SortedFlights[] validated = validateConnectionPoint(
+                        inbounds, sameDayOut, nextDayOut, minConnOut, isOvernightOut);
+                if (validated == null) return null;
+
+                subLegFlights.add(validated[0].toList());
+                minConnMins[i] = minConnOut[0];
+                isOvernight[i] = isOvernightOut[0];
+
+                if (isOvernightOut[0]) currentDate = currentDate.plusDays(1);
+
+                // Pass the valid outbounds into the next sub-leg as its "inbounds"
+                currentInbounds = validated[1];
             }
         }
 
-        if ("duration".equalsIgnoreCase(optimizeBy)) {
-            validRoutes.sort((a, b) ->
-                    Long.compare(a.getShortestTotalDurationMinutes(), b.getShortestTotalDurationMinutes()));
-        } else {
-            validRoutes.sort((a, b) ->
-                    Integer.compare(a.getCheapestTotalPrice(), b.getCheapestTotalPrice()));
+        return new LegPlan(path, subLegFlights, dates, isConnection, minConnMins, isOvernight);
+    }
+
+    // Concatenates the chosen path of every intended leg into one Route
+    private static Route routeFromPlans(String[] intended, List<LegPlan> plans) {
+        ArrayList<String> expanded = new ArrayList<>();
+        expanded.add(intended[0]);
+        int numSubLegs = 0;
+        for (LegPlan plan : plans) numSubLegs += plan.path().length - 1;
+
+        ArrayList<ArrayList<Flight>> subLegFlights = new ArrayList<>();
+        LocalDate[] legDates = new LocalDate[numSubLegs];
+        boolean[] isConnectionLeg = new boolean[numSubLegs];
+        int[] minConnMins = new int[numSubLegs];
+        boolean[] isOvernight = new boolean[numSubLegs];
+
+        int offset = 0;
+        for (LegPlan plan : plans) {
+            String[] path = plan.path();
+            // Skip the first airport - it's already the last airport of the previous leg
+            for (int j = 1; j < path.length; j++) expanded.add(path[j]);
+            subLegFlights.addAll(plan.subLegFlights());
+
+            int count = path.length - 1;
+            System.arraycopy(plan.dates(), 0, legDates, offset, count);
+            System.arraycopy(plan.isConnection(), 0, isConnectionLeg, offset, count);
+            System.arraycopy(plan.minConnMins(), 0, minConnMins, offset, count);
+            System.arraycopy(plan.isOvernight(), 0, isOvernight, offset, count);
+            offset += count;
         }
-        return validRoutes;
+
+        return new Route(expanded.toArray(new String[0]), subLegFlights, legDates,
+                intended, isConnectionLeg, minConnMins, isOvernight);
+    }
+
+    // Keeps the best limit routes, shortest total duration first when optimizing by
+    // duration, otherwise cheapest first; "pareto" keeps the cheapest trade-offs
+    // (see RouteRanking)
+    private static void rankRoutes(ArrayList<Route> routes, String optimizeBy, int limit) {
+        RouteRanking<Route> ranking = new RouteRanking<>(optimizeBy, limit, RouteRanking.Score::of);
+        routes.forEach(ranking::offer);
+        ArrayList<Route> best = ranking.sorted();
+        routes.clear();
+        routes.addAll(best);
     }
 
     /**
@@ -637,66 +907,285 @@ public class MultiCitySearch {
         return dates;
     }
 
-    private ArrayList<String[]> filterValidPermutations(String[] destinations, String homeAirport) {
-        ArrayList<String[]> all = flightCombinations(destinations, homeAirport);
-        all.removeIf(perm -> !hasFlightsForAllLegs(perm, flightIndex));
-        return all;
-    }
+    // -------------------------------------------------------------------------
+    // Ordering search
+    // -------------------------------------------------------------------------
 
-    private static ArrayList<Route> buildRoutesFromDateIndex(ArrayList<String[]> perms,
-            LocalDate departureDate, Map<String, Integer> daysAtAirport,
-            HashMap<String, Map<String, Integer>> dateIndex,
-            HashMap<String, Flight> flightsByNumber, String optimizeBy) {
+    // How many orderings of the destinations a search prices and returns by default
+    public static final int MAX_ORDERINGS = 20;
 
-        ArrayList<Route> validRoutes = new ArrayList<>();
+    // Deepest page a caller can ask for (offset + limit). Held-Karp keeps this many
+    // partial orderings per state, about 20 MB at 12 destinations.
+    public static final int MAX_RESULTS = 50;
 
-        for (String[] perm : perms) {
-            LocalDate[] dates = computeLegDates(perm, departureDate, daysAtAirport);
-            ArrayList<ArrayList<Flight>> routeFlights = new ArrayList<>();
-            boolean routeValid = true;
+    // Most destinations a dated search accepts
+    public static final int MAX_DESTINATIONS = HeldKarp.MAX_DESTINATIONS;
 
-            for (int i = 0; i < perm.length - 1; i++) {
-                String key = perm[i] + perm[i + 1] + dates[i].toString();
-                Map<String, Integer> priceMap = dateIndex.get(key);
-                if (priceMap == null || priceMap.isEmpty()) {
-                    routeValid = false;
-                    break;
+    // Connection searches keep pulling orderings until enough fly on the day, which
+    // can be every one of them, so they stay at 5! = 120
+    public static final int MAX_CONNECTION_DESTINATIONS = 5;
+
+    // Stay length per destination, in the order of destinations
+    private static int[] stayDays(String[] destinations, Map<String, Integer> daysAtAirport) {
+        int[] stays = new int[destinations.length];
+        for (int i = 0; i < destinations.length; i++) {
+            stays[i] = daysAtAirport.getOrDefault(destinations[i], 0);
+        }
+        return stays;
+    }
+
+    // direct[a][b] is true when the flight index has a flight from airport a to airport b,
+    // with destinations at 0..n-1 and home at n
+    private boolean[][] directLegs(String homeAirport, String[] destinations) {
+        int n = destinations.length;
+        boolean[][] direct = new boolean[n + 1][n + 1];
+        for (int a = 0; a <= n; a++) {
+            for (int b = 0; b <= n; b++) {
+                String from = a == n ? homeAirport : destinations[a];
+                String to = b == n ? homeAirport : destinations[b];
+                direct[a][b] = a != b && flightIndex.containsKey(from + to);
+            }
+        }
+        return direct;
+    }
+
+    /*
+     * Every (origin, destination, date) leg that some ordering of the destinations
+     * would fly, restricted to airport pairs with a direct flight. The date of a leg
+     * depends only on the set of destinations already visited, so this walks the
+     * visited sets rather than the n! orderings.
+     */
+    private LinkedHashSet<LegQuery> collectOrderingLegQueries(String homeAirport, String[] destinations,
+            LocalDate departureDate, Map<String, Integer> daysAtAirport) {
+        int n = destinations.length;
+        int full = (1 << n) - 1;
+        int[] offsets = HeldKarp.dayOffsets(stayDays(destinations, daysAtAirport));
+        boolean[][] direct = directLegs(homeAirport, destinations);
+
+        // Legs repeat across visited sets with the same day offset
+        int days = offsets[full] + 1;
+        boolean[] seen = new boolean[(n + 1) * (n + 1) * days];
+        LinkedHashSet<LegQuery> legs = new LinkedHashSet<>();
+        for (int mask = 0; mask <= full; mask++) {
+            int offset = offsets[mask];
+            for (int from = 0; from <= n; from++) {
+                // Leave from home before anything is visited, otherwise from a visited destination
+                if (mask == 0 ? from != n : (from == n || (mask & (1 << from)) == 0)) continue;
+                for (int to = 0; to <= n; to++) {
+                    // Go home only once everything is visited
+                    if (to == n ? mask != full : (mask & (1 << to)) != 0) continue;
+                    if (!direct[from][to]) continue;
+                    int cell = (from * (n + 1) + to) * days + offset;
+                    if (seen[cell]) continue;
+                    seen[cell] = true;
+                    legs.add(new LegQuery(from == n ? homeAirport : destinations[from],
+                            to == n ? homeAirport : destinations[to], departureDate.plusDays(offset)));
                 }
+            }
+        }
+        return legs;
+    }
+
+    /*
+     * The best orderings of the destinations as full routes bookended by home, found
+     * with Held-Karp over the dated leg prices in dateIndex. Each leg costs its
+     * cheapest flight that day, or its shortest when optimizing by duration. "pareto"
+     * takes the union of the best orderings by price and by duration, which keeps
+     * the two ends of the trade-off however many orderings lie between them.
+     */
+    private ArrayList<String[]> bestOrderings(String homeAirport, String[] destinations,
+            LocalDate departureDate, Map<String, Integer> daysAtAirport, String optimizeBy,
+            HashMap<String, Map<String, Integer>> dateIndex) {
+        int[] stays = stayDays(destinations, daysAtAirport);
+        boolean[][] direct = directLegs(homeAirport, destinations);
+
+        List<HeldKarp.Ordering> orderings = new ArrayList<>();
+        if (!"duration".equalsIgnoreCase(optimizeBy)) {
+            orderings.addAll(HeldKarp.topOrderings(stays,
+                    datedLegCost(homeAirport, destinations, departureDate, direct, dateIndex, false), resultLimit));
+        }
+        if (!"price".equalsIgnoreCase(optimizeBy)) {
+            orderings.addAll(HeldKarp.topOrderings(stays,
+                    datedLegCost(homeAirport, destinations, departureDate, direct, dateIndex, true), resultLimit));
+        }
+
+        return toRoutes(homeAirport, destinations, orderings);
+    }
+
+    /*
+     * Tries the cheapest orderings by graph path price per leg - a lower bound
+     * on what the leg's flights will cost on the day, so a good guess at which
+     * orderings are worth pricing. Legs with no path at all rule an ordering out.
+     * Every leg starts at home or a destination, so one tree per airport of the trip
+     * (see FlightGraph.getShortestPathTree) prices all of them.
+     *
+     * tryBatch takes a batch of orderings and returns how many of them can be
+     * flown. An ordering that can't is replaced by the next cheapest: branch and
+     * bound is asked for twice as many orderings each round and the ones not yet
+     * tried go to tryBatch, until limit of them fly or the orderings run out.
+     */
+    private static void tryGraphOrderings(String homeAirport, String[] destinations,
+            FlightGraph flightGraph, int limit, ToIntFunction<List<String[]>> tryBatch) {
+        int n = destinations.length;
+        int[][] legCosts = new int[n + 1][n + 1];
+        for (int a = 0; a <= n; a++) {
+            Arrays.fill(legCosts[a], HeldKarp.NO_LEG);
+            ShortestPathTree tree = flightGraph.getShortestPathTree(airportAt(homeAirport, destinations, a), Metric.PRICE);
+            if (tree == null) continue;
+            for (int b = 0; b <= n; b++) {
+                int id = tree.getGraph().idOf(airportAt(homeAirport, destinations, b));
+                if (a != b && id >= 0 && tree.isReachable(id)) legCosts[a][b] = tree.distanceTo(id);
+            }
+        }
+
+        int flown = 0;
+        HashSet<String> tried = new HashSet<>();
+        for (int k = limit; ; k *= 2) {
+            List<HeldKarp.Ordering> orderings = BranchAndBound.topOrderings(legCosts, k);
+            ArrayList<String[]> batch = new ArrayList<>();
+            for (String[] perm : toRoutes(homeAirport, destinations, orderings)) {
+                if (tried.add(String.join(",", perm))) batch.add(perm);
+            }
+            flown += tryBatch.applyAsInt(batch);
+            if (flown >= limit || orderings.size() < k) return;
+        }
+    }
+
+    // Airport i of a trip, with destinations at 0..n-1 and home at n
+    private static String airportAt(String homeAirport, String[] destinations, int i) {
+        return i == destinations.length ? homeAirport : destinations[i];
+    }
+
+    // Full routes bookended by home, in the order given, skipping repeated orderings
+    private static ArrayList<String[]> toRoutes(String homeAirport, String[] destinations,
+            List<HeldKarp.Ordering> orderings) {
+        ArrayList<String[]> perms = new ArrayList<>();
+        HashSet<String> seen = new HashSet<>();
+        for (HeldKarp.Ordering ordering : orderings) {
+            String[] perm = new String[destinations.length + 2];
+            perm[0] = homeAirport;
+            for (int i = 0; i < destinations.length; i++) {
+                perm[i + 1] = destinations[ordering.stops()[i]];
+            }
+            perm[perm.length - 1] = homeAirport;
+            if (seen.add(String.join(",", perm))) perms.add(perm);
+        }
+        return perms;
+    }
 
-                // Build Flight objects from the in-memory index with date-specific prices
-                ArrayList<Flight> legFlights = new ArrayList<>();
+    // Leg costs for Held-Karp read from a date-keyed price index, memoized per
+    // (from, to, day offset) since many visited sets share a day offset
+    private HeldKarp.LegCost datedLegCost(String homeAirport, String[] destinations, LocalDate departureDate,
+            boolean[][] direct, HashMap<String, Map<String, Integer>> dateIndex, boolean byDuration) {
+        int n = destinations.length;
+        HashMap<Long, Integer> memo = new HashMap<>();
+        return (from, to, dayOffset) -> {
+            if (!direct[from][to]) return HeldKarp.NO_LEG;
+            long key = ((long) dayOffset * (n + 1) + from) * (n + 1) + to;
+            return memo.computeIfAbsent(key, k -> {
+                String origin = from == n ? homeAirport : destinations[from];
+                String dest = to == n ? homeAirport : destinations[to];
+                Map<String, Integer> priceMap = dateIndex.get(origin + dest + departureDate.plusDays(dayOffset));
+                if (priceMap == null) return HeldKarp.NO_LEG;
+
+                // Same flights buildRoutesFromDateIndex would keep for this leg
+                int best = HeldKarp.NO_LEG;
                 for (Map.Entry<String, Integer> entry : priceMap.entrySet()) {
-                    Flight template = flightsByNumber.get(entry.getKey());
+                    Flight template = schedules.get(FlightStore.scheduleKey(origin, dest, entry.getKey()));
                     if (template == null) continue;
-                    Flight copy = new Flight(template.getOrigin(), template.getDestination(),
-                            template.getDistance(), template.getDepartureTime(), template.getFlightNumber());
-                    copy.setPrice(entry.getValue());
-                    copy.setAirlineName(template.getAirlineName());
-                    copy.setAircraftName(template.getAircraftName());
-                    legFlights.add(copy);
+                    int cost = byDuration ? (int) template.getDuration().toMinutes() : entry.getValue();
+                    best = Math.min(best, cost);
                 }
+                return best;
+            });
+        };
+    }
 
-                if (legFlights.isEmpty()) {
-                    routeValid = false;
-                    break;
-                }
-                routeFlights.add(legFlights);
-            }
+    private static ArrayList<Route> buildRoutesFromDateIndex(ArrayList<String[]> perms,
+            LocalDate departureDate, Map<String, Integer> daysAtAirport,
+            HashMap<String, Map<String, Integer>> dateIndex,
+            HashMap<String, Flight> schedules, String optimizeBy, int limit) {
+
+        return evaluate(perms,
+                perm -> routeOnDates(perm, departureDate, daysAtAirport, dateIndex, schedules),
+                () -> new RouteRanking<>(optimizeBy, limit, RouteRanking.Score::of))
+                .sorted();
+    }
 
-            if (routeValid) {
-                validRoutes.add(new Route(perm, routeFlights));
+    // The route for one permutation flown on its leg dates, or null if a leg has no flights
+    private static Route routeOnDates(String[] perm, LocalDate departureDate, Map<String, Integer> daysAtAirport,
+            HashMap<String, Map<String, Integer>> dateIndex, HashMap<String, Flight> schedules) {
+        LocalDate[] dates = computeLegDates(perm, departureDate, daysAtAirport);
+        ArrayList<ArrayList<Flight>> routeFlights = new ArrayList<>();
+
+        for (int i = 0; i < perm.length - 1; i++) {
+            String key = perm[i] + perm[i + 1] + dates[i].toString();
+            Map<String, Integer> priceMap = dateIndex.get(key);
+            if (priceMap == null || priceMap.isEmpty()) return null;
+
+            // Date-specific prices over the in-memory schedules
+            ArrayList<Flight> legFlights = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : priceMap.entrySet()) {
+                Flight template = schedules.get(FlightStore.scheduleKey(perm[i], perm[i + 1], entry.getKey()));
+                if (template == null) continue;
+                legFlights.add(new PricedFlight(template, entry.getValue(), dates[i]));
             }
-        }
 
-        if ("duration".equalsIgnoreCase(optimizeBy)) {
-            validRoutes.sort((a, b) ->
-                    Long.compare(a.getShortestTotalDurationMinutes(), b.getShortestTotalDurationMinutes()));
-        } else {
-            validRoutes.sort((a, b) ->
-                    Integer.compare(a.getCheapestTotalPrice(), b.getCheapestTotalPrice()));
+            if (legFlights.isEmpty()) return null;
+            routeFlights.add(legFlights);
         }
+        return new Route(perm, routeFlights);
+    }
 
-        return validRoutes;
+    // -------------------------------------------------------------------------
+    // Parallel evaluation
+    // -------------------------------------------------------------------------
+
+    // One worker per core unless the server sets SEARCH_PARALLELISM
+    public static final int DEFAULT_SEARCH_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    // Shared by all requests so concurrent searches can't oversubscribe the cores.
+    // Kept apart from the common pool, which the graph preprocessing uses. Null when
+    // the parallelism is 1, which evaluates on the request thread.
+    private static volatile ForkJoinPool searchPool = newSearchPool(DEFAULT_SEARCH_PARALLELISM);
+
+    private static ForkJoinPool newSearchPool(int parallelism) {
+        return parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    // Resizes the shared search pool; called once at startup with SEARCH_PARALLELISM
+    public static synchronized void setSearchParallelism(int parallelism) {
+        ForkJoinPool previous = searchPool;
+        searchPool = newSearchPool(parallelism);
+        if (previous != null) previous.shutdown();
+    }
+
+    /*
+     * Turns each permutation into a route (or a plan for one), or null if it can't be
+     * flown, and offers the results to a ranking from newRanking. Permutations are
+     * independent and only read shared state (the flight index and the date-keyed
+     * prices), so they are split across the search pool; each worker offers its share to
+     * its own bounded ranking, so no worker holds more than the limit. Candidates are
+     * offered with their permutation's index, which breaks ties, so the result is the
+     * same as evaluating sequentially.
+     */
+    private static <T, R> RouteRanking<R> evaluate(List<T> perms, Function<T, R> toRoute,
+            Supplier<RouteRanking<R>> newRanking) {
+        ForkJoinPool pool = searchPool;
+        if (pool == null || perms.size() < 2) {
+            RouteRanking<R> ranking = newRanking.get();
+            for (int i = 0; i < perms.size(); i++) {
+                R route = toRoute.apply(perms.get(i));
+                if (route != null) ranking.offer(route, i);
+            }
+            return ranking;
+        }
+        return pool.submit(() -> IntStream.range(0, perms.size()).parallel()
+                .collect(newRanking, (ranking, i) -> {
+                    R route = toRoute.apply(perms.get(i));
+                    if (route != null) ranking.offer(route, i);
+                }, RouteRanking::merge))
+                .join();
     }
 
     public static Route findCheapestRoute(ArrayList<Route> validRoutes) {
@@ -711,20 +1200,14 @@ public class MultiCitySearch {
 
     public static ArrayList<String[]> flightCombinations(String[] airportsToVisit, String homeAirport) {
         // Takes an array of destination airports to visit and returns all possible
-        // combinations of routes between them
-        ArrayList<String[]> flightCombinations = new ArrayList<>();
-
-        // first and last airport always the same
-        // edge case - only one airport to visit.
-        if (airportsToVisit.length == 1) {
-            String[] flightRoute = { homeAirport, airportsToVisit[0], homeAirport };
-            flightCombinations.add(flightRoute);
-            return flightCombinations;
-        }
-
-        // Generate all permutations of citiesToVisit
-        permuteRoutes(airportsToVisit, 0, flightCombinations, homeAirport);
-        return flightCombinations;
+        // combinations of routes between them, first and last airport always home.
+        // With every leg costing the same nothing is ever pruned, so this is every
+        // ordering - 5 destinations is 5! (120) routes
+        int n = airportsToVisit.length;
+        int[][] sameCost = new int[n + 1][n + 1];
+        int count = 1;
+        for (int i = 2; i <= n; i++) count *= i;
+        return toRoutes(homeAirport, airportsToVisit, BranchAndBound.topOrderings(sameCost, count));
     }
 
     public HashMap<String, ArrayList<Flight>> buildFlightIndexForRoute(String[] flightRoute) {
@@ -789,37 +1272,4 @@ public class MultiCitySearch {
         }
         return true; // All legs exist
     }
-
-    private static void permuteRoutes(String[] cities, int start, ArrayList<String[]> routes, String home) {
-        // Helper method to generate all possible permutations of the trip to all
-        // specified destinations
-        // For 5 target destinations this is 5! (120) permutations
-        // uses recursion and the helper method swap
-
-        // Base case: if we've fixed all positions, add the route (home -> permutation
-        // -> home)
-        if (start == cities.length) {
-            // Create a new route array with home at start and end
-            String[] route = new String[cities.length + 2];
-            route[0] = home; // Start at home airport
-            System.arraycopy(cities, 0, route, 1, cities.length); // Add current permutation
-            route[route.length - 1] = home; // End at home airport
-            routes.add(route); // Add this route to the list
-        } else {
-            // Recursively generate all permutations by swapping each element into the
-            // current position
-            for (int i = start; i < cities.length; i++) {
-                swap(cities, start, i); // Swap to fix one city at the current position
-                permuteRoutes(cities, start + 1, routes, home); // Recurse for the next position
-                swap(cities, start, i); // Backtrack: undo the swap
-            }
-        }
-    }
-
-    // Helper method to swap elements in array
-    private static void swap(String[] arr, int i, int j) {
-        String temp = arr[i];
-        arr[i] = arr[j];
-        arr[j] = temp;
-    }
 }
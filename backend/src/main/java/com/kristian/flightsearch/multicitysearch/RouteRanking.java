@@ -0,0 +1,114 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.Function;
+
+import com.kristian.flightsearch.models.Route;
+
+/*
+ * Keeps the candidates a search returns out of everything offered to it: the best
+ * limit by total price, or by total duration when optimizing by duration. "pareto"
+ * first drops every candidate that another one matches or beats on price, duration
+ * and stops at once, then keeps the cheapest limit of the trade-offs left.
+ *
+ * Candidates are compared by a Score, which searches can work out before building
+ * a Route - from a journey's fares or a leg plan's flights - so only the candidates
+ * that come out of sorted() are ever turned into Routes.
+ *
+ * Ties go to the candidate with the lower index: the order it was offered in, or the
+ * index given to offer(candidate, index). A search split across threads gives each
+ * candidate its position in the input, so it keeps the same candidates whichever
+ * thread offered them first.
+ */
+class RouteRanking<T> {
+
+    // What routes are ranked by: cheapest total price, shortest total duration, stops
+    record Score(int price, long minutes, int stops) {
+
+        static Score of(Route route) {
+            return new Score(route.getCheapestTotalPrice(), route.getShortestTotalDurationMinutes(),
+                    route.getStopCount());
+        }
+
+        // True if this matches or beats other on all three at once
+        boolean covers(Score other) {
+            return price <= other.price && minutes <= other.minutes && stops <= other.stops;
+        }
+    }
+
+    // A candidate with the index that breaks ties for it
+    private record Entry<T>(T candidate, int index) {}
+
+    private final Function<? super T, Score> score;
+    private final int limit;
+    private final Comparator<Entry<T>> order;
+    // The best limit so far when ranking by price or duration; null for pareto
+    private final TopK<Entry<T>> top;
+    // Candidates no other offered one covers so far; pareto only
+    private final ArrayList<Entry<T>> front;
+    private int offered;
+
+    RouteRanking(String optimizeBy, int limit, Function<? super T, Score> score) {
+        this.score = score;
+        this.limit = limit;
+        Comparator<Entry<T>> byScore = "duration".equalsIgnoreCase(optimizeBy)
+                ? Comparator.comparingLong(entry -> score.apply(entry.candidate()).minutes())
+                : Comparator.comparingInt(entry -> score.apply(entry.candidate()).price());
+        this.order = byScore.thenComparingInt(Entry::index);
+        boolean pareto = "pareto".equalsIgnoreCase(optimizeBy);
+        this.top = pareto ? null : new TopK<>(limit, order);
+        this.front = pareto ? new ArrayList<>() : null;
+    }
+
+    void offer(T candidate) {
+        offer(candidate, offered);
+    }
+
+    void offer(T candidate, int index) {
+        offered++;
+        keep(new Entry<>(candidate, index));
+    }
+
+    private void keep(Entry<T> entry) {
+        if (top != null) {
+            top.offer(entry);
+            return;
+        }
+
+        // Of candidates with equal scores the one with the lower index stays
+        Score s = score.apply(entry.candidate());
+        for (Entry<T> kept : front) {
+            Score k = score.apply(kept.candidate());
+            if (k.covers(s) && (!k.equals(s) || kept.index() < entry.index())) return;
+        }
+        front.removeIf(kept -> s.covers(score.apply(kept.candidate())));
+        front.add(entry);
+    }
+
+    /*
+     * Adds what another ranking kept, with the indexes they were offered with. The
+     * best limit of a union is among the best limit of each part (and the pareto
+     * front among each part's front), so rankings filled on separate threads can be
+     * merged without seeing what they turned away.
+     */
+    void merge(RouteRanking<T> other) {
+        ArrayList<Entry<T>> kept = other.top != null ? other.top.sorted() : other.front;
+        for (Entry<T> entry : kept) keep(entry);
+        offered += other.offered;
+    }
+
+    // How many candidates have been offered, kept or not
+    int offered() {
+        return offered;
+    }
+
+    // The kept candidates, best first
+    ArrayList<T> sorted() {
+        ArrayList<T> candidates = new ArrayList<>();
+        for (Entry<T> entry : top != null ? top.sorted() : TopK.of(front, limit, order)) {
+            candidates.add(entry.candidate());
+        }
+        return candidates;
+    }
+}
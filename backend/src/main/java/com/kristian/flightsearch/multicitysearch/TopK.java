@@ -0,0 +1,62 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/*
+ * Keeps the k best items offered to it by some order, best first, in a bounded
+ * heap with the worst kept item on top. Offering n items costs O(n log k) rather
+ * than sorting all n, and callers can check worst() to skip building an item
+ * that couldn't make the cut.
+ */
+class TopK<T> {
+
+    private final int k;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    TopK(int k, Comparator<? super T> order) {
+        if (k < 1) throw new IllegalArgumentException("k must be at least 1: " + k);
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(order.reversed());
+    }
+
+    // The k best of items by order, best first
+    static <T> ArrayList<T> of(Iterable<T> items, int k, Comparator<? super T> order) {
+        TopK<T> top = new TopK<>(k, order);
+        for (T item : items) top.offer(item);
+        return top.sorted();
+    }
+
+    // Keeps item if fewer than k are kept or it beats the worst of them.
+    // Returns false if it was turned away.
+    boolean offer(T item) {
+        if (heap.size() == k) {
+            if (order.compare(item, heap.peek()) >= 0) return false;
+            heap.poll();
+        }
+        heap.add(item);
+        return true;
+    }
+
+    boolean isFull() {
+        return heap.size() == k;
+    }
+
+    // Worst item kept so far, or null if nothing is
+    T worst() {
+        return heap.peek();
+    }
+
+    int size() {
+        return heap.size();
+    }
+
+    ArrayList<T> sorted() {
+        ArrayList<T> items = new ArrayList<>(heap);
+        items.sort(order);
+        return items;
+    }
+}
@@ -0,0 +1,145 @@
+package com.kristian.flightsearch.timetable;
+
+/*
+ * Connection Scan Algorithm (CSA) over a Timetable.
+ *
+ * Instead of exploring a graph, CSA walks the array of dated departures once, in
+ * departure order. A departure is usable if its origin has already been reached
+ * early enough to make the connection; if so, its arrival airport is reached too.
+ * Because every departure is looked at after everything that could feed it, one
+ * linear pass answers the query, with the connection time enforced as it goes
+ * rather than checked afterwards - a path that only works with a later flight is
+ * found, not discarded.
+ *
+ * Labels are kept per number of flights used so a query can cap the stops.
+ * Both searches reuse per-thread scratch arrays and allocate only the result.
+ */
+public class ConnectionScan {
+
+    private static final ThreadLocal<ScanContext> CONTEXT = ThreadLocal.withInitial(ScanContext::new);
+
+    /**
+     * Journey that lands at the destination as early as possible, preferring fewer
+     * flights on a tie. Returns null if no journey fits the query.
+     */
+    public static Journey earliestArrival(Timetable tt, JourneyQuery q) {
+        if (q.origin() < 0 || q.destination() < 0 || q.origin() == q.destination()) return null;
+
+        int maxLegs = q.maxLegs();
+        ScanContext ctx = CONTEXT.get();
+        ctx.reset(tt.airportCount(), maxLegs);
+
+        int bestArrival = Integer.MAX_VALUE;
+        int bestLegs = -1;
+        int end = tt.connectionCount();
+        for (int c = tt.firstDepartingAtOrAfter(q.earliestDeparture()); c < end; c++) {
+            int departure = tt.departure(c);
+            // Nothing departing from here on can land before the best arrival found
+            if (departure >= bestArrival || departure > q.latestArrival()) break;
+
+            int arrival = tt.arrival(c);
+            int origin = tt.origin(c);
+            int destination = tt.destination(c);
+            if (arrival >= bestArrival || arrival > q.latestArrival() || origin == q.destination()) continue;
+
+            for (int k = 1; k <= maxLegs; k++) {
+                boolean reachable = k == 1
+                        ? origin == q.origin() && departure <= q.latestDeparture()
+                        : ctx.has(k - 1, origin) && ctx.value(k - 1, origin) + q.minConnectionMinutes() < departure;
+                if (!reachable || arrival >= ctx.valueOr(k, destination, Integer.MAX_VALUE)) continue;
+
+                ctx.set(k, destination, arrival, c);
+                if (destination == q.destination() && arrival < bestArrival) {
+                    bestArrival = arrival;
+                    bestLegs = k;
+                }
+            }
+        }
+        if (bestLegs < 0) return null;
+
+        // Walk the labels back: the flight into (k, airport) left from (k-1, its origin).
+        // A label can only have improved since it was used, so the chain stays feasible.
+        int[] connections = new int[bestLegs];
+        int airport = q.destination();
+        int price = 0;
+        for (int k = bestLegs; k >= 1; k--) {
+            int c = ctx.via(k, airport);
+            connections[k - 1] = c;
+            price += tt.price(c);
+            airport = tt.origin(c);
+        }
+        return new Journey(tt, connections, price);
+    }
+
+    /**
+     * Cheapest journey that lands by q.latestArrival(), preferring fewer flights on a
+     * tie. Returns null if no journey fits the query.
+     *
+     * A cheap arrival can't be used by a flight leaving before it lands, so a flight's
+     * price is only published at its arrival airport once arrival + minConnection has
+     * passed (see ScanContext). From then on it is usable by every later departure, so
+     * each (legs, airport) slot only needs the cheapest released price.
+     */
+    public static Journey cheapestArrival(Timetable tt, JourneyQuery q) {
+        if (q.origin() < 0 || q.destination() < 0 || q.origin() == q.destination()) return null;
+
+        int maxLegs = q.maxLegs();
+        ScanContext ctx = CONTEXT.get();
+        ctx.reset(tt.airportCount(), maxLegs);
+
+        int bestPrice = Integer.MAX_VALUE;
+        int bestEvent = -1;
+        int end = tt.connectionCount();
+        for (int c = tt.firstDepartingAtOrAfter(q.earliestDeparture()); c < end; c++) {
+            int departure = tt.departure(c);
+            if (departure > q.latestArrival()) break;
+
+            // Publish every arrival that can now make a connection (strictly more than
+            // minConnectionMinutes before this departure)
+            while (ctx.hasPendingEvents() && ctx.nextRelease() < departure) {
+                ctx.releaseNext();
+            }
+
+            int arrival = tt.arrival(c);
+            int origin = tt.origin(c);
+            int destination = tt.destination(c);
+            if (arrival > q.latestArrival() || origin == q.destination()) continue;
+
+            for (int k = 1; k <= maxLegs; k++) {
+                int priceSoFar;
+                int parent;
+                if (k == 1) {
+                    if (origin != q.origin() || departure > q.latestDeparture()) continue;
+                    priceSoFar = 0;
+                    parent = -1;
+                } else {
+                    if (!ctx.has(k - 1, origin)) continue;
+                    priceSoFar = ctx.value(k - 1, origin);
+                    parent = ctx.via(k - 1, origin);
+                }
+
+                int price = priceSoFar + tt.price(c);
+                // Prices are positive, so anything at or above the best complete journey is dead
+                if (price >= bestPrice) continue;
+
+                if (destination == q.destination()) {
+                    bestPrice = price;
+                    bestEvent = ctx.addEvent(arrival, k, destination, price, c, parent);
+                } else if (k < maxLegs && price < ctx.valueOr(k, destination, Integer.MAX_VALUE)) {
+                    // A cheaper label already released there dominates this one
+                    ctx.queueEvent(ctx.addEvent(arrival + q.minConnectionMinutes(), k, destination, price, c, parent));
+                }
+            }
+        }
+        if (bestEvent < 0) return null;
+
+        int legs = 0;
+        for (int e = bestEvent; e >= 0; e = ctx.eventParent(e)) legs++;
+        int[] connections = new int[legs];
+        int i = legs;
+        for (int e = bestEvent; e >= 0; e = ctx.eventParent(e)) {
+            connections[--i] = ctx.eventConnection(e);
+        }
+        return new Journey(tt, connections, bestPrice);
+    }
+}
@@ -0,0 +1,35 @@
+package com.kristian.flightsearch.timetable;
+
+import java.util.ArrayList;
+
+/*
+ * A ConnectionScan result: the flights taken, as Timetable connection ids in travel
+ * order, and their total price.
+ */
+public record Journey(Timetable timetable, int[] connections, int price) {
+
+    public int legs() {
+        return connections.length;
+    }
+
+    public int departure() {
+        return timetable.departure(connections[0]);
+    }
+
+    public int arrival() {
+        return timetable.arrival(connections[connections.length - 1]);
+    }
+
+    // Door-to-door minutes from the first departure to the final arrival
+    public int elapsedMinutes() {
+        return arrival() - departure();
+    }
+
+    // Airport codes visited, e.g. [JFK, LHR, UIO]
+    public ArrayList<String> codes() {
+        ArrayList<String> codes = new ArrayList<>(connections.length + 1);
+        codes.add(timetable.code(timetable.origin(connections[0])));
+        for (int c : connections) codes.add(timetable.code(timetable.destination(c)));
+        return codes;
+    }
+}
@@ -0,0 +1,13 @@
+package com.kristian.flightsearch.timetable;
+
+/*
+ * One ConnectionScan query. All times are Timetable minutes (UTC).
+ *
+ *   earliestDeparture / latestDeparture - window the first flight must leave in
+ *   latestArrival                       - the journey must land by then
+ *   maxLegs                             - flights allowed, i.e. stops + 1
+ *   minConnectionMinutes                - a connecting flight must leave strictly more
+ *                                         than this long after the previous one lands
+ */
+public record JourneyQuery(int origin, int destination, int earliestDeparture, int latestDeparture,
+        int latestArrival, int maxLegs, int minConnectionMinutes) {}
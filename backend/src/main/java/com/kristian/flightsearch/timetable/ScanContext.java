@@ -0,0 +1,152 @@
+package com.kristian.flightsearch.timetable;
+
+import java.util.Arrays;
+
+/*
+ * Reusable scratch space for ConnectionScan, one per request thread.
+ *
+ * Labels are kept per (legs used, airport) - slot k * airportCount + airport - so a
+ * query can cap the number of flights without a second pass. As in SearchContext,
+ * each slot carries the generation it was last written in and anything older reads
+ * as empty, so starting a scan doesn't have to clear the arrays.
+ *
+ * The cheapest-arrival scan also needs pending labels: a flight's price becomes
+ * usable at its arrival airport only once the minimum connection time has passed.
+ * Those are events in a primitive pool (release time, slot, price, connection,
+ * parent event) ordered by a binary heap of event ids on release time.
+ */
+class ScanContext {
+
+    private int[] value = new int[0];
+    private int[] via = new int[0];
+    private int[] stamp = new int[0];
+    private int generation;
+    private int airportCount;
+
+    private int[] eventRelease = new int[64];
+    private int[] eventSlot = new int[64];
+    private int[] eventPrice = new int[64];
+    private int[] eventConnection = new int[64];
+    private int[] eventParent = new int[64];
+    private int eventCount;
+
+    private int[] heap = new int[64];
+    private int heapSize;
+
+    void reset(int airportCount, int maxLegs) {
+        int slots = (maxLegs + 1) * airportCount;
+        if (stamp.length < slots) {
+            value = new int[slots];
+            via = new int[slots];
+            stamp = new int[slots];
+            generation = 0;
+        }
+        if (++generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+        this.airportCount = airportCount;
+        eventCount = 0;
+        heapSize = 0;
+    }
+
+    boolean has(int legs, int airport) {
+        return stamp[legs * airportCount + airport] == generation;
+    }
+
+    int value(int legs, int airport) {
+        return value[legs * airportCount + airport];
+    }
+
+    // The label's value, or missing if the slot hasn't been written in this scan
+    int valueOr(int legs, int airport, int missing) {
+        int slot = legs * airportCount + airport;
+        return stamp[slot] == generation ? value[slot] : missing;
+    }
+
+    int via(int legs, int airport) {
+        return via[legs * airportCount + airport];
+    }
+
+    void set(int legs, int airport, int newValue, int newVia) {
+        int slot = legs * airportCount + airport;
+        stamp[slot] = generation;
+        value[slot] = newValue;
+        via[slot] = newVia;
+    }
+
+    // Adds an event to the pool (but not the queue) and returns its id
+    int addEvent(int release, int legs, int airport, int price, int connection, int parent) {
+        if (eventCount == eventRelease.length) {
+            int capacity = eventCount * 2;
+            eventRelease = Arrays.copyOf(eventRelease, capacity);
+            eventSlot = Arrays.copyOf(eventSlot, capacity);
+            eventPrice = Arrays.copyOf(eventPrice, capacity);
+            eventConnection = Arrays.copyOf(eventConnection, capacity);
+            eventParent = Arrays.copyOf(eventParent, capacity);
+        }
+        int e = eventCount++;
+        eventRelease[e] = release;
+        eventSlot[e] = legs * airportCount + airport;
+        eventPrice[e] = price;
+        eventConnection[e] = connection;
+        eventParent[e] = parent;
+        return e;
+    }
+
+    int eventConnection(int e) {
+        return eventConnection[e];
+    }
+
+    int eventParent(int e) {
+        return eventParent[e];
+    }
+
+    boolean hasPendingEvents() {
+        return heapSize > 0;
+    }
+
+    int nextRelease() {
+        return eventRelease[heap[0]];
+    }
+
+    void queueEvent(int e) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        int i = heapSize++;
+        int key = eventRelease[e];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (eventRelease[heap[parent]] <= key) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = e;
+    }
+
+    // Pops the next event to release and applies it if it beats the slot's current label
+    void releaseNext() {
+        int e = heap[0];
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            int key = eventRelease[last];
+            int i = 0;
+            int half = heapSize >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < heapSize && eventRelease[heap[right]] < eventRelease[heap[child]]) child = right;
+                if (key <= eventRelease[heap[child]]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+        }
+
+        int slot = eventSlot[e];
+        if (stamp[slot] != generation || eventPrice[e] < value[slot]) {
+            stamp[slot] = generation;
+            value[slot] = eventPrice[e];
+            via[slot] = e;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.kristian.flightsearch.timetable;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.kristian.flightsearch.models.Airport;
+
+/*
+ * Every dated departure ("connection") in the network, sorted by absolute departure
+ * time, for the Connection Scan Algorithm in ConnectionScan.
+ *
+ * Times are whole minutes since 1970-01-01T00:00Z. Each row of the flights table is
+ * local (flight_date + departure_time at the origin airport), so it is shifted by the
+ * origin's UTC offset on the way in - that way an arrival in Quito and a departure
+ * from Quito can be compared directly, even when the inbound left from London.
+ *
+ * Like CompactFlightGraph, each attribute lives in its own primitive array indexed by
+ * connection id, and airports are mapped to dense int ids. Build one with
+ * Timetable.Builder.
+ */
+public class Timetable {
+
+    private final Airport[] airports;
+    private final HashMap<String, Integer> idByCode;
+
+    private final int[] departures;
+    private final int[] arrivals;
+    private final int[] origins;
+    private final int[] destinations;
+    private final int[] prices;
+    private final String[] flightNumbers;
+
+    private Timetable(Airport[] airports, HashMap<String, Integer> idByCode, int[] departures, int[] arrivals,
+            int[] origins, int[] destinations, int[] prices, String[] flightNumbers) {
+        this.airports = airports;
+        this.idByCode = idByCode;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.origins = origins;
+        this.destinations = destinations;
+        this.prices = prices;
+        this.flightNumbers = flightNumbers;
+    }
+
+    public int connectionCount() {
+        return departures.length;
+    }
+
+    public int airportCount() {
+        return airports.length;
+    }
+
+    // Returns the dense id for an airport code, or -1 if no flight touches the airport
+    public int idOf(String airportCode) {
+        Integer id = idByCode.get(airportCode);
+        return id != null ? id : -1;
+    }
+
+    public Airport airport(int id) {
+        return airports[id];
+    }
+
+    public String code(int id) {
+        return airports[id].getCode();
+    }
+
+    public int departure(int c) {
+        return departures[c];
+    }
+
+    public int arrival(int c) {
+        return arrivals[c];
+    }
+
+    public int origin(int c) {
+        return origins[c];
+    }
+
+    public int destination(int c) {
+        return destinations[c];
+    }
+
+    public int price(int c) {
+        return prices[c];
+    }
+
+    public String flightNumber(int c) {
+        return flightNumbers[c];
+    }
+
+    // Departure and arrival as wall-clock time at the airport they happen at
+    public LocalDateTime localDeparture(int c) {
+        return toLocal(departures[c], airports[origins[c]]);
+    }
+
+    public LocalDateTime localArrival(int c) {
+        return toLocal(arrivals[c], airports[destinations[c]]);
+    }
+
+    // Id of the first connection departing at or after utcMinute (connectionCount() if none)
+    public int firstDepartingAtOrAfter(int utcMinute) {
+        int lo = 0;
+        int hi = departures.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (departures[mid] < utcMinute) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Converts a local date and time at the airport to minutes since the epoch (UTC)
+    public static int utcMinute(LocalDate date, LocalTime time, Airport airport) {
+        long local = date.toEpochDay() * 24 * 60 + time.toSecondOfDay() / 60;
+        return (int) (local - offsetMinutes(airport));
+    }
+
+    private static LocalDateTime toLocal(int utcMinute, Airport airport) {
+        long local = utcMinute + offsetMinutes(airport);
+        return LocalDateTime.of(LocalDate.ofEpochDay(Math.floorDiv(local, 24 * 60)),
+                LocalTime.ofSecondOfDay(Math.floorMod(local, 24 * 60) * 60L));
+    }
+
+    private static long offsetMinutes(Airport airport) {
+        return Math.round(airport.getUtcOffset() * 60);
+    }
+
+    /*
+     * Accumulates connections in arrival order into growable primitive arrays and
+     * sorts them by departure time on build().
+     */
+    public static class Builder {
+        private final ArrayList<Airport> airports = new ArrayList<>();
+        private final HashMap<String, Integer> idByCode = new HashMap<>();
+
+        private int[] departures = new int[16];
+        private int[] arrivals = new int[16];
+        private int[] origins = new int[16];
+        private int[] destinations = new int[16];
+        private int[] prices = new int[16];
+        private String[] flightNumbers = new String[16];
+        private int size;
+
+        /*
+         * Adds one dated departure.
+         *
+         * @param date             local departure date at the origin
+         * @param departureTime    local departure time at the origin
+         * @param durationMinutes  gate-to-gate flight time
+         */
+        public void addConnection(Airport origin, Airport destination, LocalDate date, LocalTime departureTime,
+                int durationMinutes, int price, String flightNumber) {
+            if (size == departures.length) {
+                int capacity = size * 2;
+                departures = Arrays.copyOf(departures, capacity);
+                arrivals = Arrays.copyOf(arrivals, capacity);
+                origins = Arrays.copyOf(origins, capacity);
+                destinations = Arrays.copyOf(destinations, capacity);
+                prices = Arrays.copyOf(prices, capacity);
+                flightNumbers = Arrays.copyOf(flightNumbers, capacity);
+            }
+            int departure = utcMinute(date, departureTime, origin);
+            departures[size] = departure;
+            arrivals[size] = departure + durationMinutes;
+            origins[size] = idFor(origin);
+            destinations[size] = idFor(destination);
+            prices[size] = price;
+            flightNumbers[size] = flightNumber;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        private int idFor(Airport airport) {
+            Integer id = idByCode.get(airport.getCode());
+            if (id == null) {
+                id = airports.size();
+                airports.add(airport);
+                idByCode.put(airport.getCode(), id);
+            }
+            return id;
+        }
+
+        public Timetable build() {
+            // Sort (departure, row) pairs packed into longs - no boxing, no comparator
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = ((long) departures[i] << 32) | i;
+            }
+            Arrays.sort(order);
+
+            int[] sortedDepartures = new int[size];
+            int[] sortedArrivals = new int[size];
+            int[] sortedOrigins = new int[size];
+            int[] sortedDestinations = new int[size];
+            int[] sortedPrices = new int[size];
+            String[] sortedFlightNumbers = new String[size];
+            for (int c = 0; c < size; c++) {
+                int i = (int) order[c];
+                sortedDepartures[c] = departures[i];
+                sortedArrivals[c] = arrivals[i];
+                sortedOrigins[c] = origins[i];
+                sortedDestinations[c] = destinations[i];
+                sortedPrices[c] = prices[i];
+                sortedFlightNumbers[c] = flightNumbers[i];
+            }
+
+            return new Timetable(airports.toArray(new Airport[0]), new HashMap<>(idByCode),
+                    sortedDepartures, sortedArrivals, sortedOrigins, sortedDestinations,
+                    sortedPrices, sortedFlightNumbers);
+        }
+    }
+}
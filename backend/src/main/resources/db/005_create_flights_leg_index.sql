@@ -0,0 +1,10 @@
+-- migration: no-transaction
+-- Covering index for dated leg lookups on flights: one index-only range scan
+-- per (origin, destination, flight_date) tuple instead of intersecting the
+-- single-column indexes. Only direct flights are ever priced per leg, so the
+-- index is partial on stops = 0. Built CONCURRENTLY so flights stays writable;
+-- if a build is interrupted, drop the INVALID index it leaves before restarting.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_flights_leg
+    ON flights (origin, destination, flight_date)
+    INCLUDE (flight_number, ticket_price)
+    WHERE stops = 0;
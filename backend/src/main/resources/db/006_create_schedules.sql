@@ -0,0 +1,44 @@
+-- Normalised read model of flights: one schedules row per flight number and
+-- route (~48k), and one narrow flight_prices row per schedule per operating date
+-- (~2.9M). The app reads these; flights stays as the raw table the seed loaders
+-- fill. Flight numbers are reused across routes, so a schedule is keyed by its own
+-- id rather than by flight_number alone.
+CREATE TABLE IF NOT EXISTS schedules (
+    schedule_id    SERIAL        PRIMARY KEY,
+    flight_number  VARCHAR(8)    NOT NULL,
+    airline_code   VARCHAR(3)    NOT NULL  REFERENCES airlines (airline_code),
+    origin         CHAR(3)       NOT NULL  REFERENCES airports (iata_code),
+    destination    CHAR(3)       NOT NULL  REFERENCES airports (iata_code),
+    departure_time TIME          NOT NULL,
+    stops          SMALLINT      NOT NULL  DEFAULT 0,
+    aircraft_type  VARCHAR(4)              REFERENCES planes (iata_code),
+    UNIQUE (flight_number, origin, destination)
+);
+
+CREATE INDEX IF NOT EXISTS idx_schedules_route ON schedules (origin, destination);
+
+CREATE TABLE IF NOT EXISTS flight_prices (
+    schedule_id    INTEGER       NOT NULL  REFERENCES schedules (schedule_id),
+    flight_date    DATE          NOT NULL,
+    ticket_price   NUMERIC(8,2)  NOT NULL  CHECK (ticket_price > 0),
+    PRIMARY KEY (schedule_id, flight_date)
+);
+
+-- Data migration: fill both from flights the first time, keeping each schedule's
+-- earliest date's departure time and aircraft as readFlights used to. Skipped once
+-- schedules has rows; BulkLoader empties both tables and reruns this after a load.
+INSERT INTO schedules (flight_number, airline_code, origin, destination, departure_time, stops, aircraft_type)
+    SELECT DISTINCT ON (flight_number, origin, destination)
+           flight_number, airline_code, origin, destination, departure_time, stops, aircraft_type
+    FROM flights
+    WHERE NOT EXISTS (SELECT 1 FROM schedules)
+    ORDER BY flight_number, origin, destination, flight_date;
+
+INSERT INTO flight_prices (schedule_id, flight_date, ticket_price)
+    SELECT s.schedule_id, f.flight_date, MIN(f.ticket_price)
+    FROM flights f
+    JOIN schedules s ON s.flight_number = f.flight_number
+                    AND s.origin = f.origin
+                    AND s.destination = f.destination
+    WHERE NOT EXISTS (SELECT 1 FROM flight_prices)
+    GROUP BY s.schedule_id, f.flight_date;
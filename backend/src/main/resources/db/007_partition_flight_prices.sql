@@ -0,0 +1,79 @@
+-- Range-partitions flight_prices by flight_date month, so dated lookups only touch
+-- the month they ask for and each month's index stays the size of one month.
+-- PartitionMaintenance calls the two functions below on startup to keep
+-- partitions ahead of the rolling date window and to detach expired months.
+
+-- Creates any missing monthly partitions covering from_date..to_date. Returns how
+-- many were created.
+CREATE OR REPLACE FUNCTION ensure_flight_price_partitions(from_date DATE, to_date DATE) RETURNS INTEGER AS $$
+DECLARE
+    month    DATE := date_trunc('month', from_date)::date;
+    created  INTEGER := 0;
+    part     TEXT;
+BEGIN
+    IF from_date IS NULL OR to_date IS NULL THEN
+        RETURN 0;
+    END IF;
+    WHILE month <= to_date LOOP
+        part := 'flight_prices_' || to_char(month, 'YYYY_MM');
+        IF to_regclass(part) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF flight_prices FOR VALUES FROM (%L) TO (%L)',
+                           part, month, (month + INTERVAL '1 month')::date);
+            created := created + 1;
+        END IF;
+        month := (month + INTERVAL '1 month')::date;
+    END LOOP;
+    RETURN created;
+END
+$$ LANGUAGE plpgsql;
+
+-- Detaches every monthly partition that ends on or before cutoff, renaming it
+-- <name>_detached so it drops out of queries but its data is kept. Returns how
+-- many were detached.
+CREATE OR REPLACE FUNCTION detach_flight_price_partitions(cutoff DATE) RETURNS INTEGER AS $$
+DECLARE
+    part      RECORD;
+    detached  INTEGER := 0;
+BEGIN
+    FOR part IN
+        SELECT c.relname
+        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'flight_prices'::regclass
+          AND c.relname ~ '^flight_prices_[0-9]{4}_[0-9]{2}$'
+    LOOP
+        IF (to_date(substring(part.relname FROM 15), 'YYYY_MM') + INTERVAL '1 month')::date <= cutoff THEN
+            EXECUTE format('ALTER TABLE flight_prices DETACH PARTITION %I', part.relname);
+            EXECUTE format('ALTER TABLE %I RENAME TO %I', part.relname, part.relname || '_detached');
+            detached := detached + 1;
+        END IF;
+    END LOOP;
+    RETURN detached;
+END
+$$ LANGUAGE plpgsql;
+
+-- One-off conversion of the plain table from migration 006: move its rows into a
+-- partitioned table of the same shape. A no-op once flight_prices is partitioned.
+DO $$
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'flight_prices'::regclass) = 'r' THEN
+        ALTER TABLE flight_prices RENAME TO flight_prices_unpartitioned;
+        ALTER TABLE flight_prices_unpartitioned RENAME CONSTRAINT flight_prices_pkey TO flight_prices_unpartitioned_pkey;
+
+        -- The primary key doubles as the (schedule_id, flight_date) lookup index and
+        -- includes the partition key, as a partitioned table's unique keys must
+        CREATE TABLE flight_prices (
+            schedule_id    INTEGER       NOT NULL  REFERENCES schedules (schedule_id),
+            flight_date    DATE          NOT NULL,
+            ticket_price   NUMERIC(8,2)  NOT NULL  CHECK (ticket_price > 0),
+            PRIMARY KEY (schedule_id, flight_date)
+        ) PARTITION BY RANGE (flight_date);
+
+        PERFORM ensure_flight_price_partitions(MIN(flight_date), MAX(flight_date))
+        FROM flight_prices_unpartitioned;
+
+        INSERT INTO flight_prices (schedule_id, flight_date, ticket_price)
+            SELECT schedule_id, flight_date, ticket_price FROM flight_prices_unpartitioned;
+        DROP TABLE flight_prices_unpartitioned;
+    END IF;
+END
+$$;
@@ -0,0 +1,11 @@
+-- migration: no-transaction
+-- Dated leg lookups now read schedules and flight_prices (migration 006), so
+-- idx_flights_leg serves no query and only slows writes and bulk loads on
+-- flights. Its replacement covers the schedules side of the leg lookup: the
+-- route's direct schedules with the columns the join needs, read index-only.
+-- idx_schedules_route stays, since BulkLoader reruns 006 which recreates it.
+DROP INDEX CONCURRENTLY IF EXISTS idx_flights_leg;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_schedules_leg
+    ON schedules (origin, destination)
+    INCLUDE (schedule_id, flight_number)
+    WHERE stops = 0;
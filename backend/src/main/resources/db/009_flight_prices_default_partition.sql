@@ -0,0 +1,35 @@
+-- Gives flight_prices a DEFAULT partition, so prices dated outside every monthly
+-- partition are stored rather than rejected - a load reaching further ahead than
+-- PartitionMaintenance's window, or back past the seeded months.
+CREATE TABLE IF NOT EXISTS flight_prices_default PARTITION OF flight_prices DEFAULT;
+
+-- Same as in migration 007, except that a month's rows already in the default
+-- partition are moved into its new partition: Postgres refuses to add a partition
+-- whose range the default partition holds rows for. The partition is filled
+-- before it is attached, which then only has to check the default is clear of it.
+CREATE OR REPLACE FUNCTION ensure_flight_price_partitions(from_date DATE, to_date DATE) RETURNS INTEGER AS $$
+DECLARE
+    month    DATE := date_trunc('month', from_date)::date;
+    created  INTEGER := 0;
+    part     TEXT;
+BEGIN
+    IF from_date IS NULL OR to_date IS NULL THEN
+        RETURN 0;
+    END IF;
+    WHILE month <= to_date LOOP
+        part := 'flight_prices_' || to_char(month, 'YYYY_MM');
+        IF to_regclass(part) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I (LIKE flight_prices INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+            EXECUTE format('WITH moved AS (DELETE FROM flight_prices_default '
+                           'WHERE flight_date >= %L AND flight_date < %L RETURNING *) '
+                           'INSERT INTO %I SELECT * FROM moved',
+                           month, (month + INTERVAL '1 month')::date, part);
+            EXECUTE format('ALTER TABLE flight_prices ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           part, month, (month + INTERVAL '1 month')::date);
+            created := created + 1;
+        END IF;
+        month := (month + INTERVAL '1 month')::date;
+    END LOOP;
+    RETURN created;
+END
+$$ LANGUAGE plpgsql;
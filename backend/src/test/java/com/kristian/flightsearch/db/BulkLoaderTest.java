@@ -0,0 +1,60 @@
+package com.kristian.flightsearch.db;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+@DisplayName("BulkLoader Tests")
+class BulkLoaderTest {
+
+    @Test
+    @DisplayName("parseCsvLine() handles quoted commas, escaped quotes and empty fields")
+    void testParseCsvLine() {
+        assertArrayEquals(new String[] { "1", "Kennedy, John F", "say \"hi\"", "" },
+                BulkLoader.parseCsvLine("1,\"Kennedy, John F\",\"say \"\"hi\"\"\","));
+        assertArrayEquals(new String[] { "" }, BulkLoader.parseCsvLine(""));
+    }
+
+    @Test
+    @DisplayName("appendCsvRow() output parses back to the same fields")
+    void testAppendCsvRowRoundTrip() {
+        String[] fields = { "2439", "Urquiza, General", "quote \" inside", "", "PRA" };
+        StringBuilder out = new StringBuilder();
+        BulkLoader.appendCsvRow(out, fields);
+
+        assertTrue(out.toString().endsWith("\n"));
+        assertArrayEquals(fields, BulkLoader.parseCsvLine(out.substring(0, out.length() - 1)));
+    }
+
+    @Test
+    @DisplayName("FlightFilter keeps only rows whose airline, airports and aircraft are known")
+    void testFlightFilter() {
+        BulkLoader.FlightFilter filter = new BulkLoader.FlightFilter(
+                Set.of("AA"), Set.of("JFK", "LAX"), Set.of("738"));
+
+        assertTrue(filter.accepts(row("AA", "JFK", "LAX", "738")));
+        assertTrue(filter.accepts(row("AA", "JFK", "LAX", "")));
+        assertFalse(filter.accepts(row("ZZ", "JFK", "LAX", "738")));
+        assertFalse(filter.accepts(row("AA", "JFK", "SFO", "738")));
+        assertFalse(filter.accepts(row("AA", "XXX", "LAX", "738")));
+        assertFalse(filter.accepts(row("AA", "JFK", "LAX", "999")));
+    }
+
+    @Test
+    @DisplayName("readCsv() reads the bundled airports file with every column the loader copies")
+    void testReadAirportsCsv() throws Exception {
+        List<String[]> airports = BulkLoader.readCsv(Path.of("data/airports.csv"), true);
+        assertFalse(airports.isEmpty());
+        for (String[] airport : airports) assertEquals(15, airport.length);
+    }
+
+    // flight_date, airline_code, origin, destination, stops, aircraft_type, flight_number, departure_time, ticket_price
+    private static String[] row(String airline, String origin, String destination, String aircraft) {
+        return new String[] { "2026-07-01", airline, origin, destination, "0", aircraft, "AA100", "08:30:00", "300.00" };
+    }
+}
@@ -0,0 +1,145 @@
+package com.kristian.flightsearch.db;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.datagenerator.FlightGenerator;
+import com.kristian.flightsearch.flightgraph.FlightGraph;
+import com.kristian.flightsearch.flightgraph.Metric;
+import com.kristian.flightsearch.flightgraph.ShortestPath;
+import com.kristian.flightsearch.models.Airport;
+import com.kristian.flightsearch.models.Flight;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+
+@DisplayName("FlightSnapshot Tests")
+class FlightSnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDate JULY_1 = LocalDate.of(2026, 7, 1);
+
+    private final Airport jfk = new Airport("JFK", "John F Kennedy", 40.64, -73.78, 14511, 13,
+            "New York", "United States", "KJFK", "America/New_York", -5);
+    private final Airport lax = new Airport("LAX", "Los Angeles", 33.94, -118.41, 12923, 125,
+            "Los Angeles", "United States", null, null, -8);
+
+    private HashMap<String, Flight> sampleFlights() {
+        HashMap<String, Flight> flights = new HashMap<>();
+        Flight out = new Flight(jfk, lax, 3983, LocalTime.of(8, 30), "AA100");
+        out.setPrice(300);
+        out.setAirlineName("American Airlines");
+        Flight back = new Flight(lax, jfk, 3983, LocalTime.of(22, 15), "AA101");
+        back.setPrice(310);
+        flights.put(FlightStore.scheduleKey("JFK", "LAX", "AA100"), out);
+        flights.put(FlightStore.scheduleKey("LAX", "JFK", "AA101"), back);
+        return flights;
+    }
+
+    // The network over sampleFlights(), prepared as the server does at startup
+    private FlightGraph.Prepared sampleGraph() {
+        FlightGraph graph = FlightGraph.initalizeFlightGraph(new Airport[] { jfk, lax });
+        FlightGraph.addFlightEdges(graph, FlightGenerator.flightMapper(sampleFlights()));
+        graph.prepareContractionHierarchies();
+        return graph.prepared();
+    }
+
+    private static PriceCube samplePrices() {
+        PriceCube.Builder builder = new PriceCube.Builder();
+        builder.addPrice("JFK", "LAX", "AA100", JULY_1, 300);
+        builder.addPrice("JFK", "LAX", "AA100", JULY_1.plusDays(4), 340);
+        builder.addPrice("LAX", "JFK", "AA101", JULY_1.plusDays(2), 310);
+        return builder.build();
+    }
+
+    @Test
+    @DisplayName("read() returns what write() stored")
+    void testRoundTrip() throws Exception {
+        Path file = dir.resolve("flights.snapshot");
+        FlightSnapshot.write(file, "v1", new Airport[] { jfk, lax }, sampleFlights(), sampleGraph(), samplePrices());
+
+        FlightSnapshot.Contents contents = FlightSnapshot.read(file, "v1");
+        assertNotNull(contents);
+
+        assertEquals(2, contents.airports().length);
+        Airport readJfk = contents.airports()[0];
+        assertEquals("JFK", readJfk.getCode());
+        assertEquals("KJFK", readJfk.getIcaoCode());
+        assertEquals(-73.78, readJfk.getLon());
+        assertNull(contents.airports()[1].getIcaoCode());
+
+        Flight out = contents.flights().get(FlightStore.scheduleKey("JFK", "LAX", "AA100"));
+        assertSame(readJfk, out.getOrigin());
+        assertEquals("LAX", out.getDestination().getCode());
+        assertEquals(LocalTime.of(8, 30), out.getDepartureTime());
+        assertEquals(300, out.getPrice());
+        assertEquals(3983, out.getDistance());
+        assertEquals(sampleFlights().get(FlightStore.scheduleKey("JFK", "LAX", "AA100")).getDuration(),
+                out.getDuration());
+        assertEquals("American Airlines", out.getAirlineName());
+        assertNull(contents.flights().get(FlightStore.scheduleKey("LAX", "JFK", "AA101")).getAirlineName());
+
+        PriceCube prices = contents.prices();
+        assertEquals(JULY_1, prices.getFirstDate());
+        assertEquals(5, prices.dayCount());
+        assertEquals(340, prices.price("JFK", "LAX", "AA100", JULY_1.plusDays(4)));
+        assertEquals(310, prices.price("LAX", "JFK", "AA101", JULY_1.plusDays(2)));
+        assertEquals(PriceCube.NO_PRICE, prices.price("JFK", "LAX", "AA100", JULY_1.plusDays(1)));
+    }
+
+    @Test
+    @DisplayName("The restored graph answers queries with its saved hierarchies")
+    void testRestoredGraph() throws Exception {
+        Path file = dir.resolve("flights.snapshot");
+        FlightSnapshot.write(file, "v1", new Airport[] { jfk, lax }, sampleFlights(), sampleGraph(), samplePrices());
+
+        FlightSnapshot.Contents contents = FlightSnapshot.read(file, "v1");
+        assertNotNull(contents);
+        assertNotNull(contents.graph().priceHierarchy());
+
+        FlightGraph graph = FlightGraph.restore(contents.airports(), contents.graph());
+        ShortestPath path = graph.findPath("JFK", "LAX", Metric.PRICE);
+        assertNotNull(path);
+        assertEquals(300, path.cost());
+        assertEquals("AA100", path.graph().flightNumber(path.edges()[0]));
+    }
+
+    @Test
+    @DisplayName("read() ignores a snapshot of other data or a missing file")
+    void testStaleOrMissing() throws Exception {
+        Path file = dir.resolve("flights.snapshot");
+        assertNull(FlightSnapshot.read(file, "v1"));
+
+        FlightSnapshot.write(file, "v1", new Airport[] { jfk, lax }, sampleFlights(), sampleGraph(), samplePrices());
+        assertNull(FlightSnapshot.read(file, "v2"));
+    }
+
+    @Test
+    @DisplayName("read() ignores a file that isn't a snapshot")
+    void testNotASnapshot() throws Exception {
+        Path file = dir.resolve("flights.snapshot");
+        Files.writeString(file, "not a snapshot");
+        assertNull(FlightSnapshot.read(file, "v1"));
+    }
+
+    @Test
+    @DisplayName("An empty price cube round-trips")
+    void testEmptyPrices() throws Exception {
+        Path file = dir.resolve("flights.snapshot");
+        FlightSnapshot.write(file, "v1", new Airport[] { jfk, lax }, sampleFlights(), sampleGraph(),
+                new PriceCube.Builder().build());
+
+        FlightSnapshot.Contents contents = FlightSnapshot.read(file, "v1");
+        assertNotNull(contents);
+        assertNull(contents.prices().getFirstDate());
+        assertEquals(0, contents.prices().scheduleCount());
+    }
+}
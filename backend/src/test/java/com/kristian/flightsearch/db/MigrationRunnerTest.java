@@ -0,0 +1,52 @@
+package com.kristian.flightsearch.db;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+@DisplayName("MigrationRunner Tests")
+class MigrationRunnerTest {
+
+    @Test
+    @DisplayName("version() is the file name's number prefix")
+    void testVersion() {
+        assertEquals("005", MigrationRunner.version("db/005_create_flights_leg_index.sql"));
+        assertEquals("001", MigrationRunner.version("001_create_planes.sql"));
+        assertThrows(IllegalArgumentException.class, () -> MigrationRunner.version("db/planes.sql"));
+    }
+
+    @Test
+    @DisplayName("checksum() is a stable SHA-256 hex digest that changes with the contents")
+    void testChecksum() {
+        String checksum = MigrationRunner.checksum("CREATE TABLE t (id INT);");
+        assertEquals(64, checksum.length());
+        assertEquals(checksum, MigrationRunner.checksum("CREATE TABLE t (id INT);"));
+        assertNotEquals(checksum, MigrationRunner.checksum("CREATE TABLE t (id BIGINT);"));
+    }
+
+    @Test
+    @DisplayName("splitStatements() splits at line-ending semicolons and drops comments")
+    void testSplitStatements() {
+        List<String> statements = MigrationRunner.splitStatements(
+                "-- migration: no-transaction\n"
+                        + "-- an index\n"
+                        + "CREATE INDEX CONCURRENTLY a\n    ON t (x);\n"
+                        + "\n"
+                        + "CREATE INDEX CONCURRENTLY b ON t (y);\n");
+        assertEquals(List.of("CREATE INDEX CONCURRENTLY a\n    ON t (x);", "CREATE INDEX CONCURRENTLY b ON t (y);"),
+                statements);
+    }
+
+    @Test
+    @DisplayName("The leg index migration runs outside a transaction as a single statement")
+    void testLegIndexMigration() throws Exception {
+        String sql = MigrationRunner.readMigration("db/005_create_flights_leg_index.sql");
+        assertTrue(sql.startsWith(MigrationRunner.NO_TRANSACTION));
+        List<String> statements = MigrationRunner.splitStatements(sql);
+        assertEquals(1, statements.size());
+        assertTrue(statements.get(0).startsWith("CREATE INDEX CONCURRENTLY"));
+    }
+}
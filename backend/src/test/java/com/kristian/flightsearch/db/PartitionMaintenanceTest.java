@@ -0,0 +1,85 @@
+package com.kristian.flightsearch.db;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+@DisplayName("PartitionMaintenance Tests")
+class PartitionMaintenanceTest {
+
+    private static boolean dbAvailable = false;
+
+    @BeforeAll
+    static void setUpDatabase() {
+        try {
+            DatabaseManager.initialize();
+            dbAvailable = true;
+        } catch (Exception e) {
+            dbAvailable = false;
+        }
+    }
+
+    @Test
+    @DisplayName("retentionCutoff() is the start of the month retentionMonths back")
+    void testRetentionCutoff() {
+        assertEquals(LocalDate.of(2026, 7, 1), PartitionMaintenance.retentionCutoff(LocalDate.of(2026, 10, 17), 3));
+        assertEquals(LocalDate.of(2025, 12, 1), PartitionMaintenance.retentionCutoff(LocalDate.of(2026, 1, 31), 1));
+    }
+
+    @Test
+    @DisplayName("a price outside every monthly partition goes to the default one until its month is created")
+    void testPriceOutsidePartitions() throws SQLException {
+        assumeTrue(dbAvailable, "Database not available — skipping test");
+        // Far enough back that no maintenance pass or load has a partition for it
+        LocalDate date = LocalDate.of(1990, 1, 15);
+        try (Connection conn = DatabaseManager.getDataSource().getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                int scheduleId = firstInt(conn, "SELECT MIN(schedule_id) FROM schedules");
+                assumeTrue(scheduleId > 0, "No schedules in database — skipping test");
+
+                try (PreparedStatement pstmt = conn.prepareStatement(
+                        "INSERT INTO flight_prices (schedule_id, flight_date, ticket_price) VALUES (?, ?, 199.00)")) {
+                    pstmt.setInt(1, scheduleId);
+                    pstmt.setDate(2, java.sql.Date.valueOf(date));
+                    pstmt.executeUpdate();
+                }
+                assertEquals("flight_prices_default", partitionOf(conn, scheduleId, date));
+
+                assertEquals(1, PartitionMaintenance.ensurePartitions(conn, date, date));
+                assertEquals("flight_prices_1990_01", partitionOf(conn, scheduleId, date));
+                assertEquals(0, PartitionMaintenance.ensurePartitions(conn, date, date));
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static String partitionOf(Connection conn, int scheduleId, LocalDate date) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "SELECT tableoid::regclass::text FROM flight_prices WHERE schedule_id = ? AND flight_date = ?")) {
+            pstmt.setInt(1, scheduleId);
+            pstmt.setDate(2, java.sql.Date.valueOf(date));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    private static int firstInt(Connection conn, String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.kristian.flightsearch.db;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.LegQuery;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@DisplayName("PriceCube Tests")
+class PriceCubeTest {
+
+    private static final LocalDate JULY_1 = LocalDate.of(2026, 7, 1);
+
+    // AA100 flies JFK-LAX on the 1st and 3rd, AA200 on the 1st, and AA100 is
+    // reused for LAX-SFO on the 2nd
+    private static PriceCube sampleCube() {
+        PriceCube.Builder builder = new PriceCube.Builder();
+        builder.addPrice("JFK", "LAX", "AA100", JULY_1, 300);
+        builder.addPrice("JFK", "LAX", "AA100", JULY_1.plusDays(2), 320);
+        builder.addPrice("JFK", "LAX", "AA200", JULY_1, 280);
+        builder.addPrice("LAX", "SFO", "AA100", JULY_1.plusDays(1), 90);
+        return builder.build();
+    }
+
+    @Test
+    @DisplayName("build() spans the first to last date and one schedule per route and flight number")
+    void testDimensions() {
+        PriceCube cube = sampleCube();
+        assertEquals(JULY_1, cube.getFirstDate());
+        assertEquals(3, cube.dayCount());
+        assertEquals(3, cube.scheduleCount());
+    }
+
+    @Test
+    @DisplayName("price() keeps a flight number's prices separate per route")
+    void testPrice() {
+        PriceCube cube = sampleCube();
+        assertEquals(300, cube.price("JFK", "LAX", "AA100", JULY_1));
+        assertEquals(90, cube.price("LAX", "SFO", "AA100", JULY_1.plusDays(1)));
+        assertEquals(PriceCube.NO_PRICE, cube.price("JFK", "LAX", "AA100", JULY_1.plusDays(1)));
+        assertEquals(PriceCube.NO_PRICE, cube.price("JFK", "LAX", "AA100", JULY_1.minusDays(1)));
+        assertEquals(PriceCube.NO_PRICE, cube.price("JFK", "SFO", "AA100", JULY_1));
+    }
+
+    @Test
+    @DisplayName("pricesForLegs() matches the database result shape and skips legs with no flights")
+    void testPricesForLegs() {
+        HashMap<String, Map<String, Integer>> prices = sampleCube().pricesForLegs(List.of(
+                new LegQuery("JFK", "LAX", JULY_1),
+                new LegQuery("JFK", "LAX", JULY_1.plusDays(1)),
+                new LegQuery("LAX", "SFO", JULY_1.plusDays(1)),
+                new LegQuery("LAX", "SFO", JULY_1.plusDays(30))));
+
+        assertEquals(2, prices.size());
+        assertEquals(Map.of("AA100", 300, "AA200", 280), prices.get("JFKLAX2026-07-01"));
+        assertEquals(Map.of("AA100", 90), prices.get("LAXSFO2026-07-02"));
+    }
+
+    @Test
+    @DisplayName("An empty cube prices nothing")
+    void testEmpty() {
+        PriceCube cube = new PriceCube.Builder().build();
+        assertEquals(0, cube.scheduleCount());
+        assertTrue(cube.pricesForLegs(List.of(new LegQuery("JFK", "LAX", JULY_1))).isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.datagenerator.FlightDistanceCalculator;
+import com.kristian.flightsearch.datagenerator.FlightDurationCalculator;
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Graph used in most tests:
+ *
+ *   JFK --$100/2h--> ATL --$150/3h--> LAX
+ *   JFK ----------$400/6h-----------> LAX
+ */
+@DisplayName("AStar Tests")
+class AStarTest {
+
+    private FlightGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+
+        graph = new FlightGraph(true, true);
+        AirportVertex jfkVertex = graph.addVertex(jfk);
+        AirportVertex atlVertex = graph.addVertex(atl);
+        AirportVertex laxVertex = graph.addVertex(lax);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(6), "AA 003");
+    }
+
+    @Test
+    @DisplayName("shortestPath() finds the cheapest and the fastest route")
+    void testShortestPath() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        int jfk = compact.idOf("JFK");
+        int lax = compact.idOf("LAX");
+
+        ShortestPath cheapest = AStar.shortestPath(compact, jfk, lax, Metric.PRICE);
+        assertEquals(250, cheapest.cost());
+        assertEquals(List.of("JFK", "ATL", "LAX"), cheapest.codes());
+
+        ShortestPath fastest = AStar.shortestPath(compact, jfk, lax, Metric.DURATION);
+        assertEquals(300, fastest.cost());
+    }
+
+    @Test
+    @DisplayName("shortestPath() returns null when the target is unreachable")
+    void testUnreachable() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        assertNull(AStar.shortestPath(compact, compact.idOf("LAX"), compact.idOf("JFK"), Metric.PRICE));
+    }
+
+    @Test
+    @DisplayName("the great-circle bound never exceeds the true remaining cost")
+    void testBoundIsAdmissible() {
+        CompactFlightGraph compact = geoGraph(80, 600, 7L).getCompactGraph();
+        GreatCircleBound bound = compact.greatCircleBound();
+
+        for (Metric metric : Metric.values()) {
+            double rate = bound.ratePerKm(metric);
+            for (int t = 0; t < compact.vertexCount(); t += 9) {
+                for (int s = 0; s < compact.vertexCount(); s += 4) {
+                    ShortestPath path = Dijkstra.shortestPath(compact, s, t, metric);
+                    if (path == null) continue;
+                    assertTrue(bound.estimate(s, t, rate) <= path.cost());
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("shortestPath() matches Dijkstra and settles fewer vertices")
+    void testMatchesDijkstraWithLessWork() {
+        CompactFlightGraph compact = geoGraph(200, 2000, 11L).getCompactGraph();
+
+        long dijkstraSettled = 0;
+        long aStarSettled = 0;
+        for (int s = 0; s < compact.vertexCount(); s += 13) {
+            for (int t = 0; t < compact.vertexCount(); t += 11) {
+                for (Metric metric : Metric.values()) {
+                    SearchContext dijkstra = Dijkstra.search(compact, s, t, metric);
+                    dijkstraSettled += dijkstra.settledCount();
+                    ShortestPath expected = dijkstra.toPath(t);
+                    SearchContext ctx = AStar.search(compact, s, t, metric);
+                    aStarSettled += ctx.settledCount();
+                    ShortestPath actual = ctx.toPath(t);
+                    if (expected == null) {
+                        assertNull(actual);
+                    } else {
+                        assertEquals(expected.cost(), actual.cost());
+                    }
+                }
+            }
+        }
+        assertTrue(aStarSettled < dijkstraSettled,
+                "A* settled " + aStarSettled + " vertices, Dijkstra " + dijkstraSettled);
+    }
+
+    // Random airports with flights priced and timed roughly in proportion to distance,
+    // like the generated data set
+    static FlightGraph geoGraph(int airports, int flights, long seed) {
+        Random random = new Random(seed);
+        FlightGraph g = new FlightGraph(true, true);
+        AirportVertex[] vertices = new AirportVertex[airports];
+        for (int i = 0; i < airports; i++) {
+            double lat = random.nextDouble() * 120 - 60;
+            double lon = random.nextDouble() * 340 - 170;
+            vertices[i] = g.addVertex(new Airport(String.format("A%03d", i), "Airport " + i, lat, lon, 10000, 0, "City " + i, "Country"));
+        }
+        for (int i = 0; i < flights; i++) {
+            int from = random.nextInt(airports);
+            int to = random.nextInt(airports);
+            if (from == to) continue;
+            double km = FlightDistanceCalculator.calcDistance(vertices[from].getData(), vertices[to].getData());
+            int price = (int) (40 + km * (0.08 + random.nextDouble() * 0.1));
+            Duration duration = FlightDurationCalculator.calculateFlightDuration(km);
+            g.addEdge(vertices[from], vertices[to], price, duration, "XX " + i);
+        }
+        return g;
+    }
+}
@@ -0,0 +1,115 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * Graph used in most tests:
+ *
+ *   JFK --$100/2h--> ATL --$150/3h--> LAX
+ *   JFK ----------$400/4h-----------> LAX
+ */
+@DisplayName("AllPairsMatrix Tests")
+class AllPairsMatrixTest {
+
+    private FlightGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+
+        graph = new FlightGraph(true, true);
+        AirportVertex jfkVertex = graph.addVertex(jfk);
+        AirportVertex atlVertex = graph.addVertex(atl);
+        AirportVertex laxVertex = graph.addVertex(lax);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(4), "AA 003");
+    }
+
+    @Test
+    @DisplayName("cost() and path() give the best route for each metric")
+    void testLookups() {
+        CompactFlightGraph routes = graph.getRouteGraph();
+        AllPairsMatrix matrix = AllPairsMatrix.build(routes);
+        int jfk = routes.idOf("JFK");
+        int lax = routes.idOf("LAX");
+
+        assertEquals(250, matrix.cost(jfk, lax, Metric.PRICE));
+        assertEquals(240, matrix.cost(jfk, lax, Metric.DURATION));
+        assertEquals(List.of("JFK", "ATL", "LAX"), matrix.path(jfk, lax, Metric.PRICE).codes());
+        assertEquals(List.of("JFK", "LAX"), matrix.path(jfk, lax, Metric.DURATION).codes());
+
+        assertFalse(matrix.isReachable(lax, jfk));
+        assertEquals(ShortestPathTree.UNREACHABLE, matrix.cost(lax, jfk, Metric.DURATION));
+        assertNull(matrix.path(lax, jfk, Metric.PRICE));
+    }
+
+    @Test
+    @DisplayName("findPath() and getShortestPathTree() use a prepared matrix and ignores it once the graph changes")
+    void testFlightGraphIntegration() {
+        graph.prepareAllPairsMatrix();
+        assertNotNull(graph.getAllPairsMatrix());
+        assertEquals(250, graph.findPath("JFK", "LAX", Metric.PRICE).cost());
+        ShortestPathTree tree = graph.getShortestPathTree("JFK", Metric.PRICE);
+        assertEquals(250, tree.distanceTo(tree.getGraph().idOf("LAX")));
+        assertEquals(List.of("JFK", "ATL", "LAX"), tree.codePathTo(tree.getGraph().idOf("LAX")));
+
+        graph.addEdge(graph.getVertex("JFK"), graph.getVertex("LAX"), 90, Duration.ofHours(5), "B6 001");
+        assertNull(graph.getAllPairsMatrix());
+        assertEquals(90, graph.findPath("JFK", "LAX", Metric.PRICE).cost());
+    }
+
+    @Test
+    @DisplayName("prepareContractionHierarchies() builds nothing once the matrix answers queries")
+    void testHierarchiesSkipped() {
+        graph.prepareAllPairsMatrix();
+        graph.prepareContractionHierarchies();
+        assertNull(graph.getRouteGraph().builtHierarchy(Metric.PRICE));
+        assertNull(graph.getRouteGraph().builtHierarchy(Metric.DURATION));
+    }
+
+    @Test
+    @DisplayName("every cell and row tree matches Dijkstra on a random graph, and paths add up to it")
+    void testMatchesDijkstra() {
+        CompactFlightGraph routes = DijkstraTest.randomGraph(50, 300, 3L).getRouteGraph();
+        AllPairsMatrix matrix = AllPairsMatrix.build(routes);
+
+        for (Metric metric : Metric.values()) {
+            for (int s = 0; s < routes.vertexCount(); s++) {
+                ShortestPathTree tree = Dijkstra.shortestPathTree(routes, s, metric);
+                ShortestPathTree row = matrix.tree(s, metric);
+                for (int t = 0; t < routes.vertexCount(); t++) {
+                    assertEquals(tree.distanceTo(t), matrix.cost(s, t, metric), s + " -> " + t + " by " + metric);
+                    ShortestPath fromRow = row.toPath(t);
+                    if (fromRow != null) {
+                        int rowCost = 0;
+                        for (int e : fromRow.edges()) rowCost += routes.weight(e, metric);
+                        assertEquals(tree.distanceTo(t), rowCost, s + " -> " + t + " by " + metric);
+                    }
+                    ShortestPath path = matrix.path(s, t, metric);
+                    if (path == null) continue;
+
+                    int cost = 0;
+                    for (int i = 0; i < path.edges().length; i++) {
+                        int e = path.edges()[i];
+                        assertEquals(path.vertices()[i + 1], routes.target(e));
+                        cost += routes.weight(e, metric);
+                    }
+                    assertEquals(path.cost(), cost);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * Graph used in most tests:
+ *
+ *   JFK --$100/2h--> ATL --$150/3h--> LAX
+ *   JFK ----------$400/6h-----------> LAX
+ */
+@DisplayName("BidirectionalDijkstra Tests")
+class BidirectionalDijkstraTest {
+
+    private FlightGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+
+        graph = new FlightGraph(true, true);
+        AirportVertex jfkVertex = graph.addVertex(jfk);
+        AirportVertex atlVertex = graph.addVertex(atl);
+        AirportVertex laxVertex = graph.addVertex(lax);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(6), "AA 003");
+    }
+
+    @Test
+    @DisplayName("findPath() searches both ways when no hierarchy or matrix is prepared")
+    void testFindPathWithoutPreprocessing() {
+        ShortestPath path = graph.findPath("JFK", "LAX", Metric.PRICE);
+
+        assertEquals(250, path.cost());
+        assertEquals(List.of("JFK", "ATL", "LAX"), path.codes());
+        assertNull(graph.getRouteGraph().builtHierarchy(Metric.PRICE));
+        assertNull(graph.findPath("LAX", "JFK", Metric.PRICE));
+    }
+
+    @Test
+    @DisplayName("shortestPath() matches one-directional Dijkstra on a random graph")
+    void testMatchesDijkstraOnRandomGraph() {
+        CompactFlightGraph compact = DijkstraTest.randomGraph(60, 400, 42L).getCompactGraph();
+
+        for (int s = 0; s < compact.vertexCount(); s += 7) {
+            for (int t = 0; t < compact.vertexCount(); t += 5) {
+                for (Metric metric : Metric.values()) {
+                    ShortestPath expected = Dijkstra.shortestPath(compact, s, t, metric);
+                    ShortestPath actual = BidirectionalDijkstra.shortestPath(compact, s, t, metric);
+                    if (expected == null) {
+                        assertNull(actual);
+                        continue;
+                    }
+                    assertEquals(expected.cost(), actual.cost());
+                    assertEquals(s, actual.vertices()[0]);
+                    assertEquals(t, actual.vertices()[actual.vertices().length - 1]);
+
+                    // The reported cost must equal the sum of the edges actually on the path
+                    int sum = 0;
+                    for (int e : actual.edges()) sum += compact.weight(e, metric);
+                    assertEquals(actual.cost(), sum);
+                }
+            }
+        }
+    }
+}
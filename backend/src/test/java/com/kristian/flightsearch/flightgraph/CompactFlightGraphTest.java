@@ -0,0 +1,172 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Graph used in all tests:
+ *
+ *   JFK --$100/2h--> ATL --$150/3h--> LAX
+ *   JFK ----------$400/6h-----------> LAX
+ */
+@DisplayName("CompactFlightGraph Tests")
+class CompactFlightGraphTest {
+
+    private FlightGraph graph;
+    private AirportVertex jfkVertex;
+    private AirportVertex atlVertex;
+    private AirportVertex laxVertex;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+
+        graph = new FlightGraph(true, true);
+        jfkVertex = graph.addVertex(jfk);
+        atlVertex = graph.addVertex(atl);
+        laxVertex = graph.addVertex(lax);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(6), "AA 003");
+    }
+
+    @Test
+    @DisplayName("getCompactGraph() maps every airport to a dense id")
+    void testDenseIds() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+
+        assertEquals(3, compact.vertexCount());
+        assertEquals("JFK", compact.code(compact.idOf("JFK")));
+        assertEquals("LAX", compact.code(compact.idOf("LAX")));
+        assertEquals(-1, compact.idOf("CDG"));
+    }
+
+    @Test
+    @DisplayName("getCompactGraph() groups edges by origin with primitive weights")
+    void testEdgesGroupedByOrigin() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        int jfk = compact.idOf("JFK");
+
+        assertEquals(3, compact.edgeCount());
+        assertEquals(2, compact.endEdge(jfk) - compact.firstEdge(jfk));
+
+        List<Integer> prices = new ArrayList<>();
+        for (int e = compact.firstEdge(jfk); e < compact.endEdge(jfk); e++) {
+            prices.add(compact.price(e));
+        }
+        assertTrue(prices.containsAll(List.of(100, 400)));
+
+        int atl = compact.idOf("ATL");
+        int e = compact.firstEdge(atl);
+        assertEquals(compact.idOf("LAX"), compact.target(e));
+        assertEquals(180, compact.durationMinutes(e));
+        assertEquals("AA 002", compact.flightNumber(e));
+    }
+
+    @Test
+    @DisplayName("getCompactGraph() is rebuilt after edges are removed")
+    void testRebuiltAfterRemoveEdge() {
+        assertEquals(3, graph.getCompactGraph().edgeCount());
+
+        graph.removeEdge(jfkVertex, laxVertex);
+
+        CompactFlightGraph compact = graph.getCompactGraph();
+        assertEquals(2, compact.edgeCount());
+        int jfk = compact.idOf("JFK");
+        assertEquals(1, compact.endEdge(jfk) - compact.firstEdge(jfk));
+    }
+
+    @Test
+    @DisplayName("changes after a build keep every edge of the built graph")
+    void testChangedAfterEachBuild() {
+        graph.getCompactGraph();
+        graph.removeVertex(atlVertex);
+        assertEquals(1, graph.getCompactGraph().edgeCount());
+
+        Airport ord = new Airport("ORD", "O'Hare International Airport", 41.9786, -87.9048, 3962, 204, "Chicago", "United States");
+        AirportVertex ordVertex = graph.addVertex(ord);
+        graph.getCompactGraph();
+        graph.addEdge(ordVertex, laxVertex, 120, Duration.ofHours(4), "UA 011");
+
+        CompactFlightGraph compact = graph.getCompactGraph();
+        assertEquals(3, compact.vertexCount());
+        assertEquals(2, compact.edgeCount());
+        int jfk = compact.idOf("JFK");
+        assertEquals("AA 003", compact.flightNumber(compact.firstEdge(jfk)));
+        assertEquals(compact.idOf("LAX"), compact.target(compact.firstEdge(compact.idOf("ORD"))));
+    }
+
+    @Test
+    @DisplayName("getCompactGraph() drops a removed vertex and its edges")
+    void testRebuiltAfterRemoveVertex() {
+        graph.removeVertex(atlVertex);
+
+        CompactFlightGraph compact = graph.getCompactGraph();
+        assertEquals(2, compact.vertexCount());
+        assertEquals(-1, compact.idOf("ATL"));
+        assertEquals(1, compact.edgeCount());
+    }
+
+    @Test
+    @DisplayName("routeGraph() collapses parallel flights into one edge per airport pair")
+    void testRouteGraphCollapsesParallelFlights() {
+        graph.addEdge(jfkVertex, atlVertex, 80, Duration.ofHours(3), "DL 100");
+        graph.addEdge(jfkVertex, atlVertex, 120, Duration.ofMinutes(110), "UA 200");
+
+        CompactFlightGraph flights = graph.getCompactGraph();
+        CompactFlightGraph routes = graph.getRouteGraph();
+        assertEquals(5, flights.edgeCount());
+        assertEquals(3, routes.edgeCount());
+        assertTrue(routes.isRouteGraph());
+        assertSame(flights, routes.flightGraph());
+
+        int jfk = routes.idOf("JFK");
+        int atl = routes.idOf("ATL");
+        int jfkAtl = -1;
+        for (int e = routes.firstEdge(jfk); e < routes.endEdge(jfk); e++) {
+            if (routes.target(e) == atl) jfkAtl = e;
+        }
+
+        // Best price and best duration come from different flights
+        assertEquals(80, routes.price(jfkAtl));
+        assertEquals(110, routes.durationMinutes(jfkAtl));
+        assertEquals(3, routes.flightCount(jfkAtl));
+        assertEquals("DL 100", flights.flightNumber(routes.bestFlight(jfkAtl, Metric.PRICE)));
+        assertEquals("UA 200", flights.flightNumber(routes.bestFlight(jfkAtl, Metric.DURATION)));
+
+        // Every flight in the range belongs to the pair
+        for (int f = routes.firstFlight(jfkAtl); f < routes.endFlight(jfkAtl); f++) {
+            assertEquals(atl, flights.target(f));
+        }
+    }
+
+    @Test
+    @DisplayName("routeGraph() finds the same shortest paths as the flight graph")
+    void testRouteGraphPreservesShortestPaths() {
+        CompactFlightGraph flights = AStarTest.geoGraph(60, 3000, 3L).getCompactGraph();
+        CompactFlightGraph routes = flights.routeGraph();
+        assertTrue(routes.edgeCount() < flights.edgeCount());
+
+        for (int s = 0; s < flights.vertexCount(); s += 5) {
+            for (Metric metric : Metric.values()) {
+                ShortestPathTree expected = Dijkstra.shortestPathTree(flights, s, metric);
+                ShortestPathTree actual = Dijkstra.shortestPathTree(routes, s, metric);
+                for (int t = 0; t < flights.vertexCount(); t++) {
+                    assertEquals(expected.distanceTo(t), actual.distanceTo(t));
+                }
+            }
+        }
+    }
+}
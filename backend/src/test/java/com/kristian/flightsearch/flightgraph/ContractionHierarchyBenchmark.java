@@ -0,0 +1,119 @@
+package com.kristian.flightsearch.flightgraph;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import com.kristian.flightsearch.models.Airport;
+
+/*
+ * Rough timing of contraction hierarchy queries against plain Dijkstra. Not a unit
+ * test (surefire skips it); run it from the IDE or with
+ *
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.kristian.flightsearch.flightgraph.ContractionHierarchyBenchmark
+ *
+ * Dijkstra.searchByPrice is what /api/routes/cheapest used to run per request: a
+ * full one-to-all search plus boxing every result into maps. Dijkstra.shortestPath
+ * (stops at the target) is included so the comparison isn't only against boxing.
+ *
+ * Two networks of the seeded database's size (~1,800 airports, ~50,000 flights):
+ * one where flights join uniformly random pairs, like the generated data, and one
+ * where a few hubs carry most flights, like real schedules. The hierarchy only pays
+ * off on the second; on the first most airports end up in the core.
+ */
+public class ContractionHierarchyBenchmark {
+
+    private static final int AIRPORTS = 1800;
+    private static final int FLIGHTS = 50000;
+    private static final int QUERIES = 2000;
+
+    public static void main(String[] args) {
+        run("Random pairs", DijkstraTest.randomGraph(AIRPORTS, FLIGHTS, 42L));
+        run("Hub and spoke", hubGraph(AIRPORTS, FLIGHTS, 42L));
+    }
+
+    private static void run(String name, FlightGraph flights) {
+        CompactFlightGraph routes = flights.getRouteGraph();
+        System.out.println(name + ": " + routes.vertexCount() + " airports, " + routes.edgeCount() + " routes");
+
+        long start = System.nanoTime();
+        ContractionHierarchy ch = ContractionHierarchy.build(routes, Metric.PRICE);
+        System.out.printf("  Preprocessing: %d ms, %d shortcuts, %d airports in the core%n",
+                (System.nanoTime() - start) / 1_000_000, ch.shortcutCount(), ch.coreSize());
+
+        Random random = new Random(7);
+        int[] sources = new int[QUERIES];
+        int[] targets = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            sources[i] = random.nextInt(routes.vertexCount());
+            targets[i] = random.nextInt(routes.vertexCount());
+        }
+
+        // Warm up the JIT on every code path before timing anything
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 200; i++) {
+                ch.shortestPath(sources[i], targets[i]);
+                Dijkstra.shortestPath(routes, sources[i], targets[i], Metric.PRICE);
+                Dijkstra.searchByPrice(flights, routes.vertex(sources[i]));
+            }
+        }
+
+        long checksum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            ShortestPath p = ch.shortestPath(sources[i], targets[i]);
+            if (p != null) checksum += p.cost();
+        }
+        report("ContractionHierarchy.shortestPath", System.nanoTime() - start);
+
+        long expected = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            ShortestPath p = Dijkstra.shortestPath(routes, sources[i], targets[i], Metric.PRICE);
+            if (p != null) expected += p.cost();
+        }
+        report("Dijkstra.shortestPath", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            Dijkstra.searchByPrice(flights, routes.vertex(sources[i]));
+        }
+        report("Dijkstra.searchByPrice", System.nanoTime() - start);
+
+        System.out.println(checksum == expected ? "  Costs match" : "  COST MISMATCH " + checksum + " vs " + expected);
+    }
+
+    // Flights whose endpoints are drawn with Zipf-like weights, so airport 0 is the biggest hub
+    private static FlightGraph hubGraph(int airports, int flights, long seed) {
+        Random random = new Random(seed);
+        FlightGraph g = new FlightGraph(true, true);
+        AirportVertex[] vertices = new AirportVertex[airports];
+        double[] cumulative = new double[airports];
+        double total = 0;
+        for (int i = 0; i < airports; i++) {
+            double lat = random.nextDouble() * 120 - 60;
+            double lon = random.nextDouble() * 340 - 170;
+            vertices[i] = g.addVertex(new Airport(String.format("H%04d", i), "Airport " + i, lat, lon, 10000, 0, "City " + i, "Country"));
+            total += 1.0 / (i + 1);
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < flights; i++) {
+            int from = pick(cumulative, random.nextDouble() * total);
+            int to = pick(cumulative, random.nextDouble() * total);
+            if (from == to) continue;
+            g.addEdge(vertices[from], vertices[to], 50 + random.nextInt(900),
+                    Duration.ofMinutes(45 + random.nextInt(600)), "XX " + i);
+        }
+        return g;
+    }
+
+    private static int pick(double[] cumulative, double x) {
+        int i = Arrays.binarySearch(cumulative, x);
+        return i >= 0 ? i : Math.min(-i - 1, cumulative.length - 1);
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("  %-36s %8.1f us/query%n", name, nanos / 1000.0 / QUERIES);
+    }
+}
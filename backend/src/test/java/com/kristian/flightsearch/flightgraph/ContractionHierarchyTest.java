@@ -0,0 +1,173 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * Graph used in most tests:
+ *
+ *   JFK --$100/2h--> ATL --$150/3h--> LAX
+ *   JFK ----------$400/6h-----------> LAX
+ *   JFK --$120/3h--> ORD --$200/4h--> LAX
+ */
+@DisplayName("ContractionHierarchy Tests")
+class ContractionHierarchyTest {
+
+    private FlightGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+        Airport ord = new Airport("ORD", "O'Hare International Airport", 41.9786, -87.9048, 3962, 204, "Chicago", "United States");
+
+        graph = new FlightGraph(true, true);
+        AirportVertex jfkVertex = graph.addVertex(jfk);
+        AirportVertex atlVertex = graph.addVertex(atl);
+        AirportVertex laxVertex = graph.addVertex(lax);
+        AirportVertex ordVertex = graph.addVertex(ord);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(6), "AA 003");
+        graph.addEdge(jfkVertex, ordVertex, 120, Duration.ofHours(3), "UA 010");
+        graph.addEdge(ordVertex, laxVertex, 200, Duration.ofHours(4), "UA 011");
+    }
+
+    @Test
+    @DisplayName("shortestPath() returns the cheapest route for each metric")
+    void testBothMetrics() {
+        CompactFlightGraph routes = graph.getRouteGraph();
+        int jfk = routes.idOf("JFK");
+        int lax = routes.idOf("LAX");
+
+        ShortestPath cheapest = routes.contractionHierarchy(Metric.PRICE).shortestPath(jfk, lax);
+        assertEquals(250, cheapest.cost());
+        assertEquals(List.of("JFK", "ATL", "LAX"), cheapest.codes());
+
+        ShortestPath fastest = routes.contractionHierarchy(Metric.DURATION).shortestPath(jfk, lax);
+        assertEquals(300, fastest.cost());
+        assertEquals(List.of("JFK", "ATL", "LAX"), fastest.codes());
+    }
+
+    @Test
+    @DisplayName("shortestPath() returns null when the destination can't be reached")
+    void testUnreachable() {
+        CompactFlightGraph routes = graph.getRouteGraph();
+        assertNull(routes.contractionHierarchy(Metric.PRICE).shortestPath(routes.idOf("LAX"), routes.idOf("JFK")));
+    }
+
+    @Test
+    @DisplayName("findPath() finds the cheapest route via an intermediate stop")
+    void testFindPathViaStop() {
+        graph.prepareContractionHierarchies();
+        ShortestPath path = graph.findPath("JFK", "LAX", Metric.PRICE);
+
+        assertEquals(250, path.cost());
+        assertEquals(List.of("JFK", "ATL", "LAX"), path.codes());
+    }
+
+    @Test
+    @DisplayName("findPath() returns null for an unreachable or unknown airport")
+    void testFindPathUnreachable() {
+        graph.prepareContractionHierarchies();
+        assertNull(graph.findPath("LAX", "JFK", Metric.PRICE));
+        assertNull(graph.findPath("JFK", "CDG", Metric.PRICE));
+    }
+
+    @Test
+    @DisplayName("findPath() returns a single-airport path when origin equals destination")
+    void testFindPathSameAirport() {
+        graph.prepareContractionHierarchies();
+        ShortestPath path = graph.findPath("JFK", "JFK", Metric.DURATION);
+        assertEquals(0, path.cost());
+        assertEquals(List.of("JFK"), path.codes());
+    }
+
+    @Test
+    @DisplayName("the hierarchy is rebuilt after the graph changes")
+    void testRebuiltAfterChange() {
+        graph.prepareContractionHierarchies();
+        graph.addEdge(graph.getVertex("JFK"), graph.getVertex("LAX"), 90, Duration.ofHours(5), "B6 001");
+        graph.prepareContractionHierarchies();
+        assertNotNull(graph.getRouteGraph().builtHierarchy(Metric.PRICE));
+
+        ShortestPath path = graph.findPath("JFK", "LAX", Metric.PRICE);
+        assertEquals(90, path.cost());
+        assertEquals(List.of("JFK", "LAX"), path.codes());
+    }
+
+    @Test
+    @DisplayName("shortestPath() matches Dijkstra on random graphs, with valid unpacked paths")
+    void testMatchesDijkstra() {
+        for (long seed = 1; seed <= 4; seed++) {
+            CompactFlightGraph routes = DijkstraTest.randomGraph(60, 400, seed).getRouteGraph();
+            for (Metric metric : Metric.values()) {
+                ContractionHierarchy ch = ContractionHierarchy.build(routes, metric);
+                for (int s = 0; s < routes.vertexCount(); s += 5) {
+                    for (int t = 0; t < routes.vertexCount(); t++) {
+                        ShortestPath expected = Dijkstra.shortestPath(routes, s, t, metric);
+                        ShortestPath actual = ch.shortestPath(s, t);
+                        if (expected == null) {
+                            assertNull(actual, s + " -> " + t);
+                            continue;
+                        }
+                        assertNotNull(actual, s + " -> " + t);
+                        assertEquals(expected.cost(), actual.cost(), s + " -> " + t + " by " + metric);
+                        assertValidPath(routes, actual, s, t, metric);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("a hierarchy restored from its columns answers the same as the original")
+    void testColumnsRoundTrip() {
+        CompactFlightGraph routes = DijkstraTest.randomGraph(60, 400, 7).getRouteGraph();
+        ContractionHierarchy built = ContractionHierarchy.build(routes, Metric.PRICE);
+        ContractionHierarchy restored = ContractionHierarchy.fromColumns(routes, Metric.PRICE, built.columns());
+
+        assertEquals(built.shortcutCount(), restored.shortcutCount());
+        assertEquals(built.coreSize(), restored.coreSize());
+        for (int s = 0; s < routes.vertexCount(); s += 3) {
+            for (int t = 0; t < routes.vertexCount(); t++) {
+                ShortestPath expected = built.shortestPath(s, t);
+                ShortestPath actual = restored.shortestPath(s, t);
+                if (expected == null) {
+                    assertNull(actual, s + " -> " + t);
+                    continue;
+                }
+                assertEquals(expected.cost(), actual.cost(), s + " -> " + t);
+                assertArrayEquals(expected.edges(), actual.edges(), s + " -> " + t);
+            }
+        }
+    }
+
+    // The edges must chain from s to t through the listed vertices and add up to the cost
+    private static void assertValidPath(CompactFlightGraph g, ShortestPath path, int s, int t, Metric metric) {
+        int[] vertices = path.vertices();
+        int[] edges = path.edges();
+        assertEquals(s, vertices[0]);
+        assertEquals(t, vertices[vertices.length - 1]);
+        assertEquals(vertices.length - 1, edges.length);
+
+        int cost = 0;
+        for (int i = 0; i < edges.length; i++) {
+            int e = edges[i];
+            assertTrue(e >= g.firstEdge(vertices[i]) && e < g.endEdge(vertices[i]), "edge leaves the wrong airport");
+            assertEquals(vertices[i + 1], g.target(e));
+            cost += g.weight(e, metric);
+        }
+        assertEquals(path.cost(), cost);
+    }
+}
@@ -9,7 +9,9 @@ import static org.junit.jupiter.api.Assertions.*;
 import com.kristian.flightsearch.models.Airport;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 /*
  * Graph used in all tests:
@@ -81,4 +83,82 @@ class DijkstraTest {
 
         assertEquals(Duration.ZERO, durations.get(jfkVertex.getData()));
     }
+
+    @Test
+    @DisplayName("run() reuses its context across searches from different origins")
+    void testRunReusesContextAcrossSearches() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        int jfk = compact.idOf("JFK");
+        int atl = compact.idOf("ATL");
+        int lax = compact.idOf("LAX");
+
+        SearchContext first = Dijkstra.run(compact, jfk, Metric.PRICE);
+        assertEquals(250, first.distanceTo(lax));
+
+        // A second search on the same thread must not see the first search's labels
+        SearchContext second = Dijkstra.run(compact, atl, Metric.PRICE);
+        assertSame(first, second);
+        assertEquals(150, second.distanceTo(lax));
+        assertFalse(second.isReachable(jfk));
+        assertEquals(-1, second.previous(jfk));
+    }
+
+    @Test
+    @DisplayName("run() records the path back to the source")
+    void testRunPathTo() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        SearchContext ctx = Dijkstra.run(compact, compact.idOf("JFK"), Metric.PRICE);
+
+        assertEquals(List.of("JFK", "ATL", "LAX"), ctx.codePathTo(compact.idOf("LAX")));
+    }
+
+    @Test
+    @DisplayName("shortestPathTree() keeps its results after later searches")
+    void testShortestPathTreeIsACopy() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        ShortestPathTree tree = Dijkstra.shortestPathTree(compact, compact.idOf("JFK"), Metric.DURATION);
+        Dijkstra.run(compact, compact.idOf("LAX"), Metric.DURATION);
+
+        assertEquals(300, tree.distanceTo(compact.idOf("LAX")));
+    }
+
+    @Test
+    @DisplayName("shortestPath() returns the cheapest path and its edges")
+    void testShortestPathToTarget() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        ShortestPath path = Dijkstra.shortestPath(compact, compact.idOf("JFK"), compact.idOf("LAX"), Metric.PRICE);
+
+        assertEquals(250, path.cost());
+        assertEquals(List.of("JFK", "ATL", "LAX"), path.codes());
+        assertEquals("AA 001", compact.flightNumber(path.edges()[0]));
+        assertEquals("AA 002", compact.flightNumber(path.edges()[1]));
+        assertEquals(1, path.stops());
+    }
+
+    @Test
+    @DisplayName("shortestPath() returns null when the target is unreachable")
+    void testShortestPathUnreachable() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        assertNull(Dijkstra.shortestPath(compact, compact.idOf("LAX"), compact.idOf("JFK"), Metric.PRICE));
+    }
+
+    // Builds a directed graph with random prices/durations between made-up airports
+    static FlightGraph randomGraph(int airports, int flights, long seed) {
+        Random random = new Random(seed);
+        FlightGraph g = new FlightGraph(true, true);
+        AirportVertex[] vertices = new AirportVertex[airports];
+        for (int i = 0; i < airports; i++) {
+            double lat = random.nextDouble() * 120 - 60;
+            double lon = random.nextDouble() * 340 - 170;
+            vertices[i] = g.addVertex(new Airport(String.format("A%02d", i), "Airport " + i, lat, lon, 10000, 0, "City " + i, "Country"));
+        }
+        for (int i = 0; i < flights; i++) {
+            int from = random.nextInt(airports);
+            int to = random.nextInt(airports);
+            if (from == to) continue;
+            g.addEdge(vertices[from], vertices[to], 50 + random.nextInt(900),
+                    Duration.ofMinutes(45 + random.nextInt(600)), "XX " + i);
+        }
+        return g;
+    }
 }
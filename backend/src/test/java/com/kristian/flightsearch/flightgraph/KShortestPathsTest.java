@@ -0,0 +1,130 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Graph used in most tests:
+ *
+ *   JFK --$100--> ATL --$150--> LAX
+ *   JFK --$200--> ORD --$100--> LAX
+ *   JFK ---------$400---------> LAX
+ *   ATL --$60---> ORD
+ */
+@DisplayName("KShortestPaths Tests")
+class KShortestPathsTest {
+
+    private FlightGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+        Airport ord = new Airport("ORD", "O'Hare International Airport", 41.9786, -87.9048, 3962, 204, "Chicago", "United States");
+
+        graph = new FlightGraph(true, true);
+        AirportVertex jfkVertex = graph.addVertex(jfk);
+        AirportVertex atlVertex = graph.addVertex(atl);
+        AirportVertex laxVertex = graph.addVertex(lax);
+        AirportVertex ordVertex = graph.addVertex(ord);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, ordVertex, 200, Duration.ofHours(3), "UA 010");
+        graph.addEdge(ordVertex, laxVertex, 100, Duration.ofHours(5), "UA 011");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(6), "AA 003");
+        graph.addEdge(atlVertex, ordVertex, 60, Duration.ofHours(2), "DL 020");
+    }
+
+    @Test
+    @DisplayName("find() returns loopless paths cheapest first")
+    void testPathsInCostOrder() {
+        List<ShortestPath> paths = graph.findPaths("JFK", "LAX", Metric.PRICE, 4, 2);
+
+        assertEquals(4, paths.size());
+        assertEquals(List.of("JFK", "ATL", "LAX"), paths.get(0).codes());
+        assertEquals(250, paths.get(0).cost());
+        assertEquals(List.of("JFK", "ATL", "ORD", "LAX"), paths.get(1).codes());
+        assertEquals(260, paths.get(1).cost());
+        assertEquals(List.of("JFK", "ORD", "LAX"), paths.get(2).codes());
+        assertEquals(300, paths.get(2).cost());
+        assertEquals(List.of("JFK", "LAX"), paths.get(3).codes());
+        assertEquals(400, paths.get(3).cost());
+    }
+
+    @Test
+    @DisplayName("find() never returns a path with more stops than allowed")
+    void testStopLimit() {
+        List<ShortestPath> paths = graph.findPaths("JFK", "LAX", Metric.PRICE, 10, 1);
+
+        assertEquals(3, paths.size());
+        for (ShortestPath p : paths) {
+            assertTrue(p.stops() <= 1, "too many stops: " + p.codes());
+        }
+        assertEquals(List.of("JFK", "LAX"), graph.findPaths("JFK", "LAX", Metric.PRICE, 10, 0).get(0).codes());
+    }
+
+    @Test
+    @DisplayName("find() returns an empty list for unknown or unreachable airports")
+    void testNoPath() {
+        assertTrue(graph.findPaths("LAX", "JFK", Metric.PRICE, 3, 2).isEmpty());
+        assertTrue(graph.findPaths("JFK", "XXX", Metric.PRICE, 3, 2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("find() matches an exhaustive enumeration of simple paths on a random graph")
+    void testMatchesExhaustiveSearch() {
+        CompactFlightGraph compact = DijkstraTest.randomGraph(20, 90, 5L).getCompactGraph();
+        int maxStops = 2;
+        int k = 6;
+
+        for (int s = 0; s < compact.vertexCount(); s += 4) {
+            for (int t = 0; t < compact.vertexCount(); t++) {
+                if (t == s) continue;
+                List<Integer> expected = new ArrayList<>();
+                boolean[] onPath = new boolean[compact.vertexCount()];
+                onPath[s] = true;
+                enumerate(compact, s, t, 0, maxStops + 1, onPath, expected);
+                Collections.sort(expected);
+
+                List<ShortestPath> paths = KShortestPaths.find(compact, s, t, Metric.PRICE, k, maxStops);
+                assertEquals(Math.min(k, expected.size()), paths.size(), s + " -> " + t);
+                for (int i = 0; i < paths.size(); i++) {
+                    ShortestPath p = paths.get(i);
+                    assertEquals(expected.get(i), p.cost(), s + " -> " + t + " path " + i);
+                    assertTrue(p.stops() <= maxStops);
+                    assertEquals(p.vertices().length, Arrays.stream(p.vertices()).distinct().count(), "path has a loop");
+                }
+            }
+        }
+    }
+
+    // Every simple path from v to target with at most legsLeft legs, as its cost
+    private static void enumerate(CompactFlightGraph g, int v, int target, int cost, int legsLeft,
+            boolean[] onPath, List<Integer> costs) {
+        if (v == target) {
+            costs.add(cost);
+            return;
+        }
+        if (legsLeft == 0) return;
+        for (int e = g.offsets()[v]; e < g.offsets()[v + 1]; e++) {
+            int w = g.targets()[e];
+            if (onPath[w]) continue;
+            onPath[w] = true;
+            enumerate(g, w, target, cost + g.weight(e, Metric.PRICE), legsLeft - 1, onPath, costs);
+            onPath[w] = false;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Graph used in most tests:
+ *
+ *   JFK --$100/2h--> ATL --$150/3h--> LAX
+ *   JFK ----------$400/6h-----------> LAX
+ *   JFK --$200/3h--> ORD --$300/5h--> LAX   (beaten by JFK-ATL-LAX on everything)
+ */
+@DisplayName("ParetoSearch Tests")
+class ParetoSearchTest {
+
+    private FlightGraph graph;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+        Airport ord = new Airport("ORD", "O'Hare International Airport", 41.9786, -87.9048, 3962, 204, "Chicago", "United States");
+
+        graph = new FlightGraph(true, true);
+        AirportVertex jfkVertex = graph.addVertex(jfk);
+        AirportVertex atlVertex = graph.addVertex(atl);
+        AirportVertex laxVertex = graph.addVertex(lax);
+        AirportVertex ordVertex = graph.addVertex(ord);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(6), "AA 003");
+        graph.addEdge(jfkVertex, ordVertex, 200, Duration.ofHours(3), "UA 010");
+        graph.addEdge(ordVertex, laxVertex, 300, Duration.ofHours(5), "UA 011");
+    }
+
+    @Test
+    @DisplayName("run() keeps the cheap one-stop and the nonstop, drops the dominated route")
+    void testKeepsTradeOffs() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        ParetoSet pareto = ParetoSearch.run(compact, compact.idOf("JFK"), 2);
+        int lax = compact.idOf("LAX");
+
+        assertEquals(2, pareto.optionCount(lax));
+        int cheap = pareto.firstOption(lax);
+        assertEquals(250, pareto.price(cheap));
+        assertEquals(300, pareto.durationMinutes(cheap));
+        assertEquals(1, pareto.stops(cheap));
+        assertEquals(List.of("JFK", "ATL", "LAX"), pareto.codes(cheap));
+
+        int nonstop = cheap + 1;
+        assertEquals(400, pareto.price(nonstop));
+        assertEquals(0, pareto.stops(nonstop));
+        assertEquals("AA 003", compact.flightNumber(pareto.edges(nonstop)[0]));
+    }
+
+    @Test
+    @DisplayName("run() respects the stop limit")
+    void testStopLimit() {
+        CompactFlightGraph compact = graph.getCompactGraph();
+        ParetoSet pareto = ParetoSearch.run(compact, compact.idOf("JFK"), 0);
+        int lax = compact.idOf("LAX");
+
+        assertEquals(1, pareto.optionCount(lax));
+        assertEquals(400, pareto.price(pareto.firstOption(lax)));
+    }
+
+    @Test
+    @DisplayName("run() matches an exhaustive enumeration on a random graph")
+    void testMatchesExhaustiveSearch() {
+        CompactFlightGraph compact = DijkstraTest.randomGraph(25, 150, 9L).getCompactGraph();
+        int maxStops = 2;
+
+        for (int s = 0; s < compact.vertexCount(); s += 3) {
+            ParetoSet pareto = ParetoSearch.run(compact, s, maxStops);
+            List<List<int[]>> expected = new ArrayList<>();
+            for (int v = 0; v < compact.vertexCount(); v++) expected.add(new ArrayList<>());
+            enumerate(compact, s, s, 0, 0, 0, maxStops + 1, expected);
+
+            for (int v = 0; v < compact.vertexCount(); v++) {
+                if (v == s) continue;
+                List<int[]> front = paretoFront(expected.get(v));
+                assertEquals(front.size(), pareto.optionCount(v), "options at vertex " + v);
+                for (int o = pareto.firstOption(v); o < pareto.endOption(v); o++) {
+                    int[] option = { pareto.price(o), pareto.durationMinutes(o), pareto.stops(o) + 1 };
+                    assertTrue(front.stream().anyMatch(f -> f[0] == option[0] && f[1] == option[1] && f[2] == option[2]));
+
+                    int price = 0;
+                    for (int e : pareto.edges(o)) price += compact.price(e);
+                    assertEquals(pareto.price(o), price);
+                }
+            }
+        }
+    }
+
+    private static void enumerate(CompactFlightGraph g, int source, int v, int price, int minutes, int legs,
+            int maxLegs, List<List<int[]>> found) {
+        if (legs > 0) found.get(v).add(new int[] { price, minutes, legs });
+        if (legs == maxLegs) return;
+        for (int e = g.firstEdge(v); e < g.endEdge(v); e++) {
+            if (g.target(e) == source) continue;
+            enumerate(g, source, g.target(e), price + g.price(e), minutes + g.durationMinutes(e), legs + 1, maxLegs, found);
+        }
+    }
+
+    // Distinct non-dominated (price, minutes, legs) triples
+    private static List<int[]> paretoFront(List<int[]> all) {
+        List<int[]> front = new ArrayList<>();
+        for (int[] a : all) {
+            boolean dominated = false;
+            for (int[] b : all) {
+                boolean noWorse = b[0] <= a[0] && b[1] <= a[1] && b[2] <= a[2];
+                boolean better = b[0] < a[0] || b[1] < a[1] || b[2] < a[2];
+                if (noWorse && better) dominated = true;
+            }
+            boolean duplicate = front.stream().anyMatch(f -> f[0] == a[0] && f[1] == a[1] && f[2] == a[2]);
+            if (!dominated && !duplicate) front.add(a);
+        }
+        return front;
+    }
+}
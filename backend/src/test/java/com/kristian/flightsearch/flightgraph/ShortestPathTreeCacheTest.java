@@ -0,0 +1,109 @@
+package com.kristian.flightsearch.flightgraph;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * Graph used in most tests:
+ *
+ *   JFK --$100/2h--> ATL --$150/3h--> LAX
+ *   JFK ----------$400/4h-----------> LAX
+ */
+@DisplayName("ShortestPathTreeCache Tests")
+class ShortestPathTreeCacheTest {
+
+    private FlightGraph graph;
+    private AirportVertex jfkVertex;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6398, -73.7789, 4423, 13, "New York", "United States");
+        Airport atl = new Airport("ATL", "Hartsfield-Jackson Atlanta International Airport", 33.6404, -84.4199, 3962, 313, "Atlanta", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9428, -118.4100, 3939, 38, "Los Angeles", "United States");
+
+        graph = new FlightGraph(true, true);
+        jfkVertex = graph.addVertex(jfk);
+        AirportVertex atlVertex = graph.addVertex(atl);
+        AirportVertex laxVertex = graph.addVertex(lax);
+
+        graph.addEdge(jfkVertex, atlVertex, 100, Duration.ofHours(2), "AA 001");
+        graph.addEdge(atlVertex, laxVertex, 150, Duration.ofHours(3), "AA 002");
+        graph.addEdge(jfkVertex, laxVertex, 400, Duration.ofHours(4), "AA 003");
+    }
+
+    @Test
+    @DisplayName("get() returns the cached tree on a hit and keeps metrics apart")
+    void testHit() {
+        CompactFlightGraph routes = graph.getRouteGraph();
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(routes, 1 << 20);
+        int jfk = routes.idOf("JFK");
+
+        ShortestPathTree byPrice = cache.get(jfk, Metric.PRICE);
+        assertSame(byPrice, cache.get(jfk, Metric.PRICE));
+
+        ShortestPathTree byDuration = cache.get(jfk, Metric.DURATION);
+        assertNotSame(byPrice, byDuration);
+        assertEquals(Metric.DURATION, byDuration.getMetric());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("get() evicts the least recently used tree once over the byte cap")
+    void testEviction() {
+        CompactFlightGraph routes = graph.getRouteGraph();
+        // Room for exactly two trees of a three-airport graph
+        long treeBytes = 8L * routes.vertexCount() + 64;
+        ShortestPathTreeCache cache = new ShortestPathTreeCache(routes, 2 * treeBytes);
+        int jfk = routes.idOf("JFK");
+        int atl = routes.idOf("ATL");
+        int lax = routes.idOf("LAX");
+
+        ShortestPathTree fromJfk = cache.get(jfk, Metric.PRICE);
+        ShortestPathTree fromAtl = cache.get(atl, Metric.PRICE);
+        cache.get(jfk, Metric.PRICE);   // JFK is now the most recently used
+        cache.get(lax, Metric.PRICE);   // evicts ATL
+
+        assertEquals(2, cache.size());
+        assertSame(fromJfk, cache.get(jfk, Metric.PRICE));
+        assertNotSame(fromAtl, cache.get(atl, Metric.PRICE));
+    }
+
+    @Test
+    @DisplayName("toPath() rebuilds the cheapest path with edges of the graph")
+    void testToPath() {
+        ShortestPathTree tree = graph.getShortestPathTree("JFK", Metric.PRICE);
+        CompactFlightGraph routes = tree.getGraph();
+        ShortestPath path = tree.toPath(routes.idOf("LAX"));
+
+        assertEquals(List.of("JFK", "ATL", "LAX"), path.codes());
+        assertEquals(250, path.cost());
+        for (int i = 0; i < path.edges().length; i++) {
+            assertEquals(path.vertices()[i + 1], routes.target(path.edges()[i]));
+        }
+        assertNull(graph.getShortestPathTree("LAX", Metric.PRICE).toPath(routes.idOf("JFK")));
+    }
+
+    @Test
+    @DisplayName("getShortestPathTree() drops cached trees once the graph changes")
+    void testInvalidation() {
+        assertNull(graph.getShortestPathTree("XXX", Metric.PRICE));
+
+        ShortestPathTree before = graph.getShortestPathTree("JFK", Metric.PRICE);
+        assertSame(before, graph.getShortestPathTree("JFK", Metric.PRICE));
+
+        Airport ord = new Airport("ORD", "O'Hare International Airport", 41.9786, -87.9048, 672, 18, "Chicago", "United States");
+        graph.addEdge(jfkVertex, graph.addVertex(ord), 90, Duration.ofHours(2), "AA 004");
+
+        ShortestPathTree after = graph.getShortestPathTree("JFK", Metric.PRICE);
+        assertNotSame(before, after);
+        assertEquals(90, after.distanceTo(after.getGraph().idOf("ORD")));
+    }
+}
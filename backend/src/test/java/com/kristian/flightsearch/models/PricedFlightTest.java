@@ -0,0 +1,55 @@
+package com.kristian.flightsearch.models;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+@DisplayName("PricedFlight Tests")
+class PricedFlightTest {
+
+    private Flight template;
+
+    @BeforeEach
+    void setUp() {
+        Airport jfk = new Airport("JFK", "John F. Kennedy International Airport", 40.6413, -73.7781, 4423, 13, "New York", "United States");
+        Airport lax = new Airport("LAX", "Los Angeles International Airport", 33.9416, -118.4085, 3939, 38, "Los Angeles", "United States");
+        template = new Flight(jfk, lax, 3974.0, LocalTime.of(10, 30), "AA 1234");
+        template.setPrice(400);
+        template.setAirlineName("American Airlines");
+        template.setAircraftName("Boeing 737");
+    }
+
+    @Test
+    @DisplayName("Reads the schedule from the template and the price and date from the view")
+    void testView() {
+        PricedFlight priced = new PricedFlight(template, 250, LocalDate.of(2026, 4, 15));
+
+        assertEquals(250, priced.getPrice());
+        assertEquals(LocalDate.of(2026, 4, 15), priced.getDate());
+        assertSame(template, priced.getSchedule());
+        assertSame(template.getOrigin(), priced.getOrigin());
+        assertSame(template.getDestination(), priced.getDestination());
+        assertEquals("AA 1234", priced.getFlightNumber());
+        assertSame(template.getDepartureTime(), priced.getDepartureTime());
+        assertSame(template.getArrivalTime(), priced.getArrivalTime());
+        assertSame(template.getDuration(), priced.getDuration());
+        assertEquals("American Airlines", priced.getAirlineName());
+        assertEquals("Boeing 737", priced.getAircraftName());
+
+        // The template keeps its own price
+        assertEquals(400, template.getPrice());
+    }
+
+    @Test
+    @DisplayName("Setters are rejected since the schedule is shared")
+    void testReadOnly() {
+        PricedFlight priced = new PricedFlight(template, 250, LocalDate.of(2026, 4, 15));
+        assertThrows(UnsupportedOperationException.class, () -> priced.setPrice(100));
+        assertThrows(UnsupportedOperationException.class, () -> priced.setDepartureTime(LocalTime.NOON));
+    }
+}
@@ -0,0 +1,119 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Checks branch and bound against brute force over every ordering of random leg
+ * cost matrices, with some legs missing altogether.
+ */
+@DisplayName("BranchAndBound Tests")
+class BranchAndBoundTest {
+
+    // legCosts[from][to], home last; roughly one leg in five has no flight
+    private static int[][] randomLegCosts(int n, long seed) {
+        Random random = new Random(seed);
+        int[][] legCosts = new int[n + 1][n + 1];
+        for (int a = 0; a <= n; a++) {
+            for (int b = 0; b <= n; b++) {
+                legCosts[a][b] = random.nextInt(5) == 0 ? HeldKarp.NO_LEG : 50 + random.nextInt(500);
+            }
+        }
+        return legCosts;
+    }
+
+    // Total cost of every flyable ordering, cheapest first
+    private static List<Integer> bruteForceCosts(int[][] legCosts) {
+        List<Integer> costs = new ArrayList<>();
+        int n = legCosts.length - 1;
+        permute(new int[n], new boolean[n], 0, legCosts, costs);
+        costs.sort(null);
+        return costs;
+    }
+
+    private static void permute(int[] order, boolean[] used, int depth, int[][] legCosts, List<Integer> costs) {
+        int n = order.length;
+        if (depth == n) {
+            int total = 0;
+            int from = n;
+            for (int stop : order) {
+                if (legCosts[from][stop] == HeldKarp.NO_LEG) return;
+                total += legCosts[from][stop];
+                from = stop;
+            }
+            if (legCosts[from][n] == HeldKarp.NO_LEG) return;
+            costs.add(total + legCosts[from][n]);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            if (used[i]) continue;
+            used[i] = true;
+            order[depth] = i;
+            permute(order, used, depth + 1, legCosts, costs);
+            used[i] = false;
+        }
+    }
+
+    @Test
+    @DisplayName("topOrderings() returns the k cheapest orderings found by brute force")
+    void testMatchesBruteForce() {
+        for (long seed = 1; seed <= 30; seed++) {
+            int n = 1 + (int) (seed % 7);
+            int[][] legCosts = randomLegCosts(n, seed);
+
+            List<Integer> expected = bruteForceCosts(legCosts);
+            List<HeldKarp.Ordering> orderings = BranchAndBound.topOrderings(legCosts, 5);
+
+            assertEquals(Math.min(5, expected.size()), orderings.size(), "seed " + seed);
+            for (int i = 0; i < orderings.size(); i++) {
+                HeldKarp.Ordering ordering = orderings.get(i);
+                assertEquals(expected.get(i), ordering.cost(), "seed " + seed);
+
+                int total = 0;
+                int from = n;
+                for (int stop : ordering.stops()) {
+                    total += legCosts[from][stop];
+                    from = stop;
+                }
+                assertEquals(ordering.cost(), total + legCosts[from][n]);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("topOrderings() agrees with Held-Karp on costs that don't depend on the date")
+    void testMatchesHeldKarp() {
+        int n = 10;
+        int[][] legCosts = randomLegCosts(n, 42);
+        List<HeldKarp.Ordering> expected = HeldKarp.topOrderings(new int[n],
+                (from, to, dayOffset) -> from == to ? HeldKarp.NO_LEG : legCosts[from][to], 10);
+        List<HeldKarp.Ordering> orderings = BranchAndBound.topOrderings(legCosts, 10);
+
+        assertEquals(expected.size(), orderings.size());
+        for (int i = 0; i < orderings.size(); i++) {
+            assertEquals(expected.get(i).cost(), orderings.get(i).cost());
+        }
+    }
+
+    @Test
+    @DisplayName("topOrderings() is empty when an airport can't be flown into")
+    void testUnreachable() {
+        int[][] legCosts = {
+                { HeldKarp.NO_LEG, 100, 100 },
+                { HeldKarp.NO_LEG, HeldKarp.NO_LEG, 100 },
+                { 100, HeldKarp.NO_LEG, HeldKarp.NO_LEG },
+        };
+        // Home only flies to 0 and 1 is only flown into from 0, so home -> 0 -> 1 -> home is the one tour
+        assertEquals(1, BranchAndBound.topOrderings(legCosts, 5).size());
+
+        // Without home -> 0 nothing flies into destination 0 at all
+        legCosts[2][0] = HeldKarp.NO_LEG;
+        assertTrue(BranchAndBound.topOrderings(legCosts, 5).isEmpty());
+    }
+}
@@ -0,0 +1,129 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Checks Held-Karp against brute force over every ordering, with leg costs that
+ * change with the day the leg is flown and some legs missing altogether.
+ */
+@DisplayName("HeldKarp Tests")
+class HeldKarpTest {
+
+    // Cost depends on (from, to, dayOffset); roughly one leg in five has no flight
+    private static HeldKarp.LegCost randomLegs(long seed) {
+        return (from, to, dayOffset) -> {
+            Random random = new Random(seed ^ (from * 131L + to * 17L + dayOffset * 1_000_003L));
+            return random.nextInt(5) == 0 ? HeldKarp.NO_LEG : 50 + random.nextInt(500);
+        };
+    }
+
+    // Total cost of every flyable ordering, cheapest first
+    private static List<Integer> bruteForceCosts(int[] stayDays, HeldKarp.LegCost legs) {
+        List<Integer> costs = new ArrayList<>();
+        permute(new int[stayDays.length], new boolean[stayDays.length], 0, stayDays, legs, costs);
+        costs.sort(null);
+        return costs;
+    }
+
+    private static void permute(int[] order, boolean[] used, int depth, int[] stayDays,
+            HeldKarp.LegCost legs, List<Integer> costs) {
+        int n = stayDays.length;
+        if (depth == n) {
+            int total = 0;
+            int from = n;
+            int offset = 0;
+            for (int stop : order) {
+                int leg = legs.cost(from, stop, offset);
+                if (leg == HeldKarp.NO_LEG) return;
+                total += leg;
+                offset += stayDays[stop] + 1;
+                from = stop;
+            }
+            int home = legs.cost(from, n, offset);
+            if (home == HeldKarp.NO_LEG) return;
+            costs.add(total + home);
+            return;
+        }
+        for (int i = 0; i < n; i++) {
+            if (used[i]) continue;
+            used[i] = true;
+            order[depth] = i;
+            permute(order, used, depth + 1, stayDays, legs, costs);
+            used[i] = false;
+        }
+    }
+
+    @Test
+    @DisplayName("topOrderings() matches brute force on dated leg costs")
+    void testMatchesBruteForce() {
+        for (long seed = 1; seed <= 20; seed++) {
+            int n = 1 + (int) (seed % 6);
+            int[] stayDays = new Random(seed).ints(n, 0, 5).toArray();
+            HeldKarp.LegCost legs = randomLegs(seed);
+
+            List<Integer> expected = bruteForceCosts(stayDays, legs);
+            List<HeldKarp.Ordering> orderings = HeldKarp.topOrderings(stayDays, legs, 10);
+
+            assertEquals(Math.min(10, expected.size()), orderings.size(), "seed " + seed);
+            for (int i = 0; i < orderings.size(); i++) {
+                HeldKarp.Ordering ordering = orderings.get(i);
+                assertEquals(expected.get(i), ordering.cost(), "seed " + seed);
+
+                // The reconstructed stops visit every destination once and add up to the cost
+                int[] sorted = ordering.stops().clone();
+                Arrays.sort(sorted);
+                for (int d = 0; d < n; d++) assertEquals(d, sorted[d]);
+                int total = 0;
+                int from = n;
+                int offset = 0;
+                for (int stop : ordering.stops()) {
+                    total += legs.cost(from, stop, offset);
+                    offset += stayDays[stop] + 1;
+                    from = stop;
+                }
+                assertEquals(ordering.cost(), total + legs.cost(from, n, offset));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("topOrderings() handles twelve destinations")
+    void testTwelveDestinations() {
+        int[] stayDays = new int[HeldKarp.MAX_DESTINATIONS];
+        Arrays.fill(stayDays, 2);
+        // Only i -> i + 1 (and home -> 0, 11 -> home) is cheap, so the best tour is in index order
+        HeldKarp.LegCost legs = (from, to, dayOffset) -> {
+            int n = stayDays.length;
+            boolean cheap = (from == n && to == 0) || (to == n && from == n - 1) || to == from + 1;
+            return cheap ? 10 : 1000;
+        };
+
+        List<HeldKarp.Ordering> orderings = HeldKarp.topOrderings(stayDays, legs, 3);
+        assertEquals(3, orderings.size());
+        assertEquals(130, orderings.get(0).cost());
+        assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11 }, orderings.get(0).stops());
+        assertTrue(orderings.get(1).cost() > 130);
+    }
+
+    @Test
+    @DisplayName("topOrderings() is empty when no ordering can be flown")
+    void testNoOrdering() {
+        HeldKarp.LegCost legs = (from, to, dayOffset) -> to == 2 ? HeldKarp.NO_LEG : 100;
+        assertTrue(HeldKarp.topOrderings(new int[] { 1, 1 }, legs, 5).isEmpty());
+    }
+
+    @Test
+    @DisplayName("dayOffsets() sums stay plus travel day over each visited set")
+    void testDayOffsets() {
+        int[] offsets = HeldKarp.dayOffsets(new int[] { 3, 2 });
+        assertArrayEquals(new int[] { 0, 4, 3, 7 }, offsets);
+    }
+}
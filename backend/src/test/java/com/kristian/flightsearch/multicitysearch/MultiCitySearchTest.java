@@ -5,6 +5,7 @@ import com.kristian.flightsearch.flightgraph.FlightGraph;
 import com.kristian.flightsearch.models.Airport;
 import com.kristian.flightsearch.models.Flight;
 import com.kristian.flightsearch.models.Route;
+import com.kristian.flightsearch.timetable.Timetable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -221,7 +222,7 @@ class MultiCitySearchTest {
 
     /*
      * Builds a date-keyed price index: "ORIGINDESTDATE" → {flightNumber → price}.
-     * Flight numbers match those in flightIndex so flightsByNumber lookups succeed.
+     * Flight numbers match those in flightIndex so schedule lookups succeed.
      */
     private HashMap<String, Map<String, Integer>> buildDateKeyedIndex() {
         HashMap<String, Map<String, Integer>> idx = new HashMap<>();
@@ -259,6 +260,26 @@ class MultiCitySearchTest {
         assertArrayEquals(new String[]{"JFK", "LHR", "CDG", "JFK"}, routes.get(0).getAirports());
     }
 
+    @Test
+    @DisplayName("searchByDate prices a flight number shared by two routes on each route")
+    void searchByDateKeepsSharedFlightNumberPerRoute() {
+        // AA100 also flies LHR→CDG
+        flightIndex.put("LHRCDG", new ArrayList<>(List.of(new Flight(lhr, cdg, 344.0, LocalTime.of(18, 0), "AA100"))));
+        HashMap<String, Map<String, Integer>> index = new HashMap<>();
+        index.put("JFKLHR2026-04-15", Map.of("AA100", 300));
+        index.put("LHRCDG2026-04-19", Map.of("AA100", 100));
+        index.put("CDGJFK2026-04-22", Map.of("AF006", 350));
+
+        MultiCitySearch mcs = new MultiCitySearch(null, flightIndex);
+        ArrayList<Route> routes = mcs.searchByDateWithIndex(
+                "JFK", new String[]{"LHR", "CDG"}, DEPARTURE, Map.of("LHR", 3, "CDG", 2), "price", index);
+
+        assertEquals(1, routes.size());
+        Flight lhrCdg = routes.get(0).getFlights().get(1).get(0);
+        assertEquals("LHR", lhrCdg.getOrigin().getCode());
+        assertEquals("CDG", lhrCdg.getDestination().getCode());
+    }
+
     @Test
     @DisplayName("searchByDate returns empty list when no flights exist on the required dates")
     void searchByDateReturnsEmptyWhenNoFlightsOnDates() {
@@ -293,6 +314,44 @@ class MultiCitySearchTest {
         }
     }
 
+    @Test
+    @DisplayName("searchByDate with optimizeBy pareto keeps only routes no other route beats on every criterion")
+    void searchByDateParetoDropsDominatedRoutes() {
+        MultiCitySearch mcs = new MultiCitySearch(null, flightIndex);
+        ArrayList<Route> all = mcs.searchByDateWithIndex(
+                "JFK", new String[]{"LHR", "CDG"}, DEPARTURE, Map.of("LHR", 3, "CDG", 2), "price", buildDateKeyedIndex());
+        ArrayList<Route> pareto = mcs.searchByDateWithIndex(
+                "JFK", new String[]{"LHR", "CDG"}, DEPARTURE, Map.of("LHR", 3, "CDG", 2), "pareto", buildDateKeyedIndex());
+
+        assertFalse(pareto.isEmpty());
+        assertTrue(pareto.size() <= all.size());
+        for (Route kept : pareto) {
+            for (Route other : all) {
+                boolean dominates = other.getCheapestTotalPrice() <= kept.getCheapestTotalPrice()
+                        && other.getShortestTotalDurationMinutes() <= kept.getShortestTotalDurationMinutes()
+                        && (other.getCheapestTotalPrice() < kept.getCheapestTotalPrice()
+                                || other.getShortestTotalDurationMinutes() < kept.getShortestTotalDurationMinutes());
+                assertFalse(dominates);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("searchByDate with a result limit returns only the best routes")
+    void searchByDateHonoursResultLimit() {
+        MultiCitySearch mcs = new MultiCitySearch(null, flightIndex);
+        mcs.setResultLimit(1);
+        ArrayList<Route> routes = mcs.searchByDateWithIndex(
+                "JFK", new String[]{"LHR", "CDG"}, DEPARTURE, Map.of("LHR", 3, "CDG", 2), "price", buildDateKeyedIndex());
+
+        // JFK→CDG→LHR→JFK is 280 + 90 + 320 = 690, JFK→LHR→CDG→JFK is 300 + 100 + 350 = 750
+        assertEquals(1, routes.size());
+        assertArrayEquals(new String[]{"JFK", "CDG", "LHR", "JFK"}, routes.get(0).getAirports());
+        assertEquals(690, routes.get(0).getCheapestTotalPrice());
+
+        assertThrows(IllegalArgumentException.class, () -> mcs.setResultLimit(MultiCitySearch.MAX_RESULTS + 1));
+    }
+
     @Test
     @DisplayName("computeLegDates assigns correct dates based on days at each airport")
     void computeLegDatesAssignsCorrectDates() {
@@ -430,6 +489,22 @@ class MultiCitySearchTest {
         assertTrue(hasUio, "Expected at least one route to include UIO as a connection airport");
     }
 
+    @Test
+    @DisplayName("searchByDateWithConnections moves on to the next ordering when the cheapest can't be flown")
+    void connectionSearchReplacesOrderingsThatFail() {
+        // Only JFK→LHR→GYE→JFK is priced on its dates, whichever ordering the graph ranks first
+        MultiCitySearch mcs = new MultiCitySearch(null, connectionFlightIndex);
+        mcs.setResultLimit(1);
+        ArrayList<Route> routes = mcs.searchByDateWithConnectionsAndIndex(
+                "JFK", new String[]{"LHR", "GYE"}, DEPARTURE,
+                Map.of("LHR", 3, "GYE", 2), "price",
+                buildConnectionDateIndex(true, false, false),
+                connectionGraph);
+
+        assertEquals(1, routes.size());
+        assertEquals("LHR", routes.get(0).getAirports()[1]);
+    }
+
     @Test
     @DisplayName("searchByDateWithConnections marks UIO legs as connection legs")
     void connectionSearchSetsIsConnectionLegFlag() {
@@ -576,4 +651,86 @@ class MultiCitySearchTest {
         assertTrue(intended.contains("LHR"));
         assertTrue(intended.contains("GYE"));
     }
+
+    @Test
+    @DisplayName("searchByDateWithConnections falls back to the next cheapest connection when the cheapest has no flights")
+    void connectionSearchFallsBackToAlternativePath() {
+        MultiCitySearch mcs = new MultiCitySearch(null, connectionFlightIndex);
+        // Nothing via UIO on the leg date, but LHR→JFK and a next-morning JFK→GYE exist
+        HashMap<String, Map<String, Integer>> idx = new HashMap<>();
+        idx.put("JFKLHR" + DEPARTURE, Map.of(FN_JFK_LHR, 300));
+        idx.put("LHRJFK" + CONN_LEG_DATE, Map.of("AA101", 350));
+        idx.put("JFKGYE" + CONN_LEG_DATE_PLUS_1, Map.of("UA0001", 200));
+        idx.put("GYEJFK" + GYE_JFK_DATE, Map.of(FN_GYE_JFK, 450));
+
+        ArrayList<Route> routes = mcs.searchByDateWithConnectionsAndIndex(
+                "JFK", new String[]{"LHR", "GYE"}, DEPARTURE,
+                Map.of("LHR", 3, "GYE", 2), "price", idx, connectionGraph);
+
+        Route route = routes.stream()
+                .filter(r -> Arrays.equals(r.getIntendedAirports(), new String[]{"JFK", "LHR", "GYE", "JFK"}))
+                .findFirst().orElse(null);
+        assertNotNull(route, "Expected the LHR→GYE leg to fall back to the path via JFK");
+        assertArrayEquals(new String[]{"JFK", "LHR", "JFK", "GYE", "JFK"}, route.getAirports());
+        assertTrue(route.isConnectionLeg(1));
+        assertTrue(route.isOvernightConnectionLeg(1));
+    }
+
+    // -----------------------------------------------------------------------
+    // searchByDateWithTimetable tests - same flights as the connection tests,
+    // loaded into a Timetable (all airports at UTC+0, so local times compare as-is)
+    // -----------------------------------------------------------------------
+
+    private Timetable buildConnectionTimetable(HashMap<String, Map<String, Integer>> dateIndex) {
+        HashMap<String, Flight> byNumber = new HashMap<>();
+        for (ArrayList<Flight> flights : connectionFlightIndex.values()) {
+            for (Flight f : flights) byNumber.put(f.getFlightNumber(), f);
+        }
+        Timetable.Builder builder = new Timetable.Builder();
+        for (Map.Entry<String, Map<String, Integer>> entry : dateIndex.entrySet()) {
+            LocalDate date = LocalDate.parse(entry.getKey().substring(6));
+            for (Map.Entry<String, Integer> priced : entry.getValue().entrySet()) {
+                Flight f = byNumber.get(priced.getKey());
+                builder.addConnection(f.getOrigin(), f.getDestination(), date, f.getDepartureTime(),
+                        (int) f.getDuration().toMinutes(), priced.getValue(), f.getFlightNumber());
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    @DisplayName("searchByDateWithTimetable connects via UIO with the cheapest flight that leaves enough time")
+    void timetableSearchFindsCheapestFeasibleConnection() {
+        MultiCitySearch mcs = new MultiCitySearch(null, connectionFlightIndex);
+        Timetable timetable = buildConnectionTimetable(buildConnectionDateIndex(true, true, true));
+
+        ArrayList<Route> routes = mcs.searchByDateWithTimetable(
+                "JFK", new String[]{"LHR", "GYE"}, DEPARTURE, Map.of("LHR", 3, "GYE", 2), "price", timetable);
+
+        assertEquals(1, routes.size());
+        Route route = routes.get(0);
+        assertArrayEquals(new String[]{"JFK", "LHR", "UIO", "GYE", "JFK"}, route.getAirports());
+        // AV5001 ($120) leaves only 1h after landing, so AV5000 ($150) is used
+        assertEquals(FN_UIO_GYE_VALID, route.getFlights().get(2).get(0).getFlightNumber());
+        assertEquals(300 + 400 + 150 + 450, route.getCheapestTotalPrice());
+        assertTrue(route.isConnectionLeg(1));
+        assertEquals(180, route.getMinConnectionMinutes(1));
+        assertFalse(route.isOvernightConnectionLeg(1));
+    }
+
+    @Test
+    @DisplayName("searchByDateWithTimetable takes the next-day flight when nothing leaves in time the same day")
+    void timetableSearchUsesOvernightConnection() {
+        MultiCitySearch mcs = new MultiCitySearch(null, connectionFlightIndex);
+        Timetable timetable = buildConnectionTimetable(buildConnectionDateIndex(false, true, true));
+
+        ArrayList<Route> routes = mcs.searchByDateWithTimetable(
+                "JFK", new String[]{"LHR", "GYE"}, DEPARTURE, Map.of("LHR", 3, "GYE", 2), "price", timetable);
+
+        assertEquals(1, routes.size());
+        Route route = routes.get(0);
+        assertEquals(FN_UIO_GYE_NEXTDAY, route.getFlights().get(2).get(0).getFlightNumber());
+        assertTrue(route.isOvernightConnectionLeg(1));
+        assertEquals(CONN_LEG_DATE_PLUS_1, route.getLegDates()[2]);
+    }
 }
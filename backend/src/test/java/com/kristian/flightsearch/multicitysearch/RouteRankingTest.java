@@ -0,0 +1,97 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.function.Function;
+
+@DisplayName("RouteRanking Tests")
+class RouteRankingTest {
+
+    private static final Function<RouteRanking.Score, RouteRanking.Score> SELF = s -> s;
+
+    private static RouteRanking.Score score(int price, long minutes, int stops) {
+        return new RouteRanking.Score(price, minutes, stops);
+    }
+
+    @Test
+    @DisplayName("price and duration rankings keep the best limit by that criterion")
+    void testPriceAndDuration() {
+        List<RouteRanking.Score> scores = List.of(score(500, 300, 0), score(300, 600, 1),
+                score(400, 200, 0), score(900, 100, 0));
+
+        RouteRanking<RouteRanking.Score> byPrice = new RouteRanking<>("price", 2, SELF);
+        RouteRanking<RouteRanking.Score> byDuration = new RouteRanking<>("duration", 2, SELF);
+        for (RouteRanking.Score s : scores) {
+            byPrice.offer(s);
+            byDuration.offer(s);
+        }
+
+        assertEquals(List.of(score(300, 600, 1), score(400, 200, 0)), byPrice.sorted());
+        assertEquals(List.of(score(900, 100, 0), score(400, 200, 0)), byDuration.sorted());
+        assertEquals(4, byPrice.offered());
+    }
+
+    @Test
+    @DisplayName("pareto drops covered candidates whatever order they arrive in, cheapest first")
+    void testPareto() {
+        RouteRanking<RouteRanking.Score> pareto = new RouteRanking<>("pareto", 10, SELF);
+        pareto.offer(score(500, 300, 1));
+        pareto.offer(score(400, 300, 1));
+        pareto.offer(score(400, 300, 1));
+        pareto.offer(score(600, 200, 0));
+        pareto.offer(score(700, 250, 0));
+
+        assertEquals(List.of(score(400, 300, 1), score(600, 200, 0)), pareto.sorted());
+        assertEquals(5, pareto.offered());
+    }
+
+    @Test
+    @DisplayName("merge() keeps the same candidates as offering everything to one ranking")
+    void testMerge() {
+        List<RouteRanking.Score> scores = List.of(score(500, 300, 1), score(300, 600, 1),
+                score(400, 200, 0), score(900, 100, 0), score(450, 250, 2), score(350, 700, 0));
+        for (String optimizeBy : List.of("price", "duration", "pareto")) {
+            RouteRanking<RouteRanking.Score> whole = new RouteRanking<>(optimizeBy, 3, SELF);
+            RouteRanking<RouteRanking.Score> left = new RouteRanking<>(optimizeBy, 3, SELF);
+            RouteRanking<RouteRanking.Score> right = new RouteRanking<>(optimizeBy, 3, SELF);
+            for (int i = 0; i < scores.size(); i++) {
+                whole.offer(scores.get(i));
+                (i % 2 == 0 ? left : right).offer(scores.get(i));
+            }
+            left.merge(right);
+
+            assertEquals(whole.sorted(), left.sorted(), optimizeBy);
+            assertEquals(scores.size(), left.offered(), optimizeBy);
+        }
+    }
+
+    @Test
+    @DisplayName("ties go to the lowest index whichever ranking they were offered to first")
+    void testTiesByIndex() {
+        // Same price and duration; only the stops tell the candidates apart
+        List<RouteRanking.Score> ties = List.of(score(400, 300, 2), score(400, 300, 1), score(400, 300, 0));
+        for (String optimizeBy : List.of("price", "duration")) {
+            RouteRanking<RouteRanking.Score> early = new RouteRanking<>(optimizeBy, 1, SELF);
+            RouteRanking<RouteRanking.Score> late = new RouteRanking<>(optimizeBy, 1, SELF);
+            late.offer(ties.get(2), 2);
+            late.offer(ties.get(1), 1);
+            early.offer(ties.get(0), 0);
+            late.merge(early);
+
+            assertEquals(List.of(ties.get(0)), late.sorted(), optimizeBy);
+            assertEquals(3, late.offered(), optimizeBy);
+        }
+
+        RouteRanking<RouteRanking.Score> pareto = new RouteRanking<>("pareto", 10, SELF);
+        RouteRanking<RouteRanking.Score> other = new RouteRanking<>("pareto", 10, SELF);
+        pareto.offer(score(400, 300, 1), 5);
+        other.offer(new RouteRanking.Score(400, 300, 1), 3);
+        pareto.merge(other);
+        assertEquals(1, pareto.sorted().size());
+        assertSame(other.sorted().get(0), pareto.sorted().get(0));
+    }
+}
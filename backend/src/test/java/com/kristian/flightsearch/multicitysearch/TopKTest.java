@@ -0,0 +1,42 @@
+package com.kristian.flightsearch.multicitysearch;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+@DisplayName("TopK Tests")
+class TopKTest {
+
+    @Test
+    @DisplayName("of() keeps the k smallest items, smallest first")
+    void testOf() {
+        List<Integer> items = new Random(7).ints(200, 0, 1000).boxed().toList();
+        List<Integer> expected = new ArrayList<>(items);
+        expected.sort(null);
+
+        assertEquals(expected.subList(0, 10), TopK.of(items, 10, Comparator.naturalOrder()));
+        assertEquals(expected, TopK.of(items, 500, Comparator.naturalOrder()));
+    }
+
+    @Test
+    @DisplayName("offer() turns away items no better than the worst kept once full")
+    void testOffer() {
+        TopK<Integer> top = new TopK<>(2, Comparator.naturalOrder());
+        assertTrue(top.offer(5));
+        assertFalse(top.isFull());
+        assertTrue(top.offer(3));
+        assertTrue(top.isFull());
+        assertEquals(5, top.worst());
+
+        assertFalse(top.offer(5));
+        assertTrue(top.offer(1));
+        assertEquals(3, top.worst());
+        assertEquals(List.of(1, 3), top.sorted());
+    }
+}
@@ -0,0 +1,190 @@
+package com.kristian.flightsearch.timetable;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.kristian.flightsearch.models.Airport;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Timetable used in most tests (all times local, 2026-07-01 unless noted):
+ *
+ *   LHR 09:00 -> JFK  480 min  $500  BA 001   (lands 12:00 New York time)
+ *   JFK 13:30 -> UIO  360 min  $200  AA 010   (only 90 min after BA 001 - too tight)
+ *   JFK 15:00 -> UIO  360 min  $250  AA 012   (3h after BA 001)
+ *   LHR 10:00 -> MAD  150 min  $80   IB 100   (lands 13:30 Madrid time)
+ *   MAD 16:00 -> UIO  700 min  $400  IB 200
+ *
+ * LHR is UTC+1, MAD UTC+2, JFK UTC-4 and UIO UTC-5 in July.
+ */
+@DisplayName("ConnectionScan Tests")
+class ConnectionScanTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 7, 1);
+    private static final int MIN_CONNECTION = 120;
+
+    private Airport lhr;
+    private Airport jfk;
+    private Airport uio;
+    private Airport mad;
+    private Timetable timetable;
+
+    @BeforeEach
+    void setUp() {
+        lhr = airport("LHR", 51.4706, -0.4619, 1.0);
+        jfk = airport("JFK", 40.6413, -73.7781, -4.0);
+        uio = airport("UIO", -0.1292, -78.3575, -5.0);
+        mad = airport("MAD", 40.4983, -3.5676, 2.0);
+
+        Timetable.Builder builder = new Timetable.Builder();
+        builder.addConnection(lhr, jfk, DAY, LocalTime.of(9, 0), 480, 500, "BA 001");
+        builder.addConnection(jfk, uio, DAY, LocalTime.of(13, 30), 360, 200, "AA 010");
+        builder.addConnection(jfk, uio, DAY, LocalTime.of(15, 0), 360, 250, "AA 012");
+        builder.addConnection(lhr, mad, DAY, LocalTime.of(10, 0), 150, 80, "IB 100");
+        builder.addConnection(mad, uio, DAY, LocalTime.of(16, 0), 700, 400, "IB 200");
+        timetable = builder.build();
+    }
+
+    @Test
+    @DisplayName("build() sorts connections by UTC departure time")
+    void testSortedByUtcDeparture() {
+        for (int c = 1; c < timetable.connectionCount(); c++) {
+            assertTrue(timetable.departure(c - 1) <= timetable.departure(c));
+        }
+        // LHR 09:00 (08:00Z) is the first departure, MAD 16:00 (14:00Z) comes before JFK 13:30 (17:30Z)
+        assertEquals("BA 001", timetable.flightNumber(0));
+        assertEquals("IB 200", timetable.flightNumber(2));
+        assertEquals(LocalTime.of(12, 0), timetable.localArrival(0).toLocalTime());
+    }
+
+    @Test
+    @DisplayName("earliestArrival() skips a connection shorter than the minimum")
+    void testEarliestArrivalEnforcesConnectionTime() {
+        Journey journey = ConnectionScan.earliestArrival(timetable, query("LHR", "UIO", 3));
+
+        assertEquals(List.of("LHR", "JFK", "UIO"), journey.codes());
+        assertEquals("AA 012", timetable.flightNumber(journey.connections()[1]));
+        assertEquals(750, journey.price());
+        assertEquals(LocalTime.of(20, 0), timetable.localArrival(journey.connections()[1]).toLocalTime());
+    }
+
+    @Test
+    @DisplayName("cheapestArrival() finds the cheapest itinerary that can actually be flown")
+    void testCheapestArrival() {
+        Journey journey = ConnectionScan.cheapestArrival(timetable, query("LHR", "UIO", 3));
+
+        assertEquals(List.of("LHR", "MAD", "UIO"), journey.codes());
+        assertEquals(480, journey.price());
+    }
+
+    @Test
+    @DisplayName("queries return null when the stop limit or the departure window rules out every journey")
+    void testNoJourney() {
+        assertNull(ConnectionScan.earliestArrival(timetable, query("LHR", "UIO", 1)));
+        assertNull(ConnectionScan.cheapestArrival(timetable, query("LHR", "UIO", 1)));
+
+        int nextDay = Timetable.utcMinute(DAY.plusDays(1), LocalTime.MIDNIGHT, lhr);
+        JourneyQuery tomorrow = new JourneyQuery(timetable.idOf("LHR"), timetable.idOf("UIO"),
+                nextDay, nextDay + 24 * 60, nextDay + 3 * 24 * 60, 3, MIN_CONNECTION);
+        assertNull(ConnectionScan.cheapestArrival(timetable, tomorrow));
+    }
+
+    @Test
+    @DisplayName("both queries match an exhaustive search on a random timetable")
+    void testMatchesExhaustiveSearch() {
+        Random random = new Random(5L);
+        Airport[] airports = new Airport[8];
+        for (int i = 0; i < airports.length; i++) {
+            airports[i] = airport("A0" + i, random.nextDouble() * 60, random.nextDouble() * 60, random.nextInt(5) - 2);
+        }
+        Timetable.Builder builder = new Timetable.Builder();
+        for (int i = 0; i < 400; i++) {
+            int from = random.nextInt(airports.length);
+            int to = random.nextInt(airports.length);
+            if (from == to) continue;
+            builder.addConnection(airports[from], airports[to], DAY.plusDays(random.nextInt(3)),
+                    LocalTime.of(random.nextInt(24), random.nextInt(4) * 15),
+                    60 + random.nextInt(540), 50 + random.nextInt(450), "XX " + i);
+        }
+        Timetable tt = builder.build();
+
+        for (int s = 0; s < tt.airportCount(); s++) {
+            for (int t = 0; t < tt.airportCount(); t++) {
+                if (s == t) continue;
+                int dayStart = Timetable.utcMinute(DAY, LocalTime.MIDNIGHT, tt.airport(s));
+                JourneyQuery q = new JourneyQuery(s, t, dayStart, dayStart + 24 * 60 - 1,
+                        dayStart + 3 * 24 * 60, 3, MIN_CONNECTION);
+
+                int[] best = exhaustive(tt, q);
+                Journey cheapest = ConnectionScan.cheapestArrival(tt, q);
+                Journey earliest = ConnectionScan.earliestArrival(tt, q);
+                if (best[0] == Integer.MAX_VALUE) {
+                    assertNull(cheapest);
+                    assertNull(earliest);
+                    continue;
+                }
+                assertEquals(best[0], cheapest.price());
+                assertEquals(best[1], earliest.arrival());
+                assertFeasible(tt, q, cheapest);
+                assertFeasible(tt, q, earliest);
+            }
+        }
+    }
+
+    private JourneyQuery query(String from, String to, int maxLegs) {
+        int dayStart = Timetable.utcMinute(DAY, LocalTime.MIDNIGHT, lhr);
+        return new JourneyQuery(timetable.idOf(from), timetable.idOf(to),
+                dayStart, dayStart + 24 * 60 - 1, dayStart + 3 * 24 * 60, maxLegs, MIN_CONNECTION);
+    }
+
+    private static void assertFeasible(Timetable tt, JourneyQuery q, Journey journey) {
+        int[] cs = journey.connections();
+        assertTrue(cs.length <= q.maxLegs());
+        assertEquals(q.origin(), tt.origin(cs[0]));
+        assertEquals(q.destination(), tt.destination(cs[cs.length - 1]));
+        int price = tt.price(cs[0]);
+        for (int i = 1; i < cs.length; i++) {
+            assertEquals(tt.destination(cs[i - 1]), tt.origin(cs[i]));
+            assertTrue(tt.departure(cs[i]) - tt.arrival(cs[i - 1]) > q.minConnectionMinutes());
+            price += tt.price(cs[i]);
+        }
+        assertEquals(price, journey.price());
+    }
+
+    // {cheapest price, earliest arrival} over every journey that fits the query
+    private static int[] exhaustive(Timetable tt, JourneyQuery q) {
+        int[] best = { Integer.MAX_VALUE, Integer.MAX_VALUE };
+        for (int c = 0; c < tt.connectionCount(); c++) {
+            if (tt.origin(c) != q.origin() || tt.departure(c) < q.earliestDeparture()
+                    || tt.departure(c) > q.latestDeparture()) continue;
+            extend(tt, q, c, 1, tt.price(c), best);
+        }
+        return best;
+    }
+
+    private static void extend(Timetable tt, JourneyQuery q, int last, int legs, int price, int[] best) {
+        if (tt.arrival(last) > q.latestArrival()) return;
+        if (tt.destination(last) == q.destination()) {
+            best[0] = Math.min(best[0], price);
+            best[1] = Math.min(best[1], tt.arrival(last));
+            return;
+        }
+        if (legs == q.maxLegs()) return;
+        for (int c = 0; c < tt.connectionCount(); c++) {
+            if (tt.origin(c) != tt.destination(last)) continue;
+            if (tt.departure(c) - tt.arrival(last) <= q.minConnectionMinutes()) continue;
+            extend(tt, q, c, legs + 1, price + tt.price(c), best);
+        }
+    }
+
+    private static Airport airport(String code, double lat, double lon, double utcOffset) {
+        return new Airport(code, code + " Airport", lat, lon, 10000, 0, code, "Country", "X" + code, "Zone", utcOffset);
+    }
+}